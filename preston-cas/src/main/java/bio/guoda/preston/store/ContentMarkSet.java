@@ -0,0 +1,201 @@
+package bio.guoda.preston.store;
+
+import bio.guoda.preston.HashType;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Set of content ids marked as referenced, e.g., by a garbage collection of a data dir.
+ * <p>
+ * Content ids are kept as 64-bit fingerprints (the first 64 bits of their hash) in an open addressing
+ * hash table that lives in a memory-mapped file in the tmp dir, so that hundreds of millions of content ids
+ * can be marked without being held on the heap. Distinct content ids may share a fingerprint: so,
+ * an unmarked content id may appear marked (a false positive), but a marked content id always appears marked.
+ * <p>
+ * Marking is synchronized. Lookups are not, and may run concurrently once marking is done.
+ */
+
+public class ContentMarkSet implements Closeable {
+
+    private static final int SLOT_BYTES = Long.BYTES;
+    private static final int SEGMENT_SLOT_BITS = 27; // 1 GiB segments
+    private static final long INITIAL_CAPACITY = 1L << 20;
+    private static final int FINGERPRINT_HEX_LENGTH = 16;
+    private static final long EMPTY = 0L;
+
+    private final File tmpDir;
+    private Table table;
+    private long size = 0;
+
+    public ContentMarkSet(File tmpDir) throws IOException {
+        this(tmpDir, INITIAL_CAPACITY);
+    }
+
+    ContentMarkSet(File tmpDir, long initialCapacity) throws IOException {
+        if (Long.bitCount(initialCapacity) != 1) {
+            throw new IllegalArgumentException("expected capacity of power of two, but got [" + initialCapacity + "]");
+        }
+        this.tmpDir = tmpDir;
+        this.table = new Table(tmpDir, initialCapacity);
+    }
+
+    /**
+     * @return true if content id was not marked before, false if it was, or if it is not a content id (e.g., hash://sha256/...)
+     */
+
+    public synchronized boolean mark(IRI contentId) throws IOException {
+        long fingerprint = fingerprintOf(contentId);
+        if (fingerprint == EMPTY) {
+            return false;
+        }
+        if (size + 1 > table.getCapacity() / 2) {
+            grow();
+        }
+        boolean added = table.add(fingerprint);
+        if (added) {
+            size++;
+        }
+        return added;
+    }
+
+    public boolean isMarked(IRI contentId) {
+        long fingerprint = fingerprintOf(contentId);
+        return fingerprint != EMPTY && table.contains(fingerprint);
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (table != null) {
+            table.close();
+            table = null;
+        }
+    }
+
+    private void grow() throws IOException {
+        Table larger = new Table(tmpDir, table.getCapacity() * 2);
+        for (long slot = 0; slot < table.getCapacity(); slot++) {
+            long fingerprint = table.get(slot);
+            if (fingerprint != EMPTY) {
+                larger.add(fingerprint);
+            }
+        }
+        table.close();
+        table = larger;
+    }
+
+    static long fingerprintOf(IRI contentId) {
+        String iriString = contentId.getIRIString();
+        for (HashType type : HashType.values()) {
+            if (StringUtils.startsWith(iriString, type.getPrefix())
+                    && iriString.length() == type.getPrefix().length() + type.getHexLength()) {
+                String hex = iriString.substring(type.getPrefix().length());
+                if (type.getHexPattern().matcher(hex).matches()) {
+                    long fingerprint = Long.parseUnsignedLong(hex.substring(0, FINGERPRINT_HEX_LENGTH), 16);
+                    // empty slots are zero, so a zero fingerprint is stored as a (harmless) false positive of one
+                    return fingerprint == EMPTY ? 1L : fingerprint;
+                }
+            }
+        }
+        return EMPTY;
+    }
+
+    private static long slotOf(long fingerprint, long mask) {
+        // murmur3 finalizer, so that slots do not depend on hash prefixes alone
+        long h = fingerprint;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h & mask;
+    }
+
+    private static class Table {
+        private final File file;
+        private final long capacity;
+        private final long mask;
+        private final long segmentMask;
+        private final MappedByteBuffer[] segments;
+
+        Table(File tmpDir, long capacity) throws IOException {
+            FileUtils.forceMkdir(tmpDir);
+            this.file = File.createTempFile("marks", ".tmp", tmpDir);
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            long slotsPerSegment = Math.min(capacity, 1L << SEGMENT_SLOT_BITS);
+            this.segmentMask = slotsPerSegment - 1;
+            this.segments = new MappedByteBuffer[(int) (capacity / slotsPerSegment)];
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(capacity * SLOT_BYTES);
+                FileChannel channel = raf.getChannel();
+                for (int i = 0; i < segments.length; i++) {
+                    segments[i] = channel.map(
+                            FileChannel.MapMode.READ_WRITE,
+                            i * slotsPerSegment * SLOT_BYTES,
+                            slotsPerSegment * SLOT_BYTES
+                    );
+                }
+            } catch (IOException e) {
+                FileUtils.deleteQuietly(file);
+                throw e;
+            }
+        }
+
+        long getCapacity() {
+            return capacity;
+        }
+
+        boolean add(long fingerprint) {
+            long slot = slotOf(fingerprint, mask);
+            long existing;
+            while ((existing = get(slot)) != EMPTY) {
+                if (existing == fingerprint) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            set(slot, fingerprint);
+            return true;
+        }
+
+        boolean contains(long fingerprint) {
+            long slot = slotOf(fingerprint, mask);
+            long existing;
+            while ((existing = get(slot)) != EMPTY) {
+                if (existing == fingerprint) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        long get(long slot) {
+            return segments[(int) (slot >>> SEGMENT_SLOT_BITS)].getLong((int) (slot & segmentMask) * SLOT_BYTES);
+        }
+
+        private void set(long slot, long fingerprint) {
+            segments[(int) (slot >>> SEGMENT_SLOT_BITS)].putLong((int) (slot & segmentMask) * SLOT_BYTES, fingerprint);
+        }
+
+        void close() {
+            // mapped segments are released once garbage collected, until then the (deleted) file remains mapped
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+}
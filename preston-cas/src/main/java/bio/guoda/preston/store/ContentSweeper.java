@@ -0,0 +1,122 @@
+package bio.guoda.preston.store;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+
+/**
+ * Sweeps a data dir (e.g., data/12/34/1234...) for content that is not marked as referenced,
+ * and for temporary files left behind by interrupted writes (e.g., data/12/34/1234....tmp).
+ * Temporary files are only swept once they are older than a minimum age (default: 24 hours),
+ * so that writes in progress are left alone.
+ * <p>
+ * The top-level directories of the data dir are swept in parallel.
+ * Files in the data dir itself (e.g., indexes) and files that are neither content nor temporary are left alone.
+ */
+
+public class ContentSweeper {
+
+    private static final Pattern SHARD_NAME = Pattern.compile("[a-fA-F0-9]{2}");
+    private static final String TMP_SUFFIX = ".tmp";
+
+    public static final long DEFAULT_TMP_FILE_MIN_AGE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private final File dataDir;
+    private final ContentMarkSet marks;
+    private final int threads;
+    private final long tmpFileMinAgeMillis;
+
+    public interface SweepListener {
+
+        /**
+         * @param file      unreferenced content, or orphaned temporary file
+         * @param contentId content id of unreferenced content, or null for orphaned temporary file
+         */
+
+        void onGarbage(File file, IRI contentId) throws IOException;
+
+    }
+
+    public ContentSweeper(File dataDir, ContentMarkSet marks, int threads) {
+        this(dataDir, marks, threads, DEFAULT_TMP_FILE_MIN_AGE_MILLIS);
+    }
+
+    public ContentSweeper(File dataDir, ContentMarkSet marks, int threads, long tmpFileMinAgeMillis) {
+        this.dataDir = dataDir;
+        this.marks = marks;
+        this.threads = Math.max(1, threads);
+        this.tmpFileMinAgeMillis = tmpFileMinAgeMillis;
+    }
+
+    /**
+     * @return number of garbage files found
+     */
+
+    public long sweep(SweepListener listener) throws IOException {
+        File[] shards = dataDir.listFiles(file -> file.isDirectory() && SHARD_NAME.matcher(file.getName()).matches());
+        if (shards == null || shards.length == 0) {
+            return 0;
+        }
+
+        long tmpFileModifiedBefore = System.currentTimeMillis() - tmpFileMinAgeMillis;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, shards.length));
+        try {
+            List<Future<Long>> sweeps = new ArrayList<>();
+            for (File shard : shards) {
+                sweeps.add(executor.submit(() -> sweepShard(shard, listener, tmpFileModifiedBefore)));
+            }
+            long garbage = 0;
+            for (Future<Long> sweep : sweeps) {
+                garbage += sweep.get();
+            }
+            return garbage;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while sweeping [" + dataDir.getAbsolutePath() + "]", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("failed to sweep [" + dataDir.getAbsolutePath() + "]", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long sweepShard(File shard, SweepListener listener, long tmpFileModifiedBefore) throws IOException {
+        long garbage = 0;
+        try (Stream<Path> paths = Files.walk(shard.toPath())) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                if (StringUtils.endsWith(path.getFileName().toString(), TMP_SUFFIX)) {
+                    if (Files.getLastModifiedTime(path).toMillis() <= tmpFileModifiedBefore) {
+                        listener.onGarbage(path.toFile(), null);
+                        garbage++;
+                    }
+                } else {
+                    String key = KeyExistenceFilterBloom.keyForPath(path);
+                    if (key != null && !marks.isMarked(toIRI(key))) {
+                        listener.onGarbage(path.toFile(), toIRI(key));
+                        garbage++;
+                    }
+                }
+            }
+        }
+        return garbage;
+    }
+
+}
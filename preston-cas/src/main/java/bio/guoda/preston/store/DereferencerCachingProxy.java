@@ -1,5 +1,7 @@
 package bio.guoda.preston.store;
 
+import bio.guoda.preston.metrics.DereferenceEvent;
+import bio.guoda.preston.metrics.FlightRecorderSupport;
 import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.rdf.api.IRI;
 
@@ -27,6 +29,14 @@ public class DereferencerCachingProxy implements Dereferencer<IRI> {
         if (contentId == null) {
             contentId = dereferencer.get(locationId);
             cache.put(locationId, contentId);
+        } else {
+            IRI cachedContentId = contentId;
+            FlightRecorderSupport.timed(() -> new DereferenceEvent()).commit(e -> {
+                DereferenceEvent event = (DereferenceEvent) e;
+                event.setLocation(locationId.getIRIString());
+                event.setContentId(cachedContentId.getIRIString());
+                event.setCacheHit(true);
+            });
         }
         return contentId;
     }
@@ -1,5 +1,9 @@
 package bio.guoda.preston.store;
 
+import bio.guoda.preston.metrics.DereferenceEvent;
+import bio.guoda.preston.metrics.FlightRecorderSupport;
+import bio.guoda.preston.metrics.TimedEvent;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.rdf.api.IRI;
 
 import java.io.IOException;
@@ -18,9 +22,28 @@ public class DereferencerContentAddressed implements Dereferencer<IRI> {
 
     @Override
     public IRI get(IRI uri) throws IOException {
+        TimedEvent event = FlightRecorderSupport.timed(() -> new DereferenceEvent());
+        IRI contentId = null;
+        CountingInputStream counting = null;
         try (InputStream data = dereferencer == null ? null : dereferencer.get(uri)) {
-            return data == null ? null : blobStore.put(data);
+            if (data != null) {
+                counting = new CountingInputStream(data);
+                contentId = blobStore.put(counting);
+            }
+            return contentId;
+        } finally {
+            recordDereference(event, uri, contentId, counting);
         }
     }
 
+    private static void recordDereference(TimedEvent event, IRI uri, IRI contentId, CountingInputStream counting) {
+        event.commit(e -> {
+            DereferenceEvent dereferenceEvent = (DereferenceEvent) e;
+            dereferenceEvent.setLocation(uri.getIRIString());
+            dereferenceEvent.setContentId(contentId == null ? null : contentId.getIRIString());
+            dereferenceEvent.setBytes(counting == null ? 0 : counting.getByteCount());
+            dereferenceEvent.setCacheHit(false);
+        });
+    }
+
 }
@@ -0,0 +1,316 @@
+package bio.guoda.preston.store;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.LineIterator;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+
+/**
+ * Index of content, or facts, derived from content (e.g., thumbnails of images, line offsets of text, or detected charsets),
+ * so that these are derived only once.
+ * <p>
+ * Entries are journaled in an append-only index file in the data dir, as [encoded value] [key] tab-separated lines,
+ * which is read back on load. Entries that cannot be decoded (e.g., of another format version) are ignored.
+ * Removing the index file causes content to be derived again.
+ */
+
+public class JournaledIndex<V> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournaledIndex.class);
+
+    /**
+     * Encodes values of index entries, e.g., as [content id] [format version].
+     */
+
+    public interface Codec<V> {
+
+        String encode(V value);
+
+        /**
+         * @return decoded value, or null if encoded value is not supported (e.g., of another format version)
+         */
+
+        V decode(String encoded);
+
+    }
+
+    /**
+     * Keeps the entries of an index in memory.
+     */
+
+    public interface Table<V> {
+
+        V get(String key);
+
+        void put(String key, V value);
+
+        int size();
+
+        List<V> values();
+
+    }
+
+    private final File indexFile;
+    private final Codec<V> codec;
+    private final Table<V> table;
+
+    /**
+     * @param indexFile journal of index entries, or null for an index kept in memory only
+     */
+
+    public JournaledIndex(File indexFile, Codec<V> codec) {
+        this(indexFile, codec, new HashTable<>());
+    }
+
+    public JournaledIndex(File indexFile, Codec<V> codec, Table<V> table) {
+        this.indexFile = indexFile;
+        this.codec = codec;
+        this.table = table;
+    }
+
+    /**
+     * Loads the entries previously journaled in the index file of given index.
+     * Entries added later are journaled in the same index file.
+     */
+
+    public static <T extends JournaledIndex<?>> T load(T index) throws IOException {
+        JournaledIndex<?> journaled = index;
+        File indexFile = journaled.getIndexFile();
+        FileUtils.forceMkdir(indexFile.getParentFile());
+        if (indexFile.exists()) {
+            try (LineIterator lines = FileUtils.lineIterator(indexFile, StandardCharsets.UTF_8.name())) {
+                while (lines.hasNext()) {
+                    journaled.replay(lines.nextLine());
+                }
+            }
+        }
+        LOG.info("loaded [" + journaled.size() + "] entries from [" + indexFile.getAbsolutePath() + "]");
+        return index;
+    }
+
+    /**
+     * @return indexed value for given key, or null if no such value was indexed.
+     */
+
+    public V get(IRI key) {
+        return get(key.getIRIString());
+    }
+
+    public synchronized V get(String key) {
+        return table.get(key);
+    }
+
+    public void put(IRI key, V value) throws IOException {
+        put(key.getIRIString(), value);
+    }
+
+    public synchronized void put(String key, V value) throws IOException {
+        V existing = table.get(key);
+        if (!value.equals(existing)) {
+            table.put(key, value);
+            appendToJournal(key, value);
+        }
+    }
+
+    public synchronized int size() {
+        return table.size();
+    }
+
+    public synchronized List<V> values() {
+        return table.values();
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    private void replay(String line) {
+        String key = StringUtils.substringAfterLast(line, "\t");
+        if (StringUtils.isNotEmpty(key)) {
+            try {
+                V value = codec.decode(StringUtils.substringBeforeLast(line, "\t"));
+                if (value != null) {
+                    table.put(key, value);
+                }
+            } catch (IllegalArgumentException ex) {
+                // skip malformed entries; their content will be derived again
+            }
+        }
+    }
+
+    private void appendToJournal(String key, V value) throws IOException {
+        if (indexFile != null) {
+            // entries are derived from (expensive) reads of content, so the journal is opened only as needed
+            try (OutputStream journal = new FileOutputStream(indexFile, true)) {
+                journal.write((codec.encode(value) + "\t" + key + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * @param format values that identify the format of the derived content, e.g., a format version, or the size of a thumbnail
+     * @return codec of content ids of derived content, as [content id] [format]... that ignores content ids of other formats
+     */
+
+    public static Codec<IRI> contentIdCodec(Object... format) {
+        String formatSuffix = format.length == 0 ? "" : "\t" + StringUtils.join(format, '\t');
+        return new Codec<IRI>() {
+            @Override
+            public String encode(IRI value) {
+                return value.getIRIString() + formatSuffix;
+            }
+
+            @Override
+            public IRI decode(String encoded) {
+                String[] fields = StringUtils.splitPreserveAllTokens(encoded, '\t');
+                return fields.length == format.length + 1
+                        && StringUtils.equals(encoded, fields[0] + formatSuffix)
+                        && StringUtils.isNotBlank(fields[0])
+                        ? toIRI(fields[0])
+                        : null;
+            }
+        };
+    }
+
+    private static class HashTable<V> implements Table<V> {
+
+        private final Map<String, V> entries = new HashMap<>();
+
+        @Override
+        public V get(String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public void put(String key, V value) {
+            entries.put(key, value);
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public List<V> values() {
+            return new ArrayList<>(entries.values());
+        }
+    }
+
+    /**
+     * Open addressing table of 64-bit keys to ids of a few distinct values (e.g., charsets), to keep millions of entries compact.
+     * Keys are hexadecimal forms of 64-bit numbers, e.g., of the first bytes of a digest.
+     */
+
+    public static class CompactTable<V> implements Table<V> {
+        private static final long EMPTY = 0L;
+        // used for keys that happen to be equal to EMPTY
+        private static final long EMPTY_REPLACEMENT = 1L;
+
+        private final List<V> distinctValues = new ArrayList<>();
+        private final Map<V, Short> valueIds = new HashMap<>();
+
+        private long[] keys = new long[1024];
+        private short[] values = new short[1024];
+        private int size = 0;
+
+        @Override
+        public V get(String key) {
+            long nonEmptyKey = toNonEmptyKey(key);
+            int mask = keys.length - 1;
+            for (int slot = slotFor(nonEmptyKey, mask); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == nonEmptyKey) {
+                    return distinctValues.get(values[slot]);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void put(String key, V value) {
+            put(toNonEmptyKey(key), idFor(value));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public List<V> values() {
+            List<V> all = new ArrayList<>(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    all.add(distinctValues.get(values[i]));
+                }
+            }
+            return all;
+        }
+
+        private void put(long nonEmptyKey, short value) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = slotFor(nonEmptyKey, mask);
+            while (keys[slot] != EMPTY && keys[slot] != nonEmptyKey) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                size++;
+            }
+            keys[slot] = nonEmptyKey;
+            values[slot] = value;
+        }
+
+        private short idFor(V value) {
+            Short id = valueIds.get(value);
+            if (id == null) {
+                if (distinctValues.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("cannot keep more than [" + (Short.MAX_VALUE + 1) + "] distinct values");
+                }
+                id = (short) distinctValues.size();
+                distinctValues.add(value);
+                valueIds.put(value, id);
+            }
+            return id;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            short[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new short[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static long toNonEmptyKey(String key) {
+            long parsed = Long.parseUnsignedLong(key, 16);
+            return parsed == EMPTY ? EMPTY_REPLACEMENT : parsed;
+        }
+
+        private static int slotFor(long key, int mask) {
+            return (int) (key ^ (key >>> 32)) & mask;
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package bio.guoda.preston.store;
+
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.IOException;
+
+/**
+ * Probabilistic membership test for keys in a key value store:
+ * false positives are allowed, false negatives are not.
+ */
+
+public interface KeyExistenceFilter {
+
+    KeyExistenceFilter NONE = new KeyExistenceFilter() {
+        @Override
+        public boolean mightContain(IRI key) {
+            return true;
+        }
+
+        @Override
+        public void add(IRI key) {
+
+        }
+    };
+
+    boolean mightContain(IRI key);
+
+    void add(IRI key) throws IOException;
+
+}
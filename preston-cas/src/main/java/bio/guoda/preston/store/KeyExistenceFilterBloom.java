@@ -0,0 +1,364 @@
+package bio.guoda.preston.store;
+
+import bio.guoda.preston.HashType;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.LineIterator;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of keys known to exist in a local data dir.
+ * <p>
+ * The filter is persisted as a snapshot ({@link #FILTER_FILENAME}) and an append-only journal
+ * ({@link #JOURNAL_FILENAME}) of keys added since that snapshot. Keys are journaled before
+ * the associated content is moved into place, so an interrupted write yields at most a false positive.
+ * <p>
+ * Content stored while the filter is not kept (see {@link #invalidating(File)}) leaves a marker
+ * ({@link #STALE_MARKER_FILENAME}) next to the snapshot. Removing the snapshot, or leaving that marker,
+ * causes the filter to be rebuilt from a walk of the data dir on next load.
+ */
+
+public class KeyExistenceFilterBloom implements KeyExistenceFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyExistenceFilterBloom.class);
+
+    public static final String FILTER_FILENAME = "keys.bloom";
+    public static final String JOURNAL_FILENAME = "keys.bloom.journal";
+    public static final String STALE_MARKER_FILENAME = "keys.bloom.stale";
+
+    public static final long DEFAULT_EXPECTED_KEYS = 10_000_000L;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final int MAGIC = 0x50424c4d;
+    private static final int FORMAT_VERSION = 1;
+    private static final double MAX_ACCEPTABLE_FALSE_POSITIVE_RATE = 0.1;
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashFunctions;
+    private final AtomicLong bitsSet;
+
+    private File dataDir = null;
+    private OutputStream journal = null;
+
+    public KeyExistenceFilterBloom() {
+        this(DEFAULT_EXPECTED_KEYS, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    public KeyExistenceFilterBloom(long expectedKeys, double falsePositiveRate) {
+        this(optimalNumberOfBits(expectedKeys, falsePositiveRate),
+                optimalNumberOfHashFunctions(expectedKeys, optimalNumberOfBits(expectedKeys, falsePositiveRate)));
+    }
+
+    private KeyExistenceFilterBloom(long numBits, int numHashFunctions) {
+        this(new AtomicLongArray(numberOfWords(numBits)), numBits, numHashFunctions);
+    }
+
+    private KeyExistenceFilterBloom(AtomicLongArray bits, long numBits, int numHashFunctions) {
+        this.bits = bits;
+        this.numBits = numBits;
+        this.numHashFunctions = numHashFunctions;
+        long count = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            count += Long.bitCount(bits.get(i));
+        }
+        this.bitsSet = new AtomicLong(count);
+    }
+
+    @Override
+    public boolean mightContain(IRI key) {
+        String keyString = key.getIRIString();
+        long hash1 = hash(keyString);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < numHashFunctions; i++) {
+            long bitIndex = Math.floorMod(hash1 + i * hash2, numBits);
+            if ((bits.get(wordIndex(bitIndex)) & bitMask(bitIndex)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void add(IRI key) throws IOException {
+        String keyString = key.getIRIString();
+        setBitsFor(keyString);
+        appendToJournal(keyString);
+    }
+
+    private void setBitsFor(String keyString) {
+        long hash1 = hash(keyString);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < numHashFunctions; i++) {
+            long bitIndex = Math.floorMod(hash1 + i * hash2, numBits);
+            int wordIndex = wordIndex(bitIndex);
+            long mask = bitMask(bitIndex);
+            long word;
+            do {
+                word = bits.get(wordIndex);
+            } while ((word & mask) == 0 && !bits.compareAndSet(wordIndex, word, word | mask));
+
+            if ((word & mask) == 0) {
+                bitsSet.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return estimated probability that {@link #mightContain(IRI)} returns true for an absent key
+     */
+
+    public double getFalsePositiveRate() {
+        return Math.pow((double) bitsSet.get() / numBits, numHashFunctions);
+    }
+
+    public long getApproximateKeyCount() {
+        double fractionUnset = 1.0 - (double) bitsSet.get() / numBits;
+        return Math.round(-((double) numBits / numHashFunctions) * Math.log(fractionUnset));
+    }
+
+    public void writeTo(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(numBits);
+        out.writeInt(numHashFunctions);
+        for (int i = 0; i < bits.length(); i++) {
+            out.writeLong(bits.get(i));
+        }
+        out.flush();
+    }
+
+    public static KeyExistenceFilterBloom readFrom(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a key existence filter");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported key existence filter version [" + version + "]");
+        }
+        long numBits = in.readLong();
+        int numHashFunctions = in.readInt();
+        AtomicLongArray bits = new AtomicLongArray(numberOfWords(numBits));
+        for (int i = 0; i < bits.length(); i++) {
+            bits.set(i, in.readLong());
+        }
+        return new KeyExistenceFilterBloom(bits, numBits, numHashFunctions);
+    }
+
+    /**
+     * Loads the persisted filter of given data dir, or rebuilds it from a walk of that data dir
+     * if no filter was persisted before. Keys added to the returned filter are journaled in the data dir.
+     */
+
+    public static KeyExistenceFilterBloom load(File dataDir) throws IOException {
+        File filterFile = new File(dataDir, FILTER_FILENAME);
+        File staleMarker = new File(dataDir, STALE_MARKER_FILENAME);
+        if (staleMarker.exists()) {
+            LOG.info("rebuilding key existence filter for [" + dataDir.getAbsolutePath() + "]: content was stored without it");
+            // remove marker before the walk, so that content stored during the walk marks the rebuilt filter stale again
+            Files.deleteIfExists(filterFile.toPath());
+            Files.deleteIfExists(staleMarker.toPath());
+        }
+
+        KeyExistenceFilterBloom filter;
+        boolean needsSave;
+        if (filterFile.exists()) {
+            try (InputStream is = new FileInputStream(filterFile)) {
+                filter = readFrom(is);
+            }
+            needsSave = filter.replayJournal(new File(dataDir, JOURNAL_FILENAME)) > 0;
+        } else {
+            filter = rebuild(dataDir);
+            needsSave = true;
+        }
+
+        filter.dataDir = dataDir;
+        if (needsSave) {
+            filter.save();
+        }
+
+        LOG.info("loaded key existence filter for [" + dataDir.getAbsolutePath() + "] with approximately [" + filter.getApproximateKeyCount() + "] keys and estimated false positive rate [" + filter.getFalsePositiveRate() + "]");
+        if (filter.getFalsePositiveRate() > MAX_ACCEPTABLE_FALSE_POSITIVE_RATE) {
+            LOG.warn("key existence filter for [" + dataDir.getAbsolutePath() + "] is saturated: remove [" + filterFile.getAbsolutePath() + "] to rebuild it");
+        }
+        return filter;
+    }
+
+    /**
+     * Builds a filter sized for the keys currently found in the data dir.
+     */
+
+    public static KeyExistenceFilterBloom rebuild(File dataDir) throws IOException {
+        AtomicLong keyCount = new AtomicLong(0);
+        walkKeys(dataDir, key -> keyCount.incrementAndGet());
+
+        KeyExistenceFilterBloom filter = new KeyExistenceFilterBloom(
+                Math.max(DEFAULT_EXPECTED_KEYS, 2 * keyCount.get()),
+                DEFAULT_FALSE_POSITIVE_RATE
+        );
+        walkKeys(dataDir, filter::setBitsFor);
+        return filter;
+    }
+
+    /**
+     * @return filter for a store that does not keep the filter of given data dir: it consults nothing,
+     * and marks a persisted filter as stale once content is added, so that the filter is rebuilt on next load.
+     */
+
+    public static KeyExistenceFilter invalidating(File dataDir) {
+        File filterFile = new File(dataDir, FILTER_FILENAME);
+        File staleMarker = new File(dataDir, STALE_MARKER_FILENAME);
+        return new KeyExistenceFilter() {
+            @Override
+            public boolean mightContain(IRI key) {
+                return true;
+            }
+
+            @Override
+            public void add(IRI key) throws IOException {
+                if (filterFile.exists() && !staleMarker.exists()) {
+                    FileUtils.touch(staleMarker);
+                }
+            }
+        };
+    }
+
+    public synchronized void save() throws IOException {
+        if (dataDir == null) {
+            throw new IOException("cannot save key existence filter: no data dir associated");
+        }
+        FileUtils.forceMkdir(dataDir);
+        File filterFile = new File(dataDir, FILTER_FILENAME);
+        File tmpFilterFile = new File(dataDir, FILTER_FILENAME + ".tmp");
+        try (OutputStream os = new FileOutputStream(tmpFilterFile)) {
+            writeTo(os);
+        }
+        Files.move(tmpFilterFile.toPath(), filterFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        IOUtils.closeQuietly(journal);
+        journal = new FileOutputStream(new File(dataDir, JOURNAL_FILENAME), false);
+    }
+
+    private synchronized void appendToJournal(String keyString) throws IOException {
+        if (dataDir != null) {
+            if (journal == null) {
+                journal = new FileOutputStream(new File(dataDir, JOURNAL_FILENAME), true);
+            }
+            journal.write((keyString + "\n").getBytes(StandardCharsets.UTF_8));
+            journal.flush();
+        }
+    }
+
+    private long replayJournal(File journalFile) throws IOException {
+        long replayed = 0;
+        if (journalFile.exists()) {
+            try (LineIterator lines = FileUtils.lineIterator(journalFile, StandardCharsets.UTF_8.name())) {
+                while (lines.hasNext()) {
+                    String line = StringUtils.trim(lines.nextLine());
+                    if (StringUtils.isNotBlank(line)) {
+                        setBitsFor(line);
+                        replayed++;
+                    }
+                }
+            }
+        }
+        return replayed;
+    }
+
+    private static void walkKeys(File dataDir, Consumer<String> keyConsumer) throws IOException {
+        if (dataDir.exists()) {
+            try (Stream<Path> paths = Files.walk(dataDir.toPath())) {
+                paths.filter(Files::isRegularFile)
+                        .map(KeyExistenceFilterBloom::keyForPath)
+                        .filter(StringUtils::isNotBlank)
+                        .forEach(keyConsumer);
+            }
+        }
+    }
+
+    /**
+     * @return key (e.g., hash://sha256/...) of content stored at path in a data dir, or null if path does not hold content
+     */
+
+    public static String keyForPath(Path path) {
+        String filename = StringUtils.removeEnd(path.getFileName().toString(), KeyValueStoreLocalFileSystemReadOnly.COMPRESSED_SUFFIX);
+        // legacy 5-level layout stores content in .../[hash]/data
+        if (StringUtils.equals(filename, "data") && path.getParent() != null) {
+            filename = path.getParent().getFileName().toString();
+        }
+        for (HashType hashType : HashType.values()) {
+            if (filename.length() == hashType.getHexLength()
+                    && hashType.getHexPattern().matcher(filename).matches()) {
+                return hashType.getPrefix() + filename;
+            }
+        }
+        return null;
+    }
+
+    private static long hash(String keyString) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < keyString.length(); i++) {
+            hash ^= keyString.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long value) {
+        // murmur3 finalizer, forced odd to visit distinct bits
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h | 1L;
+    }
+
+    private static int wordIndex(long bitIndex) {
+        return (int) (bitIndex >>> 6);
+    }
+
+    private static long bitMask(long bitIndex) {
+        return 1L << (bitIndex & 63);
+    }
+
+    private static int numberOfWords(long numBits) {
+        return (int) ((numBits + 63) >>> 6);
+    }
+
+    private static long optimalNumberOfBits(long expectedKeys, double falsePositiveRate) {
+        long numBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        return Math.max(64, numBits);
+    }
+
+    private static int optimalNumberOfHashFunctions(long expectedKeys, long numBits) {
+        return Math.max(1, (int) Math.round((double) numBits / expectedKeys * Math.log(2)));
+    }
+
+}
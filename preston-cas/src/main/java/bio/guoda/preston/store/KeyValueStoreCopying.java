@@ -5,7 +5,7 @@ import org.apache.commons.rdf.api.IRI;
 import java.io.IOException;
 import java.io.InputStream;
 
-public class KeyValueStoreCopying implements KeyValueStore {
+public class KeyValueStoreCopying implements KeyValueStore, RangeDereferencer {
     private final KeyValueStore targetKeyValueStore;
     private final KeyValueStoreReadOnly sourceKeyValueStore;
 
@@ -37,4 +37,16 @@ public class KeyValueStoreCopying implements KeyValueStore {
         }
         return is;
     }
+
+    /**
+     * Only dereferences ranges of content already copied into the target,
+     * so that content is copied as a whole on first (non-range) access.
+     */
+
+    @Override
+    public InputStream get(IRI key, long startOffset, long endOffset) throws IOException {
+        return targetKeyValueStore instanceof RangeDereferencer
+                ? ((RangeDereferencer) targetKeyValueStore).get(key, startOffset, endOffset)
+                : null;
+    }
 }
@@ -1,45 +1,114 @@
 package bio.guoda.preston.store;
 
+import bio.guoda.preston.metrics.BlobPutEvent;
+import bio.guoda.preston.metrics.Counter;
+import bio.guoda.preston.metrics.FlightRecorderSupport;
+import bio.guoda.preston.metrics.LatencyHistogram;
+import bio.guoda.preston.metrics.Metrics;
+import bio.guoda.preston.metrics.TimedEvent;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.rdf.api.IRI;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Stores content in local files at paths derived from their keys.
+ * <p>
+ * When compression is enabled, content is written gzip-compressed to
+ * the path of its key with a ".gz" suffix, unless the content already
+ * appears to be compressed (e.g., gzip, zip, jpeg). Keys always refer to
+ * the uncompressed content, and compressed content is decompressed on retrieval.
+ */
 
 public class KeyValueStoreLocalFileSystem extends KeyValueStoreLocalFileSystemReadOnly implements KeyValueStoreWithRemove {
 
+    private static final byte[][] COMPRESSED_SIGNATURES = new byte[][]{
+            {(byte) 0x1f, (byte) 0x8b}, // gzip
+            {(byte) 0x50, (byte) 0x4b, (byte) 0x03, (byte) 0x04}, // zip
+            {(byte) 0x50, (byte) 0x4b, (byte) 0x05, (byte) 0x06}, // zip (empty)
+            {(byte) 0x50, (byte) 0x4b, (byte) 0x07, (byte) 0x08}, // zip (spanned)
+            {(byte) 0xff, (byte) 0xd8, (byte) 0xff}, // jpeg
+            {(byte) 0x89, (byte) 0x50, (byte) 0x4e, (byte) 0x47}, // png
+            {(byte) 0x42, (byte) 0x5a, (byte) 0x68}, // bzip2
+            {(byte) 0xfd, (byte) 0x37, (byte) 0x7a, (byte) 0x58, (byte) 0x5a, (byte) 0x00}, // xz
+            {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd}, // zstd
+            {(byte) 0x37, (byte) 0x7a, (byte) 0xbc, (byte) 0xaf, (byte) 0x27, (byte) 0x1c} // 7z
+    };
+
+    private static final int MAX_SIGNATURE_LENGTH = 6;
+
+    private static final LatencyHistogram PUT_DURATION = Metrics.histogram(
+            "preston_blob_put_duration_seconds",
+            "Time spent storing content locally, including validation and compression"
+    );
+
+    private static final Counter PUT_BYTES = Metrics.counter(
+            "preston_blob_put_bytes_total",
+            "Number of (uncompressed) bytes of content offered for local storage"
+    );
+
     private final File tmpDir;
 
     private final ValidatingKeyValueStreamFactory validatingKeyValueStreamFactory;
 
+    private final boolean compressionEnabled;
+
     public KeyValueStoreLocalFileSystem(
             File tmpDir,
             KeyToPath keyToPath,
             ValidatingKeyValueStreamFactory validatingKeyValueStreamFactory
     ) {
-        super(keyToPath);
+        this(tmpDir, keyToPath, validatingKeyValueStreamFactory, KeyExistenceFilter.NONE);
+    }
+
+    public KeyValueStoreLocalFileSystem(
+            File tmpDir,
+            KeyToPath keyToPath,
+            ValidatingKeyValueStreamFactory validatingKeyValueStreamFactory,
+            KeyExistenceFilter existenceFilter
+    ) {
+        this(tmpDir, keyToPath, validatingKeyValueStreamFactory, existenceFilter, false);
+    }
+
+    public KeyValueStoreLocalFileSystem(
+            File tmpDir,
+            KeyToPath keyToPath,
+            ValidatingKeyValueStreamFactory validatingKeyValueStreamFactory,
+            KeyExistenceFilter existenceFilter,
+            boolean compressionEnabled
+    ) {
+        super(keyToPath, existenceFilter);
         this.tmpDir = tmpDir;
         this.validatingKeyValueStreamFactory = validatingKeyValueStreamFactory;
+        this.compressionEnabled = compressionEnabled;
     }
 
     @Override
     public void put(IRI key, InputStream value) throws IOException {
+        TimedEvent event = FlightRecorderSupport.timed(() -> new BlobPutEvent());
+        long start = LatencyHistogram.start();
+        long bytes = 0;
         try (InputStream is = value) {
             URI filePathBeforeCopy = getPathForKey(key);
-            if (!getDataFile(filePathBeforeCopy).exists()) {
+            if (!getExistenceFilter().mightContain(key) || !exists(filePathBeforeCopy)) {
                 File tmpDestFile = getDataFile(URI.create(filePathBeforeCopy.toString() + ".tmp"));
                 tmpDestFile.deleteOnExit();
                 File destFile = null;
                 try {
                     ValidatingKeyValueStream validating = getValidatingKeyValueStreamFactory().forKeyValueStream(key, is);
-                    FileUtils.copyToFile(validating.getValueStream(), tmpDestFile);
+                    InputStream valueStream = IOUtils.buffer(validating.getValueStream());
+                    boolean compressed = shouldCompress(valueStream);
+                    bytes = copyToFile(valueStream, tmpDestFile, compressed);
 
                     if (validating.acceptValueStreamForKey(key)) {
-                        put(key, tmpDestFile);
+                        put(key, tmpDestFile, compressed);
                     } else {
                         FileUtils.deleteQuietly(tmpDestFile);
                     }
@@ -51,6 +120,7 @@ public class KeyValueStoreLocalFileSystem extends KeyValueStoreLocalFileSystemRe
             }
         } finally {
             value.close();
+            recordPut(event, start, key, bytes);
         }
     }
 
@@ -62,47 +132,133 @@ public class KeyValueStoreLocalFileSystem extends KeyValueStoreLocalFileSystemRe
      * @throws IOException
      */
     public IRI put(KeyGeneratingStream keyGeneratingStream, InputStream value) throws IOException {
+        TimedEvent event = FlightRecorderSupport.timed(() -> new BlobPutEvent());
+        long start = LatencyHistogram.start();
         FileUtils.forceMkdir(tmpDir);
         File tmpFile = File.createTempFile("cacheFile", ".tmp", tmpDir);
         IRI key;
-        try (FileOutputStream os = FileUtils.openOutputStream(tmpFile)) {
-            key = keyGeneratingStream.generateKeyWhileStreaming(value, os);
-            os.flush();
+        long bytes;
+        InputStream is = IOUtils.buffer(value);
+        boolean compressed = shouldCompress(is);
+        try (OutputStream os = openOutputStream(tmpFile, compressed)) {
+            CountingOutputStream counting = new CountingOutputStream(os);
+            key = keyGeneratingStream.generateKeyWhileStreaming(is, counting);
+            counting.flush();
+            bytes = counting.getByteCount();
         }
         try {
-            put(key, tmpFile);
+            put(key, tmpFile, compressed);
         } finally {
             FileUtils.deleteQuietly(tmpFile);
+            recordPut(event, start, key, bytes);
         }
         return key;
     }
 
+    private void recordPut(TimedEvent event, long start, IRI key, long bytes) {
+        PUT_DURATION.recordSince(start);
+        PUT_BYTES.inc(bytes);
+        event.commit(e -> {
+            BlobPutEvent putEvent = (BlobPutEvent) e;
+            putEvent.setKey(key.getIRIString());
+            putEvent.setLayout(getLayout());
+            putEvent.setBytes(bytes);
+        });
+    }
 
-    private void put(IRI key, File tmpDestFile) throws IOException {
+
+    private void put(IRI key, File tmpDestFile, boolean compressed) throws IOException {
         if (!tmpDestFile.exists()) {
             throw new IOException("cannot store a file that does not exist");
         }
-        File destFile = getDestFileForKey(key);
-        if (!destFile.exists()) {
+        URI pathForKey = getPathForKey(key);
+        if (!exists(pathForKey)) {
+            File destFile = compressed
+                    ? getCompressedDataFile(pathForKey)
+                    : getDataFile(pathForKey);
+            getExistenceFilter().add(key);
             FileUtils.forceMkdirParent(destFile);
             FileUtils.moveFile(tmpDestFile, destFile);
+        } else {
+            FileUtils.deleteQuietly(tmpDestFile);
+            // content stored without the filter (e.g., copied into the data dir)
+            if (!getExistenceFilter().mightContain(key)) {
+                getExistenceFilter().add(key);
+            }
+        }
+    }
+
+    private static long copyToFile(InputStream is, File file, boolean compressed) throws IOException {
+        try (OutputStream os = openOutputStream(file, compressed)) {
+            return IOUtils.copy(is, os, BUFFER_SIZE);
         }
     }
 
+    private static OutputStream openOutputStream(File file, boolean compressed) throws IOException {
+        OutputStream os = FileUtils.openOutputStream(file);
+        return compressed
+                ? new GZIPOutputStream(os, BUFFER_SIZE)
+                : os;
+    }
+
+    private boolean shouldCompress(InputStream is) throws IOException {
+        return compressionEnabled && !isLikelyCompressed(is);
+    }
+
+    /**
+     * @param is a stream that supports mark/reset
+     * @return true if stream is empty, or starts with a signature of a known compressed format
+     */
+
+    static boolean isLikelyCompressed(InputStream is) throws IOException {
+        byte[] header = new byte[MAX_SIGNATURE_LENGTH];
+        is.mark(MAX_SIGNATURE_LENGTH);
+        int length = IOUtils.read(is, header);
+        is.reset();
+
+        if (length == 0) {
+            return true;
+        }
+        for (byte[] signature : COMPRESSED_SIGNATURES) {
+            if (startsWith(header, length, signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] header, int headerLength, byte[] signature) {
+        if (headerLength < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean exists(URI pathForKey) {
+        return getDataFile(pathForKey).exists()
+                || getCompressedDataFile(pathForKey).exists();
+    }
+
     private ValidatingKeyValueStreamFactory getValidatingKeyValueStreamFactory() {
         return validatingKeyValueStreamFactory;
     }
 
     @Override
     public void remove(IRI key) throws IOException {
-        File destFile = getDestFileForKey(key);
+        URI pathForKey = getPathForKey(key);
+        File destFile = getDataFile(pathForKey);
         if (destFile.exists()) {
             FileUtils.delete(destFile);
         }
+        File compressedDestFile = getCompressedDataFile(pathForKey);
+        if (compressedDestFile.exists()) {
+            FileUtils.delete(compressedDestFile);
+        }
     }
 
-    private File getDestFileForKey(IRI key) {
-        URI filePathAfterCopy = getPathForKey(key);
-        return getDataFile(filePathAfterCopy);
-    }
 }
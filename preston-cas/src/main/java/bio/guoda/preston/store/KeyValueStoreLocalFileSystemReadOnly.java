@@ -1,39 +1,153 @@
 package bio.guoda.preston.store;
 
+import bio.guoda.preston.metrics.BlobGetEvent;
+import bio.guoda.preston.metrics.Counter;
+import bio.guoda.preston.metrics.FlightRecorderSupport;
+import bio.guoda.preston.metrics.LatencyHistogram;
+import bio.guoda.preston.metrics.Metrics;
+import bio.guoda.preston.metrics.TimedEvent;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.rdf.api.IRI;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+public class KeyValueStoreLocalFileSystemReadOnly implements KeyValueStoreReadOnly, RangeDereferencer {
+
+    // marks content stored gzip-compressed at rest, see KeyValueStoreLocalFileSystem
+    static final String COMPRESSED_SUFFIX = ".gz";
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final LatencyHistogram GET_DURATION = Metrics.histogram(
+            "preston_blob_get_duration_seconds",
+            "Time spent opening locally stored content"
+    );
+
+    private static final Counter GETS_FOUND = Metrics.counter(
+            "preston_blob_gets_total",
+            "Number of requests for locally stored content",
+            "result", "found"
+    );
+
+    private static final Counter GETS_MISSING = Metrics.counter(
+            "preston_blob_gets_total",
+            "Number of requests for locally stored content",
+            "result", "missing"
+    );
 
-public class KeyValueStoreLocalFileSystemReadOnly implements KeyValueStoreReadOnly {
     private final KeyToPath keyToPath;
+    private final KeyExistenceFilter existenceFilter;
 
     public KeyValueStoreLocalFileSystemReadOnly(KeyToPath keyToPath) {
+        this(keyToPath, KeyExistenceFilter.NONE);
+    }
+
+    public KeyValueStoreLocalFileSystemReadOnly(KeyToPath keyToPath, KeyExistenceFilter existenceFilter) {
         this.keyToPath = keyToPath;
+        this.existenceFilter = existenceFilter;
     }
 
     @Override
     public InputStream get(IRI key) throws IOException {
-        File dataFile = null;
+        TimedEvent event = FlightRecorderSupport.timed(() -> new BlobGetEvent());
+        long start = LatencyHistogram.start();
+        InputStream is = null;
+        long bytes = -1;
         HashKeyUtil.validateHashKey(key);
-        if (keyToPath.supports(key)) {
-            dataFile = getDataFile(getPathForKey(key));
+        if (keyToPath.supports(key) && existenceFilter.mightContain(key)) {
+            URI pathForKey = getPathForKey(key);
+            File dataFile = getDataFile(pathForKey);
+            if (dataFile.exists()) {
+                is = FileUtils.openInputStream(dataFile);
+                bytes = dataFile.length();
+            } else {
+                File compressedDataFile = getCompressedDataFile(pathForKey);
+                if (compressedDataFile.exists()) {
+                    is = new GZIPInputStream(FileUtils.openInputStream(compressedDataFile), BUFFER_SIZE);
+                    bytes = compressedDataFile.length();
+                }
+            }
         }
-        return dataFile != null && dataFile.exists()
-                ? FileUtils.openInputStream(dataFile)
-                : null;
+        GET_DURATION.recordSince(start);
+        (is == null ? GETS_MISSING : GETS_FOUND).inc();
+        long bytesFound = bytes;
+        event.commit(e -> {
+            BlobGetEvent getEvent = (BlobGetEvent) e;
+            getEvent.setKey(key.getIRIString());
+            getEvent.setLayout(getLayout());
+            getEvent.setBytes(bytesFound);
+        });
+        return is;
+    }
+
+    /**
+     * @return name of the layout of paths of stored content (e.g., KeyTo3LevelPath)
+     */
+
+    protected String getLayout() {
+        return keyToPath.getClass().getSimpleName();
+    }
+
+    /**
+     * Seeks directly into content stored uncompressed. Content stored compressed
+     * cannot be seeked into, and is left to be read from its start.
+     */
+
+    @Override
+    public InputStream get(IRI key, long startOffset, long endOffset) throws IOException {
+        InputStream is = null;
+        HashKeyUtil.validateHashKey(key);
+        if (keyToPath.supports(key) && existenceFilter.mightContain(key)) {
+            File dataFile = getDataFile(getPathForKey(key));
+            if (dataFile.exists()) {
+                is = openInputStream(dataFile, startOffset, endOffset);
+            }
+        }
+        return is;
+    }
+
+    /**
+     * @return bytes of file in range, or null if range starts beyond the end of the file
+     */
+
+    public static InputStream openInputStream(File file, long startOffset, long endOffset) throws IOException {
+        InputStream is = null;
+        if (startOffset <= file.length()) {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                channel.position(startOffset);
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+            is = new BoundedInputStream(Channels.newInputStream(channel), Math.max(0, endOffset - startOffset));
+        }
+        return is;
     }
 
     URI getPathForKey(IRI key) {
         return keyToPath.toPath(key);
     }
 
+    KeyExistenceFilter getExistenceFilter() {
+        return existenceFilter;
+    }
+
     static File getDataFile(URI filePath) {
         return new File(filePath);
     }
 
+    static File getCompressedDataFile(URI filePath) {
+        return new File(URI.create(filePath.toString() + COMPRESSED_SUFFIX));
+    }
+
 
 }
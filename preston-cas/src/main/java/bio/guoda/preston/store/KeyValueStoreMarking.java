@@ -0,0 +1,47 @@
+package bio.guoda.preston.store;
+
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Marks keys of values that were found (e.g., provenance logs, or index entries), so that
+ * these values are kept by a garbage collection of the underlying store.
+ */
+
+public class KeyValueStoreMarking implements KeyValueStore {
+
+    private final KeyValueStore keyValueStore;
+    private final ContentMarkSet marks;
+
+    public KeyValueStoreMarking(KeyValueStore keyValueStore, ContentMarkSet marks) {
+        this.keyValueStore = keyValueStore;
+        this.marks = marks;
+    }
+
+    @Override
+    public IRI put(KeyGeneratingStream keyGeneratingStream, InputStream is) throws IOException {
+        IRI key = keyValueStore.put(keyGeneratingStream, is);
+        if (key != null) {
+            marks.mark(key);
+        }
+        return key;
+    }
+
+    @Override
+    public void put(IRI key, InputStream is) throws IOException {
+        keyValueStore.put(key, is);
+        marks.mark(key);
+    }
+
+    @Override
+    public InputStream get(IRI key) throws IOException {
+        InputStream is = keyValueStore.get(key);
+        if (is != null) {
+            marks.mark(key);
+        }
+        return is;
+    }
+
+}
@@ -1,5 +1,8 @@
 package bio.guoda.preston.store;
 
+import bio.guoda.preston.metrics.Counter;
+import bio.guoda.preston.metrics.LatencyHistogram;
+import bio.guoda.preston.metrics.Metrics;
 import org.apache.commons.rdf.api.IRI;
 
 import java.io.IOException;
@@ -10,7 +13,12 @@ import java.util.concurrent.atomic.AtomicReference;
 /**
  *
  */
-public class KeyValueStoreStickyFailover implements KeyValueStoreReadOnly {
+public class KeyValueStoreStickyFailover implements KeyValueStoreReadOnly, RangeDereferencer {
+
+    private static final Counter FAILOVERS = Metrics.counter(
+            "preston_remote_failovers_total",
+            "Number of times content was found at another candidate than the last successful one"
+    );
 
     private final List<KeyValueStoreReadOnly> keyStoreCandidates;
 
@@ -26,7 +34,7 @@ public class KeyValueStoreStickyFailover implements KeyValueStoreReadOnly {
         // try last successful first
         try {
             if (lastSuccessful.get() != null) {
-                InputStream inputStream = lastSuccessful.get().get(key);
+                InputStream inputStream = probe(lastSuccessful.get(), key);
                 if (inputStream != null) {
                     return inputStream;
                 }
@@ -39,10 +47,13 @@ public class KeyValueStoreStickyFailover implements KeyValueStoreReadOnly {
             if (lastSuccessful.get() == null
                     || (lastSuccessful.get() != null && lastSuccessful.get() != keyStoreCandidate)) {
                 try {
-                    InputStream inputStream = keyStoreCandidate.get(key);
+                    InputStream inputStream = probe(keyStoreCandidate, key);
                     if (inputStream == null) {
                         lastException.set(null);
                     } else {
+                        if (lastSuccessful.get() != null) {
+                            FAILOVERS.inc();
+                        }
                         lastSuccessful.set(keyStoreCandidate);
                         return inputStream;
                     }
@@ -61,5 +72,67 @@ public class KeyValueStoreStickyFailover implements KeyValueStoreReadOnly {
         }
     }
 
+    /**
+     * Requests content from given candidate, keeping track of the duration and outcome of the request
+     * by position of the candidate (e.g., candidate="0" for the first candidate).
+     */
+
+    private InputStream probe(KeyValueStoreReadOnly candidate, IRI key) throws IOException {
+        String position = Integer.toString(keyStoreCandidates.indexOf(candidate));
+        long start = LatencyHistogram.start();
+        String result = "failed";
+        try {
+            InputStream inputStream = candidate.get(key);
+            result = inputStream == null ? "missing" : "found";
+            return inputStream;
+        } finally {
+            Metrics.histogram(
+                    "preston_remote_probe_duration_seconds",
+                    "Time spent requesting content from failover candidates",
+                    "candidate", position
+            ).recordSince(start);
+            Metrics.counter(
+                    "preston_remote_probes_total",
+                    "Number of requests for content to failover candidates",
+                    "candidate", position,
+                    "result", result
+            ).inc();
+        }
+    }
+
+    /**
+     * Dereferences range from the first candidate that supports it, starting with the last successful one.
+     * Failures are left to be reported by a subsequent (non-range) attempt.
+     */
+
+    @Override
+    public InputStream get(IRI key, long startOffset, long endOffset) {
+        KeyValueStoreReadOnly lastSuccessfulCandidate = lastSuccessful.get();
+        InputStream inputStream = getRange(lastSuccessfulCandidate, key, startOffset, endOffset);
+        for (KeyValueStoreReadOnly keyStoreCandidate : keyStoreCandidates) {
+            if (inputStream != null) {
+                break;
+            }
+            if (keyStoreCandidate != lastSuccessfulCandidate) {
+                inputStream = getRange(keyStoreCandidate, key, startOffset, endOffset);
+                if (inputStream != null) {
+                    lastSuccessful.set(keyStoreCandidate);
+                }
+            }
+        }
+        return inputStream;
+    }
+
+    private static InputStream getRange(KeyValueStoreReadOnly candidate, IRI key, long startOffset, long endOffset) {
+        InputStream inputStream = null;
+        if (candidate instanceof RangeDereferencer) {
+            try {
+                inputStream = ((RangeDereferencer) candidate).get(key, startOffset, endOffset);
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+        return inputStream;
+    }
 
 }
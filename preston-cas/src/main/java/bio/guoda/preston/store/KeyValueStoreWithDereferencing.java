@@ -1,6 +1,9 @@
 package bio.guoda.preston.store;
 
 import bio.guoda.preston.RefNodeFactory;
+import bio.guoda.preston.metrics.FlightRecorderSupport;
+import bio.guoda.preston.metrics.RemoteProbeEvent;
+import bio.guoda.preston.metrics.TimedEvent;
 import org.apache.commons.rdf.api.IRI;
 
 import java.io.IOException;
@@ -8,7 +11,7 @@ import java.io.InputStream;
 import java.net.URI;
 
 
-public class KeyValueStoreWithDereferencing implements KeyValueStoreReadOnly {
+public class KeyValueStoreWithDereferencing implements KeyValueStoreReadOnly, RangeDereferencer {
 
     private final KeyToPath keyToPath;
     private final Dereferencer<InputStream> dereferencer;
@@ -24,7 +27,35 @@ public class KeyValueStoreWithDereferencing implements KeyValueStoreReadOnly {
 
         if (keyToPath.supports(key)) {
             URI uri = keyToPath.toPath(key);
-            is = uri == null ? null : dereferencer.get(RefNodeFactory.toIRI(uri));
+            if (uri != null) {
+                TimedEvent event = FlightRecorderSupport.timed(() -> new RemoteProbeEvent());
+                try {
+                    is = dereferencer.get(RefNodeFactory.toIRI(uri));
+                } finally {
+                    recordProbe(event, key, uri, is != null);
+                }
+            }
+        }
+        return is;
+    }
+
+    private void recordProbe(TimedEvent event, IRI key, URI uri, boolean found) {
+        event.commit(e -> {
+            RemoteProbeEvent probeEvent = (RemoteProbeEvent) e;
+            probeEvent.setKey(key.getIRIString());
+            probeEvent.setLayout(keyToPath.getClass().getSimpleName());
+            probeEvent.setLocation(uri.toString());
+            probeEvent.setFound(found);
+        });
+    }
+
+    @Override
+    public InputStream get(IRI key, long startOffset, long endOffset) throws IOException {
+        InputStream is = null;
+
+        if (dereferencer instanceof RangeDereferencer && keyToPath.supports(key)) {
+            URI uri = keyToPath.toPath(key);
+            is = uri == null ? null : ((RangeDereferencer) dereferencer).get(RefNodeFactory.toIRI(uri), startOffset, endOffset);
         }
         return is;
     }
@@ -5,7 +5,7 @@ import org.apache.commons.rdf.api.IRI;
 import java.io.IOException;
 import java.io.InputStream;
 
-public class KeyValueStoreWithFallback implements KeyValueStore {
+public class KeyValueStoreWithFallback implements KeyValueStore, RangeDereferencer {
     private final KeyValueStore primary;
     private final KeyValueStoreReadOnly readOnlyFallback;
 
@@ -32,4 +32,15 @@ public class KeyValueStoreWithFallback implements KeyValueStore {
         }
         return is;
     }
+
+    @Override
+    public InputStream get(IRI key, long startOffset, long endOffset) throws IOException {
+        InputStream is = primary instanceof RangeDereferencer
+                ? ((RangeDereferencer) primary).get(key, startOffset, endOffset)
+                : null;
+        if (is == null && readOnlyFallback instanceof RangeDereferencer) {
+            is = ((RangeDereferencer) readOnlyFallback).get(key, startOffset, endOffset);
+        }
+        return is;
+    }
 }
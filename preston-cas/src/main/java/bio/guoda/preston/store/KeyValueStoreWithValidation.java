@@ -1,6 +1,5 @@
 package bio.guoda.preston.store;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
 
 import java.io.IOException;
@@ -9,23 +8,24 @@ import java.io.InputStream;
 /**
  * retrieves and validates query results
  * and puts only validated results into validated blobstore
+ *
+ * Results are validated while being streamed into the validated blobstore:
+ * invalid results fail the put at the end of the stream, so that the validated
+ * blobstore discards them instead of moving them into place.
  */
 
 public class KeyValueStoreWithValidation implements KeyValueStore {
 
     private final ValidatingKeyValueStreamFactory validatingKeyValueStreamFactory;
     private final KeyValueStore validated;
-    private final KeyValueStoreWithRemove staging;
     private final KeyValueStoreReadOnly backing;
 
     public KeyValueStoreWithValidation(
             ValidatingKeyValueStreamFactory validatingKeyValueStreamFactoryValues,
-            KeyValueStoreWithRemove staging,
             KeyValueStore validated,
             KeyValueStoreReadOnly backing
     ) {
         this.validatingKeyValueStreamFactory = validatingKeyValueStreamFactoryValues;
-        this.staging = staging;
         this.validated = validated;
         this.backing = backing;
     }
@@ -37,21 +37,8 @@ public class KeyValueStoreWithValidation implements KeyValueStore {
 
     @Override
     public void put(IRI key, InputStream is) throws IOException {
-        try {
-            ValidatingKeyValueStream keyValueStream = validatingKeyValueStreamFactory.forKeyValueStream(key, is);
-            staging.put(key, keyValueStream.getValueStream());
-            validate(key, keyValueStream);
-        } finally {
-            staging.remove(key);
-        }
-    }
-
-    private void validate(IRI key, ValidatingKeyValueStream keyValueStream) throws IOException {
-        if (keyValueStream.acceptValueStreamForKey(key)) {
-            validated.put(key, staging.get(key));
-        } else {
-            throw new IOException("invalid results received for query [" + key.getIRIString() + "] because [" + StringUtils.join(keyValueStream.getViolations(), ", and because ") + "]");
-        }
+        ValidatingKeyValueStream keyValueStream = validatingKeyValueStreamFactory.forKeyValueStream(key, is);
+        validated.put(key, new ValidatingInputStream(key, keyValueStream));
     }
 
     @Override
@@ -59,14 +46,8 @@ public class KeyValueStoreWithValidation implements KeyValueStore {
         InputStream inputStreamUnverified = backing.get(key);
         InputStream inputStreamVerified = null;
         if (inputStreamUnverified != null) {
-            try {
-                ValidatingKeyValueStream keyValueStream = validatingKeyValueStreamFactory.forKeyValueStream(key, inputStreamUnverified);
-                staging.put(key, keyValueStream.getValueStream());
-                validate(key, keyValueStream);
-                inputStreamVerified = validated.get(key);
-            } finally {
-                staging.remove(key);
-            }
+            put(key, inputStreamUnverified);
+            inputStreamVerified = validated.get(key);
         }
         return inputStreamVerified;
     }
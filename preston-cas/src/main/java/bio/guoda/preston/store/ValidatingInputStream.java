@@ -0,0 +1,37 @@
+package bio.guoda.preston.store;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.IOException;
+
+/**
+ * Fails the read that reaches the end of stream if the streamed value is not valid for its key,
+ * so that consumers discard, instead of keep, invalid values.
+ */
+
+public class ValidatingInputStream extends ProxyInputStream {
+
+    private final IRI key;
+    private final ValidatingKeyValueStream keyValueStream;
+    private boolean validated = false;
+
+    public ValidatingInputStream(IRI key, ValidatingKeyValueStream keyValueStream) {
+        super(keyValueStream.getValueStream());
+        this.key = key;
+        this.keyValueStream = keyValueStream;
+    }
+
+    @Override
+    protected void afterRead(int n) throws IOException {
+        if (n == IOUtils.EOF && !validated) {
+            validated = true;
+            if (!keyValueStream.acceptValueStreamForKey(key)) {
+                throw new IOException("invalid results received for query [" + key.getIRIString() + "] because [" + StringUtils.join(keyValueStream.getViolations(), ", and because ") + "]");
+            }
+        }
+    }
+
+}
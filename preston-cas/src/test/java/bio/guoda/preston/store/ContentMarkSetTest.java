@@ -0,0 +1,67 @@
+package bio.guoda.preston.store;
+
+import bio.guoda.preston.HashType;
+import bio.guoda.preston.Hasher;
+import bio.guoda.preston.RefNodeFactory;
+import org.apache.commons.rdf.api.IRI;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ContentMarkSetTest {
+
+    private static final IRI SOME_KEY = RefNodeFactory.toIRI("hash://sha256/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b");
+    private static final IRI OTHER_KEY = RefNodeFactory.toIRI("hash://sha256/1234567890123456789012345678901234567890123456789012345678901234");
+    private static final IRI SOME_MD5_KEY = RefNodeFactory.toIRI("hash://md5/5946210c9e93ae37891dfe96c3e39614");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void markAndCheck() throws IOException {
+        try (ContentMarkSet marks = new ContentMarkSet(folder.newFolder("tmp"))) {
+            assertThat(marks.isMarked(SOME_KEY), is(false));
+
+            assertThat(marks.mark(SOME_KEY), is(true));
+            assertThat(marks.mark(SOME_KEY), is(false));
+            assertThat(marks.mark(SOME_MD5_KEY), is(true));
+
+            assertThat(marks.isMarked(SOME_KEY), is(true));
+            assertThat(marks.isMarked(SOME_MD5_KEY), is(true));
+            assertThat(marks.isMarked(OTHER_KEY), is(false));
+            assertThat(marks.size(), is(2L));
+        }
+    }
+
+    @Test
+    public void ignoreNonContentIds() throws IOException {
+        try (ContentMarkSet marks = new ContentMarkSet(folder.newFolder("tmp"))) {
+            assertThat(marks.mark(RefNodeFactory.toIRI("https://example.org")), is(false));
+            assertThat(marks.mark(RefNodeFactory.toIRI("hash://sha256/tooshort")), is(false));
+            assertThat(marks.size(), is(0L));
+        }
+    }
+
+    @Test
+    public void growBeyondInitialCapacity() throws IOException {
+        File tmpDir = folder.newFolder("tmp");
+        try (ContentMarkSet marks = new ContentMarkSet(tmpDir, 1024)) {
+            for (int i = 0; i < 10000; i++) {
+                marks.mark(Hasher.calcHashIRI("content" + i, HashType.sha256));
+            }
+            assertThat(marks.size(), is(10000L));
+            for (int i = 0; i < 10000; i += 7) {
+                assertThat(marks.isMarked(Hasher.calcHashIRI("content" + i, HashType.sha256)), is(true));
+            }
+            assertThat(marks.isMarked(Hasher.calcHashIRI("other content", HashType.sha256)), is(false));
+        }
+        assertThat(tmpDir.list().length, is(0));
+    }
+
+}
@@ -0,0 +1,90 @@
+package bio.guoda.preston.store;
+
+import bio.guoda.preston.RefNodeFactory;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class ContentSweeperTest {
+
+    private static final String SOME_HEX = "ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b";
+    private static final String OTHER_HEX = "1234567890123456789012345678901234567890123456789012345678901234";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sweepUnmarkedAndTemporary() throws IOException {
+        File dataDir = folder.newFolder("data");
+        File marked = write(dataDir, "ab/3d/" + SOME_HEX);
+        File unmarked = write(dataDir, "12/34/" + OTHER_HEX + ".gz");
+        File orphaned = write(dataDir, "12/34/" + OTHER_HEX + ".tmp");
+        assertThat(orphaned.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)), is(true));
+        File index = write(dataDir, "thumbnails.index");
+
+        Map<File, String> garbage = new ConcurrentHashMap<>();
+        try (ContentMarkSet marks = new ContentMarkSet(folder.newFolder("tmp"))) {
+            marks.mark(RefNodeFactory.toIRI("hash://sha256/" + SOME_HEX));
+
+            long count = new ContentSweeper(dataDir, marks, 2)
+                    .sweep((file, contentId) -> garbage.put(file, contentId == null ? "" : contentId.getIRIString()));
+
+            assertThat(count, is(2L));
+        }
+
+        assertThat(garbage.get(unmarked), is("hash://sha256/" + OTHER_HEX));
+        assertThat(garbage.get(orphaned), is(""));
+        assertThat(garbage, not(hasKey(marked)));
+        assertThat(garbage, not(hasKey(index)));
+    }
+
+    @Test
+    public void keepRecentTemporary() throws IOException {
+        File dataDir = folder.newFolder("data");
+        File recent = write(dataDir, "12/34/" + OTHER_HEX + ".tmp");
+        File old = write(dataDir, "ab/3d/" + SOME_HEX + ".tmp");
+        assertThat(old.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)), is(true));
+
+        Map<File, String> garbage = new ConcurrentHashMap<>();
+        try (ContentMarkSet marks = new ContentMarkSet(folder.newFolder("tmp"))) {
+            long count = new ContentSweeper(dataDir, marks, 2, TimeUnit.HOURS.toMillis(1))
+                    .sweep((file, contentId) -> garbage.put(file, ""));
+
+            assertThat(count, is(1L));
+        }
+
+        assertThat(garbage, hasKey(old));
+        assertThat(garbage, not(hasKey(recent)));
+    }
+
+    @Test
+    public void sweepEmpty() throws IOException {
+        try (ContentMarkSet marks = new ContentMarkSet(folder.newFolder("tmp"))) {
+            long count = new ContentSweeper(folder.newFolder("data"), marks, 2)
+                    .sweep((file, contentId) -> {
+                        throw new IOException("unexpected garbage [" + file + "]");
+                    });
+            assertThat(count, is(0L));
+        }
+    }
+
+    private static File write(File dataDir, String path) throws IOException {
+        File file = new File(dataDir, path);
+        FileUtils.writeStringToFile(file, "some content", StandardCharsets.UTF_8);
+        return file;
+    }
+
+}
@@ -2,15 +2,26 @@ package bio.guoda.preston.store;
 
 import bio.guoda.preston.HashType;
 import bio.guoda.preston.Hasher;
+import bio.guoda.preston.metrics.BlobPutEvent;
+import bio.guoda.preston.metrics.DereferenceEvent;
+import bio.guoda.preston.metrics.HashEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.hamcrest.core.Is;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
 
 import static bio.guoda.preston.RefNodeFactory.toIRI;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -18,6 +29,9 @@ import static org.junit.Assert.*;
 
 public class DereferencerContentAddressedTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void dereference() throws IOException {
         Dereferencer<InputStream> dereferencer = new DereferenceTest("derefData@");
@@ -37,6 +51,57 @@ public class DereferencerContentAddressedTest {
 
     }
 
+    @Test
+    public void dereferenceRecordsFlightRecorderEvents() throws IOException {
+        File tmpDir = folder.newFolder("tmp");
+        KeyValueStore keyValueStore = new KeyValueStoreLocalFileSystem(
+                tmpDir,
+                new KeyTo3LevelPath(folder.newFolder("data").toURI()),
+                new ValidatingKeyValueStreamContentAddressedFactory()
+        );
+        BlobStore blobStore = new BlobStoreAppendOnly(keyValueStore, true, HashType.sha256);
+        DereferencerCachingProxy dereferencer = new DereferencerCachingProxy(
+                new DereferencerContentAddressed(new DereferenceTest("derefData@"), blobStore)
+        );
+
+        File recordingFile = new File(tmpDir, "recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(DereferenceEvent.class);
+            recording.enable(BlobPutEvent.class);
+            recording.enable(HashEvent.class);
+            recording.start();
+            dereferencer.get(toIRI("http://some"));
+            dereferencer.get(toIRI("http://some"));
+            recording.stop();
+            recording.dump(recordingFile.toPath());
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile.toPath());
+
+        Optional<RecordedEvent> miss = findEvent(events, "bio.guoda.preston.Dereference", false);
+        assertTrue(miss.isPresent());
+        assertThat(miss.get().getString("location"), Is.is("http://some"));
+        assertThat(miss.get().getLong("bytes"), Is.is(21L));
+        assertThat(miss.get().getString("contentId"), Is.is(Hasher.calcHashIRI("derefData@http://some", HashType.sha256).getIRIString()));
+        assertTrue(findEvent(events, "bio.guoda.preston.Dereference", true).isPresent());
+
+        Optional<RecordedEvent> put = events.stream()
+                .filter(event -> "bio.guoda.preston.BlobPut".equals(event.getEventType().getName()))
+                .findFirst();
+        assertTrue(put.isPresent());
+        assertThat(put.get().getString("layout"), Is.is("KeyTo3LevelPath"));
+        assertThat(put.get().getLong("bytes"), Is.is(21L));
+
+        assertTrue(events.stream().anyMatch(event -> "bio.guoda.preston.Hash".equals(event.getEventType().getName())));
+    }
+
+    private static Optional<RecordedEvent> findEvent(List<RecordedEvent> events, String name, boolean cacheHit) {
+        return events.stream()
+                .filter(event -> name.equals(event.getEventType().getName()))
+                .filter(event -> event.getBoolean("cacheHit") == cacheHit)
+                .findFirst();
+    }
+
     private class DereferenceTest implements Dereferencer<InputStream> {
 
         private final String prefix;
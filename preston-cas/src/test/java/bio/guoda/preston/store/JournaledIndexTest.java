@@ -0,0 +1,81 @@
+package bio.guoda.preston.store;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.rdf.api.IRI;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class JournaledIndexTest {
+
+    private static final IRI SOME_ID = toIRI("hash://sha256/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b");
+    private static final IRI DERIVED_ID = toIRI("hash://sha256/1234567890123456789012345678901234567890123456789012345678901234");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void putAndReload() throws IOException {
+        File indexFile = new File(folder.newFolder("data"), "derived.index");
+        JournaledIndex<IRI> index = JournaledIndex.load(new JournaledIndex<>(indexFile, JournaledIndex.contentIdCodec(2)));
+        assertThat(index.get(SOME_ID), is(nullValue()));
+
+        index.put(SOME_ID, DERIVED_ID);
+        index.put(SOME_ID, DERIVED_ID);
+
+        assertThat(FileUtils.readFileToString(indexFile, StandardCharsets.UTF_8),
+                is(DERIVED_ID.getIRIString() + "\t2\t" + SOME_ID.getIRIString() + "\n"));
+
+        JournaledIndex<IRI> reloaded = JournaledIndex.load(new JournaledIndex<>(indexFile, JournaledIndex.contentIdCodec(2)));
+        assertThat(reloaded.size(), is(1));
+        assertThat(reloaded.get(SOME_ID), is(DERIVED_ID));
+    }
+
+    @Test
+    public void ignoreOtherFormats() throws IOException {
+        File indexFile = new File(folder.newFolder("data"), "derived.index");
+        JournaledIndex.load(new JournaledIndex<>(indexFile, JournaledIndex.contentIdCodec(2))).put(SOME_ID, DERIVED_ID);
+        FileUtils.writeStringToFile(indexFile, "malformed\n", StandardCharsets.UTF_8, true);
+
+        JournaledIndex<IRI> reloaded = JournaledIndex.load(new JournaledIndex<>(indexFile, JournaledIndex.contentIdCodec(3)));
+        assertThat(reloaded.size(), is(0));
+        assertThat(reloaded.get(SOME_ID), is(nullValue()));
+    }
+
+    @Test
+    public void compactTable() throws IOException {
+        File indexFile = new File(folder.newFolder("data"), "derived.index");
+        JournaledIndex.Codec<String> codec = new JournaledIndex.Codec<String>() {
+            @Override
+            public String encode(String value) {
+                return value;
+            }
+
+            @Override
+            public String decode(String encoded) {
+                return encoded;
+            }
+        };
+        JournaledIndex<String> index = JournaledIndex.load(new JournaledIndex<>(indexFile, codec, new JournaledIndex.CompactTable<>()));
+        for (int i = 1; i <= 5000; i++) {
+            index.put(Long.toHexString(i), i % 2 == 0 ? "even" : "odd");
+        }
+        FileUtils.writeStringToFile(indexFile, "odd\tnot-hex\n", StandardCharsets.UTF_8, true);
+
+        JournaledIndex<String> reloaded = JournaledIndex.load(new JournaledIndex<>(indexFile, codec, new JournaledIndex.CompactTable<>()));
+        assertThat(reloaded.size(), is(5000));
+        assertThat(reloaded.get("1"), is("odd"));
+        assertThat(reloaded.get(Long.toHexString(5000)), is("even"));
+        assertThat(reloaded.get(Long.toHexString(5001)), is(nullValue()));
+    }
+
+}
@@ -0,0 +1,170 @@
+package bio.guoda.preston.store;
+
+import bio.guoda.preston.RefNodeFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.rdf.api.IRI;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class KeyExistenceFilterBloomTest {
+
+    private static final IRI SOME_KEY = RefNodeFactory.toIRI("hash://sha256/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b");
+    private static final IRI OTHER_KEY = RefNodeFactory.toIRI("hash://sha256/1234567890123456789012345678901234567890123456789012345678901234");
+    private static final IRI SOME_MD5_KEY = RefNodeFactory.toIRI("hash://md5/5946210c9e93ae37891dfe96c3e39614");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void addAndCheck() throws IOException {
+        KeyExistenceFilterBloom filter = new KeyExistenceFilterBloom(1000, 0.01);
+        assertThat(filter.mightContain(SOME_KEY), is(false));
+        assertThat(filter.getFalsePositiveRate(), is(0.0));
+
+        filter.add(SOME_KEY);
+
+        assertThat(filter.mightContain(SOME_KEY), is(true));
+        assertThat(filter.mightContain(OTHER_KEY), is(false));
+        assertThat(filter.getApproximateKeyCount(), is(1L));
+        assertThat(filter.getFalsePositiveRate(), greaterThan(0.0));
+    }
+
+    @Test
+    public void falsePositiveRate() throws IOException {
+        KeyExistenceFilterBloom filter = new KeyExistenceFilterBloom(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add(RefNodeFactory.toIRI("hash://sha256/present" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(RefNodeFactory.toIRI("hash://sha256/absent" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(filter.getFalsePositiveRate(), lessThan(0.02));
+        assertThat(falsePositives, lessThan(200));
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        KeyExistenceFilterBloom filter = new KeyExistenceFilterBloom(1000, 0.01);
+        filter.add(SOME_KEY);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        filter.writeTo(os);
+
+        KeyExistenceFilterBloom copy = KeyExistenceFilterBloom.readFrom(new ByteArrayInputStream(os.toByteArray()));
+        assertThat(copy.mightContain(SOME_KEY), is(true));
+        assertThat(copy.mightContain(OTHER_KEY), is(false));
+        assertThat(copy.getFalsePositiveRate(), is(filter.getFalsePositiveRate()));
+    }
+
+    @Test(expected = IOException.class)
+    public void readNonFilter() throws IOException {
+        KeyExistenceFilterBloom.readFrom(IOUtils.toInputStream("not a filter", StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rebuildFromDataDir() throws IOException {
+        File dataDir = folder.newFolder("data");
+        FileUtils.touch(new File(dataDir, "ab/3d/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b.gz"));
+        FileUtils.touch(new File(dataDir, "59/46/21/5946210c9e93ae37891dfe96c3e39614/data"));
+        FileUtils.touch(new File(dataDir, "12/34/1234567890123456789012345678901234567890123456789012345678901234.tmp"));
+
+        KeyExistenceFilterBloom filter = KeyExistenceFilterBloom.rebuild(dataDir);
+
+        assertThat(filter.mightContain(SOME_KEY), is(true));
+        assertThat(filter.mightContain(SOME_MD5_KEY), is(true));
+        assertThat(filter.mightContain(OTHER_KEY), is(false));
+    }
+
+    @Test
+    public void loadJournaledKeys() throws IOException {
+        File dataDir = folder.newFolder("data");
+
+        KeyExistenceFilterBloom filter = KeyExistenceFilterBloom.load(dataDir);
+        assertThat(new File(dataDir, KeyExistenceFilterBloom.FILTER_FILENAME).exists(), is(true));
+        assertThat(filter.mightContain(SOME_KEY), is(false));
+
+        filter.add(SOME_KEY);
+
+        KeyExistenceFilterBloom reloaded = KeyExistenceFilterBloom.load(dataDir);
+        assertThat(reloaded.mightContain(SOME_KEY), is(true));
+        assertThat(reloaded.mightContain(OTHER_KEY), is(false));
+    }
+
+    @Test
+    public void localFileSystemSkipsAbsentKeys() throws IOException {
+        File dataDir = folder.newFolder("data");
+        KeyExistenceFilterBloom filter = KeyExistenceFilterBloom.load(dataDir);
+        KeyValueStoreLocalFileSystem store = new KeyValueStoreLocalFileSystem(
+                folder.newFolder("tmp"),
+                new KeyTo3LevelPath(dataDir.toURI()),
+                new ValidatingKeyValueStreamContentAddressedFactory(),
+                filter
+        );
+
+        store.put(SOME_KEY, IOUtils.toInputStream("some value", StandardCharsets.UTF_8));
+        assertThat(filter.mightContain(SOME_KEY), is(true));
+        assertThat(TestUtil.toUTF8(store.get(SOME_KEY)), is("some value"));
+
+        FileUtils.touch(new File(dataDir, "12/34/1234567890123456789012345678901234567890123456789012345678901234"));
+        assertThat(store.get(OTHER_KEY) == null, is(true));
+        assertThat(filter.mightContain(OTHER_KEY), is(false));
+    }
+
+    @Test
+    public void rebuildAfterContentStoredWithoutFilter() throws IOException {
+        File dataDir = folder.newFolder("data");
+        KeyExistenceFilterBloom.load(dataDir);
+
+        KeyValueStoreLocalFileSystem storeWithoutFilter = new KeyValueStoreLocalFileSystem(
+                folder.newFolder("tmp"),
+                new KeyTo3LevelPath(dataDir.toURI()),
+                new ValidatingKeyValueStreamContentAddressedFactory(),
+                KeyExistenceFilterBloom.invalidating(dataDir)
+        );
+        storeWithoutFilter.put(SOME_KEY, IOUtils.toInputStream("some value", StandardCharsets.UTF_8));
+
+        File staleMarker = new File(dataDir, KeyExistenceFilterBloom.STALE_MARKER_FILENAME);
+        assertThat(staleMarker.exists(), is(true));
+
+        KeyExistenceFilterBloom reloaded = KeyExistenceFilterBloom.load(dataDir);
+        assertThat(reloaded.mightContain(SOME_KEY), is(true));
+        assertThat(reloaded.mightContain(OTHER_KEY), is(false));
+        assertThat(staleMarker.exists(), is(false));
+        assertThat(new File(dataDir, KeyExistenceFilterBloom.FILTER_FILENAME).exists(), is(true));
+    }
+
+    @Test
+    public void noStaleMarkerWithoutPersistedFilter() throws IOException {
+        File dataDir = folder.newFolder("data");
+        KeyValueStoreLocalFileSystem storeWithoutFilter = new KeyValueStoreLocalFileSystem(
+                folder.newFolder("tmp"),
+                new KeyTo3LevelPath(dataDir.toURI()),
+                new ValidatingKeyValueStreamContentAddressedFactory(),
+                KeyExistenceFilterBloom.invalidating(dataDir)
+        );
+
+        storeWithoutFilter.put(SOME_KEY, IOUtils.toInputStream("some value", StandardCharsets.UTF_8));
+
+        assertThat(TestUtil.toUTF8(storeWithoutFilter.get(SOME_KEY)), is("some value"));
+        assertThat(new File(dataDir, KeyExistenceFilterBloom.STALE_MARKER_FILENAME).exists(), is(false));
+    }
+
+}
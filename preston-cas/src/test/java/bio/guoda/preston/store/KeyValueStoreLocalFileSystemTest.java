@@ -9,7 +9,11 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -17,12 +21,15 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class KeyValueStoreLocalFileSystemTest {
 
@@ -171,4 +178,167 @@ public class KeyValueStoreLocalFileSystemTest {
 
     }
 
+
+    @Test
+    public void getRange() throws IOException {
+        KeyValueStoreLocalFileSystem filePersistence = new KeyValueStoreLocalFileSystem(
+                new File(path.toFile(), "tmp"),
+                new KeyTo3LevelPath(new File(path.toFile(), "datasets").toURI()),
+                new ValidatingKeyValueStreamContentAddressedFactory());
+
+        IRI someValueKey = RefNodeFactory.toIRI("hash://sha256/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b");
+        assertNull(filePersistence.get(someValueKey, 5, 10));
+        filePersistence.put(someValueKey, IOUtils.toInputStream("some value", StandardCharsets.UTF_8));
+
+        assertThat(TestUtil.toUTF8(filePersistence.get(someValueKey, 5, 10)), is("value"));
+        assertThat(TestUtil.toUTF8(filePersistence.get(someValueKey, 0, 4)), is("some"));
+        assertThat(TestUtil.toUTF8(filePersistence.get(someValueKey, 5, 100)), is("value"));
+        assertNull(filePersistence.get(someValueKey, 100, 200));
+    }
+
+    @Test
+    public void getRangeCompressed() throws IOException {
+        KeyValueStoreLocalFileSystem filePersistence = new KeyValueStoreLocalFileSystem(
+                new File(path.toFile(), "tmp"),
+                new KeyTo3LevelPath(new File(path.toFile(), "datasets").toURI()),
+                new ValidatingKeyValueStreamContentAddressedFactory(),
+                KeyExistenceFilter.NONE,
+                true
+        );
+
+        IRI someValueKey = RefNodeFactory.toIRI("hash://sha256/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b");
+        filePersistence.put(someValueKey, IOUtils.toInputStream("some value", StandardCharsets.UTF_8));
+
+        assertNull(filePersistence.get(someValueKey, 5, 10));
+        assertThat(TestUtil.toUTF8(filePersistence.get(someValueKey)), is("some value"));
+    }
+
+    @Test
+    public void writeCompressed() throws IOException {
+        File dataDir = new File(path.toFile(), "datasets");
+        KeyValueStoreLocalFileSystem filePersistence = new KeyValueStoreLocalFileSystem(
+                new File(path.toFile(), "tmp"),
+                new KeyTo3LevelPath(dataDir.toURI()),
+                new ValidatingKeyValueStreamContentAddressedFactory(),
+                KeyExistenceFilter.NONE,
+                true
+        );
+
+        IRI someValueKey = RefNodeFactory.toIRI("hash://sha256/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b");
+        assertNull(filePersistence.get(someValueKey));
+        filePersistence.put(someValueKey, IOUtils.toInputStream("some value", StandardCharsets.UTF_8));
+
+        File compressedFile = new File(dataDir, "ab/3d/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b.gz");
+        assertTrue(compressedFile.exists());
+        assertFalse(new File(dataDir, "ab/3d/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b").exists());
+        assertThat(TestUtil.toUTF8(new GZIPInputStream(new FileInputStream(compressedFile))), is("some value"));
+
+        assertThat(TestUtil.toUTF8(filePersistence.get(someValueKey)), is("some value"));
+
+        KeyValueStoreLocalFileSystemReadOnly readOnly = new KeyValueStoreLocalFileSystemReadOnly(new KeyTo3LevelPath(dataDir.toURI()));
+        assertThat(TestUtil.toUTF8(readOnly.get(someValueKey)), is("some value"));
+
+        filePersistence.remove(someValueKey);
+        assertFalse(compressedFile.exists());
+        assertNull(filePersistence.get(someValueKey));
+    }
+
+    @Test
+    public void writeCompressedSkipAlreadyCompressed() throws IOException {
+        File dataDir = new File(path.toFile(), "datasets");
+        KeyValueStoreLocalFileSystem filePersistence = new KeyValueStoreLocalFileSystem(
+                new File(path.toFile(), "tmp"),
+                new KeyTo3LevelPath(dataDir.toURI()),
+                getAlwaysAccepting(),
+                KeyExistenceFilter.NONE,
+                true
+        );
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(gzipped)) {
+            IOUtils.write("some value", os, StandardCharsets.UTF_8);
+        }
+
+        filePersistence.put(SOME_HASH, new ByteArrayInputStream(gzipped.toByteArray()));
+
+        File storedFile = new File(dataDir, "12/34/1234567890123456789012345678901234567890123456789012345678901234");
+        assertTrue(storedFile.exists());
+        assertThat(FileUtils.readFileToByteArray(storedFile), is(gzipped.toByteArray()));
+        assertThat(IOUtils.toByteArray(filePersistence.get(SOME_HASH)), is(gzipped.toByteArray()));
+    }
+
+    @Test
+    public void writeStreamWithKeyGeneratorCompressed() throws IOException {
+        File dataDir = new File(path.toFile(), "datasets");
+        KeyValueStoreLocalFileSystem filePersistence = new KeyValueStoreLocalFileSystem(
+                new File(path.toFile(), "tmp"),
+                new KeyTo3LevelPath(dataDir.toURI()),
+                getAlwaysAccepting(),
+                KeyExistenceFilter.NONE,
+                true
+        );
+
+        filePersistence.put((is, os) -> {
+            IOUtils.copy(is, os);
+            return SOME_HASH;
+        }, IOUtils.toInputStream("some content", StandardCharsets.UTF_8));
+
+        assertTrue(new File(dataDir, "12/34/1234567890123456789012345678901234567890123456789012345678901234.gz").exists());
+        assertThat(TestUtil.toUTF8(filePersistence.get(SOME_HASH)), is("some content"));
+    }
+
+    @Test
+    public void existenceFilterSkipsContentStoredBehindItsBack() throws IOException {
+        File dataDir = new File(path.toFile(), "datasets");
+        File stored = new File(dataDir, "12/34/1234567890123456789012345678901234567890123456789012345678901234");
+        FileUtils.writeStringToFile(stored, "some content", StandardCharsets.UTF_8);
+
+        KeyExistenceFilterBloom existenceFilter = new KeyExistenceFilterBloom();
+        KeyValueStoreLocalFileSystem filePersistence = new KeyValueStoreLocalFileSystem(
+                new File(path.toFile(), "tmp"),
+                new KeyTo3LevelPath(dataDir.toURI()),
+                getAlwaysAccepting(),
+                existenceFilter,
+                false
+        );
+
+        assertNull(filePersistence.get(SOME_HASH));
+        assertNull(filePersistence.get(SOME_HASH, 0, 4));
+        assertFalse(existenceFilter.mightContain(SOME_HASH));
+    }
+
+    @Test
+    public void existenceFilterAddsContentStoredBehindItsBackOnPut() throws IOException {
+        File dataDir = new File(path.toFile(), "datasets");
+        File stored = new File(dataDir, "12/34/1234567890123456789012345678901234567890123456789012345678901234");
+        FileUtils.writeStringToFile(stored, "some content", StandardCharsets.UTF_8);
+
+        KeyExistenceFilterBloom existenceFilter = new KeyExistenceFilterBloom();
+        KeyValueStoreLocalFileSystem filePersistence = new KeyValueStoreLocalFileSystem(
+                new File(path.toFile(), "tmp"),
+                new KeyTo3LevelPath(dataDir.toURI()),
+                getAlwaysAccepting(),
+                existenceFilter,
+                false
+        );
+
+        filePersistence.put(SOME_HASH, IOUtils.toInputStream("some content", StandardCharsets.UTF_8));
+
+        assertTrue(existenceFilter.mightContain(SOME_HASH));
+        assertFalse(new File(stored.getAbsolutePath() + ".tmp").exists());
+        assertThat(TestUtil.toUTF8(new KeyValueStoreLocalFileSystemReadOnly(new KeyTo3LevelPath(dataDir.toURI()), existenceFilter).get(SOME_HASH)), is("some content"));
+    }
+
+    @Test
+    public void likelyCompressed() throws IOException {
+        assertTrue(KeyValueStoreLocalFileSystem.isLikelyCompressed(new BufferedInputStream(new ByteArrayInputStream(new byte[]{(byte) 0x1f, (byte) 0x8b, 0x08}))));
+        assertTrue(KeyValueStoreLocalFileSystem.isLikelyCompressed(new BufferedInputStream(new ByteArrayInputStream(new byte[]{0x50, 0x4b, 0x03, 0x04}))));
+        assertTrue(KeyValueStoreLocalFileSystem.isLikelyCompressed(new BufferedInputStream(new ByteArrayInputStream(new byte[]{(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0}))));
+        assertTrue(KeyValueStoreLocalFileSystem.isLikelyCompressed(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+
+        BufferedInputStream text = new BufferedInputStream(IOUtils.toInputStream("<some> <quad> .", StandardCharsets.UTF_8));
+        assertFalse(KeyValueStoreLocalFileSystem.isLikelyCompressed(text));
+        assertThat(TestUtil.toUTF8(text), is("<some> <quad> ."));
+    }
+
 }
\ No newline at end of file
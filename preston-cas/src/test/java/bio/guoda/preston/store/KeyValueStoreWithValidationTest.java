@@ -1,30 +1,37 @@
 package bio.guoda.preston.store;
 
 import bio.guoda.preston.RefNodeFactory;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.hamcrest.core.Is;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 public class KeyValueStoreWithValidationTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test(expected = IOException.class)
     public void putInvalid() throws IOException {
-        KeyValueStoreWithRemove staging = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore verified = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore backing = TestUtil.getTestPersistenceWithRemove();
 
 
         KeyValueStore keyStore = new KeyValueStoreWithValidation(
                 new ValidatingKeyValueStreamHashTypeIRIFactory(),
-                staging,
                 verified,
                 backing
         );
@@ -41,18 +48,15 @@ public class KeyValueStoreWithValidationTest {
 
     @Test
     public void putValid() throws IOException {
-        KeyValueStoreWithRemove staging = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore verified = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore backing = TestUtil.getTestPersistenceWithRemove();
 
         KeyValueStore keyStore = new KeyValueStoreWithValidation(
                 new ValidatingKeyValueStreamHashTypeIRIFactory(),
-                staging,
                 verified,
                 backing);
 
         IRI validKey = RefNodeFactory.toIRI("hash://sha256/00e3261a6e0d79c329445acd540fb2b07187a0dcf6017065c8814010283ac67f");
-        assertNull(staging.get(validKey));
 
         IRI validResult = RefNodeFactory.toIRI("hash://sha256/98ea6e4f216f2fb4b69fff9b3a44842c38686ca685f3f55dc48c5d3fb1107be4");
         keyStore.put(
@@ -62,19 +66,15 @@ public class KeyValueStoreWithValidationTest {
 
         InputStream inputStream = verified.get(validKey);
         assertThat(IOUtils.toString(inputStream, StandardCharsets.UTF_8), Is.is(validResult.getIRIString()));
-
-        assertNull(staging.get(validKey));
     }
 
     @Test(expected = IOException.class)
     public void getInvalid() throws IOException {
-        KeyValueStoreWithRemove staging = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore verified = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore backing = TestUtil.getTestPersistenceWithRemove();
 
         KeyValueStore keyStore = new KeyValueStoreWithValidation(
                 new ValidatingKeyValueStreamHashTypeIRIFactory(),
-                staging,
                 verified,
                 backing);
 
@@ -93,19 +93,18 @@ public class KeyValueStoreWithValidationTest {
                             ", and because" +
                             " invalid key pattern: expected results for query key [hash://sha256/00e3261a6e0d79c329445acd540fb2b07187a0dcf6017065c8814010283ac67f] to match pattern [hash://sha256/([a-fA-F0-9]){64}]]")
             );
+            assertNull(verified.get(validKey));
             throw ex;
         }
     }
 
     @Test
     public void getValid() throws IOException {
-        KeyValueStoreWithRemove staging = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore verified = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore backing = TestUtil.getTestPersistenceWithRemove();
 
         KeyValueStore keyStore = new KeyValueStoreWithValidation(
                 new ValidatingKeyValueStreamHashTypeIRIFactory(),
-                staging,
                 verified,
                 backing);
 
@@ -117,22 +116,17 @@ public class KeyValueStoreWithValidationTest {
                 IOUtils.toInputStream(validResult.getIRIString(), StandardCharsets.UTF_8)
         );
 
-        assertNull(staging.get(validKey));
         InputStream inputStream = keyStore.get(validKey);
         assertThat(IOUtils.toString(inputStream, StandardCharsets.UTF_8), Is.is(validResult.getIRIString()));
-
-        assertNull(staging.get(validKey));
     }
 
     @Test
     public void getUnknownKey() throws IOException {
-        KeyValueStoreWithRemove staging = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore verified = TestUtil.getTestPersistenceWithRemove();
         KeyValueStore backing = TestUtil.getTestPersistenceWithRemove();
 
         KeyValueStore keyStore = new KeyValueStoreWithValidation(
                 new ValidatingKeyValueStreamHashTypeIRIFactory(),
-                staging,
                 verified,
                 backing);
 
@@ -141,4 +135,43 @@ public class KeyValueStoreWithValidationTest {
         assertNull(keyStore.get(validKey));
     }
 
+    @Test
+    public void getInvalidIntoLocalFileSystem() throws IOException {
+        File dataDir = folder.newFolder("data");
+        KeyValueStore verified = new KeyValueStoreLocalFileSystem(
+                folder.newFolder("tmp"),
+                new KeyTo3LevelPath(dataDir.toURI()),
+                (key, is) -> new ValidatingKeyValueStreamWithViolations() {
+                    @Override
+                    public InputStream getValueStream() {
+                        return is;
+                    }
+
+                    @Override
+                    public boolean acceptValueStreamForKey(IRI key) {
+                        return true;
+                    }
+                }
+        );
+        KeyValueStore backing = TestUtil.getTestPersistenceWithRemove();
+
+        KeyValueStore keyStore = new KeyValueStoreWithValidation(
+                new ValidatingKeyValueStreamContentAddressedFactory(),
+                verified,
+                backing);
+
+        IRI someKey = RefNodeFactory.toIRI("hash://sha256/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b");
+        backing.put(someKey, IOUtils.toInputStream("some other value", StandardCharsets.UTF_8));
+
+        try {
+            keyStore.get(someKey);
+            fail("expected invalid content to be rejected");
+        } catch (IOException ex) {
+            assertThat(ex.getMessage(), startsWith("invalid results received for query [hash://sha256/ab3d07f3169ccbd0ed6c4b45de21519f9f938c72d24124998aab949ce83bb51b]"));
+        }
+
+        assertNull(verified.get(someKey));
+        assertThat(FileUtils.listFiles(dataDir, null, true).size(), Is.is(0));
+    }
+
 }
\ No newline at end of file
@@ -12,6 +12,7 @@ import bio.guoda.preston.cmd.CmdClone;
 import bio.guoda.preston.cmd.CmdCopyTo;
 import bio.guoda.preston.cmd.CmdDarkTaxonStream;
 import bio.guoda.preston.cmd.CmdDwcRecordStream;
+import bio.guoda.preston.cmd.CmdGarbageCollect;
 import bio.guoda.preston.cmd.CmdGenBankStream;
 import bio.guoda.preston.cmd.CmdGenerateQRCode;
 import bio.guoda.preston.cmd.CmdGet;
@@ -20,6 +21,7 @@ import bio.guoda.preston.cmd.CmdGrep;
 import bio.guoda.preston.cmd.CmdHash;
 import bio.guoda.preston.cmd.CmdHead;
 import bio.guoda.preston.cmd.CmdHistory;
+import bio.guoda.preston.cmd.CmdIndex;
 import bio.guoda.preston.cmd.CmdInstallManual;
 import bio.guoda.preston.cmd.CmdList;
 import bio.guoda.preston.cmd.CmdMBDStream;
@@ -61,6 +63,8 @@ import static java.lang.System.exit;
                 CmdMerge.class,
                 CmdGrep.class,
                 CmdVerify.class,
+                CmdGarbageCollect.class,
+                CmdIndex.class,
                 CmdVersion.class,
                 CmdSeeds.class,
                 CmdHash.class,
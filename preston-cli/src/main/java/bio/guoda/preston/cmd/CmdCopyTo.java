@@ -7,6 +7,7 @@ import bio.guoda.preston.process.ProcessorState;
 import bio.guoda.preston.process.StatementEmitter;
 import bio.guoda.preston.process.StatementsListener;
 import bio.guoda.preston.store.BlobStoreAppendOnly;
+import bio.guoda.preston.store.KeyExistenceFilterBloom;
 import bio.guoda.preston.store.KeyGeneratingStream;
 import bio.guoda.preston.store.KeyTo1LevelPath;
 import bio.guoda.preston.store.KeyTo3LevelPath;
@@ -16,6 +17,7 @@ import bio.guoda.preston.store.KeyValueStoreCopying;
 import bio.guoda.preston.store.KeyValueStoreLocalFileSystem;
 import bio.guoda.preston.store.ProvenanceTracer;
 import bio.guoda.preston.store.ValidatingKeyValueStreamContentAddressedFactory;
+import bio.guoda.preston.store.ValidatingKeyValueStreamFactory;
 import bio.guoda.preston.store.ValidatingKeyValueStreamHashTypeIRIFactory;
 import bio.guoda.preston.util.JekyllUtil;
 import org.apache.commons.collections4.Factory;
@@ -142,8 +144,7 @@ public class CmdCopyTo extends LoggingPersisting implements Runnable {
     private void copyAll(File target, File tmp, ProvenanceTracer provenanceTracer) {
         KeyValueStore copyingKeyValueStore = new KeyValueStoreCopying(
                 getKeyValueStore(new ValidatingKeyValueStreamContentAddressedFactory()),
-                new KeyValueStoreLocalFileSystem(tmp, getKeyToPath(target),
-                        new ValidatingKeyValueStreamContentAddressedFactory()));
+                getTargetKeyValueStore(target, tmp, new ValidatingKeyValueStreamContentAddressedFactory()));
 
         CloneUtil.clone(copyingKeyValueStore,
                 copyingKeyValueStore,
@@ -151,6 +152,13 @@ public class CmdCopyTo extends LoggingPersisting implements Runnable {
                 provenanceTracer, BIODIVERSITY_DATASET_GRAPH);
     }
 
+    private KeyValueStore getTargetKeyValueStore(File target, File tmp, ValidatingKeyValueStreamFactory validatingKeyValueStreamFactory) {
+        return new KeyValueStoreLocalFileSystem(tmp,
+                getKeyToPath(target),
+                validatingKeyValueStreamFactory,
+                KeyExistenceFilterBloom.invalidating(target));
+    }
+
     private KeyToPath getKeyToPath(File target) {
         if (HashPathPattern.directoryDepth0.equals(getPathPattern())) {
             return new KeyTo1LevelPath(target.toURI());
@@ -172,14 +180,13 @@ public class CmdCopyTo extends LoggingPersisting implements Runnable {
     private KeyValueStore getCopyingKeyValueStore(File target, File tmp) {
         return new KeyValueStoreCopying(
                 getKeyValueStore(new ValidatingKeyValueStreamHashTypeIRIFactory()),
-                new KeyValueStoreLocalFileSystem(tmp, getKeyToPath(target),
-                        new ValidatingKeyValueStreamHashTypeIRIFactory()));
+                getTargetKeyValueStore(target, tmp, new ValidatingKeyValueStreamHashTypeIRIFactory()));
     }
 
     private void copyProvLogsOnly(File target, File tmp, ProvenanceTracer provenanceTracer) {
         KeyValueStore copyingKeyValueStoreProv = new KeyValueStoreCopying(
                 getKeyValueStore(new ValidatingKeyValueStreamContentAddressedFactory()),
-                new KeyValueStoreLocalFileSystem(tmp, getKeyToPath(target), new ValidatingKeyValueStreamContentAddressedFactory()));
+                getTargetKeyValueStore(target, tmp, new ValidatingKeyValueStreamContentAddressedFactory()));
 
         CloneUtil.clone(
                 new NullKeyValueStore(),
@@ -192,9 +199,7 @@ public class CmdCopyTo extends LoggingPersisting implements Runnable {
     private void copyDataOnly(File target, File tmp, ProvenanceTracer provenanceTracer) {
         KeyValueStore copyingKeyValueStoreBlob = new KeyValueStoreCopying(
                 getKeyValueStore(new ValidatingKeyValueStreamContentAddressedFactory()),
-                new KeyValueStoreLocalFileSystem(tmp,
-                        getKeyToPath(target),
-                        new ValidatingKeyValueStreamContentAddressedFactory()));
+                getTargetKeyValueStore(target, tmp, new ValidatingKeyValueStreamContentAddressedFactory()));
 
         CloneUtil.clone(
                 copyingKeyValueStoreBlob,
@@ -0,0 +1,313 @@
+package bio.guoda.preston.cmd;
+
+import bio.guoda.preston.HashType;
+import bio.guoda.preston.RDFUtil;
+import bio.guoda.preston.process.EmittingStreamFactory;
+import bio.guoda.preston.process.EmittingStreamOfAnyQuad;
+import bio.guoda.preston.process.LogErrorHandler;
+import bio.guoda.preston.process.ParsingEmitter;
+import bio.guoda.preston.process.ProcessorState;
+import bio.guoda.preston.process.StatementEmitter;
+import bio.guoda.preston.process.StatementListener;
+import bio.guoda.preston.process.StatementsListenerAdapter;
+import bio.guoda.preston.store.BlobStoreAppendOnly;
+import bio.guoda.preston.store.ContentMarkSet;
+import bio.guoda.preston.store.ContentSweeper;
+import bio.guoda.preston.store.Dereferencer;
+import bio.guoda.preston.store.KeyValueStore;
+import bio.guoda.preston.store.KeyValueStoreMarking;
+import bio.guoda.preston.store.ProvenanceTracer;
+import bio.guoda.preston.store.ValidatingKeyValueStreamContentAddressedFactory;
+import bio.guoda.preston.store.ValidatingKeyValueStreamFactory;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDFTerm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static bio.guoda.preston.RefNodeConstants.BIODIVERSITY_DATASET_GRAPH;
+import static bio.guoda.preston.RefNodeConstants.HAS_VERSION;
+import static bio.guoda.preston.RefNodeConstants.WAS_DERIVED_FROM;
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+import static bio.guoda.preston.cmd.ReplayUtil.attemptReplay;
+
+@CommandLine.Command(
+        name = "gc",
+        aliases = {"garbage-collect"},
+        description = "Finds (and, optionally, deletes) content in the local data dir that is not referenced by its provenance logs or index, and temporary files left behind by failed or aborted runs. Do not run while other processes write to the same data dir."
+)
+public class CmdGarbageCollect extends PersistingLocal implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CmdGarbageCollect.class);
+
+    private static final Pattern CONTENT_ID_PATTERN = contentIdPattern();
+
+    private static final String CACHE_FILE_PREFIX = "cacheFile";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    @CommandLine.Option(
+            names = {"--delete"},
+            description = "Delete unreferenced content and orphaned temporary files, instead of only listing them."
+    )
+    private Boolean delete = false;
+
+    @CommandLine.Option(
+            names = {"--threads"},
+            description = "number of threads used to sweep the data dir in parallel (default: \"${DEFAULT-VALUE}\")"
+    )
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Option(
+            names = {"--tmp-min-age"},
+            description = "minimum age, in hours, of temporary files to be collected, so that files of runs in progress are left alone (default: \"${DEFAULT-VALUE}\")"
+    )
+    private long tmpMinAgeHours = TimeUnit.MILLISECONDS.toHours(ContentSweeper.DEFAULT_TMP_FILE_MIN_AGE_MILLIS);
+
+    private ContentMarkSet marks = null;
+
+    @Override
+    public void run() {
+        if (getDepth() != 2) {
+            throw new IllegalArgumentException("garbage collection supports data dirs of depth [2] only, but got [" + getDepth() + "]");
+        }
+        if (isAnchored()) {
+            throw new IllegalArgumentException("garbage collection of anchored provenance [" + getProvenanceAnchor().getIRIString() + "] is not supported: content of other provenance in the data dir would be collected");
+        }
+
+        try (ContentMarkSet markSet = new ContentMarkSet(new File(getTmpDir()))) {
+            this.marks = markSet;
+            long statements = mark();
+            if (statements == 0) {
+                LOG.warn("no provenance found in [" + getDataDir() + "]: skipping sweep, because all content would be collected");
+            } else {
+                sweep();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("failed to collect garbage in [" + getDataDir() + "]", e);
+        } finally {
+            this.marks = null;
+        }
+    }
+
+    /**
+     * Marks provenance logs and index entries as they are read, and content referenced by their statements.
+     * Fails if any provenance log cannot be read or parsed, or if the provenance chain ends before its first version,
+     * because content referenced by unread provenance would be collected.
+     *
+     * @return number of statements replayed
+     */
+
+    private long mark() throws IOException {
+        AtomicLong statements = new AtomicLong(0);
+        StatementsListenerAdapter marker = new StatementsListenerAdapter() {
+            @Override
+            public void on(Quad statement) {
+                statements.incrementAndGet();
+                markContentIds(statement.getSubject());
+                markContentIds(statement.getObject());
+                statement.getGraphName().ifPresent(CmdGarbageCollect.this::markContentIds);
+            }
+        };
+
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean reachedFirstVersion = new AtomicBoolean(false);
+        AtomicReference<RDFTerm> earliestVersion = new AtomicReference<>();
+
+        attemptReplay(
+                provenanceLogsOrFail(new BlobStoreAppendOnly(
+                        getKeyValueStore(new ValidatingKeyValueStreamContentAddressedFactory()),
+                        true,
+                        getHashType()
+                ), failures),
+                new CmdContext(this, getProvenanceAnchor(), marker),
+                provenanceTracerOrFail(getProvenanceTracer(), failures, reachedFirstVersion, earliestVersion),
+                new EmittingStreamFactory() {
+                    @Override
+                    public ParsingEmitter createEmitter(StatementEmitter emitter, ProcessorState context) {
+                        return new EmittingStreamOfAnyQuad(emitter, context) {
+                            @Override
+                            protected void handleUnmatchedLine(String line) {
+                                List<Quad> quads = RDFUtil.parseQuads(IOUtils.toInputStream(line, StandardCharsets.UTF_8));
+                                if (quads.isEmpty() && StringUtils.isNotBlank(line) && !StringUtils.startsWith(line, "#")) {
+                                    throw new IllegalStateException("failed to parse provenance statement [" + line + "]");
+                                }
+                                quads.forEach(this::copyOnEmit);
+                            }
+                        };
+                    }
+                });
+
+        if (!failures.isEmpty()) {
+            throw new IOException("failed to mark content referenced by provenance in [" + getDataDir() + "]: " + StringUtils.join(failures, "; "));
+        }
+        if (statements.get() > 0 && !reachedFirstVersion.get()) {
+            throw new IOException("failed to mark content referenced by provenance in [" + getDataDir() + "]: provenance chain ends at [" + earliestVersion.get() + "] before its first version");
+        }
+
+        List<IRI> derived = new ArrayList<>(getThumbnailIndex().getContentIds());
+        derived.addAll(getLineOffsetIndex().getContentIds());
+        derived.addAll(getBinaryLogIndex().getContentIds());
+        for (IRI contentId : derived) {
+            marks.mark(contentId);
+        }
+
+        LOG.info("marked [" + marks.size() + "] content ids referenced by [" + statements.get() + "] statements");
+        return statements.get();
+    }
+
+    /**
+     * Reports provenance logs that cannot be read: replays skip these with a warning only.
+     */
+
+    private static Dereferencer<InputStream> provenanceLogsOrFail(Dereferencer<InputStream> provenanceLogs, List<String> failures) {
+        return logContentId -> {
+            try {
+                InputStream is = provenanceLogs.get(logContentId);
+                if (is == null) {
+                    failures.add("missing provenance log [" + logContentId.getIRIString() + "]");
+                }
+                return is;
+            } catch (IOException e) {
+                failures.add("failed to read provenance log [" + logContentId.getIRIString() + "]: " + e.getMessage());
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Reports failures to trace or to replay provenance, which replays skip with a warning only,
+     * and the earliest version of the provenance chain that was reached.
+     */
+
+    private static ProvenanceTracer provenanceTracerOrFail(ProvenanceTracer tracer,
+                                                           List<String> failures,
+                                                           AtomicBoolean reachedFirstVersion,
+                                                           AtomicReference<RDFTerm> earliestVersion) {
+        return new ProvenanceTracer() {
+            @Override
+            public void trace(IRI provenanceAnchor, StatementListener listener) throws IOException {
+                try {
+                    tracer.trace(provenanceAnchor, statement -> {
+                        if (BIODIVERSITY_DATASET_GRAPH.equals(statement.getSubject())
+                                && HAS_VERSION.equals(statement.getPredicate())) {
+                            reachedFirstVersion.set(true);
+                        } else if (WAS_DERIVED_FROM.equals(statement.getPredicate())) {
+                            earliestVersion.set(statement.getObject());
+                        }
+                        listener.on(statement);
+                    });
+                } catch (IOException | RuntimeException e) {
+                    failures.add("failed to replay provenance of [" + provenanceAnchor.getIRIString() + "]: " + e.getMessage());
+                    throw e;
+                }
+            }
+
+            @Override
+            public void stopProcessing() {
+                tracer.stopProcessing();
+            }
+
+            @Override
+            public boolean shouldKeepProcessing() {
+                return tracer.shouldKeepProcessing();
+            }
+        };
+    }
+
+    private void markContentIds(RDFTerm term) {
+        Matcher matcher = CONTENT_ID_PATTERN.matcher(term.ntriplesString());
+        while (matcher.find()) {
+            try {
+                marks.mark(toIRI(matcher.group()));
+            } catch (IOException e) {
+                throw new RuntimeException("failed to mark [" + matcher.group() + "]", e);
+            }
+        }
+    }
+
+    private void sweep() throws IOException {
+        AtomicLong garbageCount = new AtomicLong(0);
+        AtomicLong garbageBytes = new AtomicLong(0);
+
+        ContentSweeper.SweepListener listener = (file, contentId) -> {
+            long size = file.length();
+            boolean deleted = delete && Files.deleteIfExists(file.toPath());
+            garbageCount.incrementAndGet();
+            garbageBytes.addAndGet(size);
+            String id = contentId == null ? file.toURI().toString() : contentId.getIRIString();
+            print(id
+                    + "\t" + (contentId == null ? "ORPHANED" : "UNREFERENCED")
+                    + "\t" + size
+                    + "\t" + (deleted ? "DELETED" : "KEPT")
+                    + "\n", LogErrorHandlerExitOnError.EXIT_ON_ERROR);
+        };
+
+        long tmpMinAgeMillis = TimeUnit.HOURS.toMillis(tmpMinAgeHours);
+        new ContentSweeper(new File(getDataDir()), marks, threads, tmpMinAgeMillis).sweep(listener);
+
+        long tmpModifiedBefore = System.currentTimeMillis() - tmpMinAgeMillis;
+        File[] cacheFiles = new File(getTmpDir()).listFiles(file -> file.isFile()
+                && StringUtils.startsWith(file.getName(), CACHE_FILE_PREFIX)
+                && StringUtils.endsWith(file.getName(), TMP_SUFFIX)
+                && file.lastModified() <= tmpModifiedBefore);
+        if (cacheFiles != null) {
+            for (File cacheFile : cacheFiles) {
+                listener.onGarbage(cacheFile, null);
+            }
+        }
+
+        LOG.info("found [" + garbageCount.get() + "] garbage files of [" + garbageBytes.get() + "] bytes" + (delete ? " (deleted)" : ""));
+    }
+
+    @Override
+    protected KeyValueStore getKeyValueStore(ValidatingKeyValueStreamFactory kvStreamFactory) {
+        KeyValueStore keyValueStore = super.getKeyValueStore(kvStreamFactory);
+        return marks == null
+                ? keyValueStore
+                : new KeyValueStoreMarking(keyValueStore, marks);
+    }
+
+    @Override
+    public synchronized void print(String msg, LogErrorHandler handler) {
+        super.print(msg, handler);
+    }
+
+    public void setDelete(Boolean delete) {
+        this.delete = delete;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setTmpMinAgeHours(long tmpMinAgeHours) {
+        this.tmpMinAgeHours = tmpMinAgeHours;
+    }
+
+    private static Pattern contentIdPattern() {
+        List<String> patterns = new ArrayList<>();
+        for (HashType type : HashType.values()) {
+            patterns.add(type.getIRIPatternString());
+        }
+        return Pattern.compile(StringUtils.join(patterns, "|"));
+    }
+
+}
@@ -64,6 +64,7 @@ public class CmdGrep extends LoggingPersisting implements Runnable {
                 this,
                 blobStoreReadOnly,
                 listener);
+        textMatcher.setCharsetDetector(getCharsetDetector());
 
         StatementsEmitterAdapter emitter = new StatementsEmitterAdapter() {
 
@@ -0,0 +1,107 @@
+package bio.guoda.preston.cmd;
+
+import bio.guoda.preston.RefNodeFactory;
+import bio.guoda.preston.store.HexaStoreImpl;
+import bio.guoda.preston.store.KeyExistenceFilterBloom;
+import bio.guoda.preston.store.ProvenanceIndexRebuilder;
+import bio.guoda.preston.store.ValidatingKeyValueStreamContentAddressedFactory;
+import bio.guoda.preston.store.ValidatingKeyValueStreamHashTypeIRIFactory;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDFTerm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static bio.guoda.preston.RefNodeConstants.HAS_PREVIOUS_VERSION;
+
+@CommandLine.Command(
+        name = "index",
+        description = "Checks (or, optionally, rebuilds) the provenance index of the local data dir by parsing all provenance logs in the data dir in parallel."
+)
+public class CmdIndex extends PersistingLocal implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CmdIndex.class);
+
+    @CommandLine.Option(
+            names = {"--rebuild"},
+            description = "Write missing index entries. Existing entries are kept, so an interrupted rebuild can be restarted."
+    )
+    private Boolean rebuild = false;
+
+    @CommandLine.Option(
+            names = {"--threads"},
+            description = "number of threads used to parse provenance logs in parallel (default: \"${DEFAULT-VALUE}\")"
+    )
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public void run() {
+        ProvenanceIndexRebuilder rebuilder = new ProvenanceIndexRebuilder(
+                getKeyValueStore(new ValidatingKeyValueStreamContentAddressedFactory()),
+                getHashType(),
+                threads
+        );
+
+        HexaStoreImpl index = new HexaStoreImpl(
+                getKeyValueStore(new ValidatingKeyValueStreamHashTypeIRIFactory()),
+                getHashType()
+        );
+
+        Map<ProvenanceIndexRebuilder.LinkState, Integer> counts = new EnumMap<>(ProvenanceIndexRebuilder.LinkState.class);
+        try (Stream<Path> paths = Files.walk(new File(getDataDir()).toPath())) {
+            Map<IRI, List<IRI>> logs = rebuilder.findLogs(paths
+                    .filter(Files::isRegularFile)
+                    .map(KeyExistenceFilterBloom::keyForPath)
+                    .filter(Objects::nonNull)
+                    .map(RefNodeFactory::toIRI)
+                    .iterator());
+            LOG.info("found [" + logs.size() + "] provenance logs in [" + getDataDir() + "]");
+
+            List<Pair<Pair<RDFTerm, RDFTerm>, IRI>> links = rebuilder.findLinks(logs);
+            rebuilder.writeLinks(links, index, !rebuild, (query, version, indexedVersion, state) -> {
+                counts.merge(state, 1, Integer::sum);
+                print(toLine(query, version, state), LogErrorHandlerExitOnError.EXIT_ON_ERROR);
+                if (state == ProvenanceIndexRebuilder.LinkState.CONFLICT) {
+                    LOG.warn("index points to [" + (indexedVersion == null ? "an invalid version" : indexedVersion.getIRIString()) + "] instead of [" + version.getIRIString() + "] for [" + toString(query.getRight()) + "]");
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("failed to " + (rebuild ? "rebuild" : "check") + " provenance index of [" + getDataDir() + "]", e);
+        }
+
+        LOG.info("index entries: " + counts);
+    }
+
+    private static String toLine(Pair<RDFTerm, RDFTerm> query, IRI version, ProvenanceIndexRebuilder.LinkState state) {
+        String statement = HAS_PREVIOUS_VERSION.equals(query.getLeft())
+                ? version.getIRIString() + "\t" + toString(query.getLeft()) + "\t" + toString(query.getRight())
+                : toString(query.getLeft()) + "\t" + toString(query.getRight()) + "\t" + version.getIRIString();
+        return statement + "\t" + state + "\n";
+    }
+
+    private static String toString(RDFTerm term) {
+        return term instanceof IRI
+                ? ((IRI) term).getIRIString()
+                : term.ntriplesString();
+    }
+
+    public void setRebuild(Boolean rebuild) {
+        this.rebuild = rebuild;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+}
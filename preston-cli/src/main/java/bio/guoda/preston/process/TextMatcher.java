@@ -3,6 +3,7 @@ package bio.guoda.preston.process;
 import bio.guoda.preston.RefNodeFactory;
 import bio.guoda.preston.store.KeyValueStoreReadOnly;
 import bio.guoda.preston.stream.ArchiveStreamHandler;
+import bio.guoda.preston.stream.CharsetDetector;
 import bio.guoda.preston.stream.CompressedStreamHandler;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
@@ -41,6 +42,7 @@ public class TextMatcher extends ProcessorReadOnly {
     private final ProcessorState processorState;
     private int batchSize = 256;
     private final int maxNumMatchesPerContent;
+    private CharsetDetector charsetDetector = CharsetDetector.UNIVERSAL;
 
     public TextMatcher(Pattern pattern,
                        int maxNumMatchesPerContent,
@@ -90,17 +92,19 @@ public class TextMatcher extends ProcessorReadOnly {
         public MyContentStreamHandlerImpl(StatementEmitter emitter) {
             this.emitter = emitter;
 
+            MatchingTextStreamHandler matchingTextHandler = new MatchingTextStreamHandler(this, this, pattern, reportOnlyMatchingText);
+            matchingTextHandler.setCharsetDetector(charsetDetector);
             if (separateLines) {
                 this.handler = new ContentStreamHandlerImpl(
                         new ArchiveStreamHandler(this),
                         new CompressedStreamHandler(this),
-                        new LineStreamHandler(this),
-                        new MatchingTextStreamHandler(this, this, pattern, reportOnlyMatchingText));
+                        new LineStreamHandler(this, charsetDetector),
+                        matchingTextHandler);
             } else {
                 this.handler = new ContentStreamHandlerImpl(
                         new ArchiveStreamHandler(this),
                         new CompressedStreamHandler(this),
-                        new MatchingTextStreamHandler(this, this, pattern, reportOnlyMatchingText));
+                        matchingTextHandler);
             }
         }
 
@@ -132,6 +136,10 @@ public class TextMatcher extends ProcessorReadOnly {
         this.batchSize = batchSize;
     }
 
+    public void setCharsetDetector(CharsetDetector charsetDetector) {
+        this.charsetDetector = charsetDetector;
+    }
+
     public int getBatchSize() {
         return batchSize;
     }
@@ -4,8 +4,6 @@ import bio.guoda.preston.process.StatementsEmitter;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Quad;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.txt.UniversalEncodingDetector;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -46,6 +44,8 @@ public class MatchingTextStreamHandler implements ContentStreamHandler {
     private final Map<Integer, String> patternGroupNames;
     private final boolean reportOnlyMatchingText;
 
+    private CharsetDetector charsetDetector = CharsetDetector.UNIVERSAL;
+
     public MatchingTextStreamHandler(ContentStreamHandler contentStreamHandler, StatementsEmitter emitter, Pattern pattern, boolean reportOnlyMatchingText) {
         this.contentStreamHandler = contentStreamHandler;
         this.emitter = emitter;
@@ -62,7 +62,7 @@ public class MatchingTextStreamHandler implements ContentStreamHandler {
     public boolean handle(IRI version, InputStream is) throws ContentStreamException {
         Charset charset;
         try {
-            charset = new UniversalEncodingDetector().detect(is, new Metadata());
+            charset = ContentStreamUtil.detectCharset(version, is, charsetDetector);
         } catch (IOException e) {
             throw new ContentStreamException("failed to detect charset", e);
         }
@@ -263,5 +263,7 @@ public class MatchingTextStreamHandler implements ContentStreamHandler {
         }
     }
 
-
+    public void setCharsetDetector(CharsetDetector charsetDetector) {
+        this.charsetDetector = charsetDetector;
+    }
 }
@@ -0,0 +1,155 @@
+package bio.guoda.preston.cmd;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class CmdGarbageCollectTest {
+
+    private static final String UNREFERENCED = "eb3962e0168048b6f40c80fb6503edd80a60978d9215f0883aaca9505df740fc";
+    private static final String[] REFERENCED = new String[]{
+            // index entries
+            "2a/5d/2a5de79372318317a382ea9a2cef069780b852b01210ef59e06b640a3539cb5a",
+            "21/79/2179873ce20ec51dc91c98227f720bf5e873a5644b0ad9d83047490ff87b3501",
+            // provenance logs
+            "4a/43/4a433c2a09146e4df5e860a26cf3ecd0d484ec372674b192b3963350e928d697",
+            "68/8a/688a0a1bebf9266b310df9c121fea4c6977b10cf473705af0bdd154f8bc0aa34",
+            // content
+            "19/d4/19d497c9449d2d3071fe6f66c662a344bc20694bd61160143a6f6ecb76f8fc77",
+            "57/f4/57f4d75eb1f3942a6abb54593741b7925edd835256d6b7e5c651a3526382ebbf"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dataDir;
+    private File tmpDir;
+
+    @Before
+    public void init() throws IOException, URISyntaxException {
+        URL queryIndex = getClass().getResource("history/dataindex/2a/5d/2a5de79372318317a382ea9a2cef069780b852b01210ef59e06b640a3539cb5a");
+        assertNotNull(queryIndex);
+        File indexAndContent = new File(queryIndex.toURI()).getParentFile().getParentFile().getParentFile();
+
+        dataDir = folder.newFolder("data");
+        tmpDir = folder.newFolder("tmp");
+        FileUtils.copyDirectory(indexAndContent, dataDir);
+        FileUtils.writeStringToFile(new File(dataDir, "eb/39/" + UNREFERENCED), "whatsup\n", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(dataDir, "eb/39/" + UNREFERENCED + ".tmp"), "whats", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(tmpDir, "cacheFile123.tmp"), "what", StandardCharsets.UTF_8);
+        long twoDaysAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+        assertThat(new File(dataDir, "eb/39/" + UNREFERENCED + ".tmp").setLastModified(twoDaysAgo), is(true));
+        assertThat(new File(tmpDir, "cacheFile123.tmp").setLastModified(twoDaysAgo), is(true));
+    }
+
+    @Test
+    public void listGarbage() {
+        String actual = run(false);
+
+        assertThat(actual, containsString("hash://sha256/" + UNREFERENCED + "\tUNREFERENCED\t8\tKEPT\n"));
+        assertThat(actual, containsString(UNREFERENCED + ".tmp\tORPHANED\t5\tKEPT\n"));
+        assertThat(actual, containsString("cacheFile123.tmp\tORPHANED\t4\tKEPT\n"));
+        assertThat(actual.split("\n").length, is(3));
+        assertThat(new File(dataDir, "eb/39/" + UNREFERENCED).exists(), is(true));
+    }
+
+    @Test
+    public void deleteGarbage() {
+        String actual = run(true);
+
+        assertThat(actual, containsString("hash://sha256/" + UNREFERENCED + "\tUNREFERENCED\t8\tDELETED\n"));
+        assertThat(new File(dataDir, "eb/39/" + UNREFERENCED).exists(), is(false));
+        assertThat(new File(dataDir, "eb/39/" + UNREFERENCED + ".tmp").exists(), is(false));
+        assertThat(new File(tmpDir, "cacheFile123.tmp").exists(), is(false));
+        for (String referenced : REFERENCED) {
+            assertThat(referenced, new File(dataDir, referenced).exists(), is(true));
+            assertThat(actual, not(containsString(referenced)));
+        }
+    }
+
+    @Test
+    public void keepRecentTemporaryFiles() throws IOException {
+        FileUtils.writeStringToFile(new File(dataDir, "eb/39/" + UNREFERENCED + ".1.tmp"), "whats", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(tmpDir, "cacheFile456.tmp"), "what", StandardCharsets.UTF_8);
+
+        String actual = run(true);
+
+        assertThat(actual, containsString(UNREFERENCED + ".tmp\tORPHANED\t5\tDELETED\n"));
+        assertThat(actual, containsString("cacheFile123.tmp\tORPHANED\t4\tDELETED\n"));
+        assertThat(actual, not(containsString(UNREFERENCED + ".1.tmp")));
+        assertThat(actual, not(containsString("cacheFile456.tmp")));
+        assertThat(new File(dataDir, "eb/39/" + UNREFERENCED + ".1.tmp").exists(), is(true));
+        assertThat(new File(tmpDir, "cacheFile456.tmp").exists(), is(true));
+    }
+
+    @Test
+    public void skipSweepWithoutProvenance() throws IOException {
+        FileUtils.deleteQuietly(new File(dataDir, "2a"));
+
+        assertThat(run(true), is(""));
+        assertThat(new File(dataDir, "eb/39/" + UNREFERENCED).exists(), is(true));
+    }
+
+    @Test
+    public void keepAllWithMissingProvenanceLog() {
+        // previous version of the most recent provenance log
+        FileUtils.deleteQuietly(new File(dataDir, "4a/43/4a433c2a09146e4df5e860a26cf3ecd0d484ec372674b192b3963350e928d697"));
+
+        try {
+            run(true);
+            fail("expected garbage collection to fail on missing provenance log");
+        } catch (RuntimeException e) {
+            assertThat(e.getCause().getMessage(), containsString("hash://sha256/4a433c2a09146e4df5e860a26cf3ecd0d484ec372674b192b3963350e928d697"));
+        }
+
+        assertThat(new File(dataDir, "eb/39/" + UNREFERENCED).exists(), is(true));
+        assertThat(new File(dataDir, "eb/39/" + UNREFERENCED + ".tmp").exists(), is(true));
+        assertThat(new File(tmpDir, "cacheFile123.tmp").exists(), is(true));
+        assertThat(new File(dataDir, "57/f4/57f4d75eb1f3942a6abb54593741b7925edd835256d6b7e5c651a3526382ebbf").exists(), is(true));
+        assertThat(new File(dataDir, "19/d4/19d497c9449d2d3071fe6f66c662a344bc20694bd61160143a6f6ecb76f8fc77").exists(), is(true));
+    }
+
+    @Test
+    public void keepAllWithUnparseableProvenanceLog() throws IOException {
+        FileUtils.writeStringToFile(new File(dataDir, "4a/43/4a433c2a09146e4df5e860a26cf3ecd0d484ec372674b192b3963350e928d697"), "not a statement\n", StandardCharsets.UTF_8, true);
+
+        try {
+            run(true);
+            fail("expected garbage collection to fail on unparseable provenance log");
+        } catch (RuntimeException e) {
+            assertThat(e.getCause().getMessage(), containsString("not a statement"));
+        }
+
+        assertThat(new File(dataDir, "eb/39/" + UNREFERENCED).exists(), is(true));
+    }
+
+    private String run(boolean delete) {
+        CmdGarbageCollect cmd = new CmdGarbageCollect();
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        cmd.setOutputStream(stdout);
+        cmd.setDataDir(dataDir.getAbsolutePath());
+        cmd.setTmpDir(tmpDir.getAbsolutePath());
+        cmd.setDelete(delete);
+        cmd.setThreads(2);
+        cmd.run();
+        return new String(stdout.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
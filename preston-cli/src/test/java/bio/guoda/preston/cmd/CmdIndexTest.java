@@ -0,0 +1,88 @@
+package bio.guoda.preston.cmd;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertNotNull;
+
+public class CmdIndexTest {
+
+    private static final String ROOT_ENTRY = "2a/5d/2a5de79372318317a382ea9a2cef069780b852b01210ef59e06b640a3539cb5a";
+    private static final String PREVIOUS_VERSION_ENTRY = "21/79/2179873ce20ec51dc91c98227f720bf5e873a5644b0ad9d83047490ff87b3501";
+
+    private static final String EXPECTED_LINKS =
+            "hash://sha256/688a0a1bebf9266b310df9c121fea4c6977b10cf473705af0bdd154f8bc0aa34\thttp://purl.org/pav/previousVersion\thash://sha256/4a433c2a09146e4df5e860a26cf3ecd0d484ec372674b192b3963350e928d697\t%s\n" +
+                    "urn:uuid:0659a54f-b713-4f86-a917-5be166a14110\thttp://purl.org/pav/hasVersion\thash://sha256/4a433c2a09146e4df5e860a26cf3ecd0d484ec372674b192b3963350e928d697\t%s\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dataDir;
+    private String rootEntry;
+    private String previousVersionEntry;
+
+    @Before
+    public void init() throws IOException, URISyntaxException {
+        URL queryIndex = getClass().getResource("history/dataindex/" + ROOT_ENTRY);
+        assertNotNull(queryIndex);
+        File indexAndContent = new File(queryIndex.toURI()).getParentFile().getParentFile().getParentFile();
+
+        dataDir = folder.newFolder("data");
+        FileUtils.copyDirectory(indexAndContent, dataDir);
+        rootEntry = FileUtils.readFileToString(new File(dataDir, ROOT_ENTRY), StandardCharsets.UTF_8);
+        previousVersionEntry = FileUtils.readFileToString(new File(dataDir, PREVIOUS_VERSION_ENTRY), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void checkIntactIndex() throws IOException {
+        assertThat(run(false), is(String.format(EXPECTED_LINKS, "PRESENT", "PRESENT")));
+    }
+
+    @Test
+    public void rebuildLostIndex() throws IOException {
+        FileUtils.forceDelete(new File(dataDir, ROOT_ENTRY));
+        FileUtils.forceDelete(new File(dataDir, PREVIOUS_VERSION_ENTRY));
+
+        assertThat(run(false), is(String.format(EXPECTED_LINKS, "MISSING", "MISSING")));
+        assertThat(new File(dataDir, ROOT_ENTRY).exists(), is(false));
+
+        assertThat(run(true), is(String.format(EXPECTED_LINKS, "WRITTEN", "WRITTEN")));
+        assertThat(FileUtils.readFileToString(new File(dataDir, ROOT_ENTRY), StandardCharsets.UTF_8), is(rootEntry));
+        assertThat(FileUtils.readFileToString(new File(dataDir, PREVIOUS_VERSION_ENTRY), StandardCharsets.UTF_8), is(previousVersionEntry));
+
+        assertThat(run(true), is(String.format(EXPECTED_LINKS, "PRESENT", "PRESENT")));
+    }
+
+    @Test
+    public void rebuildPartiallyLostIndex() throws IOException {
+        FileUtils.forceDelete(new File(dataDir, PREVIOUS_VERSION_ENTRY));
+
+        assertThat(run(true), is(String.format(EXPECTED_LINKS, "WRITTEN", "PRESENT")));
+        assertThat(FileUtils.readFileToString(new File(dataDir, PREVIOUS_VERSION_ENTRY), StandardCharsets.UTF_8), is(previousVersionEntry));
+    }
+
+    private String run(boolean rebuild) {
+        CmdIndex cmd = new CmdIndex();
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        cmd.setOutputStream(stdout);
+        cmd.setDataDir(dataDir.getAbsolutePath());
+        cmd.setTmpDir(folder.getRoot().getAbsolutePath() + "/tmp");
+        cmd.setRebuild(rebuild);
+        cmd.setThreads(2);
+        cmd.run();
+        return new String(stdout.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
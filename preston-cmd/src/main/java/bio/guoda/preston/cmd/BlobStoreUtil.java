@@ -4,12 +4,15 @@ import bio.guoda.preston.RefNodeConstants;
 import bio.guoda.preston.RefNodeFactory;
 import bio.guoda.preston.process.EmittingStreamFactory;
 import bio.guoda.preston.process.EmittingStreamOfAnyQuad;
+import bio.guoda.preston.process.EmittingStreamOfBinaryQuads;
 import bio.guoda.preston.process.ParsingEmitter;
 import bio.guoda.preston.process.ProcessorState;
 import bio.guoda.preston.process.StatementEmitter;
 import bio.guoda.preston.process.StatementsListener;
 import bio.guoda.preston.process.StatementsListenerAdapter;
 import bio.guoda.preston.store.AliasDereferencer;
+import bio.guoda.preston.store.BinaryLogDereferencer;
+import bio.guoda.preston.store.BlobStore;
 import bio.guoda.preston.store.BlobStoreReadOnly;
 import bio.guoda.preston.store.Dereferencer;
 import bio.guoda.preston.store.HashKeyUtil;
@@ -67,8 +70,17 @@ public class BlobStoreUtil {
     }
 
     public static BlobStoreReadOnly createResolvingBlobStoreFor(Dereferencer<InputStream> blobStore, Persisting persisting) {
+        boolean keepsDerivedContent = persisting.isThumbnailCacheEnabled() || persisting.isLineIndexEnabled();
+        ContentHashDereferencer contentHashDereferencer = keepsDerivedContent && blobStore instanceof BlobStore
+                ? new ContentHashDereferencer(
+                (BlobStore) blobStore,
+                persisting.isThumbnailCacheEnabled() ? persisting.getThumbnailIndex() : null,
+                persisting.isLineIndexEnabled() ? persisting.getLineOffsetIndex() : null,
+                persisting.getCharsetDetector())
+                : new ContentHashDereferencer(blobStore, persisting.getCharsetDetector());
+        contentHashDereferencer.setTmpDir(new File(persisting.getTmpDir()));
         return new AliasDereferencer(
-                new ContentHashDereferencer(blobStore),
+                contentHashDereferencer,
                 persisting,
                 persisting.getProvenanceTracer()
         );
@@ -130,12 +142,24 @@ public class BlobStoreUtil {
                 return statement.getSubject() instanceof IRI && statement.getObject() instanceof IRI;
             }
         };
-        ReplayUtil.replay(listener, persisting, new EmittingStreamFactory() {
-            @Override
-            public ParsingEmitter createEmitter(StatementEmitter emitter, ProcessorState context) {
-                return new EmittingStreamOfAnyQuad(emitter, context);
-            }
-        });
+        if (persisting.isBinaryLogsEnabled()) {
+            ReplayUtil.replay(listener,
+                    persisting,
+                    new BinaryLogDereferencer(ReplayUtil.getBlobStore(persisting), persisting.getBinaryLogIndex(), new File(persisting.getTmpDir())),
+                    new EmittingStreamFactory() {
+                        @Override
+                        public ParsingEmitter createEmitter(StatementEmitter emitter, ProcessorState context) {
+                            return new EmittingStreamOfBinaryQuads(emitter, context);
+                        }
+                    });
+        } else {
+            ReplayUtil.replay(listener, persisting, new EmittingStreamFactory() {
+                @Override
+                public ParsingEmitter createEmitter(StatementEmitter emitter, ProcessorState context) {
+                    return new EmittingStreamOfAnyQuad(emitter, context);
+                }
+            });
+        }
         stopWatch.stop();
         LOG.info("version index for [" + provenanceAnchor + "] with [" + index.get() + "] versions built in [" + stopWatch.getTime(TimeUnit.SECONDS) + "] s");
 
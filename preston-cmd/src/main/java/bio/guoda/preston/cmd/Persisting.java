@@ -65,7 +65,9 @@ public class Persisting extends PersistingLocal {
                     getRemotes(),
                     getHashType(),
                     getProgressListener(),
-                    isSupportTarGzDiscovery()
+                    isSupportTarGzDiscovery(),
+                    getExistenceFilter(),
+                    isCompressionEnabled()
             );
     }
 
@@ -2,7 +2,11 @@ package bio.guoda.preston.cmd;
 
 import bio.guoda.preston.HashType;
 import bio.guoda.preston.RefNodeConstants;
+import bio.guoda.preston.metrics.Metrics;
+import bio.guoda.preston.store.BinaryLogIndex;
 import bio.guoda.preston.store.HexaStoreImpl;
+import bio.guoda.preston.store.KeyExistenceFilter;
+import bio.guoda.preston.store.KeyExistenceFilterBloom;
 import bio.guoda.preston.store.KeyValueStore;
 import bio.guoda.preston.store.KeyValueStoreConfig;
 import bio.guoda.preston.store.KeyValueStoreFactoryImpl;
@@ -13,6 +17,10 @@ import bio.guoda.preston.store.ProvenanceTracerImpl;
 import bio.guoda.preston.store.ValidatingKeyValueStreamContentAddressedFactory;
 import bio.guoda.preston.store.ValidatingKeyValueStreamFactory;
 import bio.guoda.preston.store.ValidatingKeyValueStreamHashTypeIRIFactory;
+import bio.guoda.preston.stream.CharsetDetector;
+import bio.guoda.preston.stream.CharsetDetectorIndexed;
+import bio.guoda.preston.stream.LineOffsetIndex;
+import bio.guoda.preston.stream.ThumbnailIndex;
 import org.apache.commons.collections4.Factory;
 import org.apache.commons.io.FileUtils;
 import picocli.CommandLine;
@@ -49,6 +57,69 @@ public class PersistingLocal extends CmdWithProvenance {
     )
     private HashType hashType = HashType.sha256;
 
+    @CommandLine.Option(
+            names = {"--existence-filter"},
+            description = "Consult a persistent Bloom filter of locally stored content before accessing the data dir. Remove [data-dir]/" + KeyExistenceFilterBloom.FILTER_FILENAME + " to rebuild the filter. Content stored without this option marks the filter for a rebuild."
+    )
+    private Boolean existenceFilterEnabled = false;
+
+    private KeyExistenceFilter existenceFilter = null;
+
+    @CommandLine.Option(
+            names = {"--compress-content"},
+            description = "Store new content gzip-compressed in the data dir, unless already compressed. Stored content is decompressed on retrieval."
+    )
+    private Boolean compressionEnabled = false;
+
+    @CommandLine.Option(
+            names = {"--charset-index"},
+            description = "Remember charsets detected for content in [data-dir]/" + CharsetDetectorIndexed.INDEX_FILENAME + ", so that the same content is not analyzed again on later runs."
+    )
+    private Boolean charsetIndexEnabled = false;
+
+    private CharsetDetector charsetDetector = null;
+
+    @CommandLine.Option(
+            names = {"--thumbnail-cache"},
+            description = "Keep thumbnails created from images in the data dir, indexed in [data-dir]/" + ThumbnailIndex.INDEX_FILENAME + ", so that the same thumbnail is not created again on later requests."
+    )
+    private Boolean thumbnailCacheEnabled = false;
+
+    private ThumbnailIndex thumbnailIndex = null;
+
+    @CommandLine.Option(
+            names = {"--line-index"},
+            description = "Keep sparse indexes of line offsets of text in the data dir, indexed in [data-dir]/" + LineOffsetIndex.INDEX_FILENAME + ", so that selected lines (e.g., line:hash://sha256/...!/L1000000) are read from the nearest indexed line instead of from the start of the text."
+    )
+    private Boolean lineIndexEnabled = false;
+
+    private LineOffsetIndex lineOffsetIndex = null;
+
+    @CommandLine.Option(
+            names = {"--binary-logs"},
+            description = "Keep binary, dictionary-encoded forms of provenance logs in the data dir, indexed in [data-dir]/" + BinaryLogIndex.INDEX_FILENAME + ", so that provenance logs are decoded instead of parsed as N-Quads when building version indexes on later runs."
+    )
+    private Boolean binaryLogsEnabled = false;
+
+    private BinaryLogIndex binaryLogIndex = null;
+
+    private File metricsFile = null;
+
+    @CommandLine.Option(
+            names = {"--metrics-file"},
+            description = "Write metrics (e.g., blob store, http and hashing latencies, and statement throughput) in Prometheus text format to given file on exit."
+    )
+    public void setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+        if (metricsFile != null) {
+            Metrics.dumpOnExit(metricsFile);
+        }
+    }
+
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
     static File mkdir(String data1) {
         File data = new File(data1);
         try {
@@ -68,7 +139,58 @@ public class PersistingLocal extends CmdWithProvenance {
     }
 
     protected KeyValueStoreConfig getKeyValueStoreConfig() {
-        return new KeyValueStoreConfig(new File(getDataDir()), new File(getTmpDir()), getDepth());
+        return new KeyValueStoreConfig(new File(getDataDir()), new File(getTmpDir()), getDepth(), getExistenceFilter(), isCompressionEnabled());
+    }
+
+    protected KeyExistenceFilter getExistenceFilter() {
+        if (existenceFilter == null) {
+            existenceFilter = existenceFilterEnabled
+                    ? load(KeyExistenceFilterBloom::load, "key existence filter")
+                    : KeyExistenceFilterBloom.invalidating(new File(getDataDir()));
+        }
+        return existenceFilter;
+    }
+
+    protected CharsetDetector getCharsetDetector() {
+        if (charsetDetector == null) {
+            charsetDetector = charsetIndexEnabled
+                    ? load(dataDir -> CharsetDetectorIndexed.load(dataDir, CharsetDetector.UNIVERSAL), "charset index")
+                    : CharsetDetector.UNIVERSAL;
+        }
+        return charsetDetector;
+    }
+
+    protected ThumbnailIndex getThumbnailIndex() {
+        if (thumbnailIndex == null) {
+            thumbnailIndex = load(ThumbnailIndex::load, "thumbnail index");
+        }
+        return thumbnailIndex;
+    }
+
+    protected LineOffsetIndex getLineOffsetIndex() {
+        if (lineOffsetIndex == null) {
+            lineOffsetIndex = load(LineOffsetIndex::load, "line offset index");
+        }
+        return lineOffsetIndex;
+    }
+
+    protected BinaryLogIndex getBinaryLogIndex() {
+        if (binaryLogIndex == null) {
+            binaryLogIndex = load(BinaryLogIndex::load, "binary log index");
+        }
+        return binaryLogIndex;
+    }
+
+    private interface DataDirLoader<T> {
+        T load(File dataDir) throws IOException;
+    }
+
+    private <T> T load(DataDirLoader<T> loader, String description) {
+        try {
+            return loader.load(new File(getDataDir()));
+        } catch (IOException e) {
+            throw new RuntimeException("failed to load " + description + " for [" + getDataDir() + "]", e);
+        }
     }
 
     protected KeyValueStore getKeyValueStore(ValidatingKeyValueStreamFactory kvStreamFactory) {
@@ -135,6 +257,51 @@ public class PersistingLocal extends CmdWithProvenance {
         this.tmpDir = tmpDir;
     }
 
+    public void setExistenceFilterEnabled(Boolean existenceFilterEnabled) {
+        this.existenceFilterEnabled = existenceFilterEnabled;
+        this.existenceFilter = null;
+    }
+
+    public void setCharsetIndexEnabled(Boolean charsetIndexEnabled) {
+        this.charsetIndexEnabled = charsetIndexEnabled;
+        this.charsetDetector = null;
+    }
+
+    public boolean isThumbnailCacheEnabled() {
+        return thumbnailCacheEnabled;
+    }
+
+    public void setThumbnailCacheEnabled(Boolean thumbnailCacheEnabled) {
+        this.thumbnailCacheEnabled = thumbnailCacheEnabled;
+        this.thumbnailIndex = null;
+    }
+
+    public boolean isLineIndexEnabled() {
+        return lineIndexEnabled;
+    }
+
+    public void setLineIndexEnabled(Boolean lineIndexEnabled) {
+        this.lineIndexEnabled = lineIndexEnabled;
+        this.lineOffsetIndex = null;
+    }
+
+    public boolean isBinaryLogsEnabled() {
+        return binaryLogsEnabled;
+    }
+
+    public void setBinaryLogsEnabled(Boolean binaryLogsEnabled) {
+        this.binaryLogsEnabled = binaryLogsEnabled;
+        this.binaryLogIndex = null;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(Boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
     public HashType getHashType() {
         return hashType;
     }
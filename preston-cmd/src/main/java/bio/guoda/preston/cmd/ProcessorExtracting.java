@@ -6,6 +6,7 @@ import bio.guoda.preston.process.ProcessorState;
 import bio.guoda.preston.process.StatementsEmitterAdapter;
 import bio.guoda.preston.process.StatementsListener;
 import bio.guoda.preston.store.BlobStoreReadOnly;
+import bio.guoda.preston.stream.CharsetDetector;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
 import org.apache.commons.rdf.api.BlankNodeOrIRI;
@@ -34,6 +35,8 @@ public abstract class ProcessorExtracting extends ProcessorReadOnly {
 
     private EmitSelector selector = new EmitBySize(256);
 
+    private CharsetDetector charsetDetector = CharsetDetector.UNIVERSAL;
+
     public ProcessorExtracting(BlobStoreReadOnly blobStoreReadOnly,
                                ProcessorState processorState,
                                StatementsListener... listeners) {
@@ -72,6 +75,14 @@ public abstract class ProcessorExtracting extends ProcessorReadOnly {
         this.selector = selector;
     }
 
+    public CharsetDetector getCharsetDetector() {
+        return charsetDetector;
+    }
+
+    public void setCharsetDetector(CharsetDetector charsetDetector) {
+        this.charsetDetector = charsetDetector;
+    }
+
     public abstract ContentStreamHandler getStreamHandler(BatchingEmitter batchingStatementEmitter);
 
     public class BatchingEmitter extends StatementsEmitterAdapter {
@@ -109,7 +109,22 @@ public final class ReplayUtil {
                 emitterFactory);
     }
 
-    static BlobStoreReadOnly getBlobStore(Persisting persisting) {
+    static void replay(StatementsListener listener,
+                       Persisting persisting,
+                       Dereferencer<InputStream> provenanceLogStore,
+                       EmittingStreamFactory emitterFactory) {
+        StatementIRIProcessor processor = new StatementIRIProcessor(listener);
+        processor.setIriProcessor(new IRIFixingProcessor());
+
+        attemptReplay(
+                provenanceLogStore,
+                new CmdContext(persisting, persisting.getProvenanceAnchor(), processor),
+                persisting.getProvenanceTracer(),
+                emitterFactory
+        );
+    }
+
+    static BlobStoreAppendOnly getBlobStore(Persisting persisting) {
         return new BlobStoreAppendOnly(
                 persisting.getKeyValueStore(new ValidatingKeyValueStreamContentAddressedFactory()),
                 true,
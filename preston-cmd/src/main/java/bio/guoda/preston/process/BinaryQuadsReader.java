@@ -0,0 +1,315 @@
+package bio.guoda.preston.process;
+
+import bio.guoda.preston.HashType;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.RDFTerm;
+import org.apache.commons.rdf.simple.SimpleRDF;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static bio.guoda.preston.process.BinaryQuadsWriter.FORMAT_VERSION;
+import static bio.guoda.preston.process.BinaryQuadsWriter.MAGIC;
+import static bio.guoda.preston.process.BinaryQuadsWriter.REF_NEW_TERM;
+import static bio.guoda.preston.process.BinaryQuadsWriter.REF_NO_GRAPH;
+import static bio.guoda.preston.process.BinaryQuadsWriter.REF_OFFSET;
+import static bio.guoda.preston.process.BinaryQuadsWriter.TERM_BLANK_NODE;
+import static bio.guoda.preston.process.BinaryQuadsWriter.TERM_CONTENT_ID;
+import static bio.guoda.preston.process.BinaryQuadsWriter.TERM_IRI;
+import static bio.guoda.preston.process.BinaryQuadsWriter.TERM_LITERAL;
+import static bio.guoda.preston.process.BinaryQuadsWriter.TERM_LITERAL_WITH_DATATYPE;
+import static bio.guoda.preston.process.BinaryQuadsWriter.TERM_LITERAL_WITH_LANGUAGE;
+
+/**
+ * Decodes quads written by {@link BinaryQuadsWriter}, one block at a time.
+ * <p>
+ * Instances are not thread-safe.
+ */
+
+public class BinaryQuadsReader {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final RDF rdf = new SimpleRDF();
+    private final InputStream is;
+    private final Inflater inflater = new Inflater();
+    private final List<RDFTerm> dictionary = new ArrayList<>();
+
+    private byte[] compressed = new byte[0];
+    private byte[] block = new byte[0];
+    private int position = 0;
+    private int blockLength = 0;
+    private int quadsInBlock = 0;
+    private String previousIRI = "";
+    private boolean headerRead = false;
+    private boolean done = false;
+
+    public BinaryQuadsReader(InputStream is) {
+        this.is = is;
+    }
+
+    /**
+     * @return next quad, or null if no quads are left
+     */
+
+    public Quad next() throws IOException {
+        if (!headerRead) {
+            readHeader(is);
+            headerRead = true;
+        }
+        if (quadsInBlock == 0 && !readBlock()) {
+            return null;
+        }
+        quadsInBlock--;
+
+        BlankNodeOrIRI subject = (BlankNodeOrIRI) readTerm();
+        IRI predicate = (IRI) readTerm();
+        RDFTerm object = readTerm();
+        BlankNodeOrIRI graphName = (BlankNodeOrIRI) readTerm();
+        if (quadsInBlock == 0 && position != blockLength) {
+            throw new IOException("expected end of block at [" + blockLength + "], but found [" + position + "]");
+        }
+        return rdf.createQuad(graphName, subject, predicate, object);
+    }
+
+    /**
+     * Reads the block index at the end of a binary provenance log.
+     *
+     * @return offset and number of quads of each block
+     */
+
+    public static List<long[]> readBlockIndex(SeekableByteChannel channel) throws IOException {
+        ByteBuffer indexOffset = ByteBuffer.allocate(Long.BYTES);
+        channel.position(channel.size() - Long.BYTES);
+        while (indexOffset.hasRemaining()) {
+            if (channel.read(indexOffset) < 0) {
+                throw new EOFException("failed to read block index offset");
+            }
+        }
+        indexOffset.flip();
+        channel.position(indexOffset.getLong());
+
+        ByteBuffer index = ByteBuffer.allocate((int) (channel.size() - channel.position()));
+        while (index.hasRemaining()) {
+            if (channel.read(index) < 0) {
+                throw new EOFException("failed to read block index");
+            }
+        }
+        index.flip();
+
+        if (readVarLong(index) != 0) {
+            throw new IOException("expected end of blocks, but found none");
+        }
+        int blockCount = (int) readVarLong(index);
+        List<long[]> blocks = new ArrayList<>(blockCount);
+        long offset = 0;
+        for (int i = 0; i < blockCount; i++) {
+            offset += readVarLong(index);
+            blocks.add(new long[]{offset, readVarLong(index)});
+        }
+        return blocks;
+    }
+
+    /**
+     * @return true if given bytes start like a binary provenance log
+     */
+
+    public static boolean hasMagic(byte[] bytes) {
+        return bytes.length >= MAGIC.length
+                && Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC);
+    }
+
+    private static void readHeader(InputStream is) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        IOUtils.readFully(is, magic);
+        if (!hasMagic(magic)) {
+            throw new IOException("not a binary provenance log: unexpected header [" + new String(magic, StandardCharsets.ISO_8859_1) + "]");
+        }
+        int version = is.read();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported binary provenance log version [" + version + "], expected [" + FORMAT_VERSION + "]");
+        }
+    }
+
+    private boolean readBlock() throws IOException {
+        if (done) {
+            return false;
+        }
+        int quadCount = readVarInt(is);
+        if (quadCount == 0) {
+            // block index follows, which is only needed for random access
+            done = true;
+            inflater.end();
+            return false;
+        }
+        int rawLength = readVarInt(is);
+        int compressedLength = readVarInt(is);
+        if (compressed.length < compressedLength) {
+            compressed = new byte[compressedLength];
+        }
+        if (block.length < rawLength) {
+            block = new byte[rawLength];
+        }
+        IOUtils.readFully(is, compressed, 0, compressedLength);
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(block, inflated, rawLength - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != rawLength) {
+                throw new IOException("expected block of [" + rawLength + "] bytes, but found [" + inflated + "]");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("failed to decompress block", e);
+        }
+
+        quadsInBlock = quadCount;
+        blockLength = rawLength;
+        position = 0;
+        dictionary.clear();
+        previousIRI = "";
+        return true;
+    }
+
+    private RDFTerm readTerm() throws IOException {
+        int ref = readVarInt();
+        if (ref == REF_NO_GRAPH) {
+            return null;
+        } else if (ref != REF_NEW_TERM) {
+            int id = ref - REF_OFFSET;
+            if (id >= dictionary.size()) {
+                throw new IOException("unknown term id [" + id + "] in dictionary of [" + dictionary.size() + "] terms");
+            }
+            return dictionary.get(id);
+        }
+
+        RDFTerm term;
+        int type = readByte();
+        switch (type) {
+            case TERM_IRI:
+                int sharedPrefixLength = readVarInt();
+                previousIRI = previousIRI.substring(0, sharedPrefixLength) + readString();
+                term = rdf.createIRI(previousIRI);
+                break;
+            case TERM_CONTENT_ID:
+                term = rdf.createIRI(readContentId());
+                break;
+            case TERM_BLANK_NODE:
+                term = rdf.createBlankNode(readString());
+                break;
+            case TERM_LITERAL:
+                term = rdf.createLiteral(readString());
+                break;
+            case TERM_LITERAL_WITH_LANGUAGE:
+                term = rdf.createLiteral(readString(), readString());
+                break;
+            case TERM_LITERAL_WITH_DATATYPE:
+                String lexicalForm = readString();
+                term = rdf.createLiteral(lexicalForm, (IRI) readTerm());
+                break;
+            default:
+                throw new IOException("unknown term type [" + type + "]");
+        }
+        dictionary.add(term);
+        return term;
+    }
+
+    private String readContentId() throws IOException {
+        int ordinal = readByte();
+        if (ordinal >= HashType.values().length) {
+            throw new IOException("unknown hash type [" + ordinal + "]");
+        }
+        HashType hashType = HashType.values()[ordinal];
+        int digestLength = hashType.getHexLength() / 2;
+        ensureAvailable(digestLength);
+        StringBuilder contentId = new StringBuilder(hashType.getIriStringLength());
+        contentId.append(hashType.getPrefix());
+        for (int i = 0; i < digestLength; i++) {
+            int b = block[position++] & 0xff;
+            contentId.append(HEX[b >>> 4]).append(HEX[b & 0x0f]);
+        }
+        return contentId.toString();
+    }
+
+    private String readString() throws IOException {
+        int length = readVarInt();
+        ensureAvailable(length);
+        String value = new String(block, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private int readByte() throws IOException {
+        ensureAvailable(1);
+        return block[position++] & 0xff;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private void ensureAvailable(int length) throws IOException {
+        if (length < 0 || position + length > blockLength) {
+            throw new IOException("unexpected end of block at [" + position + "]");
+        }
+    }
+
+    private static int readVarInt(InputStream is) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = is.read();
+            if (b < 0) {
+                throw new EOFException("unexpected end of binary provenance log");
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new EOFException("unexpected end of block index");
+            }
+            int b = buffer.get() & 0xff;
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+}
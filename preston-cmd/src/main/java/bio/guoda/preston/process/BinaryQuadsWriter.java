@@ -0,0 +1,284 @@
+package bio.guoda.preston.process;
+
+import bio.guoda.preston.HashType;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.BlankNode;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDFTerm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes quads into a compact, binary form of a provenance log, to be decoded by {@link BinaryQuadsReader}.
+ * <p>
+ * Quads are written in deflate-compressed blocks. Each block has its own dictionary of terms: a term is defined on first use,
+ * and referred to by its varint id afterwards. Content ids (e.g., hash://sha256/...) are stored as raw digest bytes,
+ * and other IRIs by the length of the prefix they share with the previously defined IRI, followed by the rest.
+ * Blocks are followed by an index of their offsets and quad counts, so that blocks can be located without decoding their predecessors.
+ * <p>
+ * Layout:
+ * <pre>
+ * [magic] [version]
+ * ([quad count] [raw length] [compressed length] [compressed block])*
+ * [0] [block count] ([offset delta] [quad count])* [index offset (8 bytes)]
+ * </pre>
+ * <p>
+ * Instances are not thread-safe. The last block and the index are written on {@link #close()}, which does not close the underlying stream.
+ */
+
+public class BinaryQuadsWriter implements Closeable {
+
+    static final byte[] MAGIC = {'P', 'N', 'Q', 'B'};
+    public static final int FORMAT_VERSION = 1;
+
+    static final int REF_NEW_TERM = 0;
+    static final int REF_NO_GRAPH = 1;
+    static final int REF_OFFSET = 2;
+
+    static final int TERM_IRI = 0;
+    static final int TERM_CONTENT_ID = 1;
+    static final int TERM_BLANK_NODE = 2;
+    static final int TERM_LITERAL = 3;
+    static final int TERM_LITERAL_WITH_LANGUAGE = 4;
+    static final int TERM_LITERAL_WITH_DATATYPE = 5;
+
+    static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+
+    private static final int MAX_QUADS_PER_BLOCK = 4096;
+    private static final int MAX_BLOCK_LENGTH = 1 << 18;
+
+    private final OutputStream os;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final BlockBuffer block = new BlockBuffer();
+    private final BlockBuffer header = new BlockBuffer();
+    private final Map<RDFTerm, Integer> dictionary = new HashMap<>();
+    private final List<long[]> blockIndex = new ArrayList<>();
+
+    private byte[] compressed = new byte[MAX_BLOCK_LENGTH];
+    private String previousIRI = "";
+    private int quadsInBlock = 0;
+    private long offset = 0;
+    private boolean closed = false;
+
+    public BinaryQuadsWriter(OutputStream os) throws IOException {
+        this.os = os;
+        header.write(MAGIC);
+        header.write(FORMAT_VERSION);
+        writeHeader();
+    }
+
+    public void write(Quad quad) throws IOException {
+        if (closed) {
+            throw new IOException("cannot write quad [" + quad + "]: writer already closed");
+        }
+        writeTerm(quad.getSubject());
+        writeTerm(quad.getPredicate());
+        writeTerm(quad.getObject());
+        Optional<BlankNodeOrIRI> graphName = quad.getGraphName();
+        if (graphName.isPresent()) {
+            writeTerm(graphName.get());
+        } else {
+            writeVarInt(block, REF_NO_GRAPH);
+        }
+        quadsInBlock++;
+        if (quadsInBlock >= MAX_QUADS_PER_BLOCK || block.size() >= MAX_BLOCK_LENGTH) {
+            flushBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            flushBlock();
+            long indexOffset = offset;
+            writeVarInt(header, 0);
+            writeVarInt(header, blockIndex.size());
+            long previousOffset = 0;
+            for (long[] entry : blockIndex) {
+                writeVarLong(header, entry[0] - previousOffset);
+                writeVarLong(header, entry[1]);
+                previousOffset = entry[0];
+            }
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                header.write((int) (indexOffset >>> shift));
+            }
+            writeHeader();
+            os.flush();
+            deflater.end();
+        }
+    }
+
+    private void writeTerm(RDFTerm term) {
+        Integer id = dictionary.get(term);
+        if (id != null) {
+            writeVarInt(block, id + REF_OFFSET);
+        } else {
+            writeVarInt(block, REF_NEW_TERM);
+            if (term instanceof IRI) {
+                writeIRI(((IRI) term).getIRIString());
+            } else if (term instanceof Literal) {
+                writeLiteral((Literal) term);
+            } else if (term instanceof BlankNode) {
+                block.write(TERM_BLANK_NODE);
+                writeString(StringUtils.removeStart(term.ntriplesString(), "_:"));
+            } else {
+                throw new IllegalArgumentException("cannot encode unsupported term [" + term + "]");
+            }
+            // ids follow the order of definition, so that a reader can rebuild the dictionary as it goes
+            dictionary.put(term, dictionary.size());
+        }
+    }
+
+    private void writeIRI(String iri) {
+        HashType hashType = contentIdTypeOf(iri);
+        if (hashType == null) {
+            block.write(TERM_IRI);
+            int sharedPrefixLength = sharedPrefixLength(previousIRI, iri);
+            writeVarInt(block, sharedPrefixLength);
+            writeString(iri.substring(sharedPrefixLength));
+            previousIRI = iri;
+        } else {
+            block.write(TERM_CONTENT_ID);
+            block.write(hashType.ordinal());
+            String hex = iri.substring(hashType.getPrefix().length());
+            for (int i = 0; i < hex.length(); i += 2) {
+                block.write(Character.digit(hex.charAt(i), 16) << 4 | Character.digit(hex.charAt(i + 1), 16));
+            }
+        }
+    }
+
+    private void writeLiteral(Literal literal) {
+        Optional<String> languageTag = literal.getLanguageTag();
+        if (languageTag.isPresent()) {
+            block.write(TERM_LITERAL_WITH_LANGUAGE);
+            writeString(literal.getLexicalForm());
+            writeString(languageTag.get());
+        } else if (XSD_STRING.equals(literal.getDatatype().getIRIString())) {
+            block.write(TERM_LITERAL);
+            writeString(literal.getLexicalForm());
+        } else {
+            block.write(TERM_LITERAL_WITH_DATATYPE);
+            writeString(literal.getLexicalForm());
+            writeTerm(literal.getDatatype());
+        }
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(block, bytes.length);
+        block.write(bytes, 0, bytes.length);
+    }
+
+    private void flushBlock() throws IOException {
+        if (quadsInBlock > 0) {
+            deflater.reset();
+            deflater.setInput(block.getBuffer(), 0, block.size());
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    byte[] larger = new byte[compressed.length * 2];
+                    System.arraycopy(compressed, 0, larger, 0, compressedLength);
+                    compressed = larger;
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+
+            blockIndex.add(new long[]{offset, quadsInBlock});
+            writeVarInt(header, quadsInBlock);
+            writeVarInt(header, block.size());
+            writeVarInt(header, compressedLength);
+            writeHeader();
+            os.write(compressed, 0, compressedLength);
+            offset += compressedLength;
+
+            block.reset();
+            dictionary.clear();
+            previousIRI = "";
+            quadsInBlock = 0;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        os.write(header.getBuffer(), 0, header.size());
+        offset += header.size();
+        header.reset();
+    }
+
+    static HashType contentIdTypeOf(String iri) {
+        for (HashType hashType : HashType.values()) {
+            if (iri.length() == hashType.getIriStringLength()
+                    && iri.startsWith(hashType.getPrefix())
+                    && isLowerCaseHex(iri, hashType.getPrefix().length())) {
+                return hashType;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLowerCaseHex(String value, int start) {
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int sharedPrefixLength(String previous, String current) {
+        int max = Math.min(previous.length(), current.length());
+        int length = 0;
+        while (length < max && previous.charAt(length) == current.charAt(length)) {
+            length++;
+        }
+        // do not split surrogate pairs
+        if (length > 0 && Character.isHighSurrogate(current.charAt(length - 1))) {
+            length--;
+        }
+        return length;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream os, int value) {
+        writeVarLong(os, value & 0xffffffffL);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream os, long value) {
+        while ((value & ~0x7fL) != 0) {
+            os.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        os.write((int) value);
+    }
+
+    private static class BlockBuffer extends ByteArrayOutputStream {
+
+        BlockBuffer() {
+            super(MAX_BLOCK_LENGTH);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        @Override
+        public void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+    }
+
+}
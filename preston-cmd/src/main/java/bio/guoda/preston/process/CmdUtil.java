@@ -2,7 +2,6 @@ package bio.guoda.preston.process;
 
 import bio.guoda.preston.cmd.ErrorChecking;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.RegExUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
@@ -12,15 +11,14 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.util.Optional;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 public class CmdUtil {
 
     public static void print(String msg, OutputStream outputStream, LogErrorHandler handler) {
         try {
-            String msgWithoutPadding = RegExUtils.removeAll(msg, Pattern.compile(EmittingStreamOfAnyQuad.DEFAULT_PREFIX_X_PRESTON));
-            IOUtils.write(msgWithoutPadding.replaceAll("<> ", ""), outputStream, StandardCharsets.UTF_8);
+            String msgWithoutPadding = StringUtils.remove(msg, EmittingStreamOfAnyQuad.DEFAULT_PREFIX_X_PRESTON);
+            IOUtils.write(StringUtils.remove(msgWithoutPadding, "<> "), outputStream, StandardCharsets.UTF_8);
             handleCheckError(outputStream, handler);
         } catch (IOException e) {
             handler.handleError();
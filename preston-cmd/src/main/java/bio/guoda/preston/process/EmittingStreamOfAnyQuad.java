@@ -52,6 +52,8 @@ public class EmittingStreamOfAnyQuad extends EmittingStreamAbstract {
                             matcher = CopyShopNQuadToTSV.WITH_LITERAL_OBJECT_WITHOUT_NAMESPACE.matcher(line);
                             if (matcher.matches()) {
                                 emitQuadWithLiteralObjectNoNamespace(matcher);
+                            } else {
+                                handleUnmatchedLine(line);
                             }
 
                         }
@@ -65,6 +67,13 @@ public class EmittingStreamOfAnyQuad extends EmittingStreamAbstract {
 
     }
 
+    /**
+     * Handles lines that do not match any of the supported statement forms: these are skipped by default.
+     */
+
+    protected void handleUnmatchedLine(String line) {
+    }
+
     private void emitQuadWithIRIObject(Matcher matcher) {
         String subject = padIfNeeded(matcher, "subject");
         String verb = padIfNeeded(matcher, "verb");
@@ -0,0 +1,42 @@
+package bio.guoda.preston.process;
+
+import org.apache.commons.rdf.api.Quad;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Emits quads of a binary provenance log (see {@link BinaryQuadsWriter}),
+ * as {@link EmittingStreamOfAnyQuad} emits quads of the N-Quads provenance log it was derived from.
+ */
+
+public class EmittingStreamOfBinaryQuads extends EmittingStreamAbstract {
+
+    public EmittingStreamOfBinaryQuads(StatementEmitter emitter) {
+        super(emitter);
+    }
+
+    public EmittingStreamOfBinaryQuads(StatementEmitter emitter, ProcessorState processorState) {
+        super(emitter, processorState);
+    }
+
+    @Override
+    public void parseAndEmit(InputStream is) {
+        if (!getContext().shouldKeepProcessing()) {
+            throw new RDFHandlerException("stop processing");
+        }
+
+        BinaryQuadsReader reader = new BinaryQuadsReader(new BufferedInputStream(is));
+        try {
+            Quad quad;
+            while (getContext().shouldKeepProcessing() && (quad = reader.next()) != null) {
+                copyOnEmit(quad);
+            }
+        } catch (IOException ex) {
+            throw new RDFHandlerException("failed processing binary provenance log", ex);
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package bio.guoda.preston.process;
+
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDFTerm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Encodes quads as UTF-8 N-Quads lines into a reusable buffer, and writes each line with a single call.
+ * <p>
+ * Output is identical to printing {@link Quad#toString()} through {@link CmdUtil#print(String, OutputStream, LogErrorHandler)}:
+ * the {@link EmittingStreamOfAnyQuad#DEFAULT_PREFIX_X_PRESTON} padding and empty "<> " terms are left out.
+ * <p>
+ * Instances are not thread-safe.
+ */
+
+public class NQuadsWriter {
+
+    private static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+    private static final String PADDING = EmittingStreamOfAnyQuad.DEFAULT_PREFIX_X_PRESTON;
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int length = 0;
+
+    // number of pending characters of a possible "<> " term: 0, 1 ("<"), or 2 ("<>")
+    private int pendingEmptyTerm = 0;
+
+    public void write(Quad quad, OutputStream os) throws IOException {
+        length = 0;
+        pendingEmptyTerm = 0;
+
+        appendTerm(quad.getSubject());
+        append(' ');
+        appendTerm(quad.getPredicate());
+        append(' ');
+        appendTerm(quad.getObject());
+        append(' ');
+        Optional<BlankNodeOrIRI> graphName = quad.getGraphName();
+        if (graphName.isPresent()) {
+            appendTerm(graphName.get());
+            append(' ');
+        }
+        append('.');
+        append('\n');
+        flushPendingEmptyTerm();
+
+        os.write(buffer, 0, length);
+    }
+
+    private void appendTerm(RDFTerm term) {
+        if (term instanceof IRI) {
+            appendIRI((IRI) term);
+        } else if (term instanceof Literal) {
+            appendLiteral((Literal) term);
+        } else {
+            appendUnpadded(term.ntriplesString(), false);
+        }
+    }
+
+    private void appendIRI(IRI iri) {
+        append('<');
+        appendUnpadded(iri.getIRIString(), false);
+        append('>');
+    }
+
+    private void appendLiteral(Literal literal) {
+        append('"');
+        appendUnpadded(literal.getLexicalForm(), true);
+        append('"');
+        Optional<String> languageTag = literal.getLanguageTag();
+        if (languageTag.isPresent()) {
+            append('@');
+            appendUnpadded(languageTag.get(), false);
+        } else if (!XSD_STRING.equals(literal.getDatatype().getIRIString())) {
+            append('^');
+            append('^');
+            appendIRI(literal.getDatatype());
+        }
+    }
+
+    private void appendUnpadded(String value, boolean escape) {
+        int i = 0;
+        while (i < value.length()) {
+            if (value.startsWith(PADDING, i)) {
+                i += PADDING.length();
+            } else {
+                char c = value.charAt(i);
+                if (Character.isHighSurrogate(c)
+                        && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    flushPendingEmptyTerm();
+                    appendCodePoint(Character.toCodePoint(c, value.charAt(i + 1)));
+                    i += 2;
+                } else {
+                    if (escape) {
+                        appendEscaped(c);
+                    } else {
+                        append(c);
+                    }
+                    i++;
+                }
+            }
+        }
+    }
+
+    private void appendEscaped(char c) {
+        switch (c) {
+            case '\\':
+                append('\\');
+                append('\\');
+                break;
+            case '"':
+                append('\\');
+                append('"');
+                break;
+            case '\r':
+                append('\\');
+                append('r');
+                break;
+            case '\n':
+                append('\\');
+                append('n');
+                break;
+            default:
+                append(c);
+        }
+    }
+
+    private void append(char c) {
+        if (pendingEmptyTerm == 0) {
+            if (c == '<') {
+                pendingEmptyTerm = 1;
+            } else {
+                appendCodePoint(c);
+            }
+        } else if (pendingEmptyTerm == 1) {
+            if (c == '>') {
+                pendingEmptyTerm = 2;
+            } else if (c == '<') {
+                appendCodePoint('<');
+            } else {
+                flushPendingEmptyTerm();
+                appendCodePoint(c);
+            }
+        } else {
+            if (c == ' ') {
+                pendingEmptyTerm = 0;
+            } else {
+                flushPendingEmptyTerm();
+                append(c);
+            }
+        }
+    }
+
+    private void flushPendingEmptyTerm() {
+        if (pendingEmptyTerm > 0) {
+            appendCodePoint('<');
+            if (pendingEmptyTerm > 1) {
+                appendCodePoint('>');
+            }
+            pendingEmptyTerm = 0;
+        }
+    }
+
+    private void appendCodePoint(int codePoint) {
+        ensureCapacity(4);
+        if (codePoint < 0x80) {
+            buffer[length++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            buffer[length++] = (byte) (0xc0 | (codePoint >> 6));
+            buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else if (codePoint < 0x10000) {
+            if (Character.isSurrogate((char) codePoint)) {
+                // unpaired surrogates are replaced, consistent with String#getBytes
+                buffer[length++] = (byte) '?';
+            } else {
+                buffer[length++] = (byte) (0xe0 | (codePoint >> 12));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+            }
+        } else {
+            buffer[length++] = (byte) (0xf0 | (codePoint >> 18));
+            buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+            buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+        }
+    }
+
+}
@@ -22,4 +22,12 @@ abstract public class StatementLogger extends StatementsListenerAdapter {
         CmdUtil.print(message, os, handler);
     }
 
+    protected OutputStream getOutputStream() {
+        return os;
+    }
+
+    protected LogErrorHandler getHandler() {
+        return handler;
+    }
+
 }
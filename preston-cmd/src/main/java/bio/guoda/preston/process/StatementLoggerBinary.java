@@ -0,0 +1,48 @@
+package bio.guoda.preston.process;
+
+import org.apache.commons.rdf.api.Quad;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Logs statements in binary form (see {@link BinaryQuadsWriter}) instead of as N-Quads (see {@link StatementLoggerNQuads}).
+ * The log is complete only after {@link #close()}.
+ */
+
+public class StatementLoggerBinary extends StatementLogger implements Closeable {
+
+    private BinaryQuadsWriter writer = null;
+
+    public StatementLoggerBinary(OutputStream os) {
+        super(os);
+    }
+
+    public StatementLoggerBinary(OutputStream os, LogErrorHandler handler) {
+        super(os, handler);
+    }
+
+    @Override
+    public synchronized void on(Quad statement) {
+        try {
+            getWriter().write(statement);
+        } catch (IOException e) {
+            getHandler().handleError();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        getWriter().close();
+        CmdUtil.handleCheckError(getOutputStream(), getHandler());
+    }
+
+    private BinaryQuadsWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new BinaryQuadsWriter(getOutputStream());
+        }
+        return writer;
+    }
+
+}
@@ -2,11 +2,13 @@ package bio.guoda.preston.process;
 
 import org.apache.commons.rdf.api.Quad;
 
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
 
 public class StatementLoggerNQuads extends StatementLogger {
 
+    private final NQuadsWriter writer = new NQuadsWriter();
+
     public StatementLoggerNQuads(OutputStream os) {
         super(os);
     }
@@ -16,8 +18,13 @@ public class StatementLoggerNQuads extends StatementLogger {
     }
 
     @Override
-    public void on(Quad statement) {
-        print(statement.toString() + "\n");
+    public synchronized void on(Quad statement) {
+        try {
+            writer.write(statement, getOutputStream());
+            CmdUtil.handleCheckError(getOutputStream(), getHandler());
+        } catch (IOException e) {
+            getHandler().handleError();
+        }
     }
 
 }
@@ -0,0 +1,86 @@
+package bio.guoda.preston.store;
+
+import bio.guoda.preston.process.BinaryQuadsWriter;
+import bio.guoda.preston.process.EmittingStreamOfAnyQuad;
+import bio.guoda.preston.process.ProcessorStateAlwaysContinue;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Dereferences provenance logs in their binary form (see {@link BinaryQuadsWriter}), to be read by
+ * {@link bio.guoda.preston.process.EmittingStreamOfBinaryQuads}.
+ * <p>
+ * Binary logs indexed in given {@link BinaryLogIndex} are read from given blob store. Other provenance logs
+ * are parsed as by {@link EmittingStreamOfAnyQuad}, and their binary form is kept in the blob store and indexed,
+ * so that later replays of the same log decode the binary form instead.
+ * Binary forms are written to a temporary file in given tmp dir before being stored.
+ */
+
+public class BinaryLogDereferencer implements Dereferencer<InputStream> {
+
+    private final BlobStore blobStore;
+    private final BinaryLogIndex binaryLogIndex;
+    private final File tmpDir;
+
+    public BinaryLogDereferencer(BlobStore blobStore, BinaryLogIndex binaryLogIndex, File tmpDir) {
+        this.blobStore = blobStore;
+        this.binaryLogIndex = binaryLogIndex;
+        this.tmpDir = tmpDir;
+    }
+
+    @Override
+    public InputStream get(IRI logContentId) throws IOException {
+        IRI binaryLogContentId = binaryLogIndex.get(logContentId);
+        InputStream is = binaryLogContentId == null
+                ? null
+                : blobStore.get(binaryLogContentId);
+        return is == null
+                ? deriveBinaryLog(logContentId)
+                : is;
+    }
+
+    private InputStream deriveBinaryLog(IRI logContentId) throws IOException {
+        InputStream log = blobStore.get(logContentId);
+        if (log == null) {
+            return null;
+        }
+
+        File binaryLog = File.createTempFile("binary-log", ".tmp", tmpDir);
+        try {
+            try (InputStream is = log;
+                 OutputStream os = new BufferedOutputStream(new FileOutputStream(binaryLog));
+                 BinaryQuadsWriter writer = new BinaryQuadsWriter(os)) {
+                new EmittingStreamOfAnyQuad(statement -> {
+                    try {
+                        writer.write(statement);
+                    } catch (IOException e) {
+                        throw new RuntimeException("failed to encode provenance log [" + logContentId + "]", e);
+                    }
+                }, new ProcessorStateAlwaysContinue()).parseAndEmit(is);
+            }
+
+            IRI binaryLogContentId;
+            try (InputStream is = new FileInputStream(binaryLog)) {
+                binaryLogContentId = blobStore.put(is);
+            }
+            binaryLogIndex.put(logContentId, binaryLogContentId);
+
+            InputStream is = blobStore.get(binaryLogContentId);
+            if (is == null) {
+                throw new IOException("cannot find binary log [" + binaryLogContentId + "] of provenance log [" + logContentId + "]");
+            }
+            return is;
+        } finally {
+            FileUtils.deleteQuietly(binaryLog);
+        }
+    }
+
+}
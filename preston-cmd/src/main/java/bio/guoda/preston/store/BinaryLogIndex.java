@@ -0,0 +1,50 @@
+package bio.guoda.preston.store;
+
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static bio.guoda.preston.process.BinaryQuadsWriter.FORMAT_VERSION;
+
+/**
+ * Index of binary provenance logs (see {@link bio.guoda.preston.process.BinaryQuadsWriter}) previously derived
+ * from N-Quads provenance logs, from content id of a provenance log to the content id of its binary form.
+ * The N-Quads provenance logs remain the canonical record: binary forms can be removed, and derived again, at any time.
+ * <p>
+ * Entries are journaled in an append-only index file ({@link #INDEX_FILENAME}) in the data dir,
+ * as [binary log content id] [format version] [log content id] tab-separated lines.
+ * Entries of binary logs of another format version are ignored.
+ */
+
+public class BinaryLogIndex extends JournaledIndex<IRI> {
+
+    public static final String INDEX_FILENAME = "binary-logs.index";
+
+    public BinaryLogIndex() {
+        this(null);
+    }
+
+    private BinaryLogIndex(File indexFile) {
+        super(indexFile, contentIdCodec(FORMAT_VERSION));
+    }
+
+    /**
+     * Loads the binary logs previously indexed in given data dir.
+     * Binary logs indexed later are journaled in the data dir.
+     */
+
+    public static BinaryLogIndex load(File dataDir) throws IOException {
+        return load(new BinaryLogIndex(new File(dataDir, INDEX_FILENAME)));
+    }
+
+    /**
+     * @return content ids of the indexed binary logs, e.g., to keep them from being garbage collected.
+     */
+
+    public List<IRI> getContentIds() {
+        return values();
+    }
+
+}
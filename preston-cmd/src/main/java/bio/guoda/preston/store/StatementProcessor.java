@@ -1,10 +1,13 @@
 package bio.guoda.preston.store;
 
 
+import bio.guoda.preston.metrics.Counter;
+import bio.guoda.preston.metrics.Metrics;
 import bio.guoda.preston.process.ProcessorState;
 import bio.guoda.preston.process.ProcessorStateAlwaysContinue;
 import bio.guoda.preston.process.StatementsEmitter;
 import bio.guoda.preston.process.StatementsListener;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.Quad;
 
 import java.util.Collections;
@@ -14,6 +17,7 @@ public abstract class StatementProcessor extends StatementsListenerEmitterAdapte
 
     private final StatementsListener[] listeners;
     private final ProcessorState state;
+    private final Counter emitted;
 
     public StatementProcessor(StatementsListener... listeners) {
         this(new ProcessorStateAlwaysContinue(), listeners);
@@ -22,6 +26,20 @@ public abstract class StatementProcessor extends StatementsListenerEmitterAdapte
     public StatementProcessor(ProcessorState state, StatementsListener... listeners) {
         this.listeners = listeners;
         this.state = state;
+        this.emitted = Metrics.counter(
+                "preston_statements_emitted_total",
+                "Number of statements emitted by statement processors",
+                "processor", getProcessorName()
+        );
+    }
+
+    private String getProcessorName() {
+        // anonymous processors are named after the class they extend
+        Class<?> processorClass = getClass();
+        while (StringUtils.isBlank(processorClass.getSimpleName())) {
+            processorClass = processorClass.getSuperclass();
+        }
+        return processorClass.getSimpleName();
     }
 
     @Override
@@ -31,6 +49,7 @@ public abstract class StatementProcessor extends StatementsListenerEmitterAdapte
 
     @Override
     public void emit(List<Quad> statements) {
+        emitted.inc(statements.size());
         for (StatementsListener listener : listeners) {
             listener.on(statements);
         }
@@ -4,6 +4,7 @@ import bio.guoda.preston.HashType;
 import bio.guoda.preston.Hasher;
 import bio.guoda.preston.RefNodeFactory;
 import bio.guoda.preston.store.BlobStoreReadOnly;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.hamcrest.core.Is;
@@ -17,8 +18,10 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class BlobStoreUtilTest {
 
@@ -63,6 +66,33 @@ public class BlobStoreUtilTest {
         assertThat(IOUtils.toString(inputStream, StandardCharsets.UTF_8), Is.is("foo"));
     }
 
+    @Test
+    public void indexedBlobStoreWithBinaryLogs() throws IOException, URISyntaxException {
+        File dataDir = folder.newFolder("data");
+        FileUtils.copyDirectory(getDataDir(), dataDir);
+
+        Persisting persisting = getPersisting(dataDir);
+        persisting.setBinaryLogsEnabled(true);
+        BlobStoreUtil.createIndexedBlobStoreFor(getBlobStore(), persisting);
+
+        List<IRI> binaryLogs = persisting.getBinaryLogIndex().getContentIds();
+        assertThat(binaryLogs.size(), Is.is(2));
+        assertThat(new File(persisting.getTmpDir()).list((dir, name) -> name.startsWith("binary-log")).length, Is.is(0));
+        for (IRI binaryLog : binaryLogs) {
+            assertTrue(ReplayUtil.getBlobStore(persisting).get(binaryLog) != null);
+        }
+
+        // reload binary log index from data dir
+        persisting.setBinaryLogsEnabled(true);
+        BlobStoreReadOnly blobStoreIndexed = BlobStoreUtil.createIndexedBlobStoreFor(getBlobStore(), persisting);
+
+        assertThat(persisting.getBinaryLogIndex().getContentIds(), Is.is(binaryLogs));
+
+        InputStream inputStream = blobStoreIndexed.get(RefNodeFactory.toIRI("https://example.org"));
+
+        assertThat(IOUtils.toString(inputStream, StandardCharsets.UTF_8), Is.is("foo"));
+    }
+
     @Test(expected = RuntimeException.class)
     public void indexedBlobStoreWithoutProvenanceAnchorNoProvenanceIndex() throws IOException, URISyntaxException {
         File dataDir = getDataDir("index-data-no-provenance/d3/b0/d3b07384d113edec49eaa6238ad5ff00");
@@ -0,0 +1,127 @@
+package bio.guoda.preston.process;
+
+import bio.guoda.preston.RefNodeFactory;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.rdf.api.Quad;
+import org.hamcrest.core.Is;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class EmittingStreamOfBinaryQuadsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameQuadsAsNQuads() throws IOException {
+        byte[] log = getProvenanceLog();
+        List<Quad> expected = parseNQuads(log);
+
+        byte[] binaryLog = toBinary(expected);
+
+        List<Quad> actual = new ArrayList<>();
+        new EmittingStreamOfBinaryQuads(actual::add).parseAndEmit(new ByteArrayInputStream(binaryLog));
+
+        assertThat(expected.size() > 0, Is.is(true));
+        assertThat(actual, Is.is(expected));
+        assertThat(actual.get(1).toString(), Is.is(expected.get(1).toString()));
+        assertTrue("expected binary log of [" + binaryLog.length + "] bytes to be at least 5x smaller than [" + log.length + "] bytes",
+                binaryLog.length * 5 < log.length);
+    }
+
+    @Test
+    public void manyBlocks() throws IOException {
+        List<Quad> expected = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            expected.add(RefNodeFactory.toStatement(
+                    RefNodeFactory.toIRI("urn:uuid:0659a54f-b713-4f86-a917-5be166a14110"),
+                    RefNodeFactory.toIRI("https://example.org/" + i),
+                    RefNodeFactory.toIRI("http://purl.org/pav/hasVersion"),
+                    RefNodeFactory.toLiteral("version " + i, "en")));
+        }
+        expected.add(RefNodeFactory.toStatement(
+                RefNodeFactory.toIRI("hash://sha256/ABC"),
+                RefNodeFactory.toIRI("http://example.org/number"),
+                RefNodeFactory.toLiteral("12", RefNodeFactory.toIRI("http://www.w3.org/2001/XMLSchema#long"))));
+
+        byte[] binaryLog = toBinary(expected);
+
+        List<Quad> actual = new ArrayList<>();
+        new EmittingStreamOfBinaryQuads(actual::add).parseAndEmit(new ByteArrayInputStream(binaryLog));
+        assertThat(actual, Is.is(expected));
+
+        File file = folder.newFile();
+        Files.write(file.toPath(), binaryLog);
+        try (SeekableByteChannel channel = Files.newByteChannel(file.toPath())) {
+            List<long[]> blocks = BinaryQuadsReader.readBlockIndex(channel);
+            assertThat(blocks.size(), Is.is(3));
+            assertThat(blocks.get(0)[0], Is.is(5L));
+            assertThat(blocks.get(0)[1] + blocks.get(1)[1] + blocks.get(2)[1], Is.is(10001L));
+        }
+    }
+
+    @Test
+    public void stopProcessing() throws IOException {
+        List<Quad> quads = parseNQuads(getProvenanceLog());
+        byte[] binaryLog = toBinary(quads);
+
+        List<Quad> actual = new ArrayList<>();
+        new EmittingStreamOfBinaryQuads(actual::add, new ProcessorStateAlwaysContinue() {
+            @Override
+            public boolean shouldKeepProcessing() {
+                return actual.size() < 10;
+            }
+        }).parseAndEmit(new ByteArrayInputStream(binaryLog));
+
+        assertThat(actual, Is.is(quads.subList(0, 10)));
+    }
+
+    @Test
+    public void viaStatementLogger() throws IOException {
+        List<Quad> expected = parseNQuads(getProvenanceLog());
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (StatementLoggerBinary logger = new StatementLoggerBinary(os)) {
+            expected.forEach(logger::on);
+        }
+
+        assertThat(os.toByteArray(), Is.is(toBinary(expected)));
+    }
+
+    private byte[] getProvenanceLog() throws IOException {
+        try (InputStream is = getClass().getResourceAsStream("/bio/guoda/preston/prov.nq")) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    private static List<Quad> parseNQuads(byte[] log) {
+        List<Quad> quads = new ArrayList<>();
+        new EmittingStreamOfAnyQuad(quads::add).parseAndEmit(new ByteArrayInputStream(log));
+        return quads;
+    }
+
+    private static byte[] toBinary(List<Quad> quads) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (BinaryQuadsWriter writer = new BinaryQuadsWriter(os)) {
+            for (Quad quad : quads) {
+                writer.write(quad);
+            }
+        }
+        return os.toByteArray();
+    }
+
+}
@@ -3,6 +3,7 @@ package bio.guoda.preston.process;
 import bio.guoda.preston.RefNodeFactory;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
 import org.apache.commons.rdf.api.RDFTerm;
 import org.junit.Test;
 
@@ -48,4 +49,65 @@ public class StatementLoggerNQuadsTest {
                 is("<source> <relation> \"target\" <someGraphLabel> .\n"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void relationWithPadding() {
+        Quad statement = RefNodeFactory.toStatement(
+                RefNodeFactory.toIRI("x:preston:"),
+                RefNodeFactory.toIRI("source"),
+                RefNodeFactory.toIRI("relation"),
+                RefNodeFactory.toIRI("x:preston:target"));
+
+        assertThat(logAsNQuads(statement), is("<source> <relation> <target> .\n"));
+        assertThat(logAsNQuads(statement), is(printed(statement)));
+    }
+
+    @Test
+    public void literalWithEscapes() {
+        Quad statement = RefNodeFactory.toStatement(
+                RefNodeFactory.toIRI("source"),
+                RefNodeFactory.toIRI("relation"),
+                RefNodeFactory.toLiteral("a \"quoted\"\r\nback\\slash <> x:preston: \u00e9\u4e2d\ud83d\ude00"));
+
+        assertThat(logAsNQuads(statement), is("<source> <relation> \"a \\\"quoted\\\"\\r\\nback\\\\slash  \u00e9\u4e2d\ud83d\ude00\" .\n"));
+        assertThat(logAsNQuads(statement), is(printed(statement)));
+    }
+
+    @Test
+    public void literalWithDatatypeAndLanguage() {
+        Quad typed = RefNodeFactory.toStatement(
+                RefNodeFactory.toIRI("source"),
+                RefNodeFactory.toIRI("relation"),
+                RefNodeFactory.toDateTime("2023-01-01T00:00:00Z"));
+        assertThat(logAsNQuads(typed), is(printed(typed)));
+
+        Quad tagged = RefNodeFactory.toStatement(
+                RefNodeFactory.toIRI("source"),
+                RefNodeFactory.toIRI("relation"),
+                RefNodeFactory.toLiteral("target", "en"));
+        assertThat(logAsNQuads(tagged), is(printed(tagged)));
+    }
+
+    @Test
+    public void blankNode() {
+        Quad statement = RefNodeFactory.toStatement(
+                RefNodeFactory.toBlank(),
+                RefNodeFactory.toIRI("relation"),
+                RefNodeFactory.toIRI("target"));
+
+        assertThat(logAsNQuads(statement), is(printed(statement)));
+    }
+
+    private static String logAsNQuads(Quad statement) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StatementLoggerNQuads(out).on(statement);
+        return StringUtils.toEncodedString(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String printed(Quad statement) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CmdUtil.print(statement.toString() + "\n", out, () -> {
+        });
+        return StringUtils.toEncodedString(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
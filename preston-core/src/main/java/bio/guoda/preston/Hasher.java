@@ -1,5 +1,11 @@
 package bio.guoda.preston;
 
+import bio.guoda.preston.metrics.Counter;
+import bio.guoda.preston.metrics.FlightRecorderSupport;
+import bio.guoda.preston.metrics.HashEvent;
+import bio.guoda.preston.metrics.LatencyHistogram;
+import bio.guoda.preston.metrics.Metrics;
+import bio.guoda.preston.metrics.TimedEvent;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
@@ -11,17 +17,25 @@ import java.io.OutputStream;
 import java.math.BigInteger;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
-import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public final class Hasher {
 
+    private static final LatencyHistogram HASH_DURATION = Metrics.histogram(
+            "preston_hash_duration_seconds",
+            "Time spent updating message digests with streamed content"
+    );
+
+    private static final Counter HASHED_BYTES = Metrics.counter(
+            "preston_hashed_bytes_total",
+            "Number of bytes streamed through message digests"
+    );
+
     public static IRI calcHashIRI(String content, HashType hashType) {
         try {
             return calcHashIRI(IOUtils.toInputStream(content, StandardCharsets.UTF_8), NullOutputStream.INSTANCE, hashType);
@@ -72,19 +86,31 @@ public final class Hasher {
                     }
                 }).collect(Collectors.toList());
 
-        final AtomicReference<DigestInputStream> digestInputStream = new AtomicReference<>(null);
-        digests
-                .forEach(x -> {
-                    DigestInputStream chainedInputStream = digestInputStream.get() == null
-                            ? new DigestInputStream(is, x)
-                            : new DigestInputStream(digestInputStream.get(), x);
-                    digestInputStream.set(chainedInputStream);
-                });
-
-
-        IOUtils.copy(digestInputStream.get(), os);
+        TimedEvent event = FlightRecorderSupport.timed(() -> new HashEvent());
+        byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+        long bytes = 0;
+        long digestNanos = 0;
+        int n;
+        while ((n = is.read(buffer)) != IOUtils.EOF) {
+            // only digest updates are timed, not reading or writing the content
+            long start = LatencyHistogram.start();
+            for (MessageDigest digest : digests) {
+                digest.update(buffer, 0, n);
+            }
+            digestNanos += System.nanoTime() - start;
+            os.write(buffer, 0, n);
+            bytes += n;
+        }
+        HASH_DURATION.record(digestNanos);
+        HASHED_BYTES.inc(bytes);
+        long hashedBytes = bytes;
+        event.commit(e -> {
+            HashEvent hashEvent = (HashEvent) e;
+            hashEvent.setAlgorithms(digests.stream().map(MessageDigest::getAlgorithm).collect(Collectors.joining(",")));
+            hashEvent.setBytes(hashedBytes);
+        });
         if (shouldCloseInputStream) {
-            digestInputStream.get().close();
+            is.close();
         }
         os.flush();
         os.close();
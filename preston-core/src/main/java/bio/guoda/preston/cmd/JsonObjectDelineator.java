@@ -4,11 +4,14 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.TreeNode;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class JsonObjectDelineator {
@@ -42,4 +45,22 @@ public class JsonObjectDelineator {
             }
         }
     }
+
+    /**
+     * Locates top-level objects like {@link #locateTopLevelObjects(InputStream, Consumer)}, and
+     * reads each object into a tree using provided codec (e.g., an ObjectMapper) in the same pass.
+     */
+
+    public static void locateTopLevelObjects(InputStream is, ObjectCodec codec, BiConsumer<Pair<Long, Long>, TreeNode> listener) throws IOException {
+
+        JsonParser parser = new JsonFactory(codec).createParser(is);
+
+        while (parser.nextToken() != null) {
+            if (JsonToken.START_OBJECT.equals(parser.currentToken())) {
+                long objStartOffset = parser.getCurrentLocation().getByteOffset();
+                TreeNode object = parser.readValueAsTree();
+                listener.accept(Pair.of(objStartOffset, parser.getCurrentLocation().getByteOffset()), object);
+            }
+        }
+    }
 }
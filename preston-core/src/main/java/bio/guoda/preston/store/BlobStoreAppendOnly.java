@@ -8,7 +8,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 
-public class BlobStoreAppendOnly implements BlobStore {
+public class BlobStoreAppendOnly implements BlobStore, RangeDereferencer {
 
     private final KeyValueStore keyValueStore;
     private final boolean shouldCloseInputStream;
@@ -44,4 +44,11 @@ public class BlobStoreAppendOnly implements BlobStore {
         return key == null ? null : getKeyValueStore().get(key);
     }
 
+    @Override
+    public InputStream get(IRI key, long startOffset, long endOffset) throws IOException {
+        return key != null && getKeyValueStore() instanceof RangeDereferencer
+                ? ((RangeDereferencer) getKeyValueStore()).get(key, startOffset, endOffset)
+                : null;
+    }
+
 }
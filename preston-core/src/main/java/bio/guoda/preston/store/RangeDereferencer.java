@@ -0,0 +1,25 @@
+package bio.guoda.preston.store;
+
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Dereferences a byte range of content directly (e.g., by seeking in a local file,
+ * or by an http range request), without reading the bytes that come before the range.
+ */
+
+public interface RangeDereferencer {
+
+    /**
+     * @param uri         content to dereference
+     * @param startOffset offset of the first byte in range
+     * @param endOffset   offset of the byte just after the range
+     * @return bytes in range, or null if the range cannot be dereferenced directly, in which case
+     * callers are expected to fall back to reading (and skipping) the content from its start.
+     */
+
+    InputStream get(IRI uri, long startOffset, long endOffset) throws IOException;
+
+}
@@ -10,51 +10,100 @@ import com.linuxense.javadbf.DBFReader;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.rdf.api.IRI;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class DBaseHandler {
 
+    static final String WAS_DERIVED_FROM = "http://www.w3.org/ns/prov#wasDerivedFrom";
+    static final String HAS_FORMAT = "http://purl.org/dc/elements/1.1/format";
+    static final String MEDIA_TYPE = "application/dbase";
 
     public static void asJsonStream(OutputStream out, IRI resourceIRI, KeyValueStoreReadOnly contentStore) throws IOException {
+        asJsonStream(out, resourceIRI, contentStore, Runtime.getRuntime().availableProcessors(), DBaseRangeDecoder.DEFAULT_RANGE_SIZE);
+    }
 
-        try {
-            DBFReader reader = new DBFReader(contentStore.get(resourceIRI));
+    static void asJsonStream(OutputStream out, IRI resourceIRI, KeyValueStoreReadOnly contentStore, int threads, int rangeSize) throws IOException {
+        InputStream content = contentStore.get(resourceIRI);
+        if (content == null) {
+            throw new IOException("failed to retrieve [" + resourceIRI.getIRIString() + "]");
+        }
 
-            List<String> header = new ArrayList<>();
-            for (int i = 0; i < reader.getFieldCount(); i++) {
-                DBFField field = reader.getField(i);
-                header.add(field.getName());
+        try (InputStream is = IOUtils.buffer(content)) {
+            byte[] header = readHeader(is);
+            InputStream table = new SequenceInputStream(new ByteArrayInputStream(header), is);
+            try {
+                DBFReader headerReader = readFields(header);
+                if (headerReader != null && DBaseRangeDecoder.supports(header, headerReader)) {
+                    new DBaseRangeDecoder(threads, rangeSize).decode(out, resourceIRI, header, headerReader, is);
+                } else {
+                    recordsAsJsonStream(out, resourceIRI, new DBFReader(table));
+                }
+            } catch (DBFException ex) {
+                // ignore dbf related parsing issues:
+                // do opportunistic handling so that non-DBF files are ignored.
             }
+        }
+    }
+
+    private static byte[] readHeader(InputStream is) throws IOException {
+        byte[] fixedHeader = new byte[DBaseRangeDecoder.FIXED_HEADER_LENGTH];
+        int length = IOUtils.read(is, fixedHeader);
+        if (length < fixedHeader.length) {
+            return Arrays.copyOf(fixedHeader, length);
+        }
+
+        byte[] header = Arrays.copyOf(fixedHeader, Math.max(fixedHeader.length, DBaseRangeDecoder.getHeaderLength(fixedHeader)));
+        length += IOUtils.read(is, header, fixedHeader.length, header.length - fixedHeader.length);
+        return length < header.length ? Arrays.copyOf(header, length) : header;
+    }
 
-            Object[] rowObjects;
-            while ((rowObjects = reader.nextRecord()) != null) {
-                ObjectMapper obj = new ObjectMapper();
-                ObjectNode objectNode = obj.createObjectNode();
-                for (int i = 0; i < rowObjects.length; i++) {
-                    if (i > header.size() - 1) {
-                        throw new IOException("found record with more fields [" + rowObjects.length + "] than were defined in header [" + header.size() + "] of [" + resourceIRI.getIRIString() + "]");
-                    }
-                    String fieldName = header.get(i);
-                    Object rowObject = rowObjects[i];
-                    if (i == 0) {
-                        objectNode.set("http://www.w3.org/ns/prov#wasDerivedFrom", TextNode.valueOf(resourceIRI.getIRIString()));
-                        objectNode.set("http://purl.org/dc/elements/1.1/format", TextNode.valueOf("application/dbase"));
-                    }
-                    objectNode.put(fieldName, rowObject == null ? "" : rowObject.toString());
+    private static DBFReader readFields(byte[] header) {
+        DBFReader reader = null;
+        if (header.length > DBaseRangeDecoder.FIXED_HEADER_LENGTH) {
+            try {
+                reader = new DBFReader(new ByteArrayInputStream(header));
+            } catch (DBFException ex) {
+                // leave unusual headers to be handled by DBFReader
+            }
+        }
+        return reader;
+    }
+
+    static void recordsAsJsonStream(OutputStream out, IRI resourceIRI, DBFReader reader) throws IOException {
+        List<String> header = new ArrayList<>();
+        for (int i = 0; i < reader.getFieldCount(); i++) {
+            DBFField field = reader.getField(i);
+            header.add(field.getName());
+        }
+
+        Object[] rowObjects;
+        while ((rowObjects = reader.nextRecord()) != null) {
+            ObjectMapper obj = new ObjectMapper();
+            ObjectNode objectNode = obj.createObjectNode();
+            for (int i = 0; i < rowObjects.length; i++) {
+                if (i > header.size() - 1) {
+                    throw new IOException("found record with more fields [" + rowObjects.length + "] than were defined in header [" + header.size() + "] of [" + resourceIRI.getIRIString() + "]");
                 }
-                if (objectNode.size() > 0) {
-                    IOUtils.copy(IOUtils.toInputStream(objectNode.toString(), StandardCharsets.UTF_8), out);
-                    IOUtils.copy(IOUtils.toInputStream("\n", StandardCharsets.UTF_8), out);
+                String fieldName = header.get(i);
+                Object rowObject = rowObjects[i];
+                if (i == 0) {
+                    objectNode.set(WAS_DERIVED_FROM, TextNode.valueOf(resourceIRI.getIRIString()));
+                    objectNode.set(HAS_FORMAT, TextNode.valueOf(MEDIA_TYPE));
                 }
+                objectNode.put(fieldName, rowObject == null ? "" : rowObject.toString());
+            }
+            if (objectNode.size() > 0) {
+                IOUtils.copy(IOUtils.toInputStream(objectNode.toString(), StandardCharsets.UTF_8), out);
+                IOUtils.copy(IOUtils.toInputStream("\n", StandardCharsets.UTF_8), out);
             }
-        } catch (DBFException ex) {
-            // ignore dbf related parsing issues:
-            // do opportunistic handling so that non-DBF files are ignored.
         }
-
     }
 }
@@ -0,0 +1,399 @@
+package bio.guoda.preston.dbase;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.linuxense.javadbf.DBFDataType;
+import com.linuxense.javadbf.DBFField;
+import com.linuxense.javadbf.DBFReader;
+import com.linuxense.javadbf.DBFUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes the fixed length records of a dBase table in contiguous ranges on multiple threads.
+ * <p>
+ * Each decoder thread reuses its row buffers and field decoders across records, and json lines are written in record order.
+ * Only tables with character, numeric, float, logical and date fields are supported, see {@link #supports(byte[], DBFReader)}:
+ * values are decoded as {@link DBFReader} would, so that the json lines are identical.
+ */
+
+class DBaseRangeDecoder {
+
+    static final int DEFAULT_RANGE_SIZE = 1024 * 1024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int OFFSET_NUMBER_OF_RECORDS = 4;
+    private static final int OFFSET_HEADER_LENGTH = 8;
+    private static final int OFFSET_RECORD_LENGTH = 10;
+    static final int FIXED_HEADER_LENGTH = 32;
+
+    private static final byte DELETED = '*';
+    private static final byte END_OF_DATA = 0x1A;
+    private static final byte END_OF_FILE = (byte) 0xFF;
+
+    private final int threads;
+    private final int rangeSize;
+
+    DBaseRangeDecoder(int threads, int rangeSize) {
+        this.threads = threads;
+        this.rangeSize = rangeSize;
+    }
+
+    static int getHeaderLength(byte[] header) {
+        return readUnsignedShort(header, OFFSET_HEADER_LENGTH);
+    }
+
+    /**
+     * @return true if records of the table can be decoded by range, with results identical to {@link DBFReader#nextRecord()}.
+     */
+
+    static boolean supports(byte[] header, DBFReader reader) {
+        boolean dBaseLevel3 = (header[0] & 0x07) == 3;
+        int recordLength = readShort(header, OFFSET_RECORD_LENGTH);
+
+        Set<String> names = new HashSet<>(Arrays.asList(DBaseHandler.WAS_DERIVED_FROM, DBaseHandler.HAS_FORMAT));
+        int fieldsLength = 0;
+        for (int i = 0; i < reader.getFieldCount(); i++) {
+            DBFField field = reader.getField(i);
+            if (!isSupported(field) || !names.add(field.getName())) {
+                return false;
+            }
+            fieldsLength += field.getLength();
+        }
+        return dBaseLevel3
+                && reader.getFieldCount() > 0
+                && recordLength == fieldsLength + 1;
+    }
+
+    private static boolean isSupported(DBFField field) {
+        DBFDataType type = field.getType();
+        return !field.isSystem()
+                && (DBFDataType.CHARACTER.equals(type)
+                || DBFDataType.NUMERIC.equals(type)
+                || DBFDataType.FLOATING_POINT.equals(type)
+                || (DBFDataType.LOGICAL.equals(type) && field.getLength() == 1)
+                || (DBFDataType.DATE.equals(type) && field.getLength() == 8));
+    }
+
+    void decode(OutputStream out, IRI resourceIRI, byte[] header, DBFReader reader, InputStream records) throws IOException {
+        int numberOfRecords = readInt(header, OFFSET_NUMBER_OF_RECORDS);
+        int recordLength = readShort(header, OFFSET_RECORD_LENGTH);
+        int recordsPerRange = Math.max(1, rangeSize / recordLength);
+
+        DBFField[] fields = new DBFField[reader.getFieldCount()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = reader.getField(i);
+        }
+        Charset charset = reader.getCharset();
+
+        AtomicInteger threadCount = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "preston-dbase-decoder-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ThreadLocal<RangeWriter> writers = ThreadLocal.withInitial(() -> new RangeWriter(resourceIRI, fields, charset));
+
+        Deque<Future<DecodedRange>> pending = new ArrayDeque<>();
+        try {
+            int recordIndex = 0;
+            boolean endOfRecords = false;
+            while (!endOfRecords) {
+                byte[] range = new byte[recordsPerRange * recordLength];
+                int length = IOUtils.read(records, range);
+                int recordsInRange = 0;
+                while (recordsInRange < length / recordLength && !isEndOfRecords(range[recordsInRange * recordLength], recordIndex, numberOfRecords)) {
+                    recordsInRange++;
+                    recordIndex++;
+                }
+                // incomplete trailing records and end-of-data markers end the table
+                endOfRecords = recordsInRange < recordsPerRange;
+
+                if (recordsInRange > 0) {
+                    int numberOfRecordsInRange = recordsInRange;
+                    pending.add(executor.submit(() -> writers.get().write(range, numberOfRecordsInRange, recordLength)));
+                }
+                while (!pending.isEmpty() && (pending.size() > threads || endOfRecords)) {
+                    if (!writeDecoded(pending.poll(), out)) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isEndOfRecords(byte flag, int recordIndex, int numberOfRecords) {
+        return flag == END_OF_FILE || (flag == END_OF_DATA && recordIndex == numberOfRecords);
+    }
+
+    private static boolean writeDecoded(Future<DecodedRange> future, OutputStream out) throws IOException {
+        DecodedRange decoded;
+        try {
+            decoded = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while decoding dbase records", e);
+        } catch (ExecutionException e) {
+            throw new IOException("failed to decode dbase records", e.getCause());
+        }
+        out.write(decoded.json);
+        return !decoded.isTruncated;
+    }
+
+    private static int readInt(byte[] header, int offset) {
+        return (header[offset] & 0xFF)
+                | (header[offset + 1] & 0xFF) << 8
+                | (header[offset + 2] & 0xFF) << 16
+                | (header[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int readUnsignedShort(byte[] header, int offset) {
+        return (header[offset] & 0xFF) | (header[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readShort(byte[] header, int offset) {
+        return (short) readUnsignedShort(header, offset);
+    }
+
+    private static class DecodedRange {
+        private final byte[] json;
+        private final boolean isTruncated;
+
+        DecodedRange(byte[] json, boolean isTruncated) {
+            this.json = json;
+            this.isTruncated = isTruncated;
+        }
+    }
+
+    /**
+     * Decodes records into json lines, reusing its row buffer across records.
+     */
+
+    private static class RangeWriter {
+        private final DBFField[] fields;
+        private final FieldValue[] row;
+        private final SerializableString[] names;
+        private final String iriString;
+        private final CharsetDecoder decoder;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final JsonGenerator generator;
+
+        RangeWriter(IRI resourceIRI, DBFField[] fields, Charset charset) {
+            this.fields = fields;
+            this.iriString = resourceIRI.getIRIString();
+            this.row = new FieldValue[fields.length];
+            this.names = new SerializableString[fields.length];
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            for (int i = 0; i < fields.length; i++) {
+                names[i] = new SerializedString(fields[i].getName());
+                row[i] = new FieldValue((int) Math.ceil(fields[i].getLength() * decoder.maxCharsPerByte()));
+            }
+            try {
+                this.generator = JSON_FACTORY.createGenerator(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.generator.setRootValueSeparator(null);
+        }
+
+        DecodedRange write(byte[] records, int numberOfRecords, int recordLength) throws IOException {
+            buffer.reset();
+            boolean isTruncated = false;
+            for (int i = 0; i < numberOfRecords && !isTruncated; i++) {
+                int offset = i * recordLength;
+                if (records[offset] != DELETED) {
+                    if (decodeRow(records, offset + 1)) {
+                        writeRow();
+                    } else {
+                        isTruncated = true;
+                    }
+                }
+            }
+            generator.flush();
+            return new DecodedRange(buffer.toByteArray(), isTruncated);
+        }
+
+        /**
+         * @return false if a value could not be decoded, in which case {@link DBFReader} stops reading.
+         */
+
+        private boolean decodeRow(byte[] record, int offset) {
+            for (int i = 0; i < fields.length; i++) {
+                DBFField field = fields[i];
+                DBFDataType type = field.getType();
+                FieldValue value = row[i];
+                if (DBFDataType.CHARACTER.equals(type)) {
+                    decodeCharacters(record, offset, field.getLength(), value);
+                } else if (DBFDataType.LOGICAL.equals(type)) {
+                    value.set(DBFUtils.toBoolean(record[offset]));
+                } else if (DBFDataType.DATE.equals(type)) {
+                    value.set(decodeDate(record, offset));
+                } else if (!decodeNumber(record, offset, field.getLength(), value)) {
+                    return false;
+                }
+                offset += field.getLength();
+            }
+            return true;
+        }
+
+        private void writeRow() throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField(DBaseHandler.WAS_DERIVED_FROM, iriString);
+            generator.writeStringField(DBaseHandler.HAS_FORMAT, DBaseHandler.MEDIA_TYPE);
+            for (int i = 0; i < fields.length; i++) {
+                generator.writeFieldName(names[i]);
+                generator.writeString(row[i].chars, 0, row[i].length);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void decodeCharacters(byte[] record, int offset, int length, FieldValue value) {
+            int trimmedLength = length;
+            while (trimmedLength > 0 && record[offset + trimmedLength - 1] == ' ') {
+                trimmedLength--;
+            }
+            CharBuffer chars = CharBuffer.wrap(value.chars);
+            decoder.reset();
+            decoder.decode(ByteBuffer.wrap(record, offset, trimmedLength), chars, true);
+            decoder.flush(chars);
+            value.length = chars.position();
+        }
+
+        // see DBFUtils#readNumericStoredAsText
+        private boolean decodeNumber(byte[] record, int offset, int length, FieldValue value) {
+            char[] chars = value.chars;
+            int n = 0;
+            boolean isNumber = true;
+            for (int i = offset; i < offset + length; i++) {
+                byte b = record[i];
+                if (b != ' ' && b != 0) {
+                    isNumber = isNumber && b >= 32 && b != '?' && b != '*';
+                    chars[n++] = b == ',' ? '.' : (char) b;
+                }
+            }
+
+            if (n == 0 || !isNumber) {
+                value.length = 0;
+            } else if (n == 1 && chars[0] == '.') {
+                value.set(BigDecimal.ZERO);
+            } else if (!isPlainDecimal(chars, n)) {
+                try {
+                    value.set(new BigDecimal(new String(chars, 0, n)));
+                } catch (NumberFormatException ex) {
+                    return false;
+                }
+            } else {
+                value.length = n;
+            }
+            return true;
+        }
+
+        private static Object decodeDate(byte[] record, int offset) {
+            try {
+                return new GregorianCalendar(
+                        Integer.parseInt(new String(record, offset, 4, StandardCharsets.US_ASCII)),
+                        Integer.parseInt(new String(record, offset + 4, 2, StandardCharsets.US_ASCII)) - 1,
+                        Integer.parseInt(new String(record, offset + 6, 2, StandardCharsets.US_ASCII))
+                ).getTime();
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+    }
+
+    /**
+     * @return true if {@link BigDecimal#toString()} of the number is the number itself, e.g., "-12.50", but not "007" or "0.0000001"
+     */
+
+    static boolean isPlainDecimal(char[] chars, int length) {
+        int i = chars[0] == '-' ? 1 : 0;
+        int integerStart = i;
+        while (i < length && isDigit(chars[i])) {
+            i++;
+        }
+        int integerLength = i - integerStart;
+
+        int fractionLength = 0;
+        if (i < length && chars[i] == '.') {
+            i++;
+            int fractionStart = i;
+            while (i < length && isDigit(chars[i])) {
+                i++;
+            }
+            fractionLength = i - fractionStart;
+            if (fractionLength == 0) {
+                return false;
+            }
+        }
+
+        boolean hasLeadingZero = integerLength > 0 && chars[integerStart] == '0';
+        return i == length
+                && integerLength > 0
+                && (!hasLeadingZero || (integerLength == 1 && integerStart == 0 && fractionLength <= 6));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Reusable buffer for a single field value.
+     */
+
+    private static class FieldValue {
+        private char[] chars;
+        private int length = 0;
+
+        FieldValue(int capacity) {
+            this.chars = new char[Math.max(capacity, 1)];
+        }
+
+        void set(Object object) {
+            if (object == null) {
+                length = 0;
+            } else {
+                String string = object.toString();
+                if (string.length() > chars.length) {
+                    chars = new char[string.length()];
+                }
+                string.getChars(0, string.length(), chars, 0);
+                length = string.length();
+            }
+        }
+    }
+
+}
@@ -3,15 +3,21 @@ package bio.guoda.preston.dbase;
 import bio.guoda.preston.RefNodeFactory;
 import bio.guoda.preston.store.KeyValueStoreReadOnly;
 import bio.guoda.preston.store.TestUtil;
+import com.linuxense.javadbf.DBFDataType;
+import com.linuxense.javadbf.DBFField;
+import com.linuxense.javadbf.DBFReader;
+import com.linuxense.javadbf.DBFWriter;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.hamcrest.core.Is;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Date;
 
 import static bio.guoda.preston.dbase.DBaseHandler.asJsonStream;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -86,4 +92,78 @@ public class DBaseHandlerTest {
         asJsonStream(out, resourceIRI, contentStore);
     }
 
+    @Test
+    public void dumpTableInSmallRanges() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IRI resourceIRI = RefNodeFactory.toIRI("some:iri");
+
+        KeyValueStoreReadOnly contentStore = new KeyValueStoreReadOnly() {
+
+            @Override
+            public InputStream get(IRI uri) throws IOException {
+                return getClass().getResourceAsStream("CMMUS2K.DBF");
+            }
+        };
+
+        asJsonStream(out, resourceIRI, contentStore, 3, 1);
+
+        String expected = IOUtils.toString(TestUtil.filterLineFeedFromTextInputStream(getClass().getResourceAsStream("CMMUS2K.json")), StandardCharsets.UTF_8);
+        String actual = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(actual, Is.is(expected));
+    }
+
+    @Test
+    public void dumpTableInRangesLikeDBFReader() throws IOException {
+        String[] counts = new String[]{
+                "    7.00", "  -12.50", "     0.5", "     007", "   -0.00",
+                "     1,5", "       .", "        ", "   ?    ", "  1.0E3 ",
+                "   12.  ", "0.000001", "    abc ", "    1.00"
+        };
+        byte[] table = createTable(counts);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        IRI resourceIRI = RefNodeFactory.toIRI("some:iri");
+        try {
+            DBaseHandler.recordsAsJsonStream(expected, resourceIRI, new DBFReader(new ByteArrayInputStream(table)));
+        } catch (RuntimeException ex) {
+            // DBFReader stops at the malformed number
+        }
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        asJsonStream(actual, resourceIRI, uri -> new ByteArrayInputStream(table), 4, 64);
+
+        assertThat(new String(actual.toByteArray(), StandardCharsets.UTF_8),
+                Is.is(new String(expected.toByteArray(), StandardCharsets.UTF_8)));
+        assertThat(expected.toString(StandardCharsets.UTF_8.name()).split("\n").length, Is.is(12));
+    }
+
+    private static byte[] createTable(String[] counts) throws IOException {
+        DBFField name = new DBFField("NAME", DBFDataType.CHARACTER, 20);
+        DBFField count = new DBFField("COUNT", DBFDataType.NUMERIC, 8, 2);
+        DBFField flag = new DBFField("FLAG", DBFDataType.LOGICAL);
+        DBFField seen = new DBFField("SEEN", DBFDataType.DATE);
+
+        ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+        DBFWriter writer = new DBFWriter(tableBytes, StandardCharsets.ISO_8859_1);
+        writer.setFields(new DBFField[]{name, count, flag, seen});
+        for (int i = 0; i < counts.length; i++) {
+            writer.addRecord(new Object[]{
+                    i % 3 == 0 ? null : "Dendrob\u00e9ne  " + i,
+                    (double) i,
+                    i % 2 == 0,
+                    i % 4 == 0 ? null : new Date(1000000000000L + i * 86400000L)
+            });
+        }
+        writer.close();
+
+        byte[] table = tableBytes.toByteArray();
+        int headerLength = (table[8] & 0xFF) | (table[9] & 0xFF) << 8;
+        int recordLength = (table[10] & 0xFF) | (table[11] & 0xFF) << 8;
+        for (int i = 0; i < counts.length; i++) {
+            byte[] countBytes = counts[i].getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(countBytes, 0, table, headerLength + i * recordLength + 1 + 20, countBytes.length);
+        }
+        return table;
+    }
+
 }
@@ -11,6 +11,8 @@ import org.apache.commons.io.output.NullPrintStream;
 import org.apache.commons.rdf.api.Quad;
 import picocli.CommandLine;
 
+import java.io.File;
+
 @CommandLine.Command(
         name = "dwc-stream",
         aliases = {"json-stream", "dwc-json-stream"},
@@ -20,6 +22,18 @@ public class CmdDwcRecordStream extends LoggingPersisting implements Runnable {
 
     public static final String EXTRACT_RECORDS_FROM_DARWIN_CORE_ARCHIVES_IN_LINE_JSON = "Extract records from DarwinCore archives in line-json";
 
+    @CommandLine.Option(
+            names = {"--single-pass"},
+            description = "Read each archive only once, and extract core and extension records concurrently. Records of different files may be interleaved."
+    )
+    private boolean singlePass = false;
+
+    @CommandLine.Option(
+            names = {"--star-records"},
+            description = "Emit each core record together with its extension records, grouped by row type. Records are sorted by core id using --tmp-dir, so memory use is bounded for archives of any size."
+    )
+    private boolean starRecords = false;
+
     @Override
     public void run() {
         BlobStoreReadOnly blobStoreAppendOnly
@@ -39,6 +53,11 @@ public class CmdDwcRecordStream extends LoggingPersisting implements Runnable {
                 blobStoreReadOnly,
                 getOutputStream(),
                 listener);
+        textMatcher.setCharsetDetector(getCharsetDetector());
+        textMatcher.setSinglePass(isSinglePass());
+        if (isStarRecords()) {
+            textMatcher.setStarRecordTmpDir(new File(getTmpDir()));
+        }
 
         StatementsEmitterAdapter emitter = new StatementsEmitterAdapter() {
 
@@ -53,5 +72,20 @@ public class CmdDwcRecordStream extends LoggingPersisting implements Runnable {
 
     }
 
-}
+    public boolean isSinglePass() {
+        return singlePass;
+    }
+
+    public void setSinglePass(boolean singlePass) {
+        this.singlePass = singlePass;
+    }
+
+    public boolean isStarRecords() {
+        return starRecords;
+    }
 
+    public void setStarRecords(boolean starRecords) {
+        this.starRecords = starRecords;
+    }
+
+}
@@ -17,6 +17,7 @@ import org.gbif.dwc.DwCArchiveStreamHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
@@ -27,6 +28,8 @@ public class DwcRecordExtractor extends ProcessorExtracting {
     private final ProcessorState processorState;
     private final OutputStream outputStream;
     private int batchSize = 256;
+    private boolean singlePass = false;
+    private File starRecordTmpDir = null;
 
     public DwcRecordExtractor(ProcessorState processorState,
                               BlobStoreReadOnly blobStoreReadOnly,
@@ -56,8 +59,10 @@ public class DwcRecordExtractor extends ProcessorExtracting {
                     new ArchiveStreamHandler(this),
                     new CompressedStreamHandler(this),
                     new DwCArchiveStreamHandler(this,
-                            new ContentHashDereferencer(DwcRecordExtractor.this),
-                            outputStream
+                            new ContentHashDereferencer(DwcRecordExtractor.this, getCharsetDetector()),
+                            outputStream,
+                            singlePass,
+                            starRecordTmpDir
                     )
             );
         }
@@ -87,6 +92,14 @@ public class DwcRecordExtractor extends ProcessorExtracting {
     }
 
 
+    public void setSinglePass(boolean singlePass) {
+        this.singlePass = singlePass;
+    }
+
+    public void setStarRecordTmpDir(File starRecordTmpDir) {
+        this.starRecordTmpDir = starRecordTmpDir;
+    }
+
     @Override
     public String getActivityDescription() {
         return "An activity that streams DwC-A content into line-json.";
@@ -0,0 +1,292 @@
+package org.gbif.dwc;
+
+import bio.guoda.preston.RefNodeFactory;
+import bio.guoda.preston.process.ProcessorStateReadOnly;
+import bio.guoda.preston.store.Dereferencer;
+import bio.guoda.preston.stream.ArchiveStreamHandler;
+import bio.guoda.preston.stream.ContentStreamException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.rdf.api.IRI;
+import org.gbif.dwc.record.Record;
+import org.gbif.utils.file.ClosableIterator;
+import org.gbif.utils.file.tabular.TabularDataFileReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decodes the core and extension files of a DwC archive while reading the archive only once.
+ * <p>
+ * Each archive member named in the meta.xml is handed off to its own decoder thread as it is read from the archive.
+ * Decoded records are written to the shared output stream in batches of complete json lines,
+ * so that records of a single file keep their original order, while records of different files may interleave.
+ */
+
+class DwCArchiveSinglePassDecoder {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS_PER_FILE = 16;
+    private static final int OUTPUT_BATCH_SIZE = 64 * 1024;
+
+    private final OutputStream outputStream;
+    private final Dereferencer<InputStream> dereferencer;
+    private final ProcessorStateReadOnly processorState;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    DwCArchiveSinglePassDecoder(OutputStream outputStream,
+                                Dereferencer<InputStream> dereferencer,
+                                ProcessorStateReadOnly processorState) {
+        this.outputStream = outputStream;
+        this.dereferencer = dereferencer;
+        this.processorState = processorState;
+    }
+
+    /**
+     * @return core and extension files that were not decoded, which is all of them if the archive could not be read in a single pass.
+     */
+
+    List<ArchiveFile> decode(String metaIRIString, Archive archive) throws ContentStreamException {
+        List<ArchiveFile> archiveFiles = new ArrayList<>();
+        archiveFiles.add(archive.getCore());
+        archiveFiles.addAll(archive.getExtensions());
+
+        Pair<String, String> containerAndPath = splitArchiveIRI(metaIRIString);
+        if (containerAndPath == null) {
+            return archiveFiles;
+        }
+
+        InputStream container;
+        try {
+            container = dereferencer.get(RefNodeFactory.toIRI(StringUtils.substringAfter(containerAndPath.getLeft(), ":")));
+        } catch (IOException e) {
+            return archiveFiles;
+        }
+
+        Pair<ArchiveInputStream, String> archiveStreamAndFormat = container == null
+                ? null
+                : ArchiveStreamHandler.getArchiveStreamAndFormat(IOUtils.buffer(container));
+
+        if (archiveStreamAndFormat == null
+                || !StringUtils.startsWith(containerAndPath.getLeft(), archiveStreamAndFormat.getRight() + ":")) {
+            IOUtils.closeQuietly(container);
+            return archiveFiles;
+        }
+
+        Map<String, ArchiveFile> remaining = new LinkedHashMap<>();
+        for (ArchiveFile archiveFile : archiveFiles) {
+            remaining.put(containerAndPath.getRight() + archiveFile.getLocation(), archiveFile);
+        }
+
+        List<Thread> decoders = new ArrayList<>();
+        try (ArchiveInputStream in = archiveStreamAndFormat.getLeft()) {
+            ArchiveEntry entry;
+            while (!remaining.isEmpty()
+                    && failure.get() == null
+                    && processorState.shouldKeepProcessing()
+                    && (entry = in.getNextEntry()) != null) {
+                ArchiveFile archiveFile = remaining.get(entry.getName());
+                if (archiveFile != null && !entry.isDirectory() && in.canReadEntryData(entry)) {
+                    remaining.remove(entry.getName());
+                    Pair<IRI, ArchiveFile> resourceIRIs = DwCArchiveStreamHandler.getLocation(metaIRIString, archiveFile);
+                    String idIRI = archiveFile == archive.getCore()
+                            ? DwCArchiveStreamHandler.DWC_TEXT_ID
+                            : DwCArchiveStreamHandler.DWC_TEXT_COREID;
+                    EntryPipe pipe = new EntryPipe(CHUNKS_PER_FILE);
+                    Thread decoder = new Thread(
+                            () -> decodeRecords(resourceIRIs, idIRI, pipe),
+                            "preston-dwc-decoder-" + entry.getName()
+                    );
+                    decoder.setDaemon(true);
+                    decoder.start();
+                    decoders.add(decoder);
+                    pipe.copyFrom(in);
+                }
+            }
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            IOUtils.closeQuietly(container);
+            awaitCompletion(decoders);
+        }
+
+        Throwable th = failure.get();
+        if (th instanceof DecodingException) {
+            DwCArchiveStreamHandler.rethrowStreamException(th.getCause(), ((DecodingException) th).getIRIString());
+        } else if (th != null) {
+            throw new ContentStreamException("failed to read dwc archive [" + metaIRIString + "]", th);
+        }
+
+        return new ArrayList<>(remaining.values());
+    }
+
+    private void decodeRecords(Pair<IRI, ArchiveFile> resourceIRIs, String idIRI, EntryPipe pipe) {
+        ArchiveFile file = resourceIRIs.getRight();
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(OUTPUT_BATCH_SIZE);
+        try (EntryPipe is = pipe;
+             JsonGenerator generator = DwCArchiveStreamHandler.createGenerator(batch)) {
+            TabularDataFileReader<List<String>> tabularFileReader = DwCArchiveStreamHandler.createReader(file, is);
+            ClosableIterator<Record> iterator = DwCArchiveStreamHandler.createRecordIterator(file, tabularFileReader);
+            DwCRecordJsonWriter writer = new DwCRecordJsonWriter(generator, resourceIRIs.getLeft(), file, idIRI);
+            while (failure.get() == null && iterator.hasNext() && processorState.shouldKeepProcessing()) {
+                writer.write(iterator.next(), tabularFileReader.getLastRecordLineNumber());
+                if (generator.getOutputBuffered() + batch.size() >= OUTPUT_BATCH_SIZE) {
+                    writeBatch(generator, batch);
+                }
+            }
+            writeBatch(generator, batch);
+        } catch (Throwable th) {
+            failure.compareAndSet(null, new DecodingException(resourceIRIs.getLeft().getIRIString(), th));
+        }
+    }
+
+    private void writeBatch(JsonGenerator generator, ByteArrayOutputStream batch) throws IOException {
+        generator.flush();
+        synchronized (outputStream) {
+            batch.writeTo(outputStream);
+            outputStream.flush();
+        }
+        batch.reset();
+    }
+
+    private void awaitCompletion(List<Thread> decoders) {
+        for (Thread decoder : decoders) {
+            try {
+                decoder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    /**
+     * @return archive IRI (e.g., zip:hash://sha256/...) and path prefix of the archive entries, or null if the meta.xml is not an archive entry
+     */
+
+    static Pair<String, String> splitArchiveIRI(String metaIRIString) {
+        String baseIRI = StringUtils.removeEnd(metaIRIString, DwCArchiveStreamHandler.META_XML);
+        int separator = StringUtils.lastIndexOf(baseIRI, "!/");
+        if (separator < 0 || !StringUtils.contains(StringUtils.substring(baseIRI, 0, separator), ":")) {
+            return null;
+        }
+        return Pair.of(StringUtils.substring(baseIRI, 0, separator), StringUtils.substring(baseIRI, separator + 2));
+    }
+
+    private static class DecodingException extends Exception {
+        private final String iriString;
+
+        DecodingException(String iriString, Throwable cause) {
+            super(cause);
+            this.iriString = iriString;
+        }
+
+        String getIRIString() {
+            return iriString;
+        }
+    }
+
+    /**
+     * Bounded hand-off of archive entry content from the archive reader to a decoder thread.
+     */
+
+    private static class EntryPipe extends InputStream {
+        private static final byte[] END_OF_ENTRY = new byte[0];
+
+        private final BlockingQueue<byte[]> chunks;
+        private byte[] current = null;
+        private int position = 0;
+        private volatile boolean closed = false;
+        private volatile boolean aborted = false;
+
+        EntryPipe(int capacity) {
+            this.chunks = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void copyFrom(InputStream in) throws IOException {
+            try {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int length;
+                while ((length = IOUtils.read(in, chunk)) > 0) {
+                    offer(length == chunk.length ? chunk : Arrays.copyOf(chunk, length));
+                    chunk = new byte[CHUNK_SIZE];
+                }
+                offer(END_OF_ENTRY);
+            } catch (IOException e) {
+                aborted = true;
+                throw e;
+            }
+        }
+
+        private void offer(byte[] chunk) throws InterruptedIOException {
+            try {
+                while (!closed && !chunks.offer(chunk, 10, TimeUnit.MILLISECONDS)) {
+                    // wait for decoder to catch up
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while reading dwc archive");
+            }
+        }
+
+        private boolean fill() throws IOException {
+            while (current != END_OF_ENTRY && (current == null || position >= current.length)) {
+                try {
+                    byte[] chunk = chunks.poll(10, TimeUnit.MILLISECONDS);
+                    if (chunk != null) {
+                        current = chunk;
+                        position = 0;
+                    } else if (aborted) {
+                        throw new IOException("archive entry could not be read completely");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while decoding dwc archive");
+                }
+            }
+            return current != END_OF_ENTRY;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? current[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int length = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            chunks.clear();
+        }
+    }
+
+}
@@ -5,22 +5,21 @@ import bio.guoda.preston.process.ProcessorStateReadOnly;
 import bio.guoda.preston.store.Dereferencer;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
-import org.apache.commons.io.IOUtils;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.rdf.api.IRI;
 import org.gbif.dwc.meta.DwcMetaFiles2;
 import org.gbif.dwc.record.Record;
-import org.gbif.dwc.terms.Term;
 import org.gbif.utils.file.ClosableIterator;
 import org.gbif.utils.file.tabular.TabularDataFileReader;
 import org.gbif.utils.file.tabular.TabularFiles;
 import org.xml.sax.SAXException;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -28,24 +27,49 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
-import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 public class DwCArchiveStreamHandler implements ContentStreamHandler {
 
     public static final String META_XML = "meta.xml";
+    static final String DWC_TEXT_ID = "http://rs.tdwg.org/dwc/text/id";
+    static final String DWC_TEXT_COREID = "http://rs.tdwg.org/dwc/text/coreid";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
     private final Dereferencer<InputStream> dereferencer;
     private ContentStreamHandler contentStreamHandler;
     private final OutputStream outputStream;
+    private final boolean singlePass;
+    private final File starRecordTmpDir;
 
     public DwCArchiveStreamHandler(ContentStreamHandler contentStreamHandler,
                                    Dereferencer<InputStream> inputStreamDereferencer,
                                    OutputStream os) {
+        this(contentStreamHandler, inputStreamDereferencer, os, false);
+    }
+
+    public DwCArchiveStreamHandler(ContentStreamHandler contentStreamHandler,
+                                   Dereferencer<InputStream> inputStreamDereferencer,
+                                   OutputStream os,
+                                   boolean singlePass) {
+        this(contentStreamHandler, inputStreamDereferencer, os, singlePass, null);
+    }
+
+    /**
+     * @param starRecordTmpDir if not null, write star records, sorting records using given tmp dir
+     */
+
+    public DwCArchiveStreamHandler(ContentStreamHandler contentStreamHandler,
+                                   Dereferencer<InputStream> inputStreamDereferencer,
+                                   OutputStream os,
+                                   boolean singlePass,
+                                   File starRecordTmpDir) {
         this.contentStreamHandler = contentStreamHandler;
         this.dereferencer = inputStreamDereferencer;
         this.outputStream = os;
+        this.singlePass = singlePass;
+        this.starRecordTmpDir = starRecordTmpDir;
     }
 
     @Override
@@ -53,7 +77,7 @@ public class DwCArchiveStreamHandler implements ContentStreamHandler {
         String iriString = version.getIRIString();
         if (StringUtils.endsWith(iriString, "/" + META_XML)) {
             try {
-                handleAssumedDwCArchive(is, iriString, outputStream, dereferencer, this);
+                handleAssumedDwCArchive(is, iriString, outputStream, dereferencer, this, singlePass, starRecordTmpDir);
                 return true;
             } catch (IOException | SAXException e) {
                 throw new ContentStreamException("failed to handle assumed DwC resource [" + iriString + "]", e);
@@ -68,32 +92,62 @@ public class DwCArchiveStreamHandler implements ContentStreamHandler {
                                                   Dereferencer<InputStream> dereferencer,
                                                   ProcessorStateReadOnly processorState)
             throws SAXException, IOException, ContentStreamException {
+        handleAssumedDwCArchive(is, iriString, outputStream, dereferencer, processorState, false, null);
+    }
+
+    /**
+     * @param singlePass       if true, read the archive containing the meta.xml only once, and decode core and extension files concurrently.
+     * @param starRecordTmpDir if not null, write star records instead of individual records, sorting records using given tmp dir.
+     */
+
+    protected static void handleAssumedDwCArchive(InputStream is,
+                                                  String iriString,
+                                                  OutputStream outputStream,
+                                                  Dereferencer<InputStream> dereferencer,
+                                                  ProcessorStateReadOnly processorState,
+                                                  boolean singlePass,
+                                                  File starRecordTmpDir)
+            throws SAXException, IOException, ContentStreamException {
         Archive starRecords = DwcMetaFiles2.fromMetaDescriptor(is);
         ArchiveFile core = starRecords.getCore();
 
-        if (core != null) {
-            streamRecords(
-                    outputStream,
-                    dereferencer,
-                    getLocation(iriString, core),
-                    "http://rs.tdwg.org/dwc/text/id", processorState
-            );
-
-            Set<ArchiveFile> extensions = starRecords.getExtensions();
-            for (ArchiveFile extension : extensions) {
-                streamRecords(
-                        outputStream,
-                        dereferencer,
-                        getLocation(iriString, extension),
-                        "http://rs.tdwg.org/dwc/text/coreid",
-                        processorState
-                );
+        if (core != null && starRecordTmpDir != null) {
+            new DwCStarRecordWriter(outputStream, dereferencer, processorState, starRecordTmpDir)
+                    .write(iriString, starRecords);
+        } else if (core != null) {
+            List<ArchiveFile> archiveFiles = new ArrayList<>();
+            archiveFiles.add(core);
+            archiveFiles.addAll(starRecords.getExtensions());
+
+            if (singlePass) {
+                archiveFiles = new DwCArchiveSinglePassDecoder(outputStream, dereferencer, processorState)
+                        .decode(iriString, starRecords);
+            }
+
+            try (JsonGenerator generator = createGenerator(outputStream)) {
+                for (ArchiveFile archiveFile : archiveFiles) {
+                    streamRecords(
+                            generator,
+                            dereferencer,
+                            getLocation(iriString, archiveFile),
+                            archiveFile == core ? DWC_TEXT_ID : DWC_TEXT_COREID,
+                            processorState
+                    );
+                }
             }
         }
 
     }
 
-    private static void streamRecords(OutputStream outputStream,
+    static JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private static void streamRecords(JsonGenerator generator,
                                       Dereferencer<InputStream> dereferencer,
                                       Pair<IRI, ArchiveFile> resourceIRIs,
                                       String idIRI,
@@ -102,15 +156,17 @@ public class DwCArchiveStreamHandler implements ContentStreamHandler {
         try {
             TabularDataFileReader<List<String>> tabularFileReader = createReader(file, resourceIRIs.getLeft(), dereferencer);
             ClosableIterator<Record> iterator = createRecordIterator(file, tabularFileReader);
+            DwCRecordJsonWriter writer = new DwCRecordJsonWriter(generator, resourceIRIs.getLeft(), file, idIRI);
             while (iterator.hasNext() && processorState.shouldKeepProcessing()) {
-                streamAsJson(resourceIRIs, tabularFileReader, iterator.next(), outputStream, idIRI);
+                writer.write(iterator.next(), tabularFileReader.getLastRecordLineNumber());
             }
+            generator.flush();
         } catch (Throwable ex) {
             rethrowStreamException(ex, resourceIRIs.getLeft().getIRIString());
         }
     }
 
-    private static void rethrowStreamException(Throwable ex, String iriString) throws ContentStreamException {
+    static void rethrowStreamException(Throwable ex, String iriString) throws ContentStreamException {
         if (ex instanceof IllegalStateException && ex.getCause() != null && ex.getCause() instanceof ParseException) {
             ParseException e = (ParseException) ex.getCause();
             iriString = "line:" + iriString + "!/L" + e.getErrorOffset();
@@ -118,25 +174,7 @@ public class DwCArchiveStreamHandler implements ContentStreamHandler {
         throw new ContentStreamException("failed to handle dwc records from <" + iriString + ">", ex);
     }
 
-    private static void streamAsJson(Pair<IRI, ArchiveFile> resourceIRIs,
-                                     TabularDataFileReader<List<String>> tabularFileReader,
-                                     Record record,
-                                     OutputStream outputStream,
-                                     String idIRI) throws IOException {
-        ObjectNode objectNode = new ObjectMapper().createObjectNode();
-        objectNode.set("http://www.w3.org/ns/prov#wasDerivedFrom", TextNode.valueOf("line:" + resourceIRIs.getLeft().getIRIString() + "!/L" + tabularFileReader.getLastRecordLineNumber()));
-        objectNode.set("http://www.w3.org/1999/02/22-rdf-syntax-ns#type", TextNode.valueOf(resourceIRIs.getRight().getRowType().qualifiedName()));
-
-        objectNode.set(idIRI, TextNode.valueOf(record.id()));
-        for (Term term : record.terms()) {
-            objectNode.set(term.qualifiedName(), TextNode.valueOf(record.value(term)));
-        }
-        IOUtils.copy(IOUtils.toInputStream(objectNode.toString(), StandardCharsets.UTF_8), outputStream);
-        IOUtils.copy(IOUtils.toInputStream("\n", StandardCharsets.UTF_8), outputStream);
-    }
-
-
-    private static Pair<IRI, ArchiveFile> getLocation(String iriString, ArchiveFile core) {
+    static Pair<IRI, ArchiveFile> getLocation(String iriString, ArchiveFile core) {
         String baseIRI = StringUtils.substring(iriString, 0, StringUtils.length(iriString) - META_XML.length());
 
         return Pair.of(RefNodeFactory.toIRI(baseIRI + core.getLocation()), core);
@@ -149,8 +187,12 @@ public class DwCArchiveStreamHandler implements ContentStreamHandler {
 
 
     private static TabularDataFileReader<List<String>> createReader(ArchiveFile file, IRI resource, Dereferencer<InputStream> dereferencer) throws IOException {
+        return createReader(file, dereferencer.get(resource));
+    }
+
+    static TabularDataFileReader<List<String>> createReader(ArchiveFile file, InputStream is) throws IOException {
         CharsetDecoder decoder = Charset.forName(file.getEncoding()).newDecoder();
-        Reader reader = new InputStreamReader(dereferencer.get(resource), decoder);
+        Reader reader = new InputStreamReader(is, decoder);
         BufferedReader bufferedReader = new BufferedReader(reader);
 
         return TabularFiles.newTabularFileReader(bufferedReader,
@@ -162,7 +204,7 @@ public class DwCArchiveStreamHandler implements ContentStreamHandler {
         );
     }
 
-    private static ClosableIterator<Record> createRecordIterator(ArchiveFile file,
+    static ClosableIterator<Record> createRecordIterator(ArchiveFile file,
                                                                  TabularDataFileReader<List<String>> tabularFileReader) {
         return new DwcRecordIterator(
                 tabularFileReader,
@@ -0,0 +1,115 @@
+package org.gbif.dwc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.apache.commons.rdf.api.IRI;
+import org.gbif.dwc.record.Record;
+import org.gbif.dwc.terms.Term;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the records of a single DwC archive file as line-delimited json.
+ * <p>
+ * Values that are the same for every record of the file (e.g., row type, field names)
+ * are prepared once, and records are written straight to a shared {@link JsonGenerator}.
+ * Each field name is written once per record: if terms share a name with each other, or with the id field,
+ * the field keeps its first position and takes the last value.
+ */
+
+class DwCRecordJsonWriter {
+
+    private static final SerializableString WAS_DERIVED_FROM = new SerializedString("http://www.w3.org/ns/prov#wasDerivedFrom");
+    private static final SerializableString TYPE = new SerializedString("http://www.w3.org/1999/02/22-rdf-syntax-ns#type");
+
+    private static final int WAS_DERIVED_FROM_SLOT = 0;
+    private static final int TYPE_SLOT = 1;
+    private static final int ID_SLOT = 2;
+
+    private final JsonGenerator generator;
+    private final String linePrefix;
+    private final String rowType;
+    private final SerializableString idFieldName;
+
+    // terms in iteration order of the last planned record, and the field slot of each of them
+    private Term[] plannedTerms = new Term[0];
+    private int[] slotOfTerm = new int[0];
+    private SerializableString[] fieldNames;
+    private String[] values;
+
+    DwCRecordJsonWriter(JsonGenerator generator, IRI resource, ArchiveFile file, String idIRI) {
+        this.generator = generator;
+        this.linePrefix = "line:" + resource.getIRIString() + "!/L";
+        this.rowType = file.getRowType().qualifiedName();
+        this.idFieldName = new SerializedString(idIRI);
+        this.fieldNames = new SerializableString[]{WAS_DERIVED_FROM, TYPE, idFieldName};
+        this.values = new String[fieldNames.length];
+    }
+
+    void write(Record record, long lineNumber) throws IOException {
+        Set<Term> terms = record.terms();
+        if (!isPlanned(terms)) {
+            plan(terms);
+        }
+
+        values[WAS_DERIVED_FROM_SLOT] = linePrefix + lineNumber;
+        values[TYPE_SLOT] = rowType;
+        values[ID_SLOT] = record.id();
+        for (int i = 0; i < plannedTerms.length; i++) {
+            values[slotOfTerm[i]] = record.value(plannedTerms[i]);
+        }
+
+        generator.writeStartObject();
+        for (int slot = 0; slot < fieldNames.length; slot++) {
+            generator.writeFieldName(fieldNames[slot]);
+            generator.writeString(values[slot]);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private boolean isPlanned(Set<Term> terms) {
+        if (terms.size() != plannedTerms.length) {
+            return false;
+        }
+        int i = 0;
+        for (Term term : terms) {
+            if (term != plannedTerms[i] && !term.equals(plannedTerms[i])) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    private void plan(Set<Term> terms) {
+        Map<String, Integer> slotOfName = new LinkedHashMap<>();
+        List<SerializableString> names = new ArrayList<>();
+        for (SerializableString name : new SerializableString[]{WAS_DERIVED_FROM, TYPE, idFieldName}) {
+            slotOfName.putIfAbsent(name.getValue(), names.size());
+            names.add(name);
+        }
+
+        plannedTerms = terms.toArray(new Term[0]);
+        slotOfTerm = new int[plannedTerms.length];
+        for (int i = 0; i < plannedTerms.length; i++) {
+            String name = plannedTerms[i].qualifiedName();
+            Integer slot = slotOfName.get(name);
+            if (slot == null) {
+                slot = names.size();
+                slotOfName.put(name, slot);
+                names.add(new SerializedString(name));
+            }
+            slotOfTerm[i] = slot;
+        }
+        fieldNames = names.toArray(new SerializableString[0]);
+        values = new String[fieldNames.length];
+    }
+
+}
@@ -0,0 +1,248 @@
+package org.gbif.dwc;
+
+import bio.guoda.preston.process.ProcessorStateReadOnly;
+import bio.guoda.preston.store.Dereferencer;
+import bio.guoda.preston.stream.ContentStreamException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.rdf.api.IRI;
+import org.gbif.dwc.record.Record;
+import org.gbif.utils.file.ClosableIterator;
+import org.gbif.utils.file.tabular.TabularDataFileReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes DwC archive records as star records: one json object per core record,
+ * with the associated extension records grouped by row type, e.g.,
+ * <p>
+ * {"http://rs.tdwg.org/dwc/text/id":"1", ..., "http://rs.gbif.org/terms/1.0/Multimedia":[{...},{...}]}
+ * <p>
+ * Core and extension records are sorted by (core) id with {@link ExternalRecordSorter}s
+ * that share a single memory budget and spill to the tmp dir, and then merge-joined. Extension records are streamed
+ * into the star record of their core record as the core records are written, so memory use is bounded regardless
+ * of archive size or of the number of extension records per core record. Star records are written in order of their core id.
+ * Each extension record is written at most once: extension records without a matching core record are skipped,
+ * and if core records share an id, the extension records go with the first of them.
+ */
+
+class DwCStarRecordWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DwCStarRecordWriter.class);
+
+    private final OutputStream outputStream;
+    private final Dereferencer<InputStream> dereferencer;
+    private final ProcessorStateReadOnly processorState;
+    private final File tmpDir;
+    private final long memoryBudget;
+
+    DwCStarRecordWriter(OutputStream outputStream,
+                        Dereferencer<InputStream> dereferencer,
+                        ProcessorStateReadOnly processorState,
+                        File tmpDir) {
+        this(outputStream, dereferencer, processorState, tmpDir, ExternalRecordSorter.DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget memory budget shared by the sorters of the core and extension records
+     */
+
+    DwCStarRecordWriter(OutputStream outputStream,
+                        Dereferencer<InputStream> dereferencer,
+                        ProcessorStateReadOnly processorState,
+                        File tmpDir,
+                        long memoryBudget) {
+        this.outputStream = outputStream;
+        this.dereferencer = dereferencer;
+        this.processorState = processorState;
+        this.tmpDir = tmpDir;
+        this.memoryBudget = memoryBudget;
+    }
+
+    void write(String metaIRIString, Archive archive) throws IOException, ContentStreamException {
+        // records left in memory by one sorter are held while the next ones sort, so the sorters split the budget
+        long memoryBudgetPerFile = memoryBudget / (1 + archive.getExtensions().size());
+        List<ExternalRecordSorter> sorters = new ArrayList<>();
+        try {
+            ExternalRecordSorter coreSorter = sort(metaIRIString, archive.getCore(), DwCArchiveStreamHandler.DWC_TEXT_ID, memoryBudgetPerFile);
+            sorters.add(coreSorter);
+
+            Map<String, List<Iterator<Pair<String, byte[]>>>> extensionsByRowType = new LinkedHashMap<>();
+            for (ArchiveFile extension : archive.getExtensions()) {
+                ExternalRecordSorter sorter = sort(metaIRIString, extension, DwCArchiveStreamHandler.DWC_TEXT_COREID, memoryBudgetPerFile);
+                sorters.add(sorter);
+                extensionsByRowType
+                        .computeIfAbsent(extension.getRowType().qualifiedName(), rowType -> new ArrayList<>())
+                        .add(sorter.sorted());
+            }
+
+            join(coreSorter.sorted(), extensionsByRowType);
+        } finally {
+            sorters.forEach(ExternalRecordSorter::close);
+        }
+    }
+
+    private ExternalRecordSorter sort(String metaIRIString, ArchiveFile file, String idIRI, long memoryBudget) throws ContentStreamException {
+        Pair<IRI, ArchiveFile> resourceIRIs = DwCArchiveStreamHandler.getLocation(metaIRIString, file);
+        ExternalRecordSorter sorter = new ExternalRecordSorter(tmpDir, memoryBudget);
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        try (JsonGenerator generator = DwCArchiveStreamHandler.createGenerator(recordBytes)) {
+            TabularDataFileReader<List<String>> tabularFileReader = DwCArchiveStreamHandler.createReader(file, dereferencer.get(resourceIRIs.getLeft()));
+            ClosableIterator<Record> iterator = DwCArchiveStreamHandler.createRecordIterator(file, tabularFileReader);
+            DwCRecordJsonWriter writer = new DwCRecordJsonWriter(generator, resourceIRIs.getLeft(), file, idIRI);
+            while (iterator.hasNext() && processorState.shouldKeepProcessing()) {
+                Record record = iterator.next();
+                writer.write(record, tabularFileReader.getLastRecordLineNumber());
+                generator.flush();
+                // leave out the line separator
+                byte[] json = recordBytes.toByteArray();
+                sorter.add(record.id(), Arrays.copyOf(json, json.length - 1));
+                recordBytes.reset();
+            }
+        } catch (Throwable ex) {
+            sorter.close();
+            DwCArchiveStreamHandler.rethrowStreamException(ex, resourceIRIs.getLeft().getIRIString());
+        }
+        return sorter;
+    }
+
+    /**
+     * Writes star records from core and extension records sorted by (core) id.
+     *
+     * @param coreRecords         core records as json objects, sorted by id
+     * @param extensionsByRowType extension records as json objects, sorted by core id, grouped by row type
+     */
+
+    void join(Iterator<Pair<String, byte[]>> coreRecords, Map<String, List<Iterator<Pair<String, byte[]>>>> extensionsByRowType) throws IOException {
+        Map<String, SerializedString> fieldNames = new LinkedHashMap<>();
+        Map<String, List<ExtensionRecords>> extensionRecordsByRowType = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Iterator<Pair<String, byte[]>>>> extensions : extensionsByRowType.entrySet()) {
+            fieldNames.put(extensions.getKey(), new SerializedString(extensions.getKey()));
+            List<ExtensionRecords> extensionRecords = new ArrayList<>();
+            for (Iterator<Pair<String, byte[]>> records : extensions.getValue()) {
+                extensionRecords.add(new ExtensionRecords(records));
+            }
+            extensionRecordsByRowType.put(extensions.getKey(), extensionRecords);
+        }
+
+        OutputStream out = new BufferedOutputStream(outputStream);
+        String previousCoreId = null;
+        long duplicates = 0;
+        while (coreRecords.hasNext() && processorState.shouldKeepProcessing()) {
+            Pair<String, byte[]> coreRecord = coreRecords.next();
+            String coreId = coreRecord.getLeft();
+            if (coreId.equals(previousCoreId)) {
+                duplicates++;
+            }
+            previousCoreId = coreId;
+
+            byte[] json = coreRecord.getRight();
+            // core record without its closing brace
+            out.write(json, 0, json.length - 1);
+            for (Map.Entry<String, List<ExtensionRecords>> extensions : extensionRecordsByRowType.entrySet()) {
+                boolean first = true;
+                for (ExtensionRecords extensionRecords : extensions.getValue()) {
+                    byte[] extensionRecord;
+                    while ((extensionRecord = extensionRecords.nextFor(coreId)) != null) {
+                        if (first) {
+                            out.write(',');
+                            out.write('"');
+                            out.write(fieldNames.get(extensions.getKey()).asQuotedUTF8());
+                            out.write('"');
+                            out.write(':');
+                            out.write('[');
+                            first = false;
+                        } else {
+                            out.write(',');
+                        }
+                        out.write(extensionRecord);
+                    }
+                }
+                if (!first) {
+                    out.write(']');
+                }
+            }
+            out.write('}');
+            out.write('\n');
+        }
+        out.flush();
+
+        if (processorState.shouldKeepProcessing()) {
+            long orphans = 0;
+            for (List<ExtensionRecords> extensions : extensionRecordsByRowType.values()) {
+                for (ExtensionRecords extensionRecords : extensions) {
+                    orphans += extensionRecords.getNumberOfSkippedRecords();
+                }
+            }
+            if (orphans > 0) {
+                LOG.warn("skipped [" + orphans + "] extension record(s) without matching core record");
+            }
+            if (duplicates > 0) {
+                LOG.warn("found [" + duplicates + "] core record(s) with the id of a preceding core record: their extension records went with the first core record of that id");
+            }
+        }
+    }
+
+    /**
+     * Extension records sorted by core id, consumed one at a time in step with core records.
+     */
+
+    private static class ExtensionRecords {
+        private final Iterator<Pair<String, byte[]>> records;
+        private Pair<String, byte[]> next = null;
+        private long skipped = 0;
+
+        ExtensionRecords(Iterator<Pair<String, byte[]>> records) {
+            this.records = records;
+        }
+
+        /**
+         * Skips records of core ids before the given one.
+         *
+         * @return next record of the given core id, or null if there is none left.
+         */
+
+        byte[] nextFor(String coreId) {
+            while (peek() != null && peek().getLeft().compareTo(coreId) < 0) {
+                next = null;
+                skipped++;
+            }
+            Pair<String, byte[]> record = peek();
+            if (record == null || !record.getLeft().equals(coreId)) {
+                return null;
+            }
+            next = null;
+            return record.getRight();
+        }
+
+        private Pair<String, byte[]> peek() {
+            if (next == null && records.hasNext()) {
+                next = records.next();
+            }
+            return next;
+        }
+
+        long getNumberOfSkippedRecords() {
+            while (peek() != null) {
+                next = null;
+                skipped++;
+            }
+            return skipped;
+        }
+    }
+
+}
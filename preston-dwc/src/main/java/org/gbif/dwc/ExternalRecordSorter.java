@@ -0,0 +1,264 @@
+package org.gbif.dwc;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts records by key with bounded memory.
+ * <p>
+ * Records are kept in memory until their estimated size exceeds the memory budget,
+ * after which they are sorted and spilled to a run file in the tmp dir. Sorted records are
+ * produced by merging the runs. To bound the number of open files and read buffers, at most a fixed number of runs
+ * are merged at once: more runs are first merged, group by group, into fewer, longer runs.
+ * Records with equal keys keep the order in which they were added.
+ */
+
+class ExternalRecordSorter implements Closeable {
+
+    static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    static final int DEFAULT_MAX_FAN_IN = 64;
+
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    // rough per-record overhead of the in-memory list entries
+    private static final int RECORD_OVERHEAD = 64;
+
+    private static final Comparator<Pair<String, byte[]>> BY_KEY = Comparator.comparing(Pair::getLeft);
+
+    private final File tmpDir;
+    private final long memoryBudget;
+    private final int maxFanIn;
+
+    private final List<Pair<String, byte[]>> buffer = new ArrayList<>();
+    private long bufferSize = 0;
+    private final List<File> runs = new ArrayList<>();
+
+    ExternalRecordSorter(File tmpDir) {
+        this(tmpDir, DEFAULT_MEMORY_BUDGET);
+    }
+
+    ExternalRecordSorter(File tmpDir, long memoryBudget) {
+        this(tmpDir, memoryBudget, DEFAULT_MAX_FAN_IN);
+    }
+
+    /**
+     * @param maxFanIn maximum number of runs to merge at once, at least 2
+     */
+
+    ExternalRecordSorter(File tmpDir, long memoryBudget, int maxFanIn) {
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("cannot merge less than 2 sources at once, but got [" + maxFanIn + "]");
+        }
+        this.tmpDir = tmpDir;
+        this.memoryBudget = memoryBudget;
+        this.maxFanIn = maxFanIn;
+    }
+
+    void add(String key, byte[] record) throws IOException {
+        String nonNullKey = key == null ? "" : key;
+        buffer.add(Pair.of(nonNullKey, record));
+        bufferSize += 2L * nonNullKey.length() + record.length + RECORD_OVERHEAD;
+        if (bufferSize > memoryBudget) {
+            spill();
+        }
+    }
+
+    int getNumberOfRuns() {
+        return runs.size();
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(BY_KEY);
+        runs.add(writeRun(buffer.iterator(), buffer.size()));
+        buffer.clear();
+        bufferSize = 0;
+    }
+
+    private File writeRun(Iterator<Pair<String, byte[]>> records, int numberOfRecords) throws IOException {
+        FileUtils.forceMkdir(tmpDir);
+        File run = File.createTempFile("dwc-sort-", ".run", tmpDir);
+        run.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), RUN_BUFFER_SIZE))) {
+            out.writeInt(numberOfRecords);
+            while (records.hasNext()) {
+                Pair<String, byte[]> record = records.next();
+                byte[] key = record.getLeft().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(record.getRight().length);
+                out.write(record.getRight());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            FileUtils.deleteQuietly(run);
+            throw e;
+        }
+        return run;
+    }
+
+    /**
+     * Merges consecutive groups of runs into single runs, until the remaining runs can be merged at once.
+     * Merging consecutive runs keeps records with equal keys in the order in which they were added.
+     */
+
+    private void reduceRuns() throws IOException {
+        while (runs.size() > maxFanIn) {
+            List<File> reduced = new ArrayList<>();
+            try {
+                for (int start = 0; start < runs.size(); start += maxFanIn) {
+                    List<File> group = runs.subList(start, Math.min(start + maxFanIn, runs.size()));
+                    reduced.add(group.size() == 1 ? group.get(0) : mergeRuns(group));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                reduced.forEach(FileUtils::deleteQuietly);
+                throw e;
+            }
+            runs.clear();
+            runs.addAll(reduced);
+        }
+    }
+
+    private File mergeRuns(List<File> group) throws IOException {
+        List<Iterator<Pair<String, byte[]>>> sources = new ArrayList<>();
+        int numberOfRecords = 0;
+        for (File run : group) {
+            RunIterator source = new RunIterator(run);
+            numberOfRecords += source.remaining;
+            sources.add(source);
+        }
+        File merged = writeRun(new MergingIterator(sources), numberOfRecords);
+        for (File run : group) {
+            FileUtils.deleteQuietly(run);
+        }
+        return merged;
+    }
+
+    /**
+     * @return records in key order; can be called once, after all records were added.
+     */
+
+    Iterator<Pair<String, byte[]>> sorted() throws IOException {
+        if (runs.isEmpty()) {
+            buffer.sort(BY_KEY);
+            return buffer.iterator();
+        }
+
+        // release the memory of the remaining records before merging
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        reduceRuns();
+
+        List<Iterator<Pair<String, byte[]>>> sources = new ArrayList<>();
+        for (File run : runs) {
+            sources.add(new RunIterator(run));
+        }
+        return new MergingIterator(sources);
+    }
+
+    @Override
+    public void close() {
+        for (File run : runs) {
+            FileUtils.deleteQuietly(run);
+        }
+        runs.clear();
+        buffer.clear();
+    }
+
+    private static class RunIterator implements Iterator<Pair<String, byte[]>> {
+        private final DataInputStream in;
+        private int remaining;
+
+        RunIterator(File run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), RUN_BUFFER_SIZE));
+            this.remaining = in.readInt();
+            closeIfDone();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Pair<String, byte[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                remaining--;
+                closeIfDone();
+                return Pair.of(new String(key, StandardCharsets.UTF_8), record);
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to read sorted records", e);
+            }
+        }
+
+        private void closeIfDone() throws IOException {
+            if (remaining == 0) {
+                in.close();
+            }
+        }
+    }
+
+    private static class MergingIterator implements Iterator<Pair<String, byte[]>> {
+
+        // heads of the sources, ordered by key and, for equal keys, by source index
+        private final PriorityQueue<Pair<Integer, Pair<String, byte[]>>> heads = new PriorityQueue<>(
+                Comparator.<Pair<Integer, Pair<String, byte[]>>, String>comparing(head -> head.getRight().getLeft())
+                        .thenComparing(Pair::getLeft)
+        );
+        private final List<Iterator<Pair<String, byte[]>>> sources;
+
+        MergingIterator(List<Iterator<Pair<String, byte[]>>> sources) {
+            this.sources = sources;
+            for (int i = 0; i < sources.size(); i++) {
+                advance(i);
+            }
+        }
+
+        private void advance(int sourceIndex) {
+            Iterator<Pair<String, byte[]>> source = sources.get(sourceIndex);
+            if (source.hasNext()) {
+                heads.add(Pair.of(sourceIndex, source.next()));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Pair<String, byte[]> next() {
+            Pair<Integer, Pair<String, byte[]>> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.getLeft());
+            return head.getRight();
+        }
+    }
+
+}
@@ -9,7 +9,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Quad;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -20,12 +22,14 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import static bio.guoda.preston.RefNodeConstants.HAS_VERSION;
 import static bio.guoda.preston.RefNodeFactory.toIRI;
 import static bio.guoda.preston.RefNodeFactory.toStatement;
 import static junit.framework.TestCase.assertNull;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.isEmptyString;
 import static org.hamcrest.Matchers.not;
@@ -33,6 +37,9 @@ import static org.hamcrest.core.Is.is;
 
 public class DwcRecordExtractorTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void streamDwcRecordsToJSON() throws IOException {
 
@@ -100,6 +107,66 @@ public class DwcRecordExtractorTest {
 
     }
 
+    @Test
+    public void streamDwcRecordsToJSONSinglePass() throws IOException {
+        String[] expected = StringUtils.split(streamPlaziDwcA(false), "\n");
+        String[] actual = StringUtils.split(streamPlaziDwcA(true), "\n");
+
+        assertThat(actual.length, is(15));
+        assertThat(Arrays.asList(actual), containsInAnyOrder(expected));
+    }
+
+    @Test
+    public void streamDwcStarRecordsToJSON() throws IOException {
+        String[] jsonObjects = StringUtils.split(streamPlaziDwcA(false, folder.newFolder("tmp")), "\n");
+        assertThat(jsonObjects.length, is(2));
+
+        JsonNode first = new ObjectMapper().readTree(jsonObjects[0]);
+        assertThat(first.get("http://rs.tdwg.org/dwc/text/id").asText(), is("D51D87C0FFC3C7624B9C5739FC6EDCBF.taxon"));
+        assertThat(first.get("http://rs.gbif.org/terms/1.0/Multimedia").size(), is(2));
+        assertThat(first.get("http://rs.gbif.org/terms/1.0/Description").size(), is(3));
+        assertThat(first.get("http://rs.gbif.org/terms/1.0/Description").get(0).get("http://rs.tdwg.org/dwc/text/coreid").asText(), is("D51D87C0FFC3C7624B9C5739FC6EDCBF.taxon"));
+        assertNull(first.get("http://rs.tdwg.org/dwc/terms/Occurrence"));
+
+        JsonNode second = new ObjectMapper().readTree(jsonObjects[1]);
+        assertThat(second.get("http://rs.tdwg.org/dwc/text/id").asText(), is("D51D87C0FFC4C76F4B9C5298FC31DFDF.taxon"));
+        assertThat(second.get("http://rs.gbif.org/terms/1.0/Multimedia").size(), is(2));
+        assertThat(second.get("http://rs.gbif.org/terms/1.0/Description").size(), is(2));
+    }
+
+    private String streamPlaziDwcA(boolean singlePass) throws IOException {
+        return streamPlaziDwcA(singlePass, null);
+    }
+
+    private String streamPlaziDwcA(boolean singlePass, File starRecordTmpDir) throws IOException {
+        BlobStoreReadOnly blobStore = new BlobStoreReadOnly() {
+            @Override
+            public InputStream get(IRI key) {
+                if (StringUtils.equals("hash://sha256/856ecd48436bb220a80f0a746f94abd7c4ea47cb61d946286f7e25cf0ec69dc1", key.getIRIString())) {
+                    return getClass().getResourceAsStream("/bio/guoda/preston/plazidwca.zip");
+                }
+                return null;
+            }
+        };
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DwcRecordExtractor dwcRecordExtractor = new DwcRecordExtractor(
+                new ProcessorStateAlwaysContinue(),
+                blobStore,
+                byteArrayOutputStream
+        );
+        dwcRecordExtractor.setSinglePass(singlePass);
+        dwcRecordExtractor.setStarRecordTmpDir(starRecordTmpDir);
+
+        dwcRecordExtractor.on(toStatement(
+                toIRI("blip"),
+                HAS_VERSION,
+                toIRI("hash://sha256/856ecd48436bb220a80f0a746f94abd7c4ea47cb61d946286f7e25cf0ec69dc1")
+        ));
+
+        return IOUtils.toString(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8.name());
+    }
+
     @Test
     public void errorOnStreamingInvalidDwcRecordsToJSON() throws IOException {
 
@@ -5,6 +5,7 @@ import bio.guoda.preston.store.Dereferencer;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.rdf.api.IRI;
 import org.gbif.dwc.meta.DwcMetaFiles;
 import org.gbif.dwc.meta.DwcMetaFiles2;
@@ -16,6 +17,7 @@ import org.xml.sax.SAXException;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -118,5 +120,47 @@ public class DwCArchiveStreamHandlerTest {
 
     }
 
+    @Test
+    public void termNamedLikeIdField() throws ContentStreamException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DwCArchiveStreamHandler handler = new DwCArchiveStreamHandler(new ContentStreamHandler() {
+            @Override
+            public boolean handle(IRI version, InputStream in) throws ContentStreamException {
+                return false;
+            }
+
+            @Override
+            public boolean shouldKeepProcessing() {
+                return true;
+            }
+        }, new Dereferencer<InputStream>() {
+            @Override
+            public InputStream get(IRI uri) throws IOException {
+                String resourceName = StringUtils.replace(uri.getIRIString(), "foo:bar!", "idterm");
+                return DwCArchiveStreamHandlerTest.this.getClass()
+                        .getResourceAsStream(resourceName);
+            }
+        }, os);
+
+        handler.handle(RefNodeFactory.toIRI("foo:bar!/meta.xml"),
+                getClass().getResourceAsStream("idterm/meta.xml"));
+
+        assertThat(new String(os.toByteArray(), StandardCharsets.UTF_8), is("{" +
+                "\"http://www.w3.org/ns/prov#wasDerivedFrom\":\"line:foo:bar!/occurrence.txt!/L2\"," +
+                "\"http://www.w3.org/1999/02/22-rdf-syntax-ns#type\":\"http://rs.tdwg.org/dwc/terms/Occurrence\"," +
+                "\"http://rs.tdwg.org/dwc/text/id\":\"one\"," +
+                "\"http://rs.tdwg.org/dwc/terms/scientificName\":\"Homo sapiens\"}\n"));
+    }
+
+    @Test
+    public void splitArchiveIRI() {
+        Pair<String, String> containerAndPath = DwCArchiveSinglePassDecoder.splitArchiveIRI("zip:hash://sha256/abc!/dwca/meta.xml");
+        assertThat(containerAndPath.getLeft(), is("zip:hash://sha256/abc"));
+        assertThat(containerAndPath.getRight(), is("dwca/"));
+
+        assertThat(DwCArchiveSinglePassDecoder.splitArchiveIRI("tar:gz:hash://sha256/abc!/meta.xml").getLeft(), is("tar:gz:hash://sha256/abc"));
+        assertThat(DwCArchiveSinglePassDecoder.splitArchiveIRI("hash://sha256/abc"), is(nullValue()));
+        assertThat(DwCArchiveSinglePassDecoder.splitArchiveIRI("foo/meta.xml"), is(nullValue()));
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package org.gbif.dwc;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+public class DwCStarRecordWriterTest {
+
+    private static final String MULTIMEDIA = "http://rs.gbif.org/terms/1.0/Multimedia";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void joinDuplicateCoreIds() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DwCStarRecordWriter writer = new DwCStarRecordWriter(os, null, () -> true, folder.newFolder());
+
+        Map<String, List<Iterator<Pair<String, byte[]>>>> extensions = new LinkedHashMap<>();
+        extensions.put(MULTIMEDIA, Collections.singletonList(records(
+                record("0", "{\"m\":\"orphan\"}"),
+                record("1", "{\"m\":\"1a\"}"),
+                record("1", "{\"m\":\"1b\"}"),
+                record("2", "{\"m\":\"2a\"}")
+        )));
+
+        writer.join(records(
+                record("1", "{\"c\":\"first\"}"),
+                record("1", "{\"c\":\"second\"}"),
+                record("2", "{\"c\":\"third\"}")
+        ), extensions);
+
+        assertThat(new String(os.toByteArray(), StandardCharsets.UTF_8), is(
+                "{\"c\":\"first\",\"" + MULTIMEDIA + "\":[{\"m\":\"1a\"},{\"m\":\"1b\"}]}\n" +
+                        "{\"c\":\"second\"}\n" +
+                        "{\"c\":\"third\",\"" + MULTIMEDIA + "\":[{\"m\":\"2a\"}]}\n"
+        ));
+    }
+
+    @Test
+    public void joinSkewedCoreIds() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        DwCStarRecordWriter writer = new DwCStarRecordWriter(os, null, () -> true, folder.newFolder());
+
+        try (ExternalRecordSorter coreSorter = new ExternalRecordSorter(folder.newFolder(), 1024);
+             ExternalRecordSorter extensionSorter = new ExternalRecordSorter(folder.newFolder(), 1024)) {
+            for (int i = 0; i < 10; i++) {
+                coreSorter.add("id" + i, bytes("{\"c\":\"" + i + "\"}"));
+                extensionSorter.add("id" + i, bytes("{\"m\":\"" + i + "\"}"));
+            }
+            // most extension records belong to a single core record
+            for (int i = 0; i < 10000; i++) {
+                extensionSorter.add("id5", bytes("{\"m\":\"5-" + i + "\"}"));
+            }
+            assertThat(extensionSorter.getNumberOfRuns(), is(greaterThan(1)));
+
+            Map<String, List<Iterator<Pair<String, byte[]>>>> extensions = new LinkedHashMap<>();
+            extensions.put(MULTIMEDIA, Collections.singletonList(extensionSorter.sorted()));
+            writer.join(coreSorter.sorted(), extensions);
+        }
+
+        String[] lines = new String(os.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines.length, is(10));
+        assertThat(lines[4], is("{\"c\":\"4\",\"" + MULTIMEDIA + "\":[{\"m\":\"4\"}]}"));
+        assertThat(lines[5].split("\\{\"m\":").length - 1, is(10001));
+        assertThat(lines[5].startsWith("{\"c\":\"5\",\"" + MULTIMEDIA + "\":[{\"m\":\"5\"},{\"m\":\"5-0\"},"), is(true));
+        assertThat(lines[5].endsWith(",{\"m\":\"5-9999\"}]}"), is(true));
+        assertThat(lines[6], is("{\"c\":\"6\",\"" + MULTIMEDIA + "\":[{\"m\":\"6\"}]}"));
+    }
+
+    private static Pair<String, byte[]> record(String id, String json) {
+        return Pair.of(id, bytes(json));
+    }
+
+    @SafeVarargs
+    private static Iterator<Pair<String, byte[]>> records(Pair<String, byte[]>... records) {
+        return new ArrayList<>(Arrays.asList(records)).iterator();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
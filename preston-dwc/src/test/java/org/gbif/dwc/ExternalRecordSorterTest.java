@@ -0,0 +1,92 @@
+package org.gbif.dwc;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ExternalRecordSorterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sortInMemory() throws IOException {
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(folder.newFolder())) {
+            sorter.add("b", bytes("b1"));
+            sorter.add("a", bytes("a1"));
+            sorter.add("b", bytes("b2"));
+            sorter.add(null, bytes("none"));
+
+            assertThat(sorter.getNumberOfRuns(), is(0));
+            assertThat(values(sorter.sorted()), contains("none", "a1", "b1", "b2"));
+        }
+    }
+
+    @Test
+    public void sortWithSpills() throws IOException {
+        File tmpDir = folder.newFolder();
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(tmpDir, 1024)) {
+            for (int i = 0; i < 1000; i++) {
+                sorter.add("key" + (i % 10), bytes("value" + i));
+            }
+
+            assertThat(sorter.getNumberOfRuns(), greaterThan(1));
+
+            List<String> values = values(sorter.sorted());
+            assertThat(values.size(), is(1000));
+            assertThat(values.get(0), is("value0"));
+            assertThat(values.get(1), is("value10"));
+            assertThat(values.get(99), is("value990"));
+            assertThat(values.get(100), is("value1"));
+            assertThat(values.get(999), is("value999"));
+        }
+        assertThat(tmpDir.list().length, is(0));
+    }
+
+    @Test
+    public void sortInMultiplePasses() throws IOException {
+        File tmpDir = folder.newFolder();
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(tmpDir, 1024, 3)) {
+            for (int i = 0; i < 1000; i++) {
+                sorter.add("key" + (i % 10), bytes("value" + i));
+            }
+
+            assertThat(sorter.getNumberOfRuns(), greaterThan(9));
+
+            List<String> values = values(sorter.sorted());
+            assertThat(sorter.getNumberOfRuns(), lessThanOrEqualTo(3));
+            assertThat(values.size(), is(1000));
+            assertThat(values.get(0), is("value0"));
+            assertThat(values.get(1), is("value10"));
+            assertThat(values.get(99), is("value990"));
+            assertThat(values.get(100), is("value1"));
+            assertThat(values.get(999), is("value999"));
+        }
+        assertThat(tmpDir.list().length, is(0));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> values(Iterator<Pair<String, byte[]>> records) {
+        List<String> values = new ArrayList<>();
+        records.forEachRemaining(record -> values.add(new String(record.getRight(), StandardCharsets.UTF_8)));
+        return values;
+    }
+
+}
@@ -13,6 +13,7 @@ import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Quad;
 import picocli.CommandLine;
 
+import java.io.File;
 import java.io.IOException;
 
 @CommandLine.Command(
@@ -74,15 +75,14 @@ public class CmdExcelRecordStream extends LoggingPersisting implements Runnable
             }
 
             void readXLSX(IRI version, Integer skipLines, Boolean headerless) throws IOException {
-                XLSXHandler.rowsAsJsonStream(
+                XLSXHandler.rowsAndPicturesAsJsonStream(
+                        getHashType(),
                         getOutputStream(),
                         version,
                         blobStoreReadOnly,
                         skipLines,
-                        headerless);
-
-                XLSXHandler.picturesAsJsonStream(getHashType(), version, getOutputStream(), blobStoreReadOnly);
-
+                        headerless,
+                        new File(getTmpDir()));
             }
         };
 
@@ -1,7 +1,6 @@
 package bio.guoda.preston.excel;
 
 import bio.guoda.preston.HashType;
-import bio.guoda.preston.Hasher;
 import bio.guoda.preston.RefNodeConstants;
 import bio.guoda.preston.RefNodeFactory;
 import bio.guoda.preston.process.StatementsListener;
@@ -11,24 +10,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.monitorjbl.xlsx.StreamingReader;
 import com.monitorjbl.xlsx.exceptions.ReadException;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.io.input.TeeInputStream;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.poi.EmptyFileException;
 import org.apache.poi.ooxml.POIXMLException;
 import org.apache.poi.openxml4j.exceptions.InvalidOperationException;
 import org.apache.poi.openxml4j.exceptions.NotOfficeXmlFileException;
-import org.apache.poi.openxml4j.opc.PackagePartName;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFPictureData;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.ZipException;
 
 public class XLSXHandler {
 
@@ -37,84 +37,126 @@ public class XLSXHandler {
         try (Workbook workbook = StreamingReader
                 .builder()
                 .open(contentStore.get(resourceIRI))) {
-            XLSHandler.asJsonStream(
-                    out,
-                    resourceIRI,
-                    workbook,
-                    "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
-                    skipLines,
-                    headerless);
+            rowsAsJsonStream(out, resourceIRI, workbook, skipLines, headerless);
         } catch (NotOfficeXmlFileException | InvalidOperationException | ReadException | POIXMLException | EmptyFileException ex) {
             // ignore runtime exception to implement opportunistic handling
         }
     }
 
-    public static void emitPictureStatementsForXLSX(HashType hashType, IRI archiveContentId, StatementsListener listener, Dereferencer<InputStream> contentStore) throws IOException {
+    /**
+     * Streams both rows and pictures of an xlsx resource, reading the resource only once:
+     * pictures are hashed while the package is spooled to a tmp file, after which the rows are read from that tmp file.
+     *
+     * @param tmpDir directory to spool the resource to
+     */
 
+    public static void rowsAndPicturesAsJsonStream(HashType hashType, OutputStream out, IRI resourceIRI, KeyValueStoreReadOnly contentStore, Integer skipLines, Boolean headerless, File tmpDir) throws IOException {
+        File spooled = File.createTempFile("preston-xlsx-", ".xlsx", tmpDir);
         try {
-            emitPictureStatements(hashType, archiveContentId, listener, contentStore);
-        } catch (NotOfficeXmlFileException | InvalidOperationException | ReadException | POIXMLException | EmptyFileException ex) {
-            // ignore runtime exception to implement opportunistic handling
+            XLSXPictureScanner scanner = new XLSXPictureScanner(hashType);
+            boolean scanned = spoolAndScan(contentStore.get(resourceIRI), spooled, scanner);
+            if (!scanned) {
+                scanner = new XLSXPictureScanner(hashType);
+                scanFile(spooled, scanner);
+            }
+
+            try (Workbook workbook = StreamingReader
+                    .builder()
+                    .open(spooled)) {
+                rowsAsJsonStream(out, resourceIRI, workbook, skipLines, headerless);
+            } catch (NotOfficeXmlFileException | InvalidOperationException | ReadException | POIXMLException | EmptyFileException ex) {
+                // ignore runtime exception to implement opportunistic handling
+            }
+
+            for (XLSXPictureScanner.XLSXPicture picture : scanner.getPictures()) {
+                pictureAsJsonStream(picture, resourceIRI, out);
+            }
+        } finally {
+            FileUtils.deleteQuietly(spooled);
         }
     }
 
-    private static void emitPictureStatements(HashType hashType, IRI archiveContentId, StatementsListener listener, Dereferencer<InputStream> contentStore) throws IOException {
-        XSSFWorkbook workbook = new XSSFWorkbook(contentStore.get(archiveContentId));
-
-        List<XSSFPictureData> pictures = workbook.getAllPictures();
-        for (XSSFPictureData picture : pictures) {
-            emitPictureStatements(
-                    picture,
-                    archiveContentId,
-                    listener,
-                    hashType
-            );
+    private static boolean spoolAndScan(InputStream is, File spooled, XLSXPictureScanner scanner) throws IOException {
+        if (is == null) {
+            throw new IOException("failed to retrieve xlsx content");
+        }
+        try (InputStream content = is;
+             OutputStream spool = new BufferedOutputStream(new FileOutputStream(spooled));
+             TeeInputStream tee = new TeeInputStream(content, spool)) {
+            boolean scanned = true;
+            try {
+                scanner.scan(tee);
+            } catch (IOException ex) {
+                // some zip entries cannot be streamed (e.g., stored entries with data descriptor), so retry on spooled file
+                scanned = false;
+            }
+            // drain remainder (e.g., zip central directory) to complete the spooled copy
+            IOUtils.consume(tee);
+            return scanned;
+        }
+    }
 
+    private static void scanFile(File spooled, XLSXPictureScanner scanner) {
+        try {
+            scanner.scan(spooled);
+        } catch (IOException ex) {
+            // ignore to implement opportunistic handling of non-xlsx content
         }
     }
 
-    private static void emitPictureStatements(XSSFPictureData picture, IRI expectedArchiveContentId, StatementsListener statementsListener, HashType hashType) throws IOException {
-        PackagePartName partName = picture.getPackagePart().getPartName();
-        String relativeImageIRI = "zip:" + expectedArchiveContentId.getIRIString() + "!" + partName.getName();
-        IRI iri = Hasher.calcHashIRI(new ByteArrayInputStream(picture.getData()), NullOutputStream.INSTANCE, hashType);
+    private static void rowsAsJsonStream(OutputStream out, IRI resourceIRI, Workbook workbook, Integer skipLines, Boolean headerless) throws IOException {
+        XLSHandler.asJsonStream(
+                out,
+                resourceIRI,
+                workbook,
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+                skipLines,
+                headerless);
+    }
 
+    public static void emitPictureStatementsForXLSX(HashType hashType, IRI archiveContentId, StatementsListener listener, Dereferencer<InputStream> contentStore) throws IOException {
+        for (XLSXPictureScanner.XLSXPicture picture : scanPictures(hashType, archiveContentId, contentStore)) {
+            emitPictureStatements(picture, archiveContentId, listener);
+        }
+    }
+
+    private static void emitPictureStatements(XLSXPictureScanner.XLSXPicture picture, IRI expectedArchiveContentId, StatementsListener statementsListener) {
+        IRI relativeImageIRI = RefNodeFactory.toIRI(toRelativeImageIRI(picture, expectedArchiveContentId));
         statementsListener.on(Arrays.asList(
-                RefNodeFactory.toStatement(RefNodeFactory.toIRI(relativeImageIRI), RefNodeConstants.HAS_FORMAT, RefNodeFactory.toLiteral(picture.getMimeType())),
-                RefNodeFactory.toStatement(RefNodeFactory.toIRI(relativeImageIRI), RefNodeConstants.HAS_VERSION, iri)
+                RefNodeFactory.toStatement(relativeImageIRI, RefNodeConstants.HAS_FORMAT, RefNodeFactory.toLiteral(picture.getMimeType())),
+                RefNodeFactory.toStatement(relativeImageIRI, RefNodeConstants.HAS_VERSION, picture.getVersion())
         ));
     }
 
     public static void picturesAsJsonStream(HashType hashType, IRI archiveContentId, OutputStream os, Dereferencer<InputStream> contentStore) throws IOException {
+        for (XLSXPictureScanner.XLSXPicture picture : scanPictures(hashType, archiveContentId, contentStore)) {
+            pictureAsJsonStream(picture, archiveContentId, os);
+        }
+    }
 
-        try {
-            XSSFWorkbook workbook = new XSSFWorkbook(contentStore.get(archiveContentId));
-
-            List<XSSFPictureData> pictures = workbook.getAllPictures();
-            for (XSSFPictureData picture : pictures) {
-                pictureAsJsonStream(
-                        picture,
-                        archiveContentId,
-                        os,
-                        hashType
-                );
-
+    private static List<XLSXPictureScanner.XLSXPicture> scanPictures(HashType hashType, IRI archiveContentId, Dereferencer<InputStream> contentStore) throws IOException {
+        XLSXPictureScanner scanner = new XLSXPictureScanner(hashType);
+        try (InputStream is = contentStore.get(archiveContentId)) {
+            if (is != null) {
+                scanner.scan(is);
             }
-        } catch (NotOfficeXmlFileException | InvalidOperationException | ReadException | POIXMLException | EmptyFileException ex) {
-            // ignore runtime exception to implement opportunistic handling
+        } catch (ZipException ex) {
+            // ignore to implement opportunistic handling of non-xlsx content
         }
+        return scanner.getPictures();
     }
 
-    private static void pictureAsJsonStream(XSSFPictureData picture, IRI expectedArchiveContentId, OutputStream os, HashType hashType) throws IOException {
-        PackagePartName partName = picture.getPackagePart().getPartName();
-        String relativeImageIRI = "zip:" + expectedArchiveContentId.getIRIString() + "!" + partName.getName();
-        IRI iri = Hasher.calcHashIRI(new ByteArrayInputStream(picture.getData()), NullOutputStream.INSTANCE, hashType);
-
+    private static void pictureAsJsonStream(XLSXPictureScanner.XLSXPicture picture, IRI expectedArchiveContentId, OutputStream os) throws IOException {
         ObjectNode imageNode = new ObjectMapper()
                 .createObjectNode()
-                .put(XLSHandler.WAS_DERIVED_FROM, relativeImageIRI)
+                .put(XLSHandler.WAS_DERIVED_FROM, toRelativeImageIRI(picture, expectedArchiveContentId))
                 .put(XLSHandler.HAS_FORMAT, picture.getMimeType())
-                .put(RefNodeConstants.HAS_VERSION.getIRIString(), iri.getIRIString());
+                .put(RefNodeConstants.HAS_VERSION.getIRIString(), picture.getVersion().getIRIString());
 
         XLSHandler.writeObjectNode(os, imageNode);
     }
-}
\ No newline at end of file
+
+    private static String toRelativeImageIRI(XLSXPictureScanner.XLSXPicture picture, IRI expectedArchiveContentId) {
+        return "zip:" + expectedArchiveContentId.getIRIString() + "!" + picture.getPartName();
+    }
+}
@@ -0,0 +1,171 @@
+package bio.guoda.preston.excel;
+
+import bio.guoda.preston.HashType;
+import bio.guoda.preston.Hasher;
+import bio.guoda.preston.process.XMLUtil;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.poi.openxml4j.opc.PackagePartName;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the pictures embedded in an OOXML package (e.g., xl/media/image1.png) by
+ * streaming through the zip entries of the package once, hashing the pictures as they pass by.
+ * <p>
+ * Content types are taken from the [Content_Types].xml part, and pictures are listed in package part name order,
+ * consistent with {@link org.apache.poi.xssf.usermodel.XSSFWorkbook#getAllPictures()}.
+ */
+
+class XLSXPictureScanner {
+
+    private static final String MEDIA_PREFIX = "/xl/media/";
+    private static final String CONTENT_TYPES = "/[Content_Types].xml";
+
+    private final HashType hashType;
+
+    private final Map<String, IRI> versions = new TreeMap<>(PackagePartName::compare);
+    private final Map<String, String> defaultContentTypes = new TreeMap<>();
+    private final Map<String, String> overrideContentTypes = new TreeMap<>();
+
+    XLSXPictureScanner(HashType hashType) {
+        this.hashType = hashType;
+    }
+
+    /**
+     * Reads the zip entries of the package from the provided stream, leaving the stream open.
+     */
+
+    void scan(InputStream is) throws IOException {
+        ZipArchiveInputStream zipStream = new ZipArchiveInputStream(
+                CloseShieldInputStream.wrap(is),
+                "UTF-8",
+                true,
+                true
+        );
+        ZipArchiveEntry entry;
+        while ((entry = zipStream.getNextZipEntry()) != null) {
+            if (!entry.isDirectory() && zipStream.canReadEntryData(entry)) {
+                scanEntry(entry.getName(), zipStream);
+            }
+        }
+    }
+
+    /**
+     * Reads the zip entries of the package via the central directory of the provided file.
+     */
+
+    void scan(File file) throws IOException {
+        try (ZipFile zipFile = ZipFile.builder().setFile(file).get()) {
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && zipFile.canReadEntryData(entry)) {
+                    try (InputStream is = zipFile.getInputStream(entry)) {
+                        scanEntry(entry.getName(), is);
+                    }
+                }
+            }
+        }
+    }
+
+    private void scanEntry(String entryName, InputStream is) throws IOException {
+        String partName = StringUtils.prependIfMissing(entryName, "/");
+        if (StringUtils.equals(partName, CONTENT_TYPES)) {
+            parseContentTypes(is);
+        } else if (StringUtils.startsWith(partName, MEDIA_PREFIX)) {
+            versions.put(partName, Hasher.calcHashIRI(is, NullOutputStream.INSTANCE, false, hashType));
+        }
+    }
+
+    private void parseContentTypes(InputStream is) throws IOException {
+        try {
+            Document doc = XMLUtil.parseDoc(is);
+            NodeList defaults = doc.getElementsByTagNameNS("*", "Default");
+            for (int i = 0; i < defaults.getLength(); i++) {
+                Element element = (Element) defaults.item(i);
+                defaultContentTypes.put(
+                        StringUtils.lowerCase(element.getAttribute("Extension"), Locale.ROOT),
+                        element.getAttribute("ContentType")
+                );
+            }
+            NodeList overrides = doc.getElementsByTagNameNS("*", "Override");
+            for (int i = 0; i < overrides.getLength(); i++) {
+                Element element = (Element) overrides.item(i);
+                overrideContentTypes.put(
+                        StringUtils.lowerCase(element.getAttribute("PartName"), Locale.ROOT),
+                        element.getAttribute("ContentType")
+                );
+            }
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("failed to parse [" + CONTENT_TYPES + "]", e);
+        }
+    }
+
+    private String getContentType(String partName) {
+        String contentType = overrideContentTypes.get(StringUtils.lowerCase(partName, Locale.ROOT));
+        if (contentType == null) {
+            String extension = StringUtils.substringAfterLast(StringUtils.substringAfterLast(partName, "/"), ".");
+            contentType = defaultContentTypes.get(StringUtils.lowerCase(extension, Locale.ROOT));
+        }
+        return contentType;
+    }
+
+    /**
+     * @return pictures that have a known content type, in package part name order
+     */
+
+    List<XLSXPicture> getPictures() {
+        List<XLSXPicture> pictures = new ArrayList<>();
+        for (Map.Entry<String, IRI> version : versions.entrySet()) {
+            String contentType = getContentType(version.getKey());
+            if (StringUtils.isNotBlank(contentType)) {
+                pictures.add(new XLSXPicture(version.getKey(), contentType, version.getValue()));
+            }
+        }
+        return pictures;
+    }
+
+    static class XLSXPicture {
+        private final String partName;
+        private final String mimeType;
+        private final IRI version;
+
+        XLSXPicture(String partName, String mimeType, IRI version) {
+            this.partName = partName;
+            this.mimeType = mimeType;
+            this.version = version;
+        }
+
+        String getPartName() {
+            return partName;
+        }
+
+        String getMimeType() {
+            return mimeType;
+        }
+
+        IRI getVersion() {
+            return version;
+        }
+    }
+
+}
@@ -14,9 +14,18 @@ import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Quad;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
+import org.apache.poi.xssf.usermodel.XSSFDrawing;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -33,6 +42,9 @@ import static org.hamcrest.core.Is.is;
 
 public class XLSXHandlerTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void dumpTable() throws IOException {
         // use this count to fetch all field information
@@ -356,6 +368,79 @@ public class XLSXHandlerTest {
 
     }
 
+    @Test
+    public void dumpRowsAndImagesInSinglePass() throws IOException {
+        byte[] firstImage = "first image".getBytes(StandardCharsets.UTF_8);
+        byte[] secondImage = "second image".getBytes(StandardCharsets.UTF_8);
+        byte[] xlsx = createXLSXWithPictures(firstImage, secondImage);
+
+        IRI resourceIRI = Hasher.calcHashIRI(new ByteArrayInputStream(xlsx), NullOutputStream.INSTANCE, HashType.sha256);
+        KeyValueStoreReadOnly contentStore = new KeyValueStoreReadOnly() {
+
+            @Override
+            public InputStream get(IRI uri) throws IOException {
+                return new ByteArrayInputStream(xlsx);
+            }
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        File tmpDir = folder.newFolder();
+        XLSXHandler.rowsAndPicturesAsJsonStream(HashType.sha256, out, resourceIRI, contentStore, 0, false, tmpDir);
+        assertThat(tmpDir.list().length, is(0));
+
+        String[] lines = StringUtils.split(new String(out.toByteArray(), StandardCharsets.UTF_8), "\n");
+        assertThat(lines.length, is(3));
+
+        JsonNode row = new ObjectMapper().readTree(lines[0]);
+        assertThat(row.get("name").asText(), is("some value"));
+
+        JsonNode picture = new ObjectMapper().readTree(lines[1]);
+        assertThat(picture.get(XLSHandler.WAS_DERIVED_FROM).asText(), is("zip:" + resourceIRI.getIRIString() + "!/xl/media/image1.png"));
+        assertThat(picture.get(XLSHandler.HAS_FORMAT).asText(), is("image/png"));
+        assertThat(picture.get("http://purl.org/pav/hasVersion").asText(), is(Hasher.calcHashIRI(new ByteArrayInputStream(firstImage), NullOutputStream.INSTANCE, HashType.sha256).getIRIString()));
+
+        picture = new ObjectMapper().readTree(lines[2]);
+        assertThat(picture.get(XLSHandler.WAS_DERIVED_FROM).asText(), is("zip:" + resourceIRI.getIRIString() + "!/xl/media/image2.jpeg"));
+        assertThat(picture.get(XLSHandler.HAS_FORMAT).asText(), is("image/jpeg"));
+        assertThat(picture.get("http://purl.org/pav/hasVersion").asText(), is(Hasher.calcHashIRI(new ByteArrayInputStream(secondImage), NullOutputStream.INSTANCE, HashType.sha256).getIRIString()));
+
+        ByteArrayOutputStream pictures = new ByteArrayOutputStream();
+        XLSXHandler.picturesAsJsonStream(HashType.sha256, resourceIRI, pictures, contentStore);
+        assertThat(new String(pictures.toByteArray(), StandardCharsets.UTF_8), is(lines[1] + "\n" + lines[2] + "\n"));
+    }
+
+    private static byte[] createXLSXWithPictures(byte[] png, byte[] jpeg) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("name");
+            sheet.createRow(1).createCell(0).setCellValue("some value");
+            XSSFDrawing drawing = sheet.createDrawingPatriarch();
+            drawing.createPicture(new XSSFClientAnchor(), workbook.addPicture(png, Workbook.PICTURE_TYPE_PNG));
+            drawing.createPicture(new XSSFClientAnchor(), workbook.addPicture(jpeg, Workbook.PICTURE_TYPE_JPEG));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    public void dumpRowsAndImagesOfNonXLSX() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        KeyValueStoreReadOnly contentStore = new KeyValueStoreReadOnly() {
+
+            @Override
+            public InputStream get(IRI uri) throws IOException {
+                return getClass().getResourceAsStream("notXLS.txt");
+            }
+        };
+
+        File tmpDir = folder.newFolder();
+        XLSXHandler.rowsAndPicturesAsJsonStream(HashType.sha256, out, RefNodeFactory.toIRI("some:iri"), contentStore, 0, false, tmpDir);
+        assertThat(tmpDir.list().length, is(0));
+
+        assertThat(out.size(), is(0));
+    }
+
     private InputStream getBMT111DemFile() {
         return getClass().getResourceAsStream("Thomas_BMT111_demfile.xlsx");
     }
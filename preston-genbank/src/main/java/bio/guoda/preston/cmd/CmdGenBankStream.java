@@ -18,6 +18,12 @@ import picocli.CommandLine;
 )
 public class CmdGenBankStream extends LoggingPersisting implements Runnable {
 
+    @CommandLine.Option(
+            names = {"--threads"},
+            description = "number of threads used to parse genbank records in parallel (default: \"${DEFAULT-VALUE}\")"
+    )
+    private int threads = 1;
+
     @Override
     public void run() {
         BlobStoreReadOnly blobStoreAppendOnly
@@ -36,7 +42,9 @@ public class CmdGenBankStream extends LoggingPersisting implements Runnable {
                 this,
                 blobStoreReadOnly,
                 getOutputStream(),
+                getThreads(),
                 listener);
+        textMatcher.setCharsetDetector(getCharsetDetector());
 
         StatementsEmitterAdapter emitter = new StatementsEmitterAdapter() {
 
@@ -51,5 +59,12 @@ public class CmdGenBankStream extends LoggingPersisting implements Runnable {
 
     }
 
-}
+    public int getThreads() {
+        return threads;
+    }
 
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+}
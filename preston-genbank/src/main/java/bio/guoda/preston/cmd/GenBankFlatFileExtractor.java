@@ -29,14 +29,24 @@ public class GenBankFlatFileExtractor extends ProcessorExtracting {
 
     private final ProcessorState processorState;
     private final OutputStream outputStream;
+    private final int threads;
 
     public GenBankFlatFileExtractor(ProcessorState processorState,
                                     BlobStoreReadOnly blobStoreReadOnly,
                                     OutputStream out,
                                     StatementsListener... listeners) {
+        this(processorState, blobStoreReadOnly, out, 1, listeners);
+    }
+
+    public GenBankFlatFileExtractor(ProcessorState processorState,
+                                    BlobStoreReadOnly blobStoreReadOnly,
+                                    OutputStream out,
+                                    int threads,
+                                    StatementsListener... listeners) {
         super(blobStoreReadOnly, processorState, listeners);
         this.processorState = processorState;
         this.outputStream = out;
+        this.threads = threads;
     }
 
 
@@ -53,13 +63,17 @@ public class GenBankFlatFileExtractor extends ProcessorExtracting {
         public GenBankStreamHandlerImpl(StatementEmitter emitter) {
             this.emitter = emitter;
 
+            GenBankFlatFileStreamHandler flatFileHandler = new GenBankFlatFileStreamHandler(this,
+                    new ContentHashDereferencer(GenBankFlatFileExtractor.this, getCharsetDetector()),
+                    outputStream,
+                    threads
+            );
+            flatFileHandler.setCharsetDetector(getCharsetDetector());
+
             this.handler = new ContentStreamHandlerImpl(
                     new ArchiveStreamHandler(this),
                     new CompressedStreamHandler(this),
-                    new GenBankFlatFileStreamHandler(this,
-                            new ContentHashDereferencer(GenBankFlatFileExtractor.this),
-                            outputStream
-                    )
+                    flatFileHandler
             );
         }
 
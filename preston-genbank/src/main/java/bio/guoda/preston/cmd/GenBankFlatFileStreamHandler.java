@@ -1,151 +1,186 @@
 package bio.guoda.preston.cmd;
 
 import bio.guoda.preston.store.Dereferencer;
+import bio.guoda.preston.stream.CharsetDetector;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.StringUtils;
+import bio.guoda.preston.stream.ContentStreamUtil;
 import org.apache.commons.rdf.api.IRI;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.txt.UniversalEncodingDetector;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class GenBankFlatFileStreamHandler implements ContentStreamHandler {
 
     public static final String PREFIX_ACCESSION = "ACCESSION   ";
     public static final String PREFIX_DEFINITION = "DEFINITION  ";
-    private static final CharSequence PREFIX_SPECIMEN_VOUCHER = "                     /specimen_voucher=\"";
-    private static final CharSequence PREFIX_DB_XREF = "                     /db_xref=\"";
-    private static final CharSequence PREFIX_ORGANISM = "                     /organism=\"";
-    private static final CharSequence PREFIX_ISOLATION_SOURCE = "                     /isolation_source=\"";
-    private static final CharSequence PREFIX_HOST = "                     /host=\"";
-    private static final CharSequence PREFIX_COUNTRY = "                     /country=\"";
+
+    static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
 
     private final Dereferencer<InputStream> dereferencer;
     private ContentStreamHandler contentStreamHandler;
     private final OutputStream outputStream;
+    private final int threads;
+    private final int chunkSize;
+
+    private CharsetDetector charsetDetector = CharsetDetector.UNIVERSAL;
 
     public GenBankFlatFileStreamHandler(ContentStreamHandler contentStreamHandler,
                                         Dereferencer<InputStream> inputStreamDereferencer,
                                         OutputStream os) {
+        this(contentStreamHandler, inputStreamDereferencer, os, 1);
+    }
+
+    public GenBankFlatFileStreamHandler(ContentStreamHandler contentStreamHandler,
+                                        Dereferencer<InputStream> inputStreamDereferencer,
+                                        OutputStream os,
+                                        int threads) {
+        this(contentStreamHandler, inputStreamDereferencer, os, threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param threads   number of threads to parse records with; records are split into chunks of about chunkSize bytes
+     *                  and parsed in parallel if more than one thread is used.
+     */
+
+    public GenBankFlatFileStreamHandler(ContentStreamHandler contentStreamHandler,
+                                        Dereferencer<InputStream> inputStreamDereferencer,
+                                        OutputStream os,
+                                        int threads,
+                                        int chunkSize) {
         this.contentStreamHandler = contentStreamHandler;
         this.dereferencer = inputStreamDereferencer;
         this.outputStream = os;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
     }
 
     @Override
     public boolean handle(IRI version, InputStream is) throws ContentStreamException {
-        AtomicBoolean foundAtLeastOne = new AtomicBoolean(false);
+        boolean foundAtLeastOne = false;
         String iriString = version.getIRIString();
         try {
-            Charset charset = new UniversalEncodingDetector().detect(is, new Metadata());
+            // detect once on the prefix of the stream, also for all records parsed in parallel
+            Charset charset = ContentStreamUtil.detectCharset(version, is, charsetDetector);
             if (charset != null) {
-                int lineStart = -1;
-                int lineFinish = -1;
-                StringBuilder definition = new StringBuilder();
-                AtomicBoolean inDefinition = new AtomicBoolean(false);
-                ObjectNode objectNode = new ObjectMapper().createObjectNode();
-
-                BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset));
-
-                for (int lineNumber = 1; contentStreamHandler.shouldKeepProcessing(); ++lineNumber) {
-                    String line = reader.readLine();
-                    if (line == null) {
-                        break;
-                    } else {
-                        if (StringUtils.startsWith(line, "LOCUS")) {
-                            lineStart = lineNumber;
-                            objectNode.removeAll();
-                            inDefinition.set(false);
-                            definition = new StringBuilder();
-                        } else if (StringUtils.startsWith(line, "//")) {
-                            lineFinish = lineNumber;
-                            if (lineFinish > lineStart) {
-                                setValue(objectNode, "http://www.w3.org/ns/prov#wasDerivedFrom", "line:" + iriString + "!/L" + lineStart + "-" + "L" + lineFinish);
-                                setValue(objectNode, "http://www.w3.org/1999/02/22-rdf-syntax-ns#type", "genbank-flatfile");
-                            }
-                        } else if (StringUtils.startsWith(line, PREFIX_ACCESSION)) {
-                            inDefinition.set(false);
-                            String value = getValueWithLinePrefix(line, PREFIX_ACCESSION);
-                            setValue(objectNode, "accession", StringUtils.split(value, " ")[0]);
-                            setValue(objectNode, "http://www.w3.org/2000/01/rdf-schema#seeAlso", String.format("https://eutils.ncbi.nlm.nih.gov/entrez/eutils/efetch.fcgi?db=nuccore&id=%s&rettype=gb&retmode=text", value));
-                            setValue(objectNode, "http://www.w3.org/2000/01/rdf-schema#seeAlso", String.format("https://ncbi.nlm.nih.gov/nuccore/%s", value));
-                            setValue(objectNode, definition.toString(), "definition", "");
-                        } else if (StringUtils.startsWith(line, PREFIX_DEFINITION)) {
-                            inDefinition.set(true);
-                            definition.append(StringUtils.substring(line, PREFIX_DEFINITION.length()));
-                        } else if (StringUtils.startsWith(line, PREFIX_SPECIMEN_VOUCHER)) {
-                            setValueForFeature(objectNode, line, "specimen_voucher", PREFIX_SPECIMEN_VOUCHER);
-                        } else if (StringUtils.startsWith(line, PREFIX_HOST)) {
-                            setValueForFeature(objectNode, line, "host", PREFIX_HOST);
-                        } else if (StringUtils.startsWith(line, PREFIX_DB_XREF)) {
-                            setValueForFeature(objectNode, line, "db_xref", PREFIX_DB_XREF);
-                        } else if (StringUtils.startsWith(line, PREFIX_COUNTRY)) {
-                            setValueForFeature(objectNode, line, "country", PREFIX_COUNTRY);
-                        } else if (StringUtils.startsWith(line, PREFIX_ORGANISM)) {
-                            setValueForFeature(objectNode, line, "organism", PREFIX_ORGANISM);
-                        } else if (StringUtils.startsWith(line, PREFIX_ISOLATION_SOURCE)) {
-                            setValueForFeature(objectNode, line, "isolation_source", PREFIX_ISOLATION_SOURCE);
-                        } else if (inDefinition.get()) {
-                            definition.append(" ").append(StringUtils.trim(line));
-                        }
-
-                        if (lineFinish > lineStart && objectNode.has("accession")) {
-                            IOUtils.copy(IOUtils.toInputStream(objectNode.toString(), StandardCharsets.UTF_8), outputStream);
-                            IOUtils.copy(IOUtils.toInputStream("\n", StandardCharsets.UTF_8), outputStream);
-                            lineStart = -1;
-                            lineFinish = -1;
-                            foundAtLeastOne.set(true);
-                        }
-                    }
-                }
+                foundAtLeastOne = threads > 1 && isAsciiCompatible(charset)
+                        ? handleInParallel(iriString, is, charset)
+                        : handleInSequence(iriString, is, charset);
             }
-
         } catch (IOException e) {
             throw new ContentStreamException("no charset detected");
         }
 
-        return foundAtLeastOne.get();
+        return foundAtLeastOne;
     }
 
-    private void setValueForFeature(ObjectNode objectNode,
-                                    String line,
-                                    String key,
-                                    CharSequence keyValue) {
-        int end = line.length() - 1;
-        int start = keyValue.length();
-        setValue(objectNode, key, StringUtils.trim(
-                StringUtils.substring(line, start, end)));
+    private boolean handleInSequence(String iriString, InputStream is, Charset charset) throws IOException {
+        boolean foundAtLeastOne = false;
+        GenBankRecordParser parser = new GenBankRecordParser(iriString);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset));
+        for (long lineNumber = 1; contentStreamHandler.shouldKeepProcessing(); ++lineNumber) {
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            } else if (parser.parseLine(line, lineNumber, outputStream)) {
+                foundAtLeastOne = true;
+            }
+        }
+        return foundAtLeastOne;
     }
 
-    private void setValue(ObjectNode objectNode, String key, String value) {
-        objectNode.set(key, TextNode.valueOf(value));
+    private boolean handleInParallel(String iriString, InputStream is, Charset charset) throws IOException, ContentStreamException {
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "preston-genbank-parser-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        boolean foundAtLeastOne = false;
+        Deque<Future<ParsedChunk>> pending = new ArrayDeque<>();
+        try {
+            GenBankRecordChunker chunker = new GenBankRecordChunker(is, chunkSize);
+            long firstLineNumber = 1;
+            byte[] chunk;
+            while (contentStreamHandler.shouldKeepProcessing() && (chunk = chunker.next()) != null) {
+                byte[] records = chunk;
+                long lineNumber = firstLineNumber;
+                pending.add(executor.submit(() -> parseChunk(iriString, records, charset, lineNumber)));
+                firstLineNumber += GenBankRecordChunker.countLines(chunk);
+                while (pending.size() > threads) {
+                    foundAtLeastOne = writeParsed(iriString, pending.poll()) || foundAtLeastOne;
+                }
+            }
+            while (!pending.isEmpty()) {
+                foundAtLeastOne = writeParsed(iriString, pending.poll()) || foundAtLeastOne;
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+        }
+        return foundAtLeastOne;
+    }
+
+    private ParsedChunk parseChunk(String iriString, byte[] chunk, Charset charset, long firstLineNumber) throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        boolean foundAtLeastOne = false;
+        GenBankRecordParser parser = new GenBankRecordParser(iriString);
+        BufferedReader reader = new BufferedReader(new StringReader(new String(chunk, charset)));
+        for (long lineNumber = firstLineNumber; contentStreamHandler.shouldKeepProcessing(); ++lineNumber) {
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            } else if (parser.parseLine(line, lineNumber, json)) {
+                foundAtLeastOne = true;
+            }
+        }
+        return new ParsedChunk(json.toByteArray(), foundAtLeastOne);
     }
 
-    private void setValue(ObjectNode objectNode,
-                          String line,
-                          String key,
-                          CharSequence prefix) {
-        String value = getValueWithLinePrefix(line, prefix);
-        setValue(objectNode, key, value);
+    private boolean writeParsed(String iriString, Future<ParsedChunk> future) throws IOException, ContentStreamException {
+        ParsedChunk parsed;
+        try {
+            parsed = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContentStreamException("interrupted while parsing [" + iriString + "]", e);
+        } catch (ExecutionException e) {
+            throw new ContentStreamException("failed to parse [" + iriString + "]", e.getCause());
+        }
+        outputStream.write(parsed.json);
+        return parsed.foundAtLeastOne;
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        String sample = GenBankRecordParser.PREFIX_LOCUS + GenBankRecordParser.RECORD_TERMINATOR + "\r\n";
+        return charset.canEncode()
+                && Arrays.equals(sample.getBytes(charset), sample.getBytes(StandardCharsets.US_ASCII));
     }
 
-    private static String getValueWithLinePrefix(String line, CharSequence prefix) {
-        int start = prefix.length();
-        int end = line.length();
-        return StringUtils.trim(
-                StringUtils.substring(line, start, end));
+    private static class ParsedChunk {
+        private final byte[] json;
+        private final boolean foundAtLeastOne;
+
+        ParsedChunk(byte[] json, boolean foundAtLeastOne) {
+            this.json = json;
+            this.foundAtLeastOne = foundAtLeastOne;
+        }
     }
 
     @Override
@@ -153,5 +188,7 @@ public class GenBankFlatFileStreamHandler implements ContentStreamHandler {
         return contentStreamHandler.shouldKeepProcessing();
     }
 
-
+    public void setCharsetDetector(CharsetDetector charsetDetector) {
+        this.charsetDetector = charsetDetector;
+    }
 }
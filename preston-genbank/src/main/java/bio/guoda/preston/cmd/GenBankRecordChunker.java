@@ -0,0 +1,117 @@
+package bio.guoda.preston.cmd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits the bytes of a GenBank flat file into chunks of whole records, without decoding them.
+ * <p>
+ * A chunk ends right before a LOCUS line that follows a // record terminator line, so chunks can be parsed
+ * independently by a {@link GenBankRecordParser}. Assumes an ASCII compatible charset.
+ */
+
+class GenBankRecordChunker {
+
+    private static final byte[] LOCUS = GenBankRecordParser.PREFIX_LOCUS.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TERMINATOR = GenBankRecordParser.RECORD_TERMINATOR.getBytes(StandardCharsets.US_ASCII);
+
+    private final InputStream is;
+    private byte[] buffer;
+    private int length = 0;
+    private boolean endOfStream = false;
+
+    GenBankRecordChunker(InputStream is, int chunkSize) {
+        this.is = is;
+        this.buffer = new byte[chunkSize];
+    }
+
+    /**
+     * @return the next chunk of whole records, or null if no bytes are left.
+     */
+
+    byte[] next() throws IOException {
+        while (true) {
+            fill();
+            if (length == 0) {
+                return null;
+            }
+            int boundary = endOfStream ? length : lastRecordBoundary();
+            if (boundary > 0) {
+                byte[] chunk = Arrays.copyOf(buffer, boundary);
+                System.arraycopy(buffer, boundary, buffer, 0, length - boundary);
+                length -= boundary;
+                return chunk;
+            }
+            // records larger than the buffer
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+    }
+
+    private void fill() throws IOException {
+        while (!endOfStream && length < buffer.length) {
+            int read = is.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                endOfStream = true;
+            } else {
+                length += read;
+            }
+        }
+    }
+
+    private int lastRecordBoundary() {
+        for (int offset = length - LOCUS.length; offset > 0; offset--) {
+            if (isLineStart(offset)
+                    && startsWith(offset, LOCUS)
+                    && startsWith(previousLineStart(offset), TERMINATOR)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private int previousLineStart(int lineStart) {
+        int offset = lineStart - 1;
+        if (buffer[offset] == '\n' && offset > 0 && buffer[offset - 1] == '\r') {
+            offset--;
+        }
+        while (offset > 0 && !isLineStart(offset)) {
+            offset--;
+        }
+        return offset;
+    }
+
+    private boolean isLineStart(int offset) {
+        return buffer[offset - 1] == '\n' || buffer[offset - 1] == '\r';
+    }
+
+    private boolean startsWith(int offset, byte[] prefix) {
+        if (offset + prefix.length > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of lines ended by a line feed, a carriage return, or both, as {@link java.io.BufferedReader#readLine()} would
+     */
+
+    static long countLines(byte[] chunk) {
+        long lines = 0;
+        for (int i = 0; i < chunk.length; i++) {
+            if (chunk[i] == '\n') {
+                lines++;
+            } else if (chunk[i] == '\r' && (i + 1 == chunk.length || chunk[i + 1] != '\n')) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+}
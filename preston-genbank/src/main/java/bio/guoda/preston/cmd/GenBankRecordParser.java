@@ -0,0 +1,116 @@
+package bio.guoda.preston.cmd;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the lines of GenBank flat file records, and writes a json line for each complete record.
+ * <p>
+ * All parser state is reset at the LOCUS line that starts a record, so that
+ * records can be parsed independently as long as line numbers are kept.
+ */
+
+class GenBankRecordParser {
+
+    static final String PREFIX_LOCUS = "LOCUS";
+    static final String RECORD_TERMINATOR = "//";
+    private static final String PREFIX_ACCESSION = GenBankFlatFileStreamHandler.PREFIX_ACCESSION;
+    private static final String PREFIX_DEFINITION = GenBankFlatFileStreamHandler.PREFIX_DEFINITION;
+    private static final CharSequence PREFIX_SPECIMEN_VOUCHER = "                     /specimen_voucher=\"";
+    private static final CharSequence PREFIX_DB_XREF = "                     /db_xref=\"";
+    private static final CharSequence PREFIX_ORGANISM = "                     /organism=\"";
+    private static final CharSequence PREFIX_ISOLATION_SOURCE = "                     /isolation_source=\"";
+    private static final CharSequence PREFIX_HOST = "                     /host=\"";
+    private static final CharSequence PREFIX_COUNTRY = "                     /country=\"";
+
+    private final String iriString;
+    private final ObjectNode objectNode = new ObjectMapper().createObjectNode();
+
+    private long lineStart = -1;
+    private long lineFinish = -1;
+    private StringBuilder definition = new StringBuilder();
+    private boolean inDefinition = false;
+
+    GenBankRecordParser(String iriString) {
+        this.iriString = iriString;
+    }
+
+    /**
+     * @return true if the line completed a record, and the record was written to the provided output stream
+     */
+
+    boolean parseLine(String line, long lineNumber, OutputStream out) throws IOException {
+        if (StringUtils.startsWith(line, PREFIX_LOCUS)) {
+            lineStart = lineNumber;
+            objectNode.removeAll();
+            inDefinition = false;
+            definition = new StringBuilder();
+        } else if (StringUtils.startsWith(line, RECORD_TERMINATOR)) {
+            lineFinish = lineNumber;
+            if (lineFinish > lineStart) {
+                setValue("http://www.w3.org/ns/prov#wasDerivedFrom", "line:" + iriString + "!/L" + lineStart + "-" + "L" + lineFinish);
+                setValue("http://www.w3.org/1999/02/22-rdf-syntax-ns#type", "genbank-flatfile");
+            }
+        } else if (StringUtils.startsWith(line, PREFIX_ACCESSION)) {
+            inDefinition = false;
+            String value = getValueWithLinePrefix(line, PREFIX_ACCESSION);
+            setValue("accession", StringUtils.split(value, " ")[0]);
+            setValue("http://www.w3.org/2000/01/rdf-schema#seeAlso", String.format("https://eutils.ncbi.nlm.nih.gov/entrez/eutils/efetch.fcgi?db=nuccore&id=%s&rettype=gb&retmode=text", value));
+            setValue("http://www.w3.org/2000/01/rdf-schema#seeAlso", String.format("https://ncbi.nlm.nih.gov/nuccore/%s", value));
+            setValue("definition", getValueWithLinePrefix(definition.toString(), ""));
+        } else if (StringUtils.startsWith(line, PREFIX_DEFINITION)) {
+            inDefinition = true;
+            definition.append(StringUtils.substring(line, PREFIX_DEFINITION.length()));
+        } else if (StringUtils.startsWith(line, PREFIX_SPECIMEN_VOUCHER)) {
+            setValueForFeature(line, "specimen_voucher", PREFIX_SPECIMEN_VOUCHER);
+        } else if (StringUtils.startsWith(line, PREFIX_HOST)) {
+            setValueForFeature(line, "host", PREFIX_HOST);
+        } else if (StringUtils.startsWith(line, PREFIX_DB_XREF)) {
+            setValueForFeature(line, "db_xref", PREFIX_DB_XREF);
+        } else if (StringUtils.startsWith(line, PREFIX_COUNTRY)) {
+            setValueForFeature(line, "country", PREFIX_COUNTRY);
+        } else if (StringUtils.startsWith(line, PREFIX_ORGANISM)) {
+            setValueForFeature(line, "organism", PREFIX_ORGANISM);
+        } else if (StringUtils.startsWith(line, PREFIX_ISOLATION_SOURCE)) {
+            setValueForFeature(line, "isolation_source", PREFIX_ISOLATION_SOURCE);
+        } else if (inDefinition) {
+            definition.append(" ").append(StringUtils.trim(line));
+        }
+
+        boolean completed = lineFinish > lineStart && objectNode.has("accession");
+        if (completed) {
+            out.write(objectNode.toString().getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+            lineStart = -1;
+            lineFinish = -1;
+        }
+        return completed;
+    }
+
+    private void setValueForFeature(String line,
+                                    String key,
+                                    CharSequence keyValue) {
+        int end = line.length() - 1;
+        int start = keyValue.length();
+        setValue(key, StringUtils.trim(
+                StringUtils.substring(line, start, end)));
+    }
+
+    private void setValue(String key, String value) {
+        objectNode.set(key, TextNode.valueOf(value));
+    }
+
+    private static String getValueWithLinePrefix(String line, CharSequence prefix) {
+        int start = prefix.length();
+        int end = line.length();
+        return StringUtils.trim(
+                StringUtils.substring(line, start, end));
+    }
+
+}
@@ -0,0 +1,64 @@
+package bio.guoda.preston.cmd;
+
+import bio.guoda.preston.stream.ContentStreamException;
+import bio.guoda.preston.stream.ContentStreamHandler;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class GenBankFlatFileStreamHandlerTest {
+
+    @Test
+    public void parseInParallel() throws IOException, ContentStreamException {
+        byte[] seq = IOUtils.toByteArray(getClass().getResourceAsStream("gbpln1-truncated.seq"));
+
+        String expected = parse(seq, 1);
+        assertThat(StringUtils.split(expected, "\n").length, is(3));
+        assertThat(parse(seq, 3), is(expected));
+    }
+
+    @Test
+    public void parseInParallelWithCarriageReturns() throws IOException, ContentStreamException {
+        String seq = IOUtils.toString(getClass().getResourceAsStream("gbpln1-truncated.seq"), StandardCharsets.UTF_8);
+        byte[] seqWithCRLF = StringUtils.replace(seq, "\n", "\r\n").getBytes(StandardCharsets.UTF_8);
+
+        String expected = parse(seqWithCRLF, 1);
+        assertThat(StringUtils.split(expected, "\n").length, is(3));
+        assertThat(parse(seqWithCRLF, 3), is(expected));
+    }
+
+    private String parse(byte[] seq, int threads) throws ContentStreamException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContentStreamHandler handler = new GenBankFlatFileStreamHandler(
+                new ContentStreamHandler() {
+                    @Override
+                    public boolean handle(IRI version, InputStream in) {
+                        return false;
+                    }
+
+                    @Override
+                    public boolean shouldKeepProcessing() {
+                        return true;
+                    }
+                },
+                iri -> null,
+                out,
+                threads,
+                128
+        );
+        handler.handle(toIRI("hash://sha256/856ecd48436bb220a80f0a746f94abd7c4ea47cb61d946286f7e25cf0ec69dc1"), new ByteArrayInputStream(seq));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -1,14 +1,21 @@
 package bio.guoda.preston;
 
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.rdf.api.IRI;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHeader;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
@@ -47,4 +54,52 @@ public class ResourcesHTTPTest {
         assertThat(httpGet.getFirstHeader("Authorization").toString(), is("Authorization: Bearer 4567"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void requestedRange() {
+        assertThat(ResourcesHTTP.isRange(new BasicHeader("Content-Range", "bytes 100-199/1000"), 100, 200), is(true));
+        assertThat(ResourcesHTTP.isRange(new BasicHeader("Content-Range", "bytes 100-199/*"), 100, 200), is(true));
+    }
+
+    @Test
+    public void requestedRangeBeyondEndOfResource() {
+        assertThat(ResourcesHTTP.isRange(new BasicHeader("Content-Range", "bytes 100-149/150"), 100, 200), is(true));
+        assertThat(ResourcesHTTP.isRange(new BasicHeader("Content-Range", "bytes 100-149/*"), 100, 200), is(false));
+    }
+
+    @Test
+    public void otherRange() {
+        assertThat(ResourcesHTTP.isRange(new BasicHeader("Content-Range", "bytes 0-999/1000"), 100, 200), is(false));
+        assertThat(ResourcesHTTP.isRange(new BasicHeader("Content-Range", "bytes 100-149/1000"), 100, 200), is(false));
+        assertThat(ResourcesHTTP.isRange(new BasicHeader("Content-Range", "bytes */1000"), 100, 200), is(false));
+        assertThat(ResourcesHTTP.isRange(null, 100, 200), is(false));
+    }
+
+    @Test
+    public void otherRangeReadUpToRequestedRange() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "0123456789".getBytes(StandardCharsets.UTF_8);
+            if (exchange.getRequestHeaders().containsKey("Range")) {
+                // respond with first bytes, regardless of requested range
+                body = "01234".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Range", "bytes 0-4/10");
+                exchange.sendResponseHeaders(206, body.length);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+            }
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            IRI resource = RefNodeFactory.toIRI("http://localhost:" + server.getAddress().getPort() + "/some");
+            try (InputStream is = ResourcesHTTP.asInputStreamRange(resource, 5, 8, (dataURI, derefState, read, total) -> {
+            })) {
+                assertThat(IOUtils.toString(is, StandardCharsets.UTF_8), is("567"));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+}
@@ -37,6 +37,7 @@ public class CmdGitHubStream extends LoggingPersisting implements Runnable {
                 blobStoreReadOnly,
                 getOutputStream(),
                 listener);
+        textMatcher.setCharsetDetector(getCharsetDetector());
 
         StatementsEmitterAdapter emitter = new StatementsEmitterAdapter() {
 
@@ -53,13 +53,16 @@ public class GitHubJSONExtractor extends ProcessorExtracting {
         public GitHubStreamHandler(StatementEmitter emitter) {
             this.emitter = emitter;
 
+            GitHubJSONStreamHandler jsonHandler = new GitHubJSONStreamHandler(this,
+                    new ContentHashDereferencer(GitHubJSONExtractor.this, getCharsetDetector()),
+                    outputStream
+            );
+            jsonHandler.setCharsetDetector(getCharsetDetector());
+
             this.handler = new ContentStreamHandlerImpl(
                     new ArchiveStreamHandler(this),
                     new CompressedStreamHandler(this),
-                    new GitHubJSONStreamHandler(this,
-                            new ContentHashDereferencer(GitHubJSONExtractor.this),
-                            outputStream
-                    )
+                    jsonHandler
             );
         }
 
@@ -2,8 +2,10 @@ package bio.guoda.preston.cmd;
 
 import bio.guoda.preston.ResourcesHTTP;
 import bio.guoda.preston.store.Dereferencer;
+import bio.guoda.preston.stream.CharsetDetector;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
+import bio.guoda.preston.stream.ContentStreamUtil;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -13,8 +15,6 @@ import com.fasterxml.jackson.databind.node.TextNode;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.txt.UniversalEncodingDetector;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -28,6 +28,8 @@ public class GitHubJSONStreamHandler implements ContentStreamHandler {
     private ContentStreamHandler contentStreamHandler;
     private final OutputStream outputStream;
 
+    private CharsetDetector charsetDetector = CharsetDetector.UNIVERSAL;
+
     public GitHubJSONStreamHandler(ContentStreamHandler contentStreamHandler,
                                    Dereferencer<InputStream> inputStreamDereferencer,
                                    OutputStream os) {
@@ -39,7 +41,7 @@ public class GitHubJSONStreamHandler implements ContentStreamHandler {
     public boolean handle(IRI version, InputStream is) throws ContentStreamException {
         AtomicBoolean foundAtLeastOne = new AtomicBoolean(false);
         try {
-            Charset charset = new UniversalEncodingDetector().detect(is, new Metadata());
+            Charset charset = ContentStreamUtil.detectCharset(version, is, charsetDetector);
             if (charset != null) {
                 try {
                     JsonNode jsonNode = new ObjectMapper().readTree(is);
@@ -85,5 +87,7 @@ public class GitHubJSONStreamHandler implements ContentStreamHandler {
         return contentStreamHandler.shouldKeepProcessing();
     }
 
-
+    public void setCharsetDetector(CharsetDetector charsetDetector) {
+        this.charsetDetector = charsetDetector;
+    }
 }
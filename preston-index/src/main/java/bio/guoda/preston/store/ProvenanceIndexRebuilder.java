@@ -0,0 +1,261 @@
+package bio.guoda.preston.store;
+
+import bio.guoda.preston.HashType;
+import bio.guoda.preston.RefNodeConstants;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDFTerm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static bio.guoda.preston.RefNodeConstants.HAS_PREVIOUS_VERSION;
+
+/**
+ * Rebuilds the provenance index (see {@link HexaStoreImpl}) from the provenance logs in a blob store,
+ * as if written by consecutive runs (see ArchivingLogger): the provenance root query points to the first log,
+ * and [previous version] queries point from a log to the log that used it.
+ * <p>
+ * Candidate logs are parsed in parallel. A log starts with a description of Preston as software agent,
+ * and refers to the log it continues as [log] prov:usedBy [activity].
+ * Of logs continued by more than one log, and of logs that continue no other log, the start of the longest chain is indexed.
+ * <p>
+ * Index entries are write-once: existing entries are kept, so that an interrupted rebuild can be restarted.
+ */
+
+public class ProvenanceIndexRebuilder {
+
+    private static final String LOG_PREFIX = "<" + RefNodeConstants.PRESTON.getIRIString() + "> ";
+    private static final byte[] LOG_PREFIX_BYTES = LOG_PREFIX.getBytes(StandardCharsets.UTF_8);
+
+    private final KeyValueStoreReadOnly logStore;
+    private final QueryKeyCalculator queryKeyCalculator;
+    private final int threads;
+
+    public enum LinkState {
+        PRESENT,
+        MISSING,
+        WRITTEN,
+        CONFLICT
+    }
+
+    public interface LinkListener {
+
+        void on(Pair<RDFTerm, RDFTerm> query, IRI version, IRI indexedVersion, LinkState state) throws IOException;
+
+    }
+
+    public ProvenanceIndexRebuilder(KeyValueStoreReadOnly logStore, HashType hashType, int threads) {
+        this.logStore = logStore;
+        this.queryKeyCalculator = new QueryKeyCalculatorBackwardCompatible(hashType);
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @return logs found among candidates, and the logs that each of them continues.
+     */
+
+    public Map<IRI, List<IRI>> findLogs(Iterator<IRI> candidates) throws IOException {
+        Map<IRI, List<IRI>> logs = new TreeMap<>(Comparator.comparing(IRI::getIRIString));
+
+        AtomicInteger threadCount = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "preston-index-rebuilder-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Deque<Future<Pair<IRI, List<IRI>>>> pending = new ArrayDeque<>();
+        try {
+            while (candidates.hasNext()) {
+                IRI candidate = candidates.next();
+                pending.add(executor.submit(() -> Pair.of(candidate, parseLog(candidate))));
+                while (pending.size() > threads * 4) {
+                    addLog(pending.poll(), logs);
+                }
+            }
+            while (!pending.isEmpty()) {
+                addLog(pending.poll(), logs);
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+        }
+
+        // only logs continue logs
+        for (List<IRI> previousLogs : logs.values()) {
+            previousLogs.removeIf(previousLog -> !logs.containsKey(previousLog));
+        }
+        return logs;
+    }
+
+    /**
+     * @return index entries of the version chain of given logs, sorted by their index key
+     */
+
+    public List<Pair<Pair<RDFTerm, RDFTerm>, IRI>> findLinks(Map<IRI, List<IRI>> logs) {
+        Map<IRI, List<IRI>> nextLogs = new HashMap<>();
+        List<IRI> firstLogs = new ArrayList<>();
+        for (Map.Entry<IRI, List<IRI>> log : logs.entrySet()) {
+            if (log.getValue().isEmpty()) {
+                firstLogs.add(log.getKey());
+            }
+            for (IRI previousLog : log.getValue()) {
+                nextLogs.computeIfAbsent(previousLog, k -> new ArrayList<>()).add(log.getKey());
+            }
+        }
+
+        Map<IRI, Integer> chainLengths = chainLengths(logs, nextLogs);
+
+        Map<IRI, Pair<Pair<RDFTerm, RDFTerm>, IRI>> links = new TreeMap<>(Comparator.comparing(IRI::getIRIString));
+        if (!firstLogs.isEmpty()) {
+            addLink(links, RefNodeConstants.PROVENANCE_ROOT_QUERY, longestChain(firstLogs, chainLengths));
+        }
+        for (Map.Entry<IRI, List<IRI>> next : nextLogs.entrySet()) {
+            addLink(links, Pair.of(HAS_PREVIOUS_VERSION, next.getKey()), longestChain(next.getValue(), chainLengths));
+        }
+        return new ArrayList<>(links.values());
+    }
+
+    /**
+     * Writes missing index entries, or, on a dry run, only reports them.
+     */
+
+    public void writeLinks(List<Pair<Pair<RDFTerm, RDFTerm>, IRI>> links,
+                           HexaStore index,
+                           boolean dryRun,
+                           LinkListener listener) throws IOException {
+        for (Pair<Pair<RDFTerm, RDFTerm>, IRI> link : links) {
+            IRI indexedVersion;
+            LinkState state;
+            try {
+                indexedVersion = index.get(link.getKey());
+                if (indexedVersion == null) {
+                    if (!dryRun) {
+                        index.put(link.getKey(), link.getValue());
+                    }
+                    state = dryRun ? LinkState.MISSING : LinkState.WRITTEN;
+                } else {
+                    state = indexedVersion.equals(link.getValue())
+                            ? LinkState.PRESENT
+                            : LinkState.CONFLICT;
+                }
+            } catch (IllegalArgumentException ex) {
+                // indexed version is not an IRI
+                indexedVersion = null;
+                state = LinkState.CONFLICT;
+            }
+            listener.on(link.getKey(), link.getValue(), indexedVersion, state);
+        }
+    }
+
+    private void addLink(Map<IRI, Pair<Pair<RDFTerm, RDFTerm>, IRI>> links, Pair<RDFTerm, RDFTerm> query, IRI version) {
+        links.put(queryKeyCalculator.calculateKeyFor(query), Pair.of(query, version));
+    }
+
+    private List<IRI> parseLog(IRI candidate) throws IOException {
+        List<IRI> previousLogs = null;
+        try (InputStream is = logStore.get(candidate)) {
+            // compare the first bytes before reading lines, so that (binary) content without line breaks is skipped
+            if (is != null && startsWithLogPrefix(is)) {
+                previousLogs = new ArrayList<>();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+                // skip the rest of the description of Preston
+                String line = reader.readLine();
+                while (line != null && (line = reader.readLine()) != null) {
+                    IRI usedVersion = VersionUtil.mostRecentVersionUsedBy(line);
+                    if (usedVersion != null
+                            && HashKeyUtil.isValidHashKey(usedVersion)
+                            && !usedVersion.equals(candidate)
+                            && !previousLogs.contains(usedVersion)) {
+                        previousLogs.add(usedVersion);
+                    }
+                }
+            }
+        }
+        return previousLogs;
+    }
+
+    private static boolean startsWithLogPrefix(InputStream is) throws IOException {
+        byte[] prefix = new byte[LOG_PREFIX_BYTES.length];
+        return IOUtils.read(is, prefix) == prefix.length
+                && Arrays.equals(prefix, LOG_PREFIX_BYTES);
+    }
+
+    private static void addLog(Future<Pair<IRI, List<IRI>>> future, Map<IRI, List<IRI>> logs) throws IOException {
+        Pair<IRI, List<IRI>> log;
+        try {
+            log = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while parsing provenance logs", e);
+        } catch (ExecutionException e) {
+            throw new IOException("failed to parse provenance log", e.getCause());
+        }
+        if (log.getValue() != null) {
+            logs.put(log.getKey(), log.getValue());
+        }
+    }
+
+    private static IRI longestChain(List<IRI> logs, Map<IRI, Integer> chainLengths) {
+        List<IRI> sorted = new ArrayList<>(logs);
+        sorted.sort(Comparator.comparing(IRI::getIRIString));
+        IRI longest = null;
+        for (IRI log : sorted) {
+            if (longest == null || chainLengths.getOrDefault(log, 1) > chainLengths.getOrDefault(longest, 1)) {
+                longest = log;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * @return number of logs in the longest chain starting at each log, from last logs backwards,
+     * so that long chains do not need deep recursion
+     */
+
+    private static Map<IRI, Integer> chainLengths(Map<IRI, List<IRI>> logs, Map<IRI, List<IRI>> nextLogs) {
+        Map<IRI, Integer> lengths = new HashMap<>();
+        Map<IRI, Integer> unresolvedNextLogs = new HashMap<>();
+        Deque<IRI> resolved = new ArrayDeque<>();
+        for (IRI log : logs.keySet()) {
+            int numberOfNextLogs = nextLogs.getOrDefault(log, Collections.emptyList()).size();
+            unresolvedNextLogs.put(log, numberOfNextLogs);
+            if (numberOfNextLogs == 0) {
+                lengths.put(log, 1);
+                resolved.add(log);
+            }
+        }
+        while (!resolved.isEmpty()) {
+            IRI log = resolved.poll();
+            for (IRI previousLog : logs.get(log)) {
+                lengths.merge(previousLog, lengths.get(log) + 1, Math::max);
+                if (unresolvedNextLogs.merge(previousLog, -1, Integer::sum) == 0) {
+                    resolved.add(previousLog);
+                }
+            }
+        }
+        return lengths;
+    }
+
+}
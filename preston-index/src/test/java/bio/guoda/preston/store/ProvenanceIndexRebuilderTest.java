@@ -0,0 +1,119 @@
+package bio.guoda.preston.store;
+
+import bio.guoda.preston.HashType;
+import bio.guoda.preston.Hasher;
+import bio.guoda.preston.RefNodeConstants;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDFTerm;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static bio.guoda.preston.RefNodeConstants.HAS_PREVIOUS_VERSION;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ProvenanceIndexRebuilderTest {
+
+    private KeyValueStore logStore;
+    private IRI first;
+    private IRI second;
+    private IRI third;
+    private IRI fork;
+    private IRI content;
+
+    @Before
+    public void init() throws IOException {
+        logStore = TestUtil.getTestPersistence();
+        first = putLog(null, "first");
+        second = putLog(first, "second");
+        third = putLog(second, "third");
+        fork = putLog(first, "fork");
+        content = put("<https://example.org> <http://www.w3.org/ns/prov#usedBy> <urn:uuid:1> <urn:uuid:1> .\n");
+    }
+
+    @Test
+    public void findLogs() throws IOException {
+        Map<IRI, List<IRI>> logs = rebuilder(2).findLogs(Arrays.asList(content, third, first, fork, second).iterator());
+
+        assertThat(logs.size(), is(4));
+        assertThat(logs.get(first).isEmpty(), is(true));
+        assertThat(logs.get(second), is(Arrays.asList(first)));
+        assertThat(logs.get(third), is(Arrays.asList(second)));
+        assertThat(logs.get(fork), is(Arrays.asList(first)));
+    }
+
+    @Test
+    public void skipContentWithoutLineBreaks() throws IOException {
+        IRI blob = put(StringUtils.repeat('\0', 8 * 1024 * 1024));
+
+        Map<IRI, List<IRI>> logs = rebuilder(1).findLogs(Arrays.asList(blob, first).iterator());
+
+        assertThat(logs.size(), is(1));
+        assertThat(logs.get(first).isEmpty(), is(true));
+    }
+
+    @Test
+    public void rebuildFollowsLongestChain() throws IOException {
+        HexaStore index = new HexaStoreImpl(TestUtil.getTestPersistence(), HashType.sha256);
+        ProvenanceIndexRebuilder rebuilder = rebuilder(2);
+
+        List<Pair<Pair<RDFTerm, RDFTerm>, IRI>> links = rebuilder.findLinks(rebuilder.findLogs(Arrays.asList(first, second, third, fork).iterator()));
+        assertThat(links.size(), is(3));
+
+        List<ProvenanceIndexRebuilder.LinkState> states = new ArrayList<>();
+        rebuilder.writeLinks(links, index, false, (query, version, indexedVersion, state) -> states.add(state));
+        assertThat(states, is(Arrays.asList(ProvenanceIndexRebuilder.LinkState.WRITTEN, ProvenanceIndexRebuilder.LinkState.WRITTEN, ProvenanceIndexRebuilder.LinkState.WRITTEN)));
+
+        assertThat(index.get(RefNodeConstants.PROVENANCE_ROOT_QUERY), is(first));
+        assertThat(index.get(Pair.of(HAS_PREVIOUS_VERSION, first)), is(second));
+        assertThat(index.get(Pair.of(HAS_PREVIOUS_VERSION, second)), is(third));
+        assertThat(VersionUtil.findMostRecentVersion(RefNodeConstants.BIODIVERSITY_DATASET_GRAPH, index), is(third));
+    }
+
+    @Test
+    public void rebuildKeepsExistingEntries() throws IOException {
+        HexaStore index = new HexaStoreImpl(TestUtil.getTestPersistence(), HashType.sha256);
+        index.put(RefNodeConstants.PROVENANCE_ROOT_QUERY, first);
+        index.put(Pair.of(HAS_PREVIOUS_VERSION, first), fork);
+
+        ProvenanceIndexRebuilder rebuilder = rebuilder(1);
+        List<Pair<Pair<RDFTerm, RDFTerm>, IRI>> links = rebuilder.findLinks(rebuilder.findLogs(Arrays.asList(first, second, third, fork).iterator()));
+
+        List<ProvenanceIndexRebuilder.LinkState> states = new ArrayList<>();
+        rebuilder.writeLinks(links, index, true, (query, version, indexedVersion, state) -> states.add(state));
+
+        assertThat(states.contains(ProvenanceIndexRebuilder.LinkState.PRESENT), is(true));
+        assertThat(states.contains(ProvenanceIndexRebuilder.LinkState.CONFLICT), is(true));
+        assertThat(states.contains(ProvenanceIndexRebuilder.LinkState.MISSING), is(true));
+        assertThat(index.get(Pair.of(HAS_PREVIOUS_VERSION, first)), is(fork));
+        assertThat(index.get(Pair.of(HAS_PREVIOUS_VERSION, second)) == null, is(true));
+    }
+
+    private ProvenanceIndexRebuilder rebuilder(int threads) {
+        return new ProvenanceIndexRebuilder(logStore, HashType.sha256, threads);
+    }
+
+    private IRI putLog(IRI previousLog, String activity) throws IOException {
+        String log = "<https://preston.guoda.bio> <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://www.w3.org/ns/prov#SoftwareAgent> <urn:uuid:" + activity + "> .\n"
+                + (previousLog == null ? "" : "<" + previousLog.getIRIString() + "> <http://www.w3.org/ns/prov#usedBy> <urn:uuid:" + activity + "> <urn:uuid:" + activity + "> .\n")
+                + "<https://example.org> <http://purl.org/pav/hasVersion> <" + Hasher.calcHashIRI(activity, HashType.sha256).getIRIString() + "> <urn:uuid:" + activity + "> .\n";
+        return put(log);
+    }
+
+    private IRI put(String value) throws IOException {
+        IRI key = Hasher.calcHashIRI(value, HashType.sha256);
+        logStore.put(key, IOUtils.toInputStream(value, StandardCharsets.UTF_8));
+        return key;
+    }
+
+}
@@ -36,6 +36,7 @@ public class CmdMBDStream extends LoggingPersisting implements Runnable {
                 blobStoreReadOnly,
                 getOutputStream(),
                 listener);
+        textMatcher.setCharsetDetector(getCharsetDetector());
 
         StatementsEmitterAdapter emitter = new StatementsEmitterAdapter() {
 
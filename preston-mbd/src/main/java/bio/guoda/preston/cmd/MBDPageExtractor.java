@@ -49,13 +49,16 @@ public class MBDPageExtractor extends ProcessorExtracting {
         public MBDPageStreamHandlerImpl(StatementEmitter emitter) {
             this.emitter = emitter;
 
+            MBDPageStreamHandler pageHandler = new MBDPageStreamHandler(this,
+                    new ContentHashDereferencer(MBDPageExtractor.this, getCharsetDetector()),
+                    outputStream
+            );
+            pageHandler.setCharsetDetector(getCharsetDetector());
+
             this.handler = new ContentStreamHandlerImpl(
                     new ArchiveStreamHandler(this),
                     new CompressedStreamHandler(this),
-                    new MBDPageStreamHandler(this,
-                            new ContentHashDereferencer(MBDPageExtractor.this),
-                            outputStream
-                    )
+                    pageHandler
             );
         }
 
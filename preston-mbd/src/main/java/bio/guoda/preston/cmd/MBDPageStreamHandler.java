@@ -1,8 +1,10 @@
 package bio.guoda.preston.cmd;
 
 import bio.guoda.preston.store.Dereferencer;
+import bio.guoda.preston.stream.CharsetDetector;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
+import bio.guoda.preston.stream.ContentStreamUtil;
 import bio.guoda.preston.util.UUIDUtil;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -11,8 +13,6 @@ import com.fasterxml.jackson.databind.node.TextNode;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.txt.UniversalEncodingDetector;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -40,6 +40,8 @@ public class MBDPageStreamHandler implements ContentStreamHandler {
     private final OutputStream outputStream;
     public static final Pattern UUID_MATCHER = Pattern.compile("(.*)(?<uuid>" + UUIDUtil.UUID_PATTERN_PART + ")(.*)");
 
+    private CharsetDetector charsetDetector = CharsetDetector.UNIVERSAL;
+
     public MBDPageStreamHandler(ContentStreamHandler contentStreamHandler,
                                 Dereferencer<InputStream> inputStreamDereferencer,
                                 OutputStream os) {
@@ -53,7 +55,7 @@ public class MBDPageStreamHandler implements ContentStreamHandler {
         AtomicBoolean foundAtLeastOne = new AtomicBoolean(false);
         String iriString = version.getIRIString();
         try {
-            Charset charset = new UniversalEncodingDetector().detect(is, new Metadata());
+            Charset charset = ContentStreamUtil.detectCharset(version, is, charsetDetector);
             if (charset != null) {
 
                 Document parse = Jsoup.parse(is, charset.name(), "https://example.org");
@@ -159,5 +161,7 @@ public class MBDPageStreamHandler implements ContentStreamHandler {
         return contentStreamHandler.shouldKeepProcessing();
     }
 
-
+    public void setCharsetDetector(CharsetDetector charsetDetector) {
+        this.charsetDetector = charsetDetector;
+    }
 }
@@ -0,0 +1,43 @@
+package bio.guoda.preston.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of opening locally stored content.
+ */
+
+@Name("bio.guoda.preston.BlobGet")
+@Label("Blob Get")
+@Category({"Preston", "Store"})
+@Description("Opening of locally stored content")
+public class BlobGetEvent extends jdk.jfr.Event {
+
+    @Label("Key")
+    private String key;
+
+    @Label("Layout")
+    @Description("Layout of paths of stored content (e.g., KeyTo3LevelPath)")
+    private String layout;
+
+    @Label("Bytes")
+    @Description("Size of stored (possibly compressed) content, or -1 if not found")
+    @DataAmount
+    private long bytes;
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public void setLayout(String layout) {
+        this.layout = layout;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+}
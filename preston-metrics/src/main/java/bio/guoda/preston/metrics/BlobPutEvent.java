@@ -0,0 +1,43 @@
+package bio.guoda.preston.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of storing content locally.
+ */
+
+@Name("bio.guoda.preston.BlobPut")
+@Label("Blob Put")
+@Category({"Preston", "Store"})
+@Description("Storing of content locally, including validation and compression")
+public class BlobPutEvent extends jdk.jfr.Event {
+
+    @Label("Key")
+    private String key;
+
+    @Label("Layout")
+    @Description("Layout of paths of stored content (e.g., KeyTo3LevelPath)")
+    private String layout;
+
+    @Label("Bytes")
+    @Description("Size of (uncompressed) content offered for storage")
+    @DataAmount
+    private long bytes;
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public void setLayout(String layout) {
+        this.layout = layout;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+}
@@ -0,0 +1,31 @@
+package bio.guoda.preston.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing count (e.g., number of http requests, or hashed bytes).
+ */
+
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    public void inc() {
+        count.increment();
+    }
+
+    public void inc(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("counters cannot be decreased, but got [" + amount + "]");
+        }
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+}
@@ -0,0 +1,49 @@
+package bio.guoda.preston.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of dereferencing a location (e.g., a url) into stored content.
+ */
+
+@Name("bio.guoda.preston.Dereference")
+@Label("Dereference")
+@Category({"Preston", "I/O"})
+@Description("Dereferencing of a location into stored content")
+public class DereferenceEvent extends jdk.jfr.Event {
+
+    @Label("Location")
+    private String location;
+
+    @Label("Content Id")
+    private String contentId;
+
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+
+    @Label("Cache Hit")
+    @Description("Content id of location was remembered from an earlier dereference")
+    private boolean cacheHit;
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public void setContentId(String contentId) {
+        this.contentId = contentId;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+}
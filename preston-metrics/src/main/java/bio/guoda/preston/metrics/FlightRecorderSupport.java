@@ -0,0 +1,43 @@
+package bio.guoda.preston.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Tells whether flight recorder events (e.g., {@link HashEvent}) can be created on this runtime:
+ * jdk.jfr is only available on Java 8 runtimes from update 262 on.
+ * <p>
+ * Event classes fail to load without jdk.jfr, so callers create events through {@link #timed(Supplier)},
+ * which skips the event otherwise.
+ */
+
+public final class FlightRecorderSupport {
+
+    private static final boolean AVAILABLE = detectAvailability();
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Begins timing an event, e.g., {@code timed(() -> new HashEvent())}.
+     * <p>
+     * Pass a lambda, and not a constructor reference (e.g., HashEvent::new): a constructor reference
+     * loads the event class when evaluated, also if jdk.jfr is not available.
+     */
+
+    public static TimedEvent timed(Supplier<Object> eventFactory) {
+        return AVAILABLE
+                ? new TimedEvent(eventFactory.get())
+                : TimedEvent.NONE;
+    }
+
+    private static boolean detectAvailability() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderSupport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+}
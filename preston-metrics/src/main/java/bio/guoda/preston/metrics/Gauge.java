@@ -0,0 +1,32 @@
+package bio.guoda.preston.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Value that goes up and down (e.g., number of http requests in flight).
+ */
+
+public final class Gauge {
+
+    private final AtomicLong value = new AtomicLong();
+
+    Gauge() {
+    }
+
+    public void set(long newValue) {
+        value.set(newValue);
+    }
+
+    public void inc() {
+        value.incrementAndGet();
+    }
+
+    public void dec() {
+        value.decrementAndGet();
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+}
@@ -0,0 +1,32 @@
+package bio.guoda.preston.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of streaming content through message digests.
+ */
+
+@Name("bio.guoda.preston.Hash")
+@Label("Hash")
+@Category({"Preston", "Hashing"})
+public class HashEvent extends jdk.jfr.Event {
+
+    @Label("Algorithms")
+    private String algorithms;
+
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+
+    public void setAlgorithms(String algorithms) {
+        this.algorithms = algorithms;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+}
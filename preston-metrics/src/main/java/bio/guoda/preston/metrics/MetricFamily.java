@@ -0,0 +1,58 @@
+package bio.guoda.preston.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Metrics that share a name, help and type, by their labels (e.g., status="200").
+ */
+
+public final class MetricFamily<T> {
+
+    private final String name;
+    private final String help;
+    private final MetricType type;
+    private final Class<T> metricClass;
+    private final Map<String, T> metrics = new ConcurrentSkipListMap<>();
+
+    MetricFamily(String name, String help, MetricType type, Class<T> metricClass) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.metricClass = metricClass;
+    }
+
+    T getOrCreate(String labels, Supplier<T> metricFactory) {
+        T metric = metrics.get(labels);
+        return metric == null
+                ? metrics.computeIfAbsent(labels, l -> metricFactory.get())
+                : metric;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public MetricType getType() {
+        return type;
+    }
+
+    public Class<T> getMetricClass() {
+        return metricClass;
+    }
+
+    /**
+     * @return metrics by their labels, rendered as in the Prometheus text format (e.g., status="200"), or "" for no labels
+     */
+
+    public Map<String, T> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+}
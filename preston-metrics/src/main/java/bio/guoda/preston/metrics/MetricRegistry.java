@@ -0,0 +1,91 @@
+package bio.guoda.preston.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of named metrics, each optionally qualified by labels, e.g.,
+ * preston_http_requests_total{status="200"}.
+ * <p>
+ * Metrics are created on first use, and looked up afterwards, so callers on hot paths
+ * are expected to keep metrics with fixed labels in (static) fields.
+ */
+
+public class MetricRegistry {
+
+    private static final Pattern METRIC_NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final Pattern LABEL_NAME = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    private final Map<String, MetricFamily<?>> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help, String... labelNamesAndValues) {
+        return getOrCreate(name, help, MetricType.COUNTER, Counter.class, Counter::new, labelNamesAndValues);
+    }
+
+    public Gauge gauge(String name, String help, String... labelNamesAndValues) {
+        return getOrCreate(name, help, MetricType.GAUGE, Gauge.class, Gauge::new, labelNamesAndValues);
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labelNamesAndValues) {
+        return getOrCreate(name, help, MetricType.SUMMARY, LatencyHistogram.class, LatencyHistogram::new, labelNamesAndValues);
+    }
+
+    public Collection<MetricFamily<?>> getFamilies() {
+        return Collections.unmodifiableCollection(families.values());
+    }
+
+    private <T> T getOrCreate(String name,
+                              String help,
+                              MetricType type,
+                              Class<T> metricClass,
+                              Supplier<T> metricFactory,
+                              String... labelNamesAndValues) {
+        MetricFamily<?> family = families.get(name);
+        if (family == null) {
+            if (!METRIC_NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("invalid metric name [" + name + "]");
+            }
+            family = families.computeIfAbsent(name, n -> new MetricFamily<>(n, help, type, metricClass));
+        }
+        if (family.getType() != type) {
+            throw new IllegalArgumentException("metric [" + name + "] already registered as [" + family.getType() + "]");
+        }
+        @SuppressWarnings("unchecked")
+        MetricFamily<T> typedFamily = (MetricFamily<T>) family;
+        return typedFamily.getOrCreate(toLabels(labelNamesAndValues), metricFactory);
+    }
+
+    static String toLabels(String... labelNamesAndValues) {
+        if (labelNamesAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("expected label names and values in pairs, but got [" + labelNamesAndValues.length + "] strings");
+        }
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < labelNamesAndValues.length; i += 2) {
+            String labelName = labelNamesAndValues[i];
+            if (labelName == null || !LABEL_NAME.matcher(labelName).matches()) {
+                throw new IllegalArgumentException("invalid label name [" + labelName + "]");
+            }
+            if (labels.length() > 0) {
+                labels.append(',');
+            }
+            labels.append(labelName)
+                    .append("=\"")
+                    .append(escapeLabelValue(labelNamesAndValues[i + 1]))
+                    .append('"');
+        }
+        return labels.toString();
+    }
+
+    private static String escapeLabelValue(String value) {
+        return value == null
+                ? ""
+                : value.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n");
+    }
+
+}
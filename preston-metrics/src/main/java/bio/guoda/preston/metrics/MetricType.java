@@ -0,0 +1,23 @@
+package bio.guoda.preston.metrics;
+
+/**
+ * Metric types, named as in the Prometheus text format. Latency histograms are exposed
+ * as summaries, with quantiles calculated from their buckets.
+ */
+
+public enum MetricType {
+    COUNTER("counter"),
+    GAUGE("gauge"),
+    SUMMARY("summary");
+
+    private final String typeName;
+
+    MetricType(String typeName) {
+        this.typeName = typeName;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+}
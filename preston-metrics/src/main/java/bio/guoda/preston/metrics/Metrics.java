@@ -0,0 +1,80 @@
+package bio.guoda.preston.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Metrics of this Preston process, shared by its components (e.g., blob stores, http client, hashing),
+ * so that they can be exposed by a server (see /metrics), or dumped to a file at exit.
+ */
+
+public final class Metrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Metrics.class);
+
+    private static final MetricRegistry REGISTRY = new MetricRegistry();
+
+    private static final AtomicBoolean DUMP_ON_EXIT_REGISTERED = new AtomicBoolean(false);
+
+    public static MetricRegistry getRegistry() {
+        return REGISTRY;
+    }
+
+    public static Counter counter(String name, String help, String... labelNamesAndValues) {
+        return REGISTRY.counter(name, help, labelNamesAndValues);
+    }
+
+    public static Gauge gauge(String name, String help, String... labelNamesAndValues) {
+        return REGISTRY.gauge(name, help, labelNamesAndValues);
+    }
+
+    public static LatencyHistogram histogram(String name, String help, String... labelNamesAndValues) {
+        return REGISTRY.histogram(name, help, labelNamesAndValues);
+    }
+
+    public static void write(Writer writer) throws IOException {
+        PrometheusTextFormat.write(REGISTRY, writer);
+    }
+
+    public static void write(File file) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+    }
+
+    /**
+     * Writes metrics to given file when this process exits. Only the first file registered is written.
+     */
+
+    public static void dumpOnExit(File file) {
+        if (DUMP_ON_EXIT_REGISTERED.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new MetricsExitHook(file));
+        }
+    }
+
+    private static class MetricsExitHook extends Thread {
+
+        private final File file;
+
+        MetricsExitHook(File file) {
+            this.file = file;
+        }
+
+        public void run() {
+            try {
+                write(file);
+            } catch (IOException e) {
+                LOG.warn("failed to write metrics to [" + file.getAbsolutePath() + "]", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package bio.guoda.preston.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Writes metrics in the Prometheus text exposition format (version 0.0.4), see
+ * https://prometheus.io/docs/instrumenting/exposition_formats/ .
+ * <p>
+ * Latency histograms are written as summaries in seconds.
+ */
+
+public final class PrometheusTextFormat {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    static final double[] QUANTILES = new double[]{0.5, 0.9, 0.99, 0.999};
+
+    public static void write(MetricRegistry registry, Writer writer) throws IOException {
+        for (MetricFamily<?> family : registry.getFamilies()) {
+            writeFamily(family, writer);
+        }
+        writer.flush();
+    }
+
+    private static void writeFamily(MetricFamily<?> family, Writer writer) throws IOException {
+        String name = family.getName();
+        writer.write("# HELP " + name + " " + escapeHelp(family.getHelp()) + "\n");
+        writer.write("# TYPE " + name + " " + family.getType().getTypeName() + "\n");
+        for (Map.Entry<String, ?> metric : family.getMetrics().entrySet()) {
+            String labels = metric.getKey();
+            Object value = metric.getValue();
+            if (value instanceof Counter) {
+                writeSample(writer, name, labels, Long.toString(((Counter) value).get()));
+            } else if (value instanceof Gauge) {
+                writeSample(writer, name, labels, Long.toString(((Gauge) value).get()));
+            } else if (value instanceof LatencyHistogram) {
+                writeSummary(writer, name, labels, (LatencyHistogram) value);
+            }
+        }
+    }
+
+    private static void writeSummary(Writer writer, String name, String labels, LatencyHistogram histogram) throws IOException {
+        for (double quantile : QUANTILES) {
+            String quantileLabel = "quantile=\"" + quantile + "\"";
+            writeSample(writer,
+                    name,
+                    labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel,
+                    Double.toString(LatencyHistogram.toSeconds(histogram.getValueAtQuantile(quantile))));
+        }
+        writeSample(writer, name + "_sum", labels, Double.toString(LatencyHistogram.toSeconds(histogram.getSum())));
+        writeSample(writer, name + "_count", labels, Long.toString(histogram.getCount()));
+    }
+
+    private static void writeSample(Writer writer, String name, String labels, String value) throws IOException {
+        writer.write(name);
+        if (!labels.isEmpty()) {
+            writer.write("{" + labels + "}");
+        }
+        writer.write(" " + value + "\n");
+    }
+
+    private static String escapeHelp(String help) {
+        return help == null
+                ? ""
+                : help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+}
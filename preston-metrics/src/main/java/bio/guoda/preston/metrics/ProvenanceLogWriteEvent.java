@@ -0,0 +1,41 @@
+package bio.guoda.preston.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of archiving a provenance log as a new version.
+ */
+
+@Name("bio.guoda.preston.ProvenanceLogWrite")
+@Label("Provenance Log Write")
+@Category({"Preston", "Provenance"})
+@Description("Archiving of a provenance log, and indexing of it as a new version")
+public class ProvenanceLogWriteEvent extends jdk.jfr.Event {
+
+    @Label("Version")
+    private String version;
+
+    @Label("Previous Version")
+    private String previousVersion;
+
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public void setPreviousVersion(String previousVersion) {
+        this.previousVersion = previousVersion;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+}
@@ -0,0 +1,47 @@
+package bio.guoda.preston.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of requesting content from a remote location derived from its key.
+ */
+
+@Name("bio.guoda.preston.RemoteProbe")
+@Label("Remote Probe")
+@Category({"Preston", "Store"})
+@Description("Request for content at a remote location derived from its key")
+public class RemoteProbeEvent extends jdk.jfr.Event {
+
+    @Label("Key")
+    private String key;
+
+    @Label("Layout")
+    @Description("Layout of remote locations of content (e.g., KeyTo1LevelZenodoPath)")
+    private String layout;
+
+    @Label("Location")
+    private String location;
+
+    @Label("Found")
+    private boolean found;
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public void setLayout(String layout) {
+        this.layout = layout;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+}
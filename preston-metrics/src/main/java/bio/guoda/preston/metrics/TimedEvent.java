@@ -0,0 +1,41 @@
+package bio.guoda.preston.metrics;
+
+import java.util.function.Consumer;
+
+/**
+ * Flight recorder event timing a section of code, from its creation in {@link FlightRecorderSupport#timed}
+ * until {@link #commit(Consumer)}. Does nothing if flight recorder events are not available.
+ * <p>
+ * The event is only referred to as Object, and cast by the caller when setting its fields,
+ * so that event classes are not loaded on runtimes without jdk.jfr.
+ */
+
+public final class TimedEvent {
+
+    static final TimedEvent NONE = new TimedEvent(null);
+
+    private final Object event;
+
+    TimedEvent(Object event) {
+        this.event = event;
+        if (event != null) {
+            ((jdk.jfr.Event) event).begin();
+        }
+    }
+
+    /**
+     * Ends the event, and commits it with fields set by given setter if the event is being recorded.
+     */
+
+    public void commit(Consumer<Object> fieldSetter) {
+        if (event != null) {
+            jdk.jfr.Event jfrEvent = (jdk.jfr.Event) event;
+            jfrEvent.end();
+            if (jfrEvent.shouldCommit()) {
+                fieldSetter.accept(event);
+                jfrEvent.commit();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package bio.guoda.preston.metrics;
+
+import jdk.jfr.Recording;
+import org.hamcrest.core.Is;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FlightRecorderSupportTest {
+
+    @Test
+    public void availableOnBuildRuntime() {
+        assertThat(FlightRecorderSupport.isAvailable(), Is.is(true));
+
+        HashEvent event = new HashEvent();
+        event.begin();
+        event.end();
+    }
+
+    @Test
+    public void timedWhileRecording() {
+        AtomicReference<Object> committed = new AtomicReference<>();
+        try (Recording recording = new Recording()) {
+            recording.enable(HashEvent.class);
+            recording.start();
+
+            TimedEvent timed = FlightRecorderSupport.timed(() -> new HashEvent());
+            timed.commit(e -> {
+                HashEvent event = (HashEvent) e;
+                event.setBytes(42L);
+                committed.set(event);
+            });
+        }
+
+        assertThat(committed.get() instanceof HashEvent, Is.is(true));
+    }
+
+    @Test
+    public void timedWithoutRecording() {
+        TimedEvent timed = FlightRecorderSupport.timed(() -> new HashEvent());
+        timed.commit(e -> {
+            throw new AssertionError("events are not committed without a recording");
+        });
+    }
+
+}
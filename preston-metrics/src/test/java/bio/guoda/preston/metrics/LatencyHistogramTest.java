@@ -0,0 +1,62 @@
+package bio.guoda.preston.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getValueAtQuantile(0.99), is(0L));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertThat(histogram.getCount(), is(10L));
+        assertThat(histogram.getSum(), is(55L));
+        assertThat(histogram.getMax(), is(10L));
+        assertThat(histogram.getValueAtQuantile(0.5), is(5L));
+        assertThat(histogram.getValueAtQuantile(1.0), is(10L));
+    }
+
+    @Test
+    public void largeValuesKeepRelativePrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000000L);
+        }
+        long median = histogram.getValueAtQuantile(0.5);
+        assertTrue(median >= 500000000L);
+        assertTrue(median < 500000000L * 104 / 100);
+        assertThat(histogram.getValueAtQuantile(1.0), is(1000000000L));
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertThat(histogram.getValueAtQuantile(1.0), is(0L));
+        assertThat(histogram.getCount(), is(1L));
+    }
+
+    @Test
+    public void bucketsCoverAllValues() {
+        for (long value : new long[]{0, 31, 32, 33, 63, 64, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.getBucketIndex(value);
+            assertTrue(LatencyHistogram.getBucketUpperBound(index) >= value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.getBucketUpperBound(index - 1) < value);
+            }
+        }
+    }
+
+}
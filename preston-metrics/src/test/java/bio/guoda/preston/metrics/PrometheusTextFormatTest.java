@@ -0,0 +1,84 @@
+package bio.guoda.preston.metrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PrometheusTextFormatTest {
+
+    @Test
+    public void writeCounterWithLabels() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("requests_total", "number of requests", "status", "200").inc(3);
+        registry.counter("requests_total", "number of requests", "status", "404").inc();
+
+        assertThat(toText(registry), is("# HELP requests_total number of requests\n" +
+                "# TYPE requests_total counter\n" +
+                "requests_total{status=\"200\"} 3\n" +
+                "requests_total{status=\"404\"} 1\n"));
+    }
+
+    @Test
+    public void writeGauge() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        Gauge gauge = registry.gauge("in_flight", "requests in flight");
+        gauge.inc();
+        gauge.inc();
+        gauge.dec();
+
+        assertThat(toText(registry), is("# HELP in_flight requests in flight\n" +
+                "# TYPE in_flight gauge\n" +
+                "in_flight 1\n"));
+    }
+
+    @Test
+    public void writeHistogramAsSummaryInSeconds() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.histogram("get_duration_seconds", "duration of gets", "store", "local").record(2000000000L);
+
+        String text = toText(registry);
+        assertThat(text, containsString("# TYPE get_duration_seconds summary\n"));
+        assertThat(text, containsString("get_duration_seconds{store=\"local\",quantile=\"0.5\"} 2.0\n"));
+        assertThat(text, containsString("get_duration_seconds_sum{store=\"local\"} 2.0\n"));
+        assertThat(text, containsString("get_duration_seconds_count{store=\"local\"} 1\n"));
+    }
+
+    @Test
+    public void escapeLabelValues() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("errors_total", "errors", "message", "say \"hi\"\n").inc();
+
+        assertThat(toText(registry), containsString("errors_total{message=\"say \\\"hi\\\"\\n\"} 1\n"));
+    }
+
+    @Test
+    public void sameNameAndLabelsSameMetric() {
+        MetricRegistry registry = new MetricRegistry();
+        assertThat(registry.counter("a_total", "a", "x", "1"), sameInstance(registry.counter("a_total", "a", "x", "1")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sameNameOtherType() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("a_total", "a");
+        registry.gauge("a_total", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLabels() {
+        new MetricRegistry().counter("a_total", "a", "x");
+    }
+
+    private static String toText(MetricRegistry registry) throws IOException {
+        StringWriter writer = new StringWriter();
+        PrometheusTextFormat.write(registry, writer);
+        return writer.toString();
+    }
+
+}
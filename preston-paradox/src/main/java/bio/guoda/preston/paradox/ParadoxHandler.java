@@ -16,11 +16,16 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.rdf.api.IRI;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.sql.SQLException;
 
 public class ParadoxHandler extends ParadoxData {
@@ -28,6 +33,9 @@ public class ParadoxHandler extends ParadoxData {
 
     public static final int NUMBER_OF_ADDED_FIELDS = 2;
 
+    // see ParadoxData#loadHeader
+    private static final int MAX_HEADER_SIZE = 2048;
+
     public static void asJsonStream(OutputStream out,
                                     IRI resourceIRI,
                                     String tableNameCandidate,
@@ -36,10 +44,11 @@ public class ParadoxHandler extends ParadoxData {
 
         File tempFile = File.createTempFile("paradox", "db");
 
-        try (OutputStream os = new FileOutputStream(tempFile)) {
-            final InputStream inputStream = contentStore.get(resourceIRI);
+        try (final InputStream inputStream = contentStore.get(resourceIRI)) {
 
-            IOUtils.copyLarge(inputStream, os);
+            ByteBuffer content = inputStream instanceof FileInputStream
+                    ? mapInPlace((FileInputStream) inputStream, tempFile)
+                    : mapSpooled(inputStream, tempFile);
 
             ConnectionInfo connectionInfo = new ConnectionInfo("foo:bar");
 
@@ -48,7 +57,7 @@ public class ParadoxHandler extends ParadoxData {
                 if (data instanceof ParadoxTable) {
                     ParadoxTable table = (ParadoxTable) data;
                     table.setName(tableNameCandidate);
-                    streamTable(out, resourceIRI, table, state);
+                    streamTable(out, resourceIRI, table, content, state);
                 }
             } catch (SQLException var10) {
                 connectionInfo.addWarning(var10);
@@ -65,9 +74,43 @@ public class ParadoxHandler extends ParadoxData {
 
     }
 
-    private static void streamTable(OutputStream out, IRI resourceIRI, ParadoxTable table, ProcessorState state) throws IOException {
+    /**
+     * Maps a local table file without copying it: only the table header is written to the
+     * header file, because the paradox driver reads table headers from file.
+     */
+
+    private static ByteBuffer mapInPlace(FileInputStream inputStream, File headerFile) throws IOException {
+        FileChannel channel = inputStream.getChannel();
+        MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+        ByteBuffer header = content.duplicate();
+        header.limit(Math.min(header.capacity(), MAX_HEADER_SIZE));
+        try (FileChannel headerChannel = new FileOutputStream(headerFile).getChannel()) {
+            while (header.hasRemaining()) {
+                headerChannel.write(header);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Spools remote or in-archive content into the provided file, and maps the spooled file.
+     */
+
+    private static ByteBuffer mapSpooled(InputStream inputStream, File spoolFile) throws IOException {
+        if (inputStream == null) {
+            throw new IOException("no content available");
+        }
+        try (OutputStream os = new FileOutputStream(spoolFile)) {
+            IOUtils.copyLarge(inputStream, os);
+        }
+        try (FileChannel channel = FileChannel.open(spoolFile.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+        }
+    }
+
+    private static void streamTable(OutputStream out, IRI resourceIRI, ParadoxTable table, ByteBuffer content, ProcessorState state) throws IOException {
 
-        TableDataStream.streamData(table, table.getFields(), row -> {
+        TableDataStream.streamData(table, table.getFields(), content, row -> {
             ObjectMapper obj = new ObjectMapper();
             ObjectNode objectNode = obj.createObjectNode();
             String iriString = "line:paradox:" + resourceIRI.getIRIString() + "!/" + table.getName() + "!/" + row.getLeft().toString();
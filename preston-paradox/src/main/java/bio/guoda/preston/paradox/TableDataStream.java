@@ -17,11 +17,9 @@ import com.googlecode.paradox.metadata.Field;
 import com.googlecode.paradox.metadata.paradox.ParadoxTable;
 import org.apache.commons.lang3.tuple.Pair;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.FileChannel;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -39,17 +37,22 @@ import java.util.function.Consumer;
  */
 public final class TableDataStream extends ParadoxData {
 
+    // next block, block number and size of added data
+    private static final int BLOCK_HEADER_SIZE = 6;
+
     /**
-     * Load the table data from file.
+     * Load the table data from the (memory-mapped) table content.
      *
-     * @param state
-     * @param data   the data to read.
-     * @param fields the fields to read.
-     * @return the row values.
-     * @throws SQLException in case of failures.
+     * @param data    the data to read.
+     * @param fields  the fields to read.
+     * @param content the table content, including the header.
+     * @param sink    receives row numbers and row values.
+     * @param state   processor state.
+     * @throws IOException in case of failures.
      */
     public static void streamData(final ParadoxTable data,
                                   final Field[] fields,
+                                  final ByteBuffer content,
                                   Consumer<Pair<Long, List<Pair<Field, Object>>>> sink,
                                   ProcessorState state
     ) throws IOException {
@@ -62,87 +65,50 @@ public final class TableDataStream extends ParadoxData {
 
         if (blockSize > 0 && recordSize > 0 && headerSize > 0) {
 
-            try (final FileInputStream fs = new FileInputStream(data.getFile());
-                 final FileChannel channel = fs.getChannel()) {
-
-
-                long nextBlock = data.getFirstBlock();
-                if (nextBlock != 0) {
-                    final ByteBuffer buffer = ByteBuffer.allocate(blockSize);
-                    do {
-                        buffer.order(ByteOrder.LITTLE_ENDIAN);
-                        long position = headerSize + ((nextBlock - 1) * blockSize);
-                        channel.position(position);
-
-                        buffer.clear();
-                        channel.read(buffer);
-                        checkDBEncryption(buffer, data, blockSize, nextBlock);
-                        buffer.flip();
-
-                        nextBlock = buffer.getShort() & 0xFFFF;
-
-                        // The block number.
-                        buffer.getShort();
-
-                        final int addDataSize = buffer.getShort();
-                        final int rowsInBlock = (addDataSize / recordSize) + 1;
-
-                        buffer.order(ByteOrder.BIG_ENDIAN);
-
-                        for (int loop = 0; loop < rowsInBlock; loop++) {
-                            sink.accept(Pair.of(rowNumberWithOffsetOne.getAndIncrement(), readRow(data, fields, buffer)));
-                        }
-                    } while (nextBlock != 0 && state.shouldKeepProcessing());
-                }
-
-            } catch (final IOException e) {
-                throw new IOException("failed to load [" + data.getName() + "]", e);
-            }
-        }
-    }
-
-    private static void streamTableData(ParadoxTable data, Field[] fields, Consumer<Pair<Long, List<Pair<Field, Object>>>> sink) throws IOException {
-        AtomicLong rowNumberWithOffsetOne = new AtomicLong(1);
-
-        final int blockSize = data.getBlockSizeBytes();
-        final int recordSize = data.getRecordSize();
-        final int headerSize = data.getHeaderSize();
-
-        if (blockSize > 0 && recordSize > 0 && headerSize > 0) {
-
-            try (final FileInputStream fs = new FileInputStream(data.getFile());
-                 final FileChannel channel = fs.getChannel()) {
-
-                long nextBlock = data.getFirstBlock();
-
-                final ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+            long nextBlock = data.getFirstBlock();
+            if (nextBlock != 0) {
+                // field parsers of the paradox driver need array backed buffers
+                final ByteBuffer rows = ByteBuffer.allocate(blockSize);
                 do {
-                    buffer.order(ByteOrder.LITTLE_ENDIAN);
                     long position = headerSize + ((nextBlock - 1) * blockSize);
-                    channel.position(position);
+                    if (position >= content.limit()) {
+                        throw new IOException("failed to load [" + data.getName() + "]: block [" + nextBlock + "] out of range");
+                    }
 
-                    buffer.clear();
-                    channel.read(buffer);
-                    checkDBEncryption(buffer, data, blockSize, nextBlock);
-                    buffer.flip();
+                    ByteBuffer block = content.duplicate();
+                    block.position((int) position);
+                    block.limit((int) Math.min(content.limit(), position + blockSize));
+                    block = block.slice();
+
+                    rows.clear();
+                    if (data.isEncrypted()) {
+                        rows.put(block);
+                        checkDBEncryption(rows, data, blockSize, nextBlock);
+                    } else {
+                        // copy only the block header and the records in use
+                        block.order(ByteOrder.LITTLE_ENDIAN);
+                        final int rowsInUse = Math.max(0, (block.getShort(BLOCK_HEADER_SIZE - 2) / recordSize) + 1);
+                        block.limit(Math.min(block.limit(), BLOCK_HEADER_SIZE + rowsInUse * recordSize));
+                        rows.put(block);
+                    }
+                    rows.flip();
+
+                    rows.order(ByteOrder.LITTLE_ENDIAN);
 
-                    nextBlock = buffer.getShort() & 0xFFFF;
+                    nextBlock = rows.getShort() & 0xFFFF;
 
                     // The block number.
-                    buffer.getShort();
+                    rows.getShort();
 
-                    final int addDataSize = buffer.getShort();
+                    final int addDataSize = rows.getShort();
                     final int rowsInBlock = (addDataSize / recordSize) + 1;
 
-                    buffer.order(ByteOrder.BIG_ENDIAN);
+                    rows.order(ByteOrder.BIG_ENDIAN);
 
                     for (int loop = 0; loop < rowsInBlock; loop++) {
-                        sink.accept(Pair.of(rowNumberWithOffsetOne.getAndIncrement(), readRow(data, fields, buffer)));
+                        sink.accept(Pair.of(rowNumberWithOffsetOne.getAndIncrement(), readRow(data, fields, rows)));
                     }
-                } while (nextBlock != 0);
-
-            } catch (final IOException e) {
-                throw new IOException("failed to load [" + data.getName() + "]");
+                } while (nextBlock != 0 && state.shouldKeepProcessing());
             }
         }
     }
@@ -4,13 +4,16 @@ import bio.guoda.preston.RefNodeFactory;
 import bio.guoda.preston.process.ProcessorStateAlwaysContinue;
 import bio.guoda.preston.store.KeyValueStoreReadOnly;
 import bio.guoda.preston.store.TestUtil;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.hamcrest.core.Is;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 
 import static bio.guoda.preston.paradox.ParadoxHandler.asJsonStream;
@@ -43,6 +46,29 @@ public class ParadoxHandlerTest {
         assertThat(actual, Is.is(expected));
     }
 
+    @Test
+    public void dumpTableFromLocalFile() throws IOException, URISyntaxException {
+        IRI resourceIRI = RefNodeFactory.toIRI( "some:iri");
+
+        File localFile = new File(getClass().getResource("COLL.DB").toURI());
+
+        KeyValueStoreReadOnly contentStore = new KeyValueStoreReadOnly() {
+
+            @Override
+            public InputStream get(IRI uri) throws IOException {
+                return FileUtils.openInputStream(localFile);
+            }
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        asJsonStream(out, resourceIRI, "COLL.DB", contentStore, new ProcessorStateAlwaysContinue());
+
+        String actual = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        String expected = TestUtil.removeCarriageReturn(ParadoxHandlerTest.class, "COLL.DB.json");
+
+        assertThat(actual, Is.is(expected));
+    }
+
     @Test
     public void dumpSpeciesDB() throws IOException {
         // use this count to fetch all field information
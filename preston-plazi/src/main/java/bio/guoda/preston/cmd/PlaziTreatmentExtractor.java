@@ -55,7 +55,7 @@ public class PlaziTreatmentExtractor extends ProcessorExtracting {
                     new ArchiveStreamHandler(this),
                     new CompressedStreamHandler(this),
                     new PlaziTreatmentStreamHandler(this,
-                            new ContentHashDereferencer(PlaziTreatmentExtractor.this),
+                            new ContentHashDereferencer(PlaziTreatmentExtractor.this, getCharsetDetector()),
                             outputStream
                     )
             );
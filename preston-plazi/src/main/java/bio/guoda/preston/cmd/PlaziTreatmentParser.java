@@ -1,10 +1,8 @@
 package bio.guoda.preston.cmd;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPathExpressionException;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -16,10 +14,11 @@ public class PlaziTreatmentParser implements TreatmentParser {
     public JsonNode parse(InputStream is) throws IOException, TreatmentParseException {
         try {
             return parseTreatment(is);
-        } catch (ParserConfigurationException | SAXException | XPathExpressionException e) {
+        } catch (XMLStreamException e) {
+            if (e.getNestedException() instanceof IOException) {
+                throw new IOException("error receiving treatment", e.getNestedException());
+            }
             throw new TreatmentParseException("failed to parseQuads treatment", e);
-        } catch (IOException e) {
-            throw new IOException("error receiving treatment", e);
         }
     }
 }
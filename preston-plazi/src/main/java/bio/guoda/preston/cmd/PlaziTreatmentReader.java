@@ -0,0 +1,286 @@
+package bio.guoda.preston.cmd;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Streams through a Plazi treatment document once, and collects the parts of the document
+ * that make up a treatment as the elements that hold them close.
+ * <p>
+ * Texts are collected as a DOM would have them (e.g., text content of elements excludes comments),
+ * so that the collected texts are identical to those previously selected by xpath expressions
+ * from a parsed document.
+ */
+
+class PlaziTreatmentReader {
+
+    // reports cdata sections separately from characters, see com.sun.org.apache.xerces.internal.impl.Constants
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    static final XMLElementPath PATH_DOCUMENT = XMLElementPath.compile("/document");
+    static final XMLElementPath PATH_TREATMENT = XMLElementPath.compile("//treatment");
+    static final XMLElementPath PATH_VERNACULAR = XMLElementPath.compile("//subSubSection[@type='vernacular_names']");
+    static final XMLElementPath PATH_VERNACULAR_EMPHASIS = XMLElementPath.compile("//subSubSection[@type='vernacular_names']//emphasis");
+    static final XMLElementPath PATH_TAXONOMIC_NAME = XMLElementPath.compile("//subSubSection[@type='nomenclature']//taxonomicName");
+    // used to be //subSubSection[@type='distribution' or 'synonymic_list']/caption/paragraph,
+    // of which the predicate holds for any subSubSection
+    static final XMLElementPath PATH_DISTRIBUTION = XMLElementPath.compile("//subSubSection/caption/paragraph");
+    static final XMLElementPath PATH_TREATMENT_CITATION_NAME = XMLElementPath.compile("//treatmentCitation/taxonomicName");
+
+    private final List<OpenElement> openElements = new ArrayList<>();
+
+    private Map<String, String> documentAttributes = null;
+
+    private int treatmentDepth = -1;
+    private boolean foundTreatment = false;
+    private final StringBuilder treatmentText = new StringBuilder();
+
+    private final List<String> commonNameSegments = new ArrayList<>();
+
+    private boolean foundTaxonomicName = false;
+    private OpenElement taxonomicName = null;
+    private final Map<String, String> taxonomicNameAttributes = new TreeMap<>();
+    private String taxonomicNameText = null;
+
+    private String distributionImageURL = null;
+    private String taxonomicNameId = null;
+
+    private final StringBuilder pendingText = new StringBuilder();
+    private int pendingTextType = -1;
+
+    void read(InputStream is) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(is);
+        try {
+            while (reader.hasNext()) {
+                int eventType = reader.next();
+                if (eventType == XMLStreamConstants.CHARACTERS
+                        || eventType == XMLStreamConstants.SPACE
+                        || eventType == XMLStreamConstants.CDATA) {
+                    onText(eventType, reader.getText());
+                } else {
+                    flushText();
+                    if (eventType == XMLStreamConstants.START_ELEMENT) {
+                        onStartElement(reader);
+                    } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                        onEndElement();
+                    } else if (eventType == XMLStreamConstants.COMMENT) {
+                        onTreatmentNode(reader.getText());
+                    } else if (eventType == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                        onTreatmentNode(reader.getPIData());
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void onStartElement(XMLStreamReader reader) {
+        OpenElement parent = openElements.isEmpty() ? null : openElements.get(openElements.size() - 1);
+        OpenElement element = new OpenElement(reader);
+        openElements.add(element);
+
+        if (openElements.size() == 1 && PATH_DOCUMENT.matches(openElements)) {
+            documentAttributes = element.attributes;
+        }
+
+        if (!foundTreatment && PATH_TREATMENT.matches(openElements)) {
+            foundTreatment = true;
+            treatmentDepth = openElements.size();
+        }
+
+        if (PATH_VERNACULAR.matches(openElements) || (parent != null && parent.textContent != null)) {
+            element.textContent = new StringBuilder();
+        }
+
+        if (parent != null && PATH_VERNACULAR_EMPHASIS.matches(openElements)) {
+            // common names are taken from the text of the parent of the emphasis
+            parent.textContentIndices.add(commonNameSegments.size());
+            commonNameSegments.add(null);
+        }
+
+        if (!foundTaxonomicName && PATH_TAXONOMIC_NAME.matches(openElements)) {
+            foundTaxonomicName = true;
+            taxonomicName = element;
+            taxonomicNameAttributes.putAll(element.attributes);
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String prefix = reader.getNamespacePrefix(i);
+                String name = StringUtils.isEmpty(prefix) ? "xmlns" : "xmlns:" + prefix;
+                taxonomicNameAttributes.put(name, StringUtils.defaultString(reader.getNamespaceURI(i)));
+            }
+            element.textContent = new StringBuilder();
+        }
+
+        if (parent != null && PATH_DISTRIBUTION.matches(openElements)) {
+            String httpUri = parent.getAttribute("httpUri");
+            if (httpUri != null) {
+                distributionImageURL = httpUri;
+            }
+        }
+
+        if (taxonomicNameId == null && PATH_TREATMENT_CITATION_NAME.matches(openElements)) {
+            taxonomicNameId = element.getAttribute("id");
+        }
+    }
+
+    private void onEndElement() {
+        OpenElement element = openElements.remove(openElements.size() - 1);
+        if (element.textContent != null) {
+            String textContent = element.textContent.toString();
+            for (Integer index : element.textContentIndices) {
+                commonNameSegments.set(index, textContent);
+            }
+            if (element == taxonomicName) {
+                taxonomicNameText = textContent;
+            }
+            if (!openElements.isEmpty() && openElements.get(openElements.size() - 1).textContent != null) {
+                openElements.get(openElements.size() - 1).textContent.append(textContent);
+            }
+        }
+        if (openElements.size() < treatmentDepth) {
+            treatmentDepth = -1;
+        }
+    }
+
+    private void onText(int eventType, String text) {
+        // adjacent character events make up a single text node, but cdata sections are nodes of their own
+        boolean isCData = eventType == XMLStreamConstants.CDATA;
+        boolean wasCData = pendingTextType == XMLStreamConstants.CDATA;
+        if (pendingTextType != -1 && isCData != wasCData) {
+            flushText();
+        }
+        pendingTextType = eventType;
+        pendingText.append(text);
+
+        if (!openElements.isEmpty()) {
+            OpenElement element = openElements.get(openElements.size() - 1);
+            if (element.textContent != null) {
+                element.textContent.append(text);
+            }
+        }
+    }
+
+    private void flushText() {
+        if (pendingTextType != -1) {
+            onTreatmentNode(pendingText.toString());
+            pendingText.setLength(0);
+            pendingTextType = -1;
+        }
+    }
+
+    private void onTreatmentNode(String nodeValue) {
+        if (treatmentDepth != -1 && openElements.size() >= treatmentDepth && StringUtils.isNoneBlank(nodeValue)) {
+            treatmentText.append(" ");
+            treatmentText.append(nodeValue);
+            treatmentText.append(" ");
+        }
+    }
+
+    boolean hasDocument() {
+        return documentAttributes != null;
+    }
+
+    /**
+     * @return attributes of the /document element by qualified name
+     */
+
+    Map<String, String> getDocumentAttributes() {
+        return documentAttributes == null ? Collections.emptyMap() : documentAttributes;
+    }
+
+    /**
+     * @return text, comments and processing instructions of the first treatment, as separate space padded texts
+     */
+
+    String getTreatmentText() {
+        return treatmentText.toString();
+    }
+
+    /**
+     * @return text content of the parent of each emphasis in the vernacular names sub sections, in document order
+     */
+
+    List<String> getCommonNameSegments() {
+        return commonNameSegments;
+    }
+
+    /**
+     * @return attributes, including namespace declarations, of the first nomenclature taxonomic name in order of their qualified name,
+     * or empty if no such name exists.
+     */
+
+    Map<String, String> getTaxonomicNameAttributes() {
+        return taxonomicNameAttributes;
+    }
+
+    String getTaxonomicNameText() {
+        return taxonomicNameText;
+    }
+
+    boolean hasTaxonomicName() {
+        return foundTaxonomicName;
+    }
+
+    String getDistributionImageURL() {
+        return distributionImageURL;
+    }
+
+    String getTaxonomicNameId() {
+        return taxonomicNameId;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        if (factory.isPropertySupported(REPORT_CDATA)) {
+            factory.setProperty(REPORT_CDATA, true);
+        }
+        return factory;
+    }
+
+    private static class OpenElement implements XMLElementPath.Element {
+        private final String name;
+        private final Map<String, String> attributes;
+        private StringBuilder textContent = null;
+        private final List<Integer> textContentIndices = new ArrayList<>(0);
+
+        OpenElement(XMLStreamReader reader) {
+            this.name = StringUtils.isEmpty(reader.getNamespaceURI())
+                    ? reader.getLocalName()
+                    : null;
+            int attributeCount = reader.getAttributeCount();
+            this.attributes = attributeCount == 0
+                    ? Collections.emptyMap()
+                    : new TreeMap<>();
+            for (int i = 0; i < attributeCount; i++) {
+                String prefix = reader.getAttributePrefix(i);
+                String localName = reader.getAttributeLocalName(i);
+                attributes.put(StringUtils.isEmpty(prefix) ? localName : prefix + ":" + localName, reader.getAttributeValue(i));
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getAttribute(String name) {
+            return attributes.get(name);
+        }
+    }
+
+}
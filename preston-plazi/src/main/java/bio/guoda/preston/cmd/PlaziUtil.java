@@ -1,30 +1,18 @@
 package bio.guoda.preston.cmd;
 
-import bio.guoda.preston.process.XMLUtil;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.lang3.RegExUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import java.io.IOException;
+
+import javax.xml.stream.XMLStreamException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static bio.guoda.preston.process.XMLUtil.compilePathExpression;
-import static bio.guoda.preston.process.XMLUtil.evaluateXPath;
-
 public class PlaziUtil {
 
     public static final String PATTERN_SUB_DISTRIBUTION = "([.].*Distribution[ ]*[.])";
@@ -55,65 +43,51 @@ public class PlaziUtil {
     public static final Pattern PATTERN_MOVEMENTS = Pattern.compile("(.*)" + PATTERN_SUB_MOVEMENTS + "(.*)" + PATTERN_SUB_CONSERVATION + "(.*)");
     public static final Pattern DETECT_TAB_AND_NEWLINE = Pattern.compile("[\t\n]+");
     public static final Pattern DETECT_WHITESPACE = Pattern.compile("[\\s]+");
-    public static final XPathExpression X_PATH_DOCUMENT = compilePathExpression("/document");
-    public static final XPathExpression X_PATH_EMPHASIS = compilePathExpression("//emphasis");
-    public static final XPathExpression X_PATH_TAXONOMIC_NAME = XMLUtil.compilePathExpression("//subSubSection[@type='nomenclature']//taxonomicName");
-    public static final XPathExpression X_PATH_DISTRIBUTION = XMLUtil.compilePathExpression("//subSubSection[@type='distribution' or 'synonymic_list']/caption/paragraph");
-    public static final XPathExpression X_PATH_TREATMENT = compilePathExpression("//treatment");
-    public static final XPathExpression X_PATH_VERNACULAR = compilePathExpression("//subSubSection[@type='vernacular_names']//emphasis");
-
-    public static ObjectNode parseTreatment(InputStream is) throws IOException, ParserConfigurationException, SAXException, XPathExpressionException {
+    public static ObjectNode parseTreatment(InputStream is) throws XMLStreamException {
         return parseTreatment(is, new ObjectMapper().createObjectNode());
     }
 
-    public static ObjectNode parseTreatment(InputStream is, ObjectNode treatment) throws IOException, ParserConfigurationException, SAXException, XPathExpressionException {
-        Document docu = parseDocument(is);
-        NodeList doc = evaluateXPath(docu, X_PATH_DOCUMENT);
+    public static ObjectNode parseTreatment(InputStream is, ObjectNode treatment) throws XMLStreamException {
+        PlaziTreatmentReader reader = new PlaziTreatmentReader();
+        reader.read(is);
 
-        if (doc.getLength() > 0) {
+        if (reader.hasDocument()) {
 
-            Node document = doc.item(0);
-            NamedNodeMap docAttributes = document.getAttributes();
+            Map<String, String> docAttributes = reader.getDocumentAttributes();
             setIfNotNull(treatment, docAttributes, "docId");
             setIfNotNull(treatment, docAttributes, "docName");
             setIfNotNull(treatment, docAttributes, "docOrigin");
-            if (docAttributes.getNamedItem("masterDocId") != null) {
-                String masterDocId = docAttributes.getNamedItem("masterDocId").getTextContent();
+            if (docAttributes.get("masterDocId") != null) {
+                String masterDocId = docAttributes.get("masterDocId");
                 treatment.put("docMasterId", "hash://md5/" + StringUtils.lowerCase(masterDocId));
             }
 
-            if (docAttributes.getNamedItem("ID-ISBN") != null) {
-                treatment.put("docISBN", docAttributes.getNamedItem("ID-ISBN").getTextContent());
+            if (docAttributes.get("ID-ISBN") != null) {
+                treatment.put("docISBN", docAttributes.get("ID-ISBN"));
             }
-            if (docAttributes.getNamedItem("pageNumber") != null) {
-                treatment.put("docPageNumber", docAttributes.getNamedItem("pageNumber").getTextContent());
+            if (docAttributes.get("pageNumber") != null) {
+                treatment.put("docPageNumber", docAttributes.get("pageNumber"));
             }
 
-            String treatmentText = extractTreatment(docu);
+            String treatmentText = extractTreatment(reader);
             treatment.put("verbatimText", treatmentText);
             handleTaxonomy(treatment, treatmentText);
             if (treatment.has("taxonomy")) {
-                handleRemainingTreatment(treatment, docu, treatmentText);
+                handleRemainingTreatment(treatment, reader, treatmentText);
             }
 
-            NodeList taxonomicName = evaluateXPath(docu, compilePathExpression("//treatmentCitation/taxonomicName"));
-            for (int i=0; i < taxonomicName.getLength(); i++) {
-                Node taxonName = taxonomicName.item(i);
-                Node taxonNameId = taxonName.getAttributes().getNamedItem("id");
-                if (taxonNameId != null) {
-                    treatment.put("taxonomicNameId", taxonNameId.getTextContent());
-                    break;
-                }
+            if (reader.getTaxonomicNameId() != null) {
+                treatment.put("taxonomicNameId", reader.getTaxonomicNameId());
             }
 
         }
         return treatment;
     }
 
-    public static void handleRemainingTreatment(ObjectNode treatment, Document docu, String treatmentText) throws ParserConfigurationException, SAXException, IOException, XPathExpressionException {
-        handleCommonNames(docu, treatment);
-        handleNomenclature(docu, treatment);
-        handleDistribution(treatmentText, treatment, docu);
+    static void handleRemainingTreatment(ObjectNode treatment, PlaziTreatmentReader reader, String treatmentText) {
+        handleCommonNames(reader, treatment);
+        handleNomenclature(reader, treatment);
+        handleDistribution(treatmentText, treatment, reader);
         handleBibliography(treatment, treatmentText);
         handleFoodAndFeeding(treatment, treatmentText);
         handleBreeding(treatment, treatmentText);
@@ -139,14 +113,14 @@ public class PlaziUtil {
         }
     }
 
-    private static void handleStatusAndConservation(ObjectNode treatment, String treatmentText) throws XPathExpressionException {
+    private static void handleStatusAndConservation(ObjectNode treatment, String treatmentText) {
         String statusAndConservation = extractSegment(treatmentText, PATTERN_STATUS_AND_CONSERVATION);
         if (StringUtils.isNoneBlank(statusAndConservation)) {
             treatment.put("statusAndConservation", statusAndConservation);
         }
     }
 
-    private static void handleHabitat(ObjectNode treatment, String treatmentText) throws ParserConfigurationException, SAXException, IOException, XPathExpressionException {
+    private static void handleHabitat(ObjectNode treatment, String treatmentText) {
         String habitat = extractSegment(treatmentText, PATTERN_HABITAT);
         if (StringUtils.isNoneBlank(habitat)) {
             treatment.put("habitat", habitat);
@@ -155,14 +129,14 @@ public class PlaziUtil {
 
     }
 
-    private static void handleActivityPatterns(ObjectNode treatment, String treatmentText) throws ParserConfigurationException, SAXException, IOException, XPathExpressionException {
+    private static void handleActivityPatterns(ObjectNode treatment, String treatmentText) {
         String breeding = extractSegment(treatmentText, PATTERN_ACTIVITY_PATTERNS);
         if (StringUtils.isNoneBlank(breeding)) {
             treatment.put("activityPatterns", breeding);
         }
     }
 
-    private static void handleBreeding(ObjectNode treatment, String treatmentText) throws ParserConfigurationException, SAXException, IOException, XPathExpressionException {
+    private static void handleBreeding(ObjectNode treatment, String treatmentText) {
         String breeding = extractSegment(treatmentText, PATTERN_BREEDING);
         if (StringUtils.isNoneBlank(breeding)) {
             treatment.put("breeding", breeding);
@@ -170,7 +144,7 @@ public class PlaziUtil {
 
     }
 
-    static void handleFoodAndFeeding(ObjectNode treatment, String treatmentText) throws XPathExpressionException {
+    static void handleFoodAndFeeding(ObjectNode treatment, String treatmentText) {
         String foodAndFeeding = extractSegment(treatmentText, PATTERN_FOOD_AND_FEEDING);
         if (StringUtils.isNoneBlank(foodAndFeeding)) {
             treatment.put("foodAndFeeding", foodAndFeeding);
@@ -179,7 +153,7 @@ public class PlaziUtil {
     }
 
 
-    static void handleBibliography(ObjectNode treatment, String treatmentText) throws XPathExpressionException {
+    static void handleBibliography(ObjectNode treatment, String treatmentText) {
         String bibliographyString = extractSegment(treatmentText, PATTERN_BIBLIOGRAPHY);
 
         String[] references = StringUtils.split(bibliographyString, ")");
@@ -194,25 +168,16 @@ public class PlaziUtil {
         treatment.put("bibliography", StringUtils.join(referenceList, " | "));
     }
 
-    static Document parseDocument(InputStream is) throws IOException, ParserConfigurationException, SAXException {
-        return XMLUtil.parseDoc(is);
-    }
-
-    static void setIfNotNull(ObjectNode treatment, NamedNodeMap docAttributes, String attributeName) {
-        if (docAttributes.getNamedItem(attributeName) != null) {
-            treatment.put(attributeName, docAttributes.getNamedItem(attributeName).getTextContent());
+    static void setIfNotNull(ObjectNode treatment, Map<String, String> docAttributes, String attributeName) {
+        if (docAttributes.get(attributeName) != null) {
+            treatment.put(attributeName, docAttributes.get(attributeName));
         }
     }
 
-    private static void handleCommonNames(Document docu, ObjectNode treatment) throws XPathExpressionException {
-        NodeList commonNames = evaluateXPath(
-                docu, X_PATH_VERNACULAR
-        );
-
+    private static void handleCommonNames(PlaziTreatmentReader reader, ObjectNode treatment) {
         List<String> commonNameList = new ArrayList<>();
-        for (int i = 0; i < commonNames.getLength(); i++) {
-            Node expectedCommonName = commonNames.item(i);
-            String commonNameSegment = replaceTabsNewlinesWithSpaces(expectedCommonName.getParentNode());
+        for (String commonNameParentText : reader.getCommonNameSegments()) {
+            String commonNameSegment = replaceTabsNewlinesWithSpaces(commonNameParentText);
             String[] commonNameSplit = StringUtils.split(commonNameSegment, ".");
             String commonNameTrimmed = commonNameSplit.length > 1 ? commonNameSplit[1] : commonNameSplit[0];
             String[] commonNamesSplit = StringUtils.split(commonNameTrimmed, "I/");
@@ -262,90 +227,43 @@ public class PlaziUtil {
     }
 
 
-    private static void handleNomenclature(Document docu, ObjectNode treatment) throws ParserConfigurationException, SAXException, IOException, XPathExpressionException {
-        NodeList taxonomicNames = evaluateXPath(
-                docu, X_PATH_TAXONOMIC_NAME
-        );
-
-        if (taxonomicNames.getLength() > 0) {
-            Node expectedTaxonomicName = taxonomicNames.item(0);
-            NamedNodeMap attributes = expectedTaxonomicName.getAttributes();
-            for (int j = 0; j < attributes.getLength(); j++) {
-                Node attribute = attributes.item(j);
-                String nodeName = attribute.getNodeName();
+    private static void handleNomenclature(PlaziTreatmentReader reader, ObjectNode treatment) {
+        if (reader.hasTaxonomicName()) {
+            for (Map.Entry<String, String> attribute : reader.getTaxonomicNameAttributes().entrySet()) {
+                String nodeName = attribute.getKey();
                 if (!StringUtils.equals(nodeName, "box")) {
-                    treatment.put("interpreted" + StringUtils.capitalize(nodeName), attribute.getTextContent());
+                    treatment.put("interpreted" + StringUtils.capitalize(nodeName), attribute.getValue());
                 }
             }
-            String nameWithoutNewlines = replaceTabsNewlinesWithSpaces(expectedTaxonomicName);
+            String nameWithoutNewlines = replaceTabsNewlinesWithSpaces(reader.getTaxonomicNameText());
             treatment.put("name", nameWithoutNewlines);
         }
     }
 
-    private static void handleDistribution(String treatmentText, ObjectNode treatment, Document docu) throws ParserConfigurationException, SAXException, IOException, XPathExpressionException {
+    private static void handleDistribution(String treatmentText, ObjectNode treatment, PlaziTreatmentReader reader) {
         String taxonomySegment = extractDistributionSegment(treatmentText);
         if (StringUtils.isNoneBlank(taxonomySegment)) {
             treatment.put("subspeciesAndDistribution", StringUtils.trim(taxonomySegment));
         }
 
-        NodeList distribution = evaluateXPath(
-                docu, X_PATH_DISTRIBUTION
-        );
-        for (int i = 0; i < distribution.getLength(); i++) {
-            Node distributionNode = distribution.item(i);
-            Node parentNode = distributionNode.getParentNode();
-            NamedNodeMap attributes = parentNode.getAttributes();
-            if (attributes.getNamedItem("httpUri") != null) {
-                treatment.put("distributionImageURL", attributes.getNamedItem("httpUri").getTextContent());
-            }
+        if (reader.getDistributionImageURL() != null) {
+            treatment.put("distributionImageURL", reader.getDistributionImageURL());
         }
     }
 
-    private static void handleTaxonomy(ObjectNode treatment, String treatmentText) throws ParserConfigurationException, SAXException, IOException, XPathExpressionException {
+    private static void handleTaxonomy(ObjectNode treatment, String treatmentText) {
         String taxonomySegment = extractTaxonomySegment(treatmentText);
         if (StringUtils.isNoneBlank(taxonomySegment)) {
             treatment.put("taxonomy", StringUtils.trim(taxonomySegment));
         }
     }
 
-    private static String extractTreatment(Document docu) throws XPathExpressionException {
-
-        NodeList treatmentNodes = evaluateXPath(
-                docu, X_PATH_TREATMENT
-        );
-
-        Node treatmentNode = treatmentNodes.getLength() > 0
-                ? treatmentNodes.item(0)
-                : null;
-
-        StringBuilder builder = new StringBuilder();
-        if (treatmentNode != null) {
-            appendTextsWithWhitespaces(treatmentNode, builder);
-        }
-
+    private static String extractTreatment(PlaziTreatmentReader reader) {
         return StringUtils.trim(
-                replaceTabsNewlinesWithSpaces(builder.toString())
+                replaceTabsNewlinesWithSpaces(reader.getTreatmentText())
         );
     }
 
-    private static void appendTextsWithWhitespaces(Node treatmentNode, StringBuilder builder) {
-        NodeList elems = treatmentNode.getChildNodes();
-        for (int j = 0; j < elems.getLength(); j++) {
-            Node child = elems.item(j);
-            if (StringUtils.isNoneBlank(child.getNodeValue())) {
-                builder.append(" ");
-                builder.append(child.getNodeValue());
-                builder.append(" ");
-            }
-            appendTextsWithWhitespaces(child, builder);
-        }
-    }
-
-    private static String replaceTabsNewlinesWithSpaces(Node expectedParagraphNode) {
-        String textContent = expectedParagraphNode.getTextContent();
-        return replaceTabsNewlinesWithSpaces(textContent);
-    }
-
     public static String replaceTabsNewlinesWithSpaces(String textContent) {
         return StringUtils.trim(
                 RegExUtils.replaceAll(
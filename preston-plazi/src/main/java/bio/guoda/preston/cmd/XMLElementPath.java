@@ -0,0 +1,103 @@
+package bio.guoda.preston.cmd;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A pre-compiled, xpath-like location path of (non-namespaced) elements, matched against the
+ * elements that are open while streaming through an xml document.
+ * <p>
+ * Supports child (/) and descendant (//) steps, with an optional attribute value predicate, e.g.,
+ * //subSubSection[@type='nomenclature']//taxonomicName
+ */
+
+class XMLElementPath {
+
+    private static final Pattern STEP = Pattern.compile("(//|/)([A-Za-z_][\\w.-]*)(?:\\[@([\\w:.-]+)='([^']*)'])?");
+
+    private final List<Step> steps;
+
+    private XMLElementPath(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    static XMLElementPath compile(String path) {
+        List<Step> steps = new ArrayList<>();
+        Matcher matcher = STEP.matcher(path);
+        int end = 0;
+        while (matcher.find() && matcher.start() == end) {
+            steps.add(new Step(
+                    StringUtils.equals(matcher.group(1), "//"),
+                    matcher.group(2),
+                    matcher.group(3),
+                    matcher.group(4)));
+            end = matcher.end();
+        }
+        if (steps.isEmpty() || end != path.length()) {
+            throw new IllegalArgumentException("unsupported element path [" + path + "]");
+        }
+        return new XMLElementPath(steps);
+    }
+
+    /**
+     * @param openElements elements from the root element down to the element to be matched
+     */
+
+    boolean matches(List<? extends Element> openElements) {
+        return matches(steps.size() - 1, openElements.size() - 1, openElements);
+    }
+
+    private boolean matches(int stepIndex, int elementIndex, List<? extends Element> openElements) {
+        Step step = steps.get(stepIndex);
+        if (elementIndex < 0 || !step.matches(openElements.get(elementIndex))) {
+            return false;
+        }
+        if (stepIndex == 0) {
+            return step.descendant || elementIndex == 0;
+        }
+        if (!step.descendant) {
+            return matches(stepIndex - 1, elementIndex - 1, openElements);
+        }
+        for (int ancestorIndex = elementIndex - 1; ancestorIndex >= 0; ancestorIndex--) {
+            if (matches(stepIndex - 1, ancestorIndex, openElements)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    interface Element {
+
+        /**
+         * @return local name of element without namespace, or null if the element has a namespace.
+         */
+
+        String getName();
+
+        String getAttribute(String name);
+    }
+
+    private static class Step {
+        private final boolean descendant;
+        private final String name;
+        private final String attributeName;
+        private final String attributeValue;
+
+        Step(boolean descendant, String name, String attributeName, String attributeValue) {
+            this.descendant = descendant;
+            this.name = name;
+            this.attributeName = attributeName;
+            this.attributeValue = attributeValue;
+        }
+
+        boolean matches(Element element) {
+            return StringUtils.equals(name, element.getName())
+                    && (attributeName == null || StringUtils.equals(attributeValue, element.getAttribute(attributeName)));
+        }
+    }
+
+}
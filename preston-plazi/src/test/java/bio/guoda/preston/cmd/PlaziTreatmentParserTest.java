@@ -295,4 +295,43 @@ public class PlaziTreatmentParserTest {
         assertThat(treatment.get("bibliography").textValue(), Is.is("Dunbar (1978) | Ellerman & Morrison-Scott (1966) | Festa-Bianchet (2009) | Gebremedhin & Grubb (2008) | Gebremedhin et al. (2009) | Grubb (2005) | Hillman et al. (1997) | Maydon (1925, 1932) | Nievergelt (1974, 1981, 1990) | Nievergelt et al. (1981) | Rothschild (1902) | Valdez (1985)"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void processMixedContent() throws IOException, TreatmentParseException {
+        String xml = "<document docId=\"y\">" +
+                "<treatment>Foo <!-- a comment --> bar<![CDATA[baz]]>qux &amp; more. Taxonomy . Some thing. Distribution . Here and there. Descriptive notes. big. Habitat. wet.</treatment>" +
+                "<subSubSection type=\"vernacular_names\">" +
+                "<paragraph>Names. French: <emphasis>Chauve</emphasis> / German: Fleder<!-- c --></paragraph>" +
+                "<paragraph>More. Spanish: <emphasis>Mur<emphasis>cie</emphasis></emphasis>lago / Other common names: RedBat, Blue Bat</paragraph>" +
+                "</subSubSection>" +
+                "<subSubSection type=\"nomenclature\"><paragraph>" +
+                "<taxonomicName zeta=\"1\" box=\"2\" genus=\"G\" xmlns:q=\"urn:q\" authority=\"A\">Genus\n\tspecies <b>sub<!-- hidden --></b><![CDATA[ cd]]></taxonomicName>" +
+                "<taxonomicName genus=\"H\">second</taxonomicName>" +
+                "</paragraph></subSubSection>" +
+                "<subSubSection type=\"other\">" +
+                "<caption httpUri=\"http://a\"><paragraph>p</paragraph></caption>" +
+                "<caption httpUri=\"http://b\"><x><paragraph>p</paragraph></x></caption>" +
+                "</subSubSection>" +
+                "<treatmentCitation><taxonomicName>no id</taxonomicName><taxonomicName id=\"tn1\"/></treatmentCitation>" +
+                "</document>";
+
+        JsonNode treatment = getParser().parse(IOUtils.toInputStream(xml, StandardCharsets.UTF_8));
+
+        assertThat(treatment.toString(), Is.is("{" +
+                "\"docId\":\"y\"," +
+                "\"verbatimText\":\"Foo a comment bar baz qux & more. Taxonomy . Some thing. Distribution . Here and there. Descriptive notes. big. Habitat. wet.\"," +
+                "\"taxonomy\":\"Some thing.\"," +
+                "\"commonNames\":\"Chauve @fr | Fleder @de | Murcielago @es | Red Bat @en | Blue Bat @en | Murcie @en\"," +
+                "\"interpretedAuthority\":\"A\"," +
+                "\"interpretedGenus\":\"G\"," +
+                "\"interpretedXmlns:q\":\"urn:q\"," +
+                "\"interpretedZeta\":\"1\"," +
+                "\"name\":\"Genusspecies sub cd\"," +
+                "\"subspeciesAndDistribution\":\"Here and there.\"," +
+                "\"distributionImageURL\":\"http://a\"," +
+                "\"bibliography\":\"\"," +
+                "\"descriptiveNotes\":\"big.\"," +
+                "\"taxonomicNameId\":\"tn1\"" +
+                "}"));
+    }
+
+}
@@ -50,6 +50,7 @@ public class CmdServe extends LoggingPersisting implements Runnable {
         servletHolder.setInitParameters(properties);
 
         servletHandler.addServletWithMapping(servletHolder, "/");
+        servletHandler.addServletWithMapping(MetricsServlet.class, "/metrics");
         server.insertHandler(servletHandler);
         try {
             server.start();
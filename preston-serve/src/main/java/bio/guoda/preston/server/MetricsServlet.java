@@ -0,0 +1,24 @@
+package bio.guoda.preston.server;
+
+import bio.guoda.preston.metrics.Metrics;
+import bio.guoda.preston.metrics.PrometheusTextFormat;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Exposes metrics of this server in Prometheus text format.
+ */
+
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(PrometheusTextFormat.CONTENT_TYPE);
+        Metrics.write(response.getWriter());
+    }
+
+}
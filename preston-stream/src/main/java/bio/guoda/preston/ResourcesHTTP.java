@@ -1,12 +1,18 @@
 package bio.guoda.preston;
 
+import bio.guoda.preston.metrics.Gauge;
+import bio.guoda.preston.metrics.LatencyHistogram;
+import bio.guoda.preston.metrics.Metrics;
+import bio.guoda.preston.store.KeyValueStoreLocalFileSystemReadOnly;
 import bio.guoda.preston.stream.ContentStreamUtil;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpMessage;
+import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.config.CookieSpecs;
@@ -37,6 +43,8 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ResourcesHTTP {
     private static final Logger LOG = LoggerFactory.getLogger(ResourcesHTTP.class);
@@ -46,6 +54,7 @@ public class ResourcesHTTP {
     public static final String GITHUB_AUTH_TOKEN = "GITHUB_TOKEN";
 
     private static final List<Integer> REDIRECT_CODES = Arrays.asList(301, 302, 303);
+    private static final Pattern CONTENT_RANGE = Pattern.compile("\\s*bytes\\s+([0-9]+)-([0-9]+)/([0-9]+|\\*)\\s*");
     public static final String MIMETYPE_GITHUB_JSON = "application/vnd.github+json";
     public static final Predicate<Integer> SHOULD_IGNORE_40x_50x
             = statusCode -> statusCode >= 400;
@@ -55,6 +64,11 @@ public class ResourcesHTTP {
             return false;
         }
     };
+    private static final Gauge REQUESTS_IN_FLIGHT = Metrics.gauge(
+            "preston_http_requests_in_flight",
+            "Number of http requests waiting for a response"
+    );
+
     private static CloseableHttpClient httpClient = null;
     private static CloseableHttpClient redirectingHttpClient = null;
 
@@ -135,7 +149,7 @@ public class ResourcesHTTP {
 
             injectAuthorizationIfPossible(dataURI, request);
 
-            CloseableHttpResponse response = client.execute(request);
+            CloseableHttpResponse response = execute(client, request);
             StatusLine statusLine = response.getStatusLine();
             HttpEntity entity = response.getEntity();
             if (shouldIgnore.test(statusLine.getStatusCode())) {
@@ -159,6 +173,132 @@ public class ResourcesHTTP {
         return is;
     }
 
+    /**
+     * Requests a byte range of a resource using an http range request. If a server ignores the range request,
+     * or responds with another range than requested, the resource is read up to the start of the range instead.
+     *
+     * @param startOffset offset of the first byte in range
+     * @param endOffset   offset of the byte just after the range
+     * @return bytes in range, or null if the range is not available
+     */
+
+    public static InputStream asInputStreamRange(IRI dataURI,
+                                                 long startOffset,
+                                                 long endOffset,
+                                                 DerefProgressListener listener) throws IOException {
+        InputStream is = null;
+        URI uri = URI.create(dataURI.getIRIString());
+        if (StringUtils.equals("file", uri.getScheme())) {
+            File file = new File(uri);
+            if (file.exists()) {
+                is = KeyValueStoreLocalFileSystemReadOnly.openInputStream(file, startOffset, endOffset);
+            }
+        } else if (startOffset < endOffset) {
+            is = getRange(dataURI, startOffset, endOffset, listener, true);
+        }
+        return is;
+    }
+
+    /**
+     * @param requestRange true to request the range from the server, or false to request the whole resource,
+     *                     to be cut locally
+     */
+
+    private static InputStream getRange(IRI dataURI,
+                                        long startOffset,
+                                        long endOffset,
+                                        DerefProgressListener listener,
+                                        boolean requestRange) throws IOException {
+        HttpGet get = new HttpGet(URI.create(dataURI.getIRIString()));
+        get.addHeader("Accept", "*/*");
+        if (requestRange) {
+            get.addHeader("Range", "bytes=" + startOffset + "-" + (endOffset - 1));
+        }
+
+        CloseableHttpClient client = shouldRedirect(dataURI)
+                ? getRedirectingHttpClient()
+                : getHttpClient();
+
+        injectAuthorizationIfPossible(dataURI, get);
+
+        InputStream is = null;
+        boolean isOtherRange = false;
+        CloseableHttpResponse response = execute(client, get);
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                if (statusCode == HttpStatus.SC_PARTIAL_CONTENT) {
+                    isOtherRange = !isRange(response.getFirstHeader("Content-Range"), startOffset, endOffset);
+                    if (!isOtherRange) {
+                        is = new BoundedInputStream(getInputStream(dataURI, listener, entity), endOffset - startOffset);
+                    }
+                } else if (statusCode == HttpStatus.SC_OK) {
+                    is = ContentStreamUtil.cutBytes(getInputStream(dataURI, listener, entity), startOffset, endOffset);
+                }
+            }
+        } finally {
+            if (is == null) {
+                response.close();
+            }
+        }
+
+        if (isOtherRange && requestRange) {
+            LOG.warn("received other range than requested [bytes=" + startOffset + "-" + (endOffset - 1) + "] of [" + dataURI + "]: reading up to requested range instead");
+            is = getRange(dataURI, startOffset, endOffset, listener, false);
+        }
+        return is;
+    }
+
+    /**
+     * @param contentRange Content-Range header of a partial content response, e.g., "bytes 100-199/1000"
+     * @return true if content range starts at startOffset, and ends just before endOffset, or at the end of the resource.
+     */
+
+    static boolean isRange(Header contentRange, long startOffset, long endOffset) {
+        Matcher matcher = contentRange == null
+                ? null
+                : CONTENT_RANGE.matcher(contentRange.getValue());
+        if (matcher == null || !matcher.matches()) {
+            return false;
+        }
+        long first = Long.parseLong(matcher.group(1));
+        long last = Long.parseLong(matcher.group(2));
+        String length = matcher.group(3);
+        return first == startOffset
+                && (last == endOffset - 1
+                || (last < endOffset - 1 && !"*".equals(length) && last == Long.parseLong(length) - 1));
+    }
+
+    /**
+     * Executes request, keeping track of the time until a response (status and headers) is received, by host.
+     */
+
+    private static CloseableHttpResponse execute(CloseableHttpClient client, HttpUriRequest request) throws IOException {
+        String host = StringUtils.defaultString(request.getURI().getHost());
+        String status = "failed";
+        long start = LatencyHistogram.start();
+        REQUESTS_IN_FLIGHT.inc();
+        try {
+            CloseableHttpResponse response = client.execute(request);
+            status = Integer.toString(response.getStatusLine().getStatusCode());
+            return response;
+        } finally {
+            REQUESTS_IN_FLIGHT.dec();
+            Metrics.histogram(
+                    "preston_http_request_duration_seconds",
+                    "Time until http responses (status and headers) are received",
+                    "host", host
+            ).recordSince(start);
+            Metrics.counter(
+                    "preston_http_requests_total",
+                    "Number of http requests",
+                    "host", host,
+                    "status", status
+            ).inc();
+        }
+    }
+
     private static InputStream getInputStream(IRI dataURI, DerefProgressListener listener, HttpEntity entity) throws IOException {
         final long contentLength = entity.getContentLength();
 
@@ -2,20 +2,63 @@ package bio.guoda.preston.process;
 
 import bio.guoda.preston.RefNodeConstants;
 import bio.guoda.preston.stream.ContentStreamException;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.rdf.api.IRI;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
 import org.apache.pdfbox.pdmodel.common.PDPageLabels;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 
 public class PDFUtil {
+
+    /**
+     * Copies a pdf into a tmp file, so that it can be loaded with random access
+     * (see {@link #loadPDF(File, File)}) instead of being held in memory.
+     *
+     * @param tmpDir directory of the tmp file, or null for the default tmp dir
+     * @return tmp file, to be deleted by the caller
+     */
+
+    public static File spoolToTmpFile(InputStream in, File tmpDir) throws IOException {
+        File pdfFile = File.createTempFile("preston-pdf-", ".pdf", tmpDir);
+        try {
+            Files.copy(in, pdfFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            FileUtils.deleteQuietly(pdfFile);
+            throw ex;
+        }
+        return pdfFile;
+    }
+
+    /**
+     * Loads a pdf, reading its objects from the file on demand, and
+     * caching decoded streams in tmp files rather than in memory.
+     *
+     * @param tmpDir directory of the tmp files, or null for the default tmp dir
+     */
+
+    public static PDDocument loadPDF(File pdfFile, File tmpDir) throws IOException {
+        MemoryUsageSetting tmpFileOnly = MemoryUsageSetting.setupTempFileOnly().setTempDir(tmpDir);
+        return Loader.loadPDF(new RandomAccessReadBufferedFile(pdfFile), tmpFileOnly.streamCache);
+    }
+
     public static PageSelected selectPage(String requestedPageLabel, PDDocument doc, int index) throws IOException, ContentStreamException {
         PDDocumentCatalog documentCatalog = doc.getDocumentCatalog();
 
@@ -56,6 +99,26 @@ public class PDFUtil {
     }
 
 
+    /**
+     * Saves selected pages into a tmp file.
+     *
+     * @param tmpDir directory of the tmp file, or null for the default tmp dir
+     * @return stream of the saved pdf, which deletes the tmp file when closed
+     */
+
+    public static InputStream saveAsPDF(List<PageSelected> selectedPages,
+                                        IRI contentId,
+                                        File tmpDir) throws IOException {
+        File pdfFile = File.createTempFile("preston-pdf-pages-", ".pdf", tmpDir);
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(pdfFile))) {
+            saveAsPDF(selectedPages, contentId, output);
+        } catch (IOException ex) {
+            FileUtils.deleteQuietly(pdfFile);
+            throw ex;
+        }
+        return Files.newInputStream(pdfFile.toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
     public static void saveAsPDF(List<PageSelected> selectedPages,
                                  IRI contentId,
                                  OutputStream output) throws IOException {
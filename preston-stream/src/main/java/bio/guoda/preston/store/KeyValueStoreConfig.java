@@ -18,6 +18,8 @@ public class KeyValueStoreConfig {
     private final HashType hashType;
     private final DerefProgressListener progressListener;
     private final boolean supportTarGzDiscovery;
+    private final KeyExistenceFilter existenceFilter;
+    private final boolean compressionEnabled;
 
     public KeyValueStoreConfig(File dataDir,
                                File tmpDir,
@@ -27,6 +29,29 @@ public class KeyValueStoreConfig {
                                HashType hashType,
                                DerefProgressListener progressListener,
                                boolean supportTarGzDiscovery) {
+        this(dataDir,
+                tmpDir,
+                directoryDepth,
+                cacheEnabled,
+                remotes,
+                hashType,
+                progressListener,
+                supportTarGzDiscovery,
+                KeyExistenceFilter.NONE,
+                false
+        );
+    }
+
+    public KeyValueStoreConfig(File dataDir,
+                               File tmpDir,
+                               int directoryDepth,
+                               boolean cacheEnabled,
+                               List<URI> remotes,
+                               HashType hashType,
+                               DerefProgressListener progressListener,
+                               boolean supportTarGzDiscovery,
+                               KeyExistenceFilter existenceFilter,
+                               boolean compressionEnabled) {
         this.dataDir = dataDir;
         this.tmpDir = tmpDir;
         this.directoryDepth = directoryDepth;
@@ -35,9 +60,19 @@ public class KeyValueStoreConfig {
         this.hashType = hashType;
         this.progressListener = progressListener;
         this.supportTarGzDiscovery = supportTarGzDiscovery;
+        this.existenceFilter = existenceFilter;
+        this.compressionEnabled = compressionEnabled;
     }
 
     public KeyValueStoreConfig(File dataDir, File tmpDir, int directoryDepth) {
+        this(dataDir, tmpDir, directoryDepth, KeyExistenceFilter.NONE, false);
+    }
+
+    public KeyValueStoreConfig(File dataDir,
+                               File tmpDir,
+                               int directoryDepth,
+                               KeyExistenceFilter existenceFilter,
+                               boolean compressionEnabled) {
         this(dataDir,
                 tmpDir,
                 directoryDepth,
@@ -45,7 +80,9 @@ public class KeyValueStoreConfig {
                 Collections.emptyList(),
                 HashType.sha256,
                 ContentStreamUtil.NOOP_DEREF_PROGRESS_LISTENER,
-                false
+                false,
+                existenceFilter,
+                compressionEnabled
         );
     }
 
@@ -80,4 +117,12 @@ public class KeyValueStoreConfig {
     public boolean isSupportTarGzDiscovery() {
         return supportTarGzDiscovery;
     }
+
+    public KeyExistenceFilter getExistenceFilter() {
+        return existenceFilter;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
 }
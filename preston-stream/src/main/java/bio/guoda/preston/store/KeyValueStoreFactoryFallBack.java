@@ -6,17 +6,29 @@ public class KeyValueStoreFactoryFallBack implements KeyValueStoreFactory {
 
     private final File dataDir;
     private final File tmpDir;
+    private final KeyExistenceFilter existenceFilter;
+    private final boolean compressionEnabled;
     private KeyToPath keyToPath;
 
     public KeyValueStoreFactoryFallBack(File dataDir, File tmpDir, int directoryDepth) {
+        this(dataDir, tmpDir, directoryDepth, KeyExistenceFilter.NONE, false);
+    }
+
+    public KeyValueStoreFactoryFallBack(File dataDir,
+                                        File tmpDir,
+                                        int directoryDepth,
+                                        KeyExistenceFilter existenceFilter,
+                                        boolean compressionEnabled) {
         this.dataDir = dataDir;
         this.tmpDir = tmpDir;
+        this.existenceFilter = existenceFilter;
+        this.compressionEnabled = compressionEnabled;
         this.keyToPath = new KeyToPathFactoryDepth(dataDir.toURI(), directoryDepth).getKeyToPath();
 
     }
 
     public KeyValueStoreFactoryFallBack(KeyValueStoreConfig config) {
-        this(config.getDataDir(), config.getTmpDir(), config.getDirectoryDepth());
+        this(config.getDataDir(), config.getTmpDir(), config.getDirectoryDepth(), config.getExistenceFilter(), config.isCompressionEnabled());
     }
 
     @Override
@@ -24,14 +36,17 @@ public class KeyValueStoreFactoryFallBack implements KeyValueStoreFactory {
         KeyValueStore primary = new KeyValueStoreLocalFileSystem(
                 this.tmpDir,
                 this.keyToPath,
-                validatingKeyValueStreamFactory
+                validatingKeyValueStreamFactory,
+                this.existenceFilter,
+                this.compressionEnabled
         );
 
         // for backwards compatibility
         KeyValueStoreReadOnly fallback = new KeyValueStoreLocalFileSystem(
                 this.tmpDir,
                 new KeyTo5LevelPath(this.dataDir.toURI()),
-                validatingKeyValueStreamFactory
+                validatingKeyValueStreamFactory,
+                this.existenceFilter
         );
 
         return new KeyValueStoreWithFallback(primary, fallback);
@@ -12,6 +12,7 @@ import org.apache.commons.rdf.api.IRI;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
@@ -41,26 +42,16 @@ public class KeyValueStoreUtil {
     private static KeyValueStoreStickyFailover createStickyFailoverWithValidatedCache(
             ValidatingKeyValueStreamFactory kvStreamFactory,
             List<KeyValueStoreReadOnly> remotes,
-            File stagingDir,
             KeyValueStore keyStore
     ) {
 
         List<KeyValueStoreReadOnly> validatedRemotes = remotes
                 .stream()
-                .map(remote -> {
-                    KeyValueStoreLocalFileSystem staging = new KeyValueStoreLocalFileSystem(
-                            stagingDir,
-                            new KeyTo1LevelPath(stagingDir.toURI()),
-                            kvStreamFactory
-                    );
-
-                    return new KeyValueStoreWithValidation(
-                            kvStreamFactory,
-                            staging,
-                            keyStore,
-                            remote
-                    );
-                })
+                .map(remote -> new KeyValueStoreWithValidation(
+                        kvStreamFactory,
+                        keyStore,
+                        remote
+                ))
                 .collect(Collectors.toList());
 
 
@@ -99,7 +90,6 @@ public class KeyValueStoreUtil {
             KeyValueStoreStickyFailover source = createStickyFailoverWithValidatedCache(
                     kvStreamFactory,
                     keyValueStoreRemotes,
-                    config.getTmpDir(),
                     keyValueStore
             );
             store = new KeyValueStoreCopying(
@@ -172,18 +162,7 @@ public class KeyValueStoreUtil {
     }
 
     public static Dereferencer<InputStream> getInputStreamDereferencerFile(DerefProgressListener listener) {
-        return uri -> {
-            try {
-                File file = new File(URI.create(uri.getIRIString()));
-                return file.exists()
-                        ? getInputStreamForFile(uri, file, listener)
-                        : null;
-            } catch (IllegalArgumentException ex) {
-                // will not dereference malformed or non-file URI
-                // see https://github.com/bio-guoda/preston/issues/291
-                return null;
-            }
-        };
+        return new DereferencerFile(listener);
     }
 
     private static InputStream getInputStreamForFile(IRI uri, File file, DerefProgressListener listener) throws FileNotFoundException {
@@ -191,7 +170,7 @@ public class KeyValueStoreUtil {
     }
 
     public static Dereferencer<InputStream> getDerefStreamHTTP(final DerefProgressListener listener) {
-        return uri -> ResourcesHTTP.asInputStreamIgnore40x50x(uri, listener);
+        return new DereferencerHTTP(listener);
     }
 
     private static KeyValueStoreReadOnly remoteWithTarGz(
@@ -215,4 +194,57 @@ public class KeyValueStoreUtil {
         return withStoreAt(keyToPath, dereferencer);
     }
 
+    private static class DereferencerFile implements Dereferencer<InputStream>, RangeDereferencer {
+        private final DerefProgressListener listener;
+
+        DereferencerFile(DerefProgressListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public InputStream get(IRI uri) throws IOException {
+            File file = getFileOrNull(uri);
+            return file == null
+                    ? null
+                    : getInputStreamForFile(uri, file, listener);
+        }
+
+        @Override
+        public InputStream get(IRI uri, long startOffset, long endOffset) throws IOException {
+            File file = getFileOrNull(uri);
+            return file == null
+                    ? null
+                    : KeyValueStoreLocalFileSystemReadOnly.openInputStream(file, startOffset, endOffset);
+        }
+
+        private static File getFileOrNull(IRI uri) {
+            try {
+                File file = new File(URI.create(uri.getIRIString()));
+                return file.exists() ? file : null;
+            } catch (IllegalArgumentException ex) {
+                // will not dereference malformed or non-file URI
+                // see https://github.com/bio-guoda/preston/issues/291
+                return null;
+            }
+        }
+    }
+
+    private static class DereferencerHTTP implements Dereferencer<InputStream>, RangeDereferencer {
+        private final DerefProgressListener listener;
+
+        DereferencerHTTP(DerefProgressListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public InputStream get(IRI uri) throws IOException {
+            return ResourcesHTTP.asInputStreamIgnore40x50x(uri, listener);
+        }
+
+        @Override
+        public InputStream get(IRI uri, long startOffset, long endOffset) throws IOException {
+            return ResourcesHTTP.asInputStreamRange(uri, startOffset, endOffset, listener);
+        }
+    }
+
 }
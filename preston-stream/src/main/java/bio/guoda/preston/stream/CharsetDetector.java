@@ -0,0 +1,25 @@
+package bio.guoda.preston.stream;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.txt.UniversalEncodingDetector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Detects the charset of content, leaving the (markable) content stream at its start.
+ */
+
+public interface CharsetDetector {
+
+    CharsetDetector UNIVERSAL = (version, in) -> new UniversalEncodingDetector().detect(in, new Metadata());
+
+    /**
+     * @return detected charset, or null if no charset was detected
+     */
+
+    Charset detect(IRI version, InputStream in) throws IOException;
+
+}
@@ -0,0 +1,116 @@
+package bio.guoda.preston.stream;
+
+import bio.guoda.preston.store.HashKeyUtil;
+import bio.guoda.preston.store.JournaledIndex;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Remembers charsets detected for content, so that the same content is analyzed only once.
+ * <p>
+ * Only content identified by a content hash (e.g., hash://sha256/..., gz:hash://sha256/..., zip:hash://sha256/...!/file.txt)
+ * is remembered, because its charset never changes. Lines and byte ranges cut from content are not.
+ * <p>
+ * Detected charsets are journaled in an append-only index file ({@link #INDEX_FILENAME}) in the data dir,
+ * as [charset] [key] tab-separated lines, with keys derived from the content ids. The index file is read back on next load.
+ * Removing the index file causes charsets to be detected again.
+ */
+
+public class CharsetDetectorIndexed implements CharsetDetector {
+
+    public static final String INDEX_FILENAME = "charsets.index";
+
+    private static final String UNDETECTED = "-";
+    private static final String SCHEME_HASH = "hash://";
+
+    private static final JournaledIndex.Codec<String> CHARSET_CODEC = new JournaledIndex.Codec<String>() {
+        @Override
+        public String encode(String charsetName) {
+            return charsetName;
+        }
+
+        @Override
+        public String decode(String charsetName) {
+            // skip unsupported charsets; charsets will be detected again
+            return StringUtils.equals(charsetName, UNDETECTED) || Charset.isSupported(charsetName)
+                    ? charsetName
+                    : null;
+        }
+    };
+
+    private final CharsetDetector detector;
+    private final JournaledIndex<String> charsets;
+
+    public CharsetDetectorIndexed(CharsetDetector detector) {
+        this(detector, null);
+    }
+
+    private CharsetDetectorIndexed(CharsetDetector detector, File indexFile) {
+        this.detector = detector;
+        this.charsets = new JournaledIndex<>(indexFile, CHARSET_CODEC, new JournaledIndex.CompactTable<>());
+    }
+
+    /**
+     * Loads the charsets previously detected for content in given data dir.
+     * Charsets detected later are journaled in the data dir.
+     */
+
+    public static CharsetDetectorIndexed load(File dataDir, CharsetDetector detector) throws IOException {
+        CharsetDetectorIndexed index = new CharsetDetectorIndexed(detector, new File(dataDir, INDEX_FILENAME));
+        JournaledIndex.load(index.charsets);
+        return index;
+    }
+
+    @Override
+    public Charset detect(IRI version, InputStream in) throws IOException {
+        if (!isContentAddressed(version)) {
+            return detector.detect(version, in);
+        }
+
+        String key = keyFor(version);
+        String charsetName = charsets.get(key);
+        if (charsetName == null) {
+            Charset charset = detector.detect(version, in);
+            charsets.put(key, charset == null ? UNDETECTED : charset.name());
+            return charset;
+        }
+        return StringUtils.equals(charsetName, UNDETECTED) ? null : Charset.forName(charsetName);
+    }
+
+    public int size() {
+        return charsets.size();
+    }
+
+    static boolean isContentAddressed(IRI version) {
+        boolean isContentAddressed = false;
+        if (HashKeyUtil.isLikelyCompositeHashURI(version)) {
+            String[] schemes = StringUtils.split(StringUtils.substringBefore(version.getIRIString(), SCHEME_HASH), ":");
+            isContentAddressed = !StringUtils.equalsAny(ContentStreamFactory.URI_PREFIX_LINE, schemes)
+                    && !StringUtils.equalsAny(ContentStreamFactory.URI_PREFIX_CUT, schemes);
+        }
+        return isContentAddressed;
+    }
+
+    private static String keyFor(IRI version) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5")
+                    .digest(version.getIRIString().getBytes(StandardCharsets.UTF_8));
+            long key = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                key = (key << 8) | (digest[i] & 0xFF);
+            }
+            return Long.toHexString(key);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("md5 not supported", e);
+        }
+    }
+
+}
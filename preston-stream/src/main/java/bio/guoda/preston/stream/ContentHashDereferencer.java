@@ -1,30 +1,266 @@
 package bio.guoda.preston.stream;
 
+import bio.guoda.preston.store.BlobStore;
 import bio.guoda.preston.store.DereferenceException;
 import bio.guoda.preston.store.Dereferencer;
 import bio.guoda.preston.store.HashKeyUtil;
+import bio.guoda.preston.store.RangeDereferencer;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ReaderInputStream;
 import org.apache.commons.rdf.api.IRI;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 
 public class ContentHashDereferencer implements Dereferencer<InputStream> {
 
     private final Dereferencer<InputStream> blobStore;
+    private final BlobStore derivedStore;
+    private final ThumbnailIndex thumbnailIndex;
+    private final LineOffsetIndex lineOffsetIndex;
+    private final CharsetDetector charsetDetector;
+    private File tmpDir = null;
 
     public ContentHashDereferencer(Dereferencer<InputStream> blobStore) {
+        this(blobStore, CharsetDetector.UNIVERSAL);
+    }
+
+    public ContentHashDereferencer(Dereferencer<InputStream> blobStore, CharsetDetector charsetDetector) {
+        this.blobStore = blobStore;
+        this.derivedStore = null;
+        this.thumbnailIndex = null;
+        this.lineOffsetIndex = null;
+        this.charsetDetector = charsetDetector;
+    }
+
+    public ContentHashDereferencer(BlobStore blobStore, ThumbnailIndex thumbnailIndex) {
+        this(blobStore, thumbnailIndex, null);
+    }
+
+    /**
+     * Keeps thumbnails and line offsets created from content in given blob store, so that
+     * thumbnails indexed in given thumbnail index are read from the blob store instead of created again, and
+     * selected lines of content indexed in given line offset index are read from the nearest indexed line
+     * instead of from the start of the content.
+     *
+     * @param thumbnailIndex  index of thumbnails, or null to not keep thumbnails
+     * @param lineOffsetIndex index of line offsets, or null to not keep line offsets
+     */
+
+    public ContentHashDereferencer(BlobStore blobStore, ThumbnailIndex thumbnailIndex, LineOffsetIndex lineOffsetIndex) {
+        this(blobStore, thumbnailIndex, lineOffsetIndex, CharsetDetector.UNIVERSAL);
+    }
+
+    public ContentHashDereferencer(BlobStore blobStore, ThumbnailIndex thumbnailIndex, LineOffsetIndex lineOffsetIndex, CharsetDetector charsetDetector) {
         this.blobStore = blobStore;
+        this.derivedStore = blobStore;
+        this.thumbnailIndex = thumbnailIndex;
+        this.lineOffsetIndex = lineOffsetIndex;
+        this.charsetDetector = charsetDetector;
     }
 
     @Override
     public InputStream get(IRI iri) throws DereferenceException {
         try {
             IRI contentHash = HashKeyUtil.extractContentHash(iri);
-            InputStream is = blobStore.get(contentHash);
-            return new ContentStreamFactory(ContentStreamUtil.truncateGZNotationForVFSIfNeeded(iri)).create(is);
+            IRI targetIri = ContentStreamUtil.truncateGZNotationForVFSIfNeeded(iri);
+            InputStream is;
+            if (thumbnailIndex != null && ThumbnailIndex.isIndexable(targetIri)) {
+                is = getThumbnail(contentHash, targetIri);
+            } else if (lineOffsetIndex != null && isLineQuery(contentHash, targetIri)) {
+                is = getSelectedLines(contentHash, targetIri);
+            } else {
+                is = createContentStream(contentHash, targetIri);
+            }
+            return is;
         } catch (IOException | IllegalArgumentException e) {
             throw new DereferenceException(iri, e);
         }
     }
 
+    private InputStream getThumbnail(IRI contentHash, IRI thumbnailIri) throws IOException {
+        IRI thumbnailContentId = thumbnailIndex.get(thumbnailIri);
+        InputStream thumbnail = thumbnailContentId == null
+                ? null
+                : derivedStore.get(thumbnailContentId);
+
+        if (thumbnail == null) {
+            thumbnailContentId = derivedStore.put(createContentStream(contentHash, thumbnailIri));
+            thumbnailIndex.put(thumbnailIri, thumbnailContentId);
+            thumbnail = derivedStore.get(thumbnailContentId);
+        }
+        return thumbnail;
+    }
+
+    private static boolean isLineQuery(IRI contentHash, IRI targetIri) {
+        ContentIRIPlan.Step step = getStepTo(contentHash, targetIri);
+        return step != null && step.getOperator() == ContentIRIPlan.Operator.LINE;
+    }
+
+    /**
+     * @return step from content to target, or null if target is not reached by a single step.
+     */
+
+    private static ContentIRIPlan.Step getStepTo(IRI contentHash, IRI targetIri) {
+        ContentIRIPlan.Step step = ContentIRIPlan.compile(targetIri, contentHash).getStepFrom(contentHash);
+        return step != null && step.getIri().equals(targetIri)
+                ? step
+                : null;
+    }
+
+    private InputStream getSelectedLines(IRI contentHash, IRI lineIri) throws IOException {
+        ContentIRIPlan.Step step = getStepTo(contentHash, lineIri);
+        long firstLineNumber = step.getNumberStream()
+                .findFirst()
+                .orElse(0);
+        if (firstLineNumber <= LineOffsets.DEFAULT_INTERVAL) {
+            // lines before the first indexed line are read from the start of the content anyway,
+            // so stream these instead of building line offsets from a read of the whole content
+            return createContentStream(contentHash, lineIri);
+        }
+
+        LineOffsets lineOffsets = getLineOffsets(contentHash);
+        Charset charset = lineOffsets.getCharset();
+        if (charset == null) {
+            return createContentStream(contentHash, lineIri);
+        }
+
+        long indexedLineNumber = lineOffsets.getIndexedLineNumber(firstLineNumber);
+        InputStream is = getContentFrom(
+                contentHash,
+                lineOffsets.getIndexedLineOffset(firstLineNumber),
+                lineOffsets.getLength()
+        );
+
+        boolean isSingleLine = step.getNumberStream()
+                .limit(2)
+                .count() == 1;
+
+        if (isSingleLine) {
+            return readLine(is, charset, firstLineNumber - indexedLineNumber, lineIri);
+        } else {
+            SelectedLinesReader lineReader = new SelectedLinesReader(
+                    step.getNumberStream()
+                            .map(lineNumber -> lineNumber - indexedLineNumber + 1)
+                            .iterator(),
+                    new InputStreamReader(is, charset));
+            return new ReaderInputStream(lineReader, charset);
+        }
+    }
+
+    private static InputStream readLine(InputStream is, Charset charset, long linesToSkip, IRI lineIri) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset))) {
+            String line = reader.readLine();
+            for (long i = 0; i < linesToSkip && line != null; i++) {
+                line = reader.readLine();
+            }
+            if (line == null) {
+                throw new IOException("cannot find content identified by [" + lineIri + "]");
+            }
+            return new ByteArrayInputStream(line.getBytes(charset));
+        }
+    }
+
+    private LineOffsets getLineOffsets(IRI contentHash) throws IOException {
+        IRI lineOffsetsContentId = lineOffsetIndex.get(contentHash);
+        InputStream is = lineOffsetsContentId == null
+                ? null
+                : derivedStore.get(lineOffsetsContentId);
+
+        LineOffsets lineOffsets;
+        if (is == null) {
+            lineOffsets = scanLineOffsets(contentHash);
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            lineOffsets.write(os);
+            lineOffsetIndex.put(contentHash, derivedStore.put(new ByteArrayInputStream(os.toByteArray())));
+        } else {
+            try (InputStream lineOffsetsIs = is) {
+                lineOffsets = LineOffsets.read(lineOffsetsIs);
+            }
+        }
+        return lineOffsets;
+    }
+
+    private LineOffsets scanLineOffsets(IRI contentHash) throws IOException {
+        InputStream content = blobStore.get(contentHash);
+        if (content == null) {
+            throw new IOException("cannot find content identified by [" + contentHash + "]");
+        }
+        try (InputStream is = ContentStreamUtil.getMarkSupportedInputStream(content)) {
+            // compressed content and archives are not read as lines, see ContentStreamFactory
+            Charset charset = isCompressedOrArchived(is)
+                    ? null
+                    : ContentStreamUtil.detectCharset(contentHash, is, charsetDetector);
+            return LineOffsets.scan(is, charset, LineOffsets.DEFAULT_INTERVAL);
+        }
+    }
+
+    private static boolean isCompressedOrArchived(InputStream is) {
+        try {
+            CompressorStreamFactory.detect(is);
+            return true;
+        } catch (CompressorException e) {
+            try {
+                ArchiveStreamFactory.detect(is);
+                return true;
+            } catch (ArchiveException ex) {
+                return false;
+            }
+        }
+    }
+
+    private InputStream getContentFrom(IRI contentHash, long startOffset, long endOffset) throws IOException {
+        InputStream is = blobStore instanceof RangeDereferencer
+                ? ((RangeDereferencer) blobStore).get(contentHash, startOffset, endOffset)
+                : null;
+
+        if (is == null) {
+            is = blobStore.get(contentHash);
+            if (is == null) {
+                throw new IOException("cannot find content identified by [" + contentHash + "]");
+            }
+            IOUtils.skipFully(is, startOffset);
+        }
+        return is;
+    }
+
+    private InputStream createContentStream(IRI contentHash, IRI targetIri) throws IOException {
+        if (blobStore instanceof RangeDereferencer) {
+            ContentIRIPlan.Step step = getStepTo(contentHash, targetIri);
+            long[] byteRange = step == null ? null : step.getByteRange();
+            if (byteRange != null) {
+                InputStream cutIs = ((RangeDereferencer) blobStore).get(contentHash, byteRange[0], byteRange[1]);
+                if (cutIs != null) {
+                    return createContentStreamFactory(targetIri, targetIri).create(cutIs);
+                }
+            }
+        }
+        InputStream is = blobStore.get(contentHash);
+        return createContentStreamFactory(targetIri, HashKeyUtil.extractContentHash(targetIri)).create(is);
+    }
+
+    private ContentStreamFactory createContentStreamFactory(IRI targetIri, IRI contentReference) {
+        ContentStreamFactory factory = new ContentStreamFactory(targetIri, contentReference, charsetDetector);
+        factory.setTmpDir(tmpDir);
+        return factory;
+    }
+
+    /**
+     * @param tmpDir directory of tmp files (e.g., of selected pdf pages), or null for the default tmp dir
+     */
+
+    public void setTmpDir(File tmpDir) {
+        this.tmpDir = tmpDir;
+    }
+
 }
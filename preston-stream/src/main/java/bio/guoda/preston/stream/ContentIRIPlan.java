@@ -0,0 +1,265 @@
+package bio.guoda.preston.stream;
+
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+
+/**
+ * Plan to create the content stream identified by a (nested) content IRI, compiled once into the
+ * steps that lead from the provided content to the requested content.
+ * <p>
+ * For instance, line:gz:zip:hash://sha256/...!/a.csv.gz!/L10 is reached from hash://sha256/... by
+ * an archive step (zip:hash://sha256/...!/a.csv.gz), a compressed step (gz:zip:hash://sha256/...!/a.csv.gz)
+ * and a line step (line:gz:zip:hash://sha256/...!/a.csv.gz!/L10).
+ * <p>
+ * Plans are immutable, and cached by IRI.
+ */
+
+public final class ContentIRIPlan {
+
+    public enum Operator {
+        ARCHIVE,
+        COMPRESSED,
+        CUT,
+        LINE,
+        PDF,
+        THUMBNAIL,
+        OTHER
+    }
+
+    private static final String QUERY_SEPARATOR = "!/";
+
+    private static final Pattern BYTE_RANGE = Pattern.compile("^b(?<first>[0-9]+)-(?<last>[0-9]+)$");
+
+    private static final Set<String> ARCHIVE_FORMATS = caseInsensitive(ArchiveStreamFactory.DEFAULT.getInputStreamArchiveNames());
+
+    private static final Set<String> COMPRESSION_FORMATS = caseInsensitive(CompressorStreamFactory.getSingleton().getInputStreamCompressorNames());
+
+    private static final int MAX_CACHED_PLANS = 1024;
+
+    private static final Map<String, ContentIRIPlan> PLANS = Collections.synchronizedMap(
+            new LinkedHashMap<String, ContentIRIPlan>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ContentIRIPlan> eldest) {
+                    return size() > MAX_CACHED_PLANS;
+                }
+            });
+
+    private final String targetIri;
+    private final Map<String, Step> steps;
+
+    private ContentIRIPlan(String targetIri, Map<String, Step> steps) {
+        this.targetIri = targetIri;
+        this.steps = steps;
+    }
+
+    /**
+     * @param targetIri        requested content, e.g., line:zip:hash://sha256/...!/a.csv!/L10
+     * @param contentReference provided content, e.g., hash://sha256/...
+     */
+
+    public static ContentIRIPlan compile(IRI targetIri, IRI contentReference) {
+        String key = contentReference.getIRIString() + " " + targetIri.getIRIString();
+        ContentIRIPlan plan = PLANS.get(key);
+        if (plan == null) {
+            plan = compile(targetIri.getIRIString(), contentReference.getIRIString());
+            PLANS.put(key, plan);
+        }
+        return plan;
+    }
+
+    private static ContentIRIPlan compile(String targetIri, String contentReference) {
+        Map<String, Step> steps = new HashMap<>();
+        String source = contentReference;
+        while (!StringUtils.equals(source, targetIri)) {
+            Step step = parseStep(targetIri, source);
+            if (step == null) {
+                break;
+            }
+            steps.put(source, step);
+            source = step.getIri().getIRIString();
+        }
+        return new ContentIRIPlan(targetIri, Collections.unmodifiableMap(steps));
+    }
+
+    /**
+     * @return step from given content towards the requested content, or null if no such step exists.
+     */
+
+    public Step getStepFrom(IRI source) {
+        Step step = steps.get(source.getIRIString());
+        // content not anticipated by the plan (e.g., other entries of an archive) are planned on demand
+        return step == null
+                ? parseStep(targetIri, source.getIRIString())
+                : step;
+    }
+
+    public static LongStream getNumberStream(String query, RangeType rangeType) {
+        Matcher queryMatcher = rangeType.getQueryPattern().matcher(query);
+        String numbersQuery = queryMatcher.find() ? queryMatcher.group() : "";
+        return Arrays.stream(numbersQuery.split(","))
+                .flatMapToLong(range -> {
+                    Matcher rangeMatcher = rangeType.getRangePattern().matcher(range);
+                    if (rangeMatcher.find()) {
+                        long first = Long.parseLong(rangeMatcher.group(1));
+                        long last = rangeMatcher.group(2) == null ? first : Long.parseLong(rangeMatcher.group(2));
+                        return LongStream.rangeClosed(first, last);
+                    } else {
+                        return LongStream.empty();
+                    }
+                });
+    }
+
+    static Step parseStep(String targetIri, String source) {
+        int sourceStart = targetIri.indexOf(source);
+        while (sourceStart != -1) {
+            int sourceEnd = sourceStart + source.length();
+            if (isWrappedAt(targetIri, sourceStart, sourceEnd)) {
+                String scheme = targetIri.substring(targetIri.lastIndexOf(':', sourceStart - 2) + 1, sourceStart - 1);
+                Operator operator = toOperator(scheme);
+                String query = null;
+                if (hasQuery(operator) && StringUtils.startsWith(targetIri.substring(sourceEnd), QUERY_SEPARATOR)) {
+                    int queryStart = sourceEnd + QUERY_SEPARATOR.length();
+                    int queryEnd = targetIri.indexOf(QUERY_SEPARATOR, queryStart);
+                    query = targetIri.substring(queryStart, queryEnd == -1 ? targetIri.length() : queryEnd);
+                }
+                return new Step(operator, scheme, source, query);
+            }
+            sourceStart = targetIri.indexOf(source, sourceStart + 1);
+        }
+        return null;
+    }
+
+    private static boolean isWrappedAt(String targetIri, int sourceStart, int sourceEnd) {
+        return sourceStart > 1
+                && targetIri.charAt(sourceStart - 1) == ':'
+                && targetIri.charAt(sourceStart - 2) != ':'
+                && (sourceEnd == targetIri.length() || targetIri.startsWith(QUERY_SEPARATOR, sourceEnd));
+    }
+
+    private static boolean hasQuery(Operator operator) {
+        return operator == Operator.ARCHIVE
+                || operator == Operator.CUT
+                || operator == Operator.LINE
+                || operator == Operator.PDF;
+    }
+
+    private static Operator toOperator(String scheme) {
+        Operator operator;
+        if (StringUtils.equals(scheme, ContentStreamFactory.URI_PREFIX_CUT)) {
+            operator = Operator.CUT;
+        } else if (StringUtils.equals(scheme, ContentStreamFactory.URI_PREFIX_LINE)) {
+            operator = Operator.LINE;
+        } else if (StringUtils.equals(scheme, ContentStreamFactory.URI_PREFIX_PAGE)) {
+            operator = Operator.PDF;
+        } else if (StringUtils.equals(scheme, ContentStreamFactory.URI_PREFIX_THUMBNAIL)) {
+            operator = Operator.THUMBNAIL;
+        } else if (ARCHIVE_FORMATS.contains(scheme)) {
+            operator = Operator.ARCHIVE;
+        } else if (COMPRESSION_FORMATS.contains(scheme)) {
+            operator = Operator.COMPRESSED;
+        } else {
+            operator = Operator.OTHER;
+        }
+        return operator;
+    }
+
+    private static Set<String> caseInsensitive(Set<String> names) {
+        Set<String> formats = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        formats.addAll(names);
+        return Collections.unmodifiableSet(formats);
+    }
+
+    public static final class Step {
+        private final Operator operator;
+        private final String scheme;
+        private final IRI source;
+        private final IRI iri;
+        private final String query;
+
+        Step(Operator operator, String scheme, String source, String query) {
+            this.operator = operator;
+            this.scheme = scheme;
+            this.source = toIRI(source);
+            this.iri = toIRI(scheme + ":" + source + (query == null ? "" : QUERY_SEPARATOR + query));
+            this.query = query;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public String getScheme() {
+            return scheme;
+        }
+
+        /**
+         * @return content that this step is applied to
+         */
+
+        public IRI getSource() {
+            return source;
+        }
+
+        /**
+         * @return content that this step results in
+         */
+
+        public IRI getIri() {
+            return iri;
+        }
+
+        /**
+         * @return query of step (e.g., L1-L3 in line:hash://sha256/...!/L1-L3), or null if step has no query
+         */
+
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * @return [offset of first byte, offset of byte after last byte] selected by a cut step, or null if no valid byte range was selected
+         */
+
+        public long[] getByteRange() {
+            long[] byteRange = null;
+            if (operator == Operator.CUT && query != null) {
+                Matcher byteRangeMatcher = BYTE_RANGE.matcher(query);
+                if (byteRangeMatcher.matches()) {
+                    byteRange = new long[]{
+                            Long.parseLong(byteRangeMatcher.group("first")) - 1,
+                            Long.parseLong(byteRangeMatcher.group("last"))
+                    };
+                }
+            }
+            return byteRange;
+        }
+
+        /**
+         * @return numbers of lines, or pages, selected by a line, or pdf, step
+         */
+
+        public LongStream getNumberStream() {
+            if (query == null || (operator != Operator.LINE && operator != Operator.PDF)) {
+                return LongStream.empty();
+            }
+            return ContentIRIPlan.getNumberStream(query, operator == Operator.LINE ? RangeType.Line : RangeType.Page);
+        }
+
+    }
+
+}
@@ -3,33 +3,27 @@ package bio.guoda.preston.stream;
 import bio.guoda.preston.process.PDFUtil;
 import bio.guoda.preston.process.PageSelected;
 import bio.guoda.preston.store.HashKeyUtil;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.input.ReaderInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
-import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.txt.UniversalEncodingDetector;
 import org.imgscalr.Scalr;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.PrimitiveIterator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.LongStream;
 
-import static bio.guoda.preston.RefNodeFactory.toIRI;
 import static bio.guoda.preston.stream.ContentStreamUtil.cutBytes;
 import static bio.guoda.preston.stream.ContentStreamUtil.getMarkSupportedInputStream;
 import static bio.guoda.preston.stream.ContentStreamUtil.getMarkSupportedReader;
@@ -39,8 +33,13 @@ public class ContentStreamFactory implements InputStreamFactory {
     public static final String URI_PREFIX_LINE = "line";
     public static final String URI_PREFIX_THUMBNAIL = "thumbnail";
     public static final String URI_PREFIX_PAGE = "pdf";
+    public static final int THUMBNAIL_SIZE = 256;
+    public static final String THUMBNAIL_FORMAT = "jpg";
     private final IRI targetIri;
     private final IRI contentReference;
+    private final ContentIRIPlan plan;
+    private final CharsetDetector charsetDetector;
+    private File tmpDir = null;
 
     public static boolean hasSupportedCompressionPrefix(IRI iri, IRI targetIri) {
         return hasMatchingPrefix(iri, targetIri, "gz:")
@@ -65,8 +64,35 @@ public class ContentStreamFactory implements InputStreamFactory {
 
 
     public ContentStreamFactory(IRI iri) {
+        this(iri, HashKeyUtil.extractContentHash(iri));
+    }
+
+    /**
+     * @param contentReference identifies the content provided to {@link #create(InputStream)},
+     *                         e.g., cut:hash://sha256/...!/b10-20 when a byte range was provided instead of the entire content.
+     */
+
+    public ContentStreamFactory(IRI iri, IRI contentReference) {
+        this(iri, contentReference, CharsetDetector.UNIVERSAL);
+    }
+
+    /**
+     * @param charsetDetector detects charsets of content read as lines
+     */
+
+    public ContentStreamFactory(IRI iri, IRI contentReference, CharsetDetector charsetDetector) {
         this.targetIri = iri;
-        this.contentReference = HashKeyUtil.extractContentHash(targetIri);
+        this.contentReference = contentReference;
+        this.plan = ContentIRIPlan.compile(targetIri, contentReference);
+        this.charsetDetector = charsetDetector;
+    }
+
+    /**
+     * @param tmpDir directory of tmp files (e.g., of selected pdf pages), or null for the default tmp dir
+     */
+
+    public void setTmpDir(File tmpDir) {
+        this.tmpDir = tmpDir;
     }
 
     @Override
@@ -103,7 +129,7 @@ public class ContentStreamFactory implements InputStreamFactory {
             this.handler = new ContentStreamHandlerImpl(
                     new ArchiveEntryStreamHandler(this, targetIri),
                     new CompressedStreamHandler(this),
-                    new LineStreamHandler(this));
+                    new LineStreamHandler(this, charsetDetector));
         }
 
         @Override
@@ -112,45 +138,46 @@ public class ContentStreamFactory implements InputStreamFactory {
                 throw new ContentStreamException("request handler cannot be re-used");
             }
 
-            Matcher nextOperatorMatcher = Pattern
-                    .compile(String.format("([^:]+):%s(!/[^//]*)?", iri.getIRIString()))
-                    .matcher(targetIri.getIRIString());
-
             if (iri.getIRIString().equals(targetIri.getIRIString())
                     || hasSupportedCompressionPrefix(iri, targetIri)) {
                 contentStream = in;
                 stopReading();
                 return true;
-            } else if (nextOperatorMatcher.find()) {
-                if (nextOperatorMatcher.group(1).equals(URI_PREFIX_CUT)) {
-                    cutAndParseBytes(iri, in);
+            }
+
+            ContentIRIPlan.Step nextStep = plan.getStepFrom(iri);
+            if (nextStep != null) {
+                if (nextStep.getOperator() == ContentIRIPlan.Operator.CUT) {
+                    handle(nextStep.getIri(), cutBytesOf(nextStep, in));
                     return true;
-                } else if (nextOperatorMatcher.group(1).equals(URI_PREFIX_LINE) && lineQueryIsComplex(iri)) {
-                    handle(toIRI(nextOperatorMatcher.group()), createInputStreamForSelectedLines(iri, in));
+                } else if (nextStep.getOperator() == ContentIRIPlan.Operator.LINE && lineQueryIsComplex(nextStep)) {
+                    handle(nextStep.getIri(), createInputStreamForSelectedLines(nextStep, in));
                     return true;
-                } else if (nextOperatorMatcher.group(1).equals(URI_PREFIX_THUMBNAIL)) {
-                    handle(toIRI(nextOperatorMatcher.group()), createThumbnailForImageStream(iri, in));
+                } else if (nextStep.getOperator() == ContentIRIPlan.Operator.THUMBNAIL) {
+                    handle(nextStep.getIri(), createThumbnailForImageStream(iri, in));
                     return true;
-                } else if (nextOperatorMatcher.group(1).equals(URI_PREFIX_PAGE)) {
-                    handle(toIRI(nextOperatorMatcher.group()), selectPagesFromPDF(iri, in));
+                } else if (nextStep.getOperator() == ContentIRIPlan.Operator.PDF) {
+                    handle(nextStep.getIri(), selectPagesFromPDF(nextStep, in));
                     return true;
                 }
             }
 
+            // archives, compressed content and single lines are recognized by their content
             return handler.handle(iri, in);
         }
 
 
-        private InputStream createInputStreamForSelectedLines(IRI iri, InputStream in) throws ContentStreamException {
+        private InputStream createInputStreamForSelectedLines(ContentIRIPlan.Step step, InputStream in) throws ContentStreamException {
+            IRI iri = step.getSource();
             InputStream markableIn = getMarkSupportedInputStream(in);
             Charset charset;
             try {
-                charset = new UniversalEncodingDetector().detect(markableIn, new Metadata());
+                charset = ContentStreamUtil.detectCharset(iri, markableIn, charsetDetector);
             } catch (IOException e) {
                 throw new ContentStreamException("failed to detect charset", e);
             }
 
-            SelectedLinesReader lineReader = new SelectedLinesReader(getLineNumberStream(iri, RangeType.Line, targetIri).iterator(),
+            SelectedLinesReader lineReader = new SelectedLinesReader(step.getNumberStream().iterator(),
                     getMarkSupportedReader(new InputStreamReader(markableIn, charset)));
             return new ReaderInputStream(lineReader, charset);
         }
@@ -164,9 +191,9 @@ public class ContentStreamFactory implements InputStreamFactory {
                 if (srcImage == null) {
                     throw new ContentStreamException("image cannot be read from [" + iri + "]");
                 }
-                BufferedImage scaledImage = Scalr.resize(srcImage, 256);
+                BufferedImage scaledImage = Scalr.resize(srcImage, THUMBNAIL_SIZE);
                 try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-                    ImageIO.write(scaledImage, "jpg", outputStream);
+                    ImageIO.write(scaledImage, THUMBNAIL_FORMAT, outputStream);
                     return new ByteArrayInputStream(outputStream.toByteArray());
                 }
             } catch (IOException e) {
@@ -174,22 +201,18 @@ public class ContentStreamFactory implements InputStreamFactory {
             }
         }
 
-        private InputStream selectPagesFromPDF(IRI iri, InputStream in) throws ContentStreamException {
+        private InputStream selectPagesFromPDF(ContentIRIPlan.Step step, InputStream in) throws ContentStreamException {
+            IRI iri = step.getSource();
             try {
                 if (in == null) {
                     throw new ContentStreamException("no content provided for [" + iri + "]");
                 }
 
-                LongStream pageNumberStream = getLineNumberStream(iri, RangeType.Page, targetIri);
-
-                PrimitiveIterator.OfLong pageNumberIterator = pageNumberStream.iterator();
+                PrimitiveIterator.OfLong pageNumberIterator = step.getNumberStream().iterator();
 
                 if (pageNumberIterator.hasNext()) {
-                    try (ByteArrayOutputStream pdfOS = new ByteArrayOutputStream()) {
-                        IOUtils.copy(in, pdfOS);
-                        PDDocument doc = Loader.loadPDF(pdfOS.toByteArray());
-
-
+                    File pdfFile = PDFUtil.spoolToTmpFile(in, tmpDir);
+                    try (PDDocument doc = PDFUtil.loadPDF(pdfFile, tmpDir)) {
                         List<PageSelected> selectedPages = new ArrayList<>();
                         int index = 0;
                         while (pageNumberIterator.hasNext()) {
@@ -197,11 +220,9 @@ public class ContentStreamFactory implements InputStreamFactory {
                             selectedPages.add(PDFUtil.selectPage(Long.toString(pageNumber), doc, index));
                             index++;
                         }
-                        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-                            PDFUtil.saveAsPDF(selectedPages, targetIri, os);
-                            return new ByteArrayInputStream(os.toByteArray());
-                        }
-
+                        return PDFUtil.saveAsPDF(selectedPages, targetIri, tmpDir);
+                    } finally {
+                        FileUtils.deleteQuietly(pdfFile);
                     }
                 }
                 throw new ContentStreamException("invalid pdf iri: [" + iri + "]");
@@ -211,32 +232,21 @@ public class ContentStreamFactory implements InputStreamFactory {
         }
 
 
-        private boolean lineQueryIsComplex(IRI iri) {
-            return getLineNumberStream(iri, RangeType.Line, targetIri).limit(2).count() > 1;
+        private boolean lineQueryIsComplex(ContentIRIPlan.Step step) {
+            return step.getNumberStream().limit(2).count() > 1;
         }
 
-        private void cutAndParseBytes(IRI iri, InputStream in) throws ContentStreamException {
+        private InputStream cutBytesOf(ContentIRIPlan.Step step, InputStream in) throws ContentStreamException {
             // do not support open-ended cuts, e.g. "b5-" or "b-5"
-            Matcher byteRangeMatcher = Pattern
-                    .compile(String.format("^%s:%s!/b(?<first>[0-9]+)-(?<last>[0-9]+)$", URI_PREFIX_CUT, iri.getIRIString()))
-                    .matcher(targetIri.getIRIString());
-
-            if (byteRangeMatcher.find()) {
-                long firstByteIndex = Long.parseLong(byteRangeMatcher.group("first")) - 1;
-                long lastByteIndex = Long.parseLong(byteRangeMatcher.group("last"));
-
-                InputStream cutIs;
-                try {
-                    cutIs = cutBytes(in, firstByteIndex, lastByteIndex);
-                } catch (IOException e) {
-                    throw new ContentStreamException("failed to cut inputstream", e);
-                }
-                handle(
-                        toIRI(byteRangeMatcher.group()),
-                        cutIs
-                );
-            } else {
-                throw new IllegalArgumentException("[" + iri + "] is not a valid cut URI");
+            long[] byteRange = step.getByteRange();
+            if (byteRange == null) {
+                throw new IllegalArgumentException("[" + step.getSource() + "] is not a valid cut URI");
+            }
+
+            try {
+                return cutBytes(in, byteRange[0], byteRange[1]);
+            } catch (IOException e) {
+                throw new ContentStreamException("failed to cut inputstream", e);
             }
         }
 
@@ -256,29 +266,13 @@ public class ContentStreamFactory implements InputStreamFactory {
     }
 
     public static LongStream getLineNumberStream(IRI iri, RangeType rangeType, IRI targetIri) {
-        Matcher lineQueryMatcher = Pattern
-                .compile(String.format("%s:%s!/([%s%s\\-,]*)", rangeType.getIriPrefix(), iri.getIRIString(), rangeType.getPrefix(), rangeType.getPattern()))
-                .matcher(targetIri.getIRIString());
-
-        if (lineQueryMatcher.find()) {
-            String linesQuery = lineQueryMatcher.group(1);
-
-            return Arrays.stream(linesQuery.split(","))
-                    .flatMapToLong(lineRange -> {
-                        final Pattern lineRangePattern = Pattern.compile(String.format("%s([%s]+)(?:-%s([%s]+))?", rangeType.getPrefix(), rangeType.getPattern(), rangeType.getPrefix(), rangeType.getPattern()));
-                        Matcher lineRangeMatcher = lineRangePattern.matcher(lineRange);
-
-                        if (lineRangeMatcher.find()) {
-                            long firstLine = Long.parseLong(lineRangeMatcher.group(1));
-                            long lastLine = lineRangeMatcher.group(2) == null ? firstLine : Long.parseLong(lineRangeMatcher.group(2));
-                            return LongStream.rangeClosed(firstLine, lastLine);
-                        } else {
-                            return LongStream.empty();
-                        }
-                    });
-        } else {
+        ContentIRIPlan.Step step = ContentIRIPlan.compile(targetIri, iri).getStepFrom(iri);
+        if (step == null
+                || !StringUtils.equals(step.getScheme(), rangeType.getIriPrefix())
+                || step.getQuery() == null) {
             throw new IllegalArgumentException("[" + iri + "] is not a valid line URI");
         }
+        return ContentIRIPlan.getNumberStream(step.getQuery(), rangeType);
     }
 
 }
@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -97,6 +98,19 @@ public class ContentStreamUtil {
         return NOOP_DEREF_PROGRESS_LISTENER;
     }
 
+    public static Charset detectCharset(IRI version, InputStream in) throws IOException {
+        return detectCharset(version, in, CharsetDetector.UNIVERSAL);
+    }
+
+    /**
+     * @param version content id of the (markable) stream {@code in}
+     * @return charset of content as detected by given charset detector, or null if none was detected.
+     */
+
+    public static Charset detectCharset(IRI version, InputStream in, CharsetDetector detector) throws IOException {
+        return detector.detect(version, in);
+    }
+
     public static InputStream getMarkSupportedInputStream(InputStream in) {
         return (in.markSupported()) ? in : new BufferedInputStream(in);
     }
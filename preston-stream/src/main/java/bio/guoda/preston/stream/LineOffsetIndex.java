@@ -0,0 +1,49 @@
+package bio.guoda.preston.stream;
+
+import bio.guoda.preston.store.JournaledIndex;
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Index of line offsets ({@link LineOffsets}) previously created for content, from content id
+ * to the content id of its line offsets, so that selected lines (e.g., line:hash://sha256/...!/L1000000-L1000010)
+ * can be read from the nearest indexed line instead of from the start of the content.
+ * <p>
+ * Entries are journaled in an append-only index file ({@link #INDEX_FILENAME}) in the data dir,
+ * as [line offsets content id] [line interval] [content id] tab-separated lines.
+ * Entries of line offsets with another interval than {@link LineOffsets#DEFAULT_INTERVAL} are ignored.
+ */
+
+public class LineOffsetIndex extends JournaledIndex<IRI> {
+
+    public static final String INDEX_FILENAME = "lines.index";
+
+    public LineOffsetIndex() {
+        this(null);
+    }
+
+    private LineOffsetIndex(File indexFile) {
+        super(indexFile, contentIdCodec(LineOffsets.DEFAULT_INTERVAL));
+    }
+
+    /**
+     * Loads the line offsets previously indexed in given data dir.
+     * Line offsets indexed later are journaled in the data dir.
+     */
+
+    public static LineOffsetIndex load(File dataDir) throws IOException {
+        return load(new LineOffsetIndex(new File(dataDir, INDEX_FILENAME)));
+    }
+
+    /**
+     * @return content ids of the indexed line offsets, e.g., to keep them from being garbage collected.
+     */
+
+    public List<IRI> getContentIds() {
+        return values();
+    }
+
+}
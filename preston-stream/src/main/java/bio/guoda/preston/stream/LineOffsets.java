@@ -0,0 +1,155 @@
+package bio.guoda.preston.stream;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Sparse index of byte offsets of lines in text content: the offsets of
+ * line 1, line interval + 1, line 2 * interval + 1, and so on, together with the charset of the text.
+ * <p>
+ * Lines end with \n, \r\n or \r, consistent with {@link SelectedLinesReader}.
+ * Offsets are only indexed for charsets that encode line endings as single bytes (e.g., UTF-8 or ISO-8859-1),
+ * so that lines can be found by scanning bytes instead of decoding characters.
+ */
+
+public class LineOffsets {
+
+    public static final int DEFAULT_INTERVAL = 1024;
+
+    private static final int VERSION = 1;
+    private static final String NO_CHARSET = "-";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int interval;
+    private final Charset charset;
+    private final long length;
+    private final long[] offsets;
+
+    LineOffsets(int interval, Charset charset, long length, long[] offsets) {
+        this.interval = interval;
+        this.charset = charset;
+        this.length = length;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param charset charset of text, or null if text has no known charset
+     * @return offsets of every interval-th line of text, or no offsets if lines cannot be found by scanning bytes
+     */
+
+    public static LineOffsets scan(InputStream in, Charset charset, int interval) throws IOException {
+        if (!isScannable(charset)) {
+            return new LineOffsets(interval, null, 0, new long[0]);
+        }
+
+        long[] offsets = new long[16];
+        int numberOfOffsets = 1;
+        long lineNumber = 1;
+        long offset = 0;
+        int prev = -1;
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            for (int i = 0; i < length; i++, offset++) {
+                byte ch = buffer[i];
+                if (prev == '\n' || (prev == '\r' && ch != '\n')) {
+                    lineNumber++;
+                    if ((lineNumber - 1) % interval == 0) {
+                        if (numberOfOffsets == offsets.length) {
+                            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                        }
+                        offsets[numberOfOffsets++] = offset;
+                    }
+                }
+                prev = ch;
+            }
+        }
+        return new LineOffsets(interval, charset, offset, Arrays.copyOf(offsets, numberOfOffsets));
+    }
+
+    static boolean isScannable(Charset charset) {
+        return charset != null
+                && Arrays.equals("\r\n".getBytes(charset), new byte[]{'\r', '\n'});
+    }
+
+    public static LineOffsets read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported line offsets version [" + version + "]");
+        }
+        int interval = in.readInt();
+        String charsetName = in.readUTF();
+        long length = in.readLong();
+        long[] offsets = new long[in.readInt()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = in.readLong();
+        }
+        return new LineOffsets(
+                interval,
+                NO_CHARSET.equals(charsetName) ? null : Charset.forName(charsetName),
+                length,
+                offsets
+        );
+    }
+
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(VERSION);
+        out.writeInt(interval);
+        out.writeUTF(charset == null ? NO_CHARSET : charset.name());
+        out.writeLong(length);
+        out.writeInt(offsets.length);
+        for (long offset : offsets) {
+            out.writeLong(offset);
+        }
+        out.flush();
+    }
+
+    /**
+     * @return charset of text, or null if no lines were indexed
+     */
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return length of text in bytes
+     */
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return number of the nearest indexed line at, or before, given line number
+     */
+
+    public long getIndexedLineNumber(long lineNumber) {
+        return getIndex(lineNumber) * (long) interval + 1;
+    }
+
+    /**
+     * @return byte offset of the nearest indexed line at, or before, given line number
+     */
+
+    public long getIndexedLineOffset(long lineNumber) {
+        return offsets[getIndex(lineNumber)];
+    }
+
+    private int getIndex(long lineNumber) {
+        if (offsets.length == 0) {
+            throw new IllegalStateException("no lines indexed");
+        }
+        long index = Math.max(0, (lineNumber - 1) / interval);
+        return (int) Math.min(index, offsets.length - 1);
+    }
+
+}
@@ -1,8 +1,6 @@
 package bio.guoda.preston.stream;
 
 import org.apache.commons.rdf.api.IRI;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.txt.UniversalEncodingDetector;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -17,9 +15,15 @@ import static bio.guoda.preston.stream.ContentStreamFactory.URI_PREFIX_LINE;
 public class LineStreamHandler implements ContentStreamHandler {
 
     private final ContentStreamHandler contentStreamHandler;
+    private final CharsetDetector charsetDetector;
 
     public LineStreamHandler(ContentStreamHandler contentStreamHandler) {
+        this(contentStreamHandler, CharsetDetector.UNIVERSAL);
+    }
+
+    public LineStreamHandler(ContentStreamHandler contentStreamHandler, CharsetDetector charsetDetector) {
         this.contentStreamHandler = contentStreamHandler;
+        this.charsetDetector = charsetDetector;
     }
 
     @Override
@@ -27,7 +31,7 @@ public class LineStreamHandler implements ContentStreamHandler {
         if (!version.getIRIString().startsWith(URI_PREFIX_LINE + ":")) {
             Charset charset;
             try {
-                charset = new UniversalEncodingDetector().detect(in, new Metadata());
+                charset = ContentStreamUtil.detectCharset(version, in, charsetDetector);
             } catch (IOException e) {
                 throw new ContentStreamException("failed to detect charset", e);
             }
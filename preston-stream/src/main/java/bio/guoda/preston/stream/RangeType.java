@@ -1,5 +1,7 @@
 package bio.guoda.preston.stream;
 
+import java.util.regex.Pattern;
+
 public enum RangeType {
 
     Page("p", "0-9IVXC", ContentStreamFactory.URI_PREFIX_PAGE),
@@ -8,11 +10,15 @@ public enum RangeType {
     private final String pattern;
     private final String prefix;
     private final String iriPrefix;
+    private final Pattern queryPattern;
+    private final Pattern rangePattern;
 
     RangeType(String prefix, String pattern, String iriPrefix) {
         this.prefix = prefix;
         this.pattern = pattern;
         this.iriPrefix = iriPrefix;
+        this.queryPattern = Pattern.compile(String.format("^[%s%s\\-,]*", prefix, pattern));
+        this.rangePattern = Pattern.compile(String.format("%s([%s]+)(?:-%s([%s]+))?", prefix, pattern, prefix, pattern));
     }
 
     public String getPrefix() {
@@ -27,4 +33,12 @@ public enum RangeType {
         return iriPrefix;
     }
 
+    public Pattern getQueryPattern() {
+        return queryPattern;
+    }
+
+    public Pattern getRangePattern() {
+        return rangePattern;
+    }
+
 }
@@ -0,0 +1,67 @@
+package bio.guoda.preston.stream;
+
+import bio.guoda.preston.store.HashKeyUtil;
+import bio.guoda.preston.store.JournaledIndex;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.rdf.api.IRI;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+
+/**
+ * Index of thumbnails previously created for content, from thumbnail query (e.g., thumbnail:hash://sha256/...)
+ * to the content id of the thumbnail, so that a thumbnail can be read as a plain blob instead of
+ * being created again from its (often large) source image.
+ * <p>
+ * Entries are journaled in an append-only index file ({@link #INDEX_FILENAME}) in the data dir,
+ * as [thumbnail content id] [thumbnail size] [thumbnail format] [thumbnail query] tab-separated lines.
+ * Entries of thumbnails of another size or format than those currently created by {@link ContentStreamFactory}
+ * are ignored.
+ */
+
+public class ThumbnailIndex extends JournaledIndex<IRI> {
+
+    public static final String INDEX_FILENAME = "thumbnails.index";
+
+    private static final String PREFIX_THUMBNAIL = ContentStreamFactory.URI_PREFIX_THUMBNAIL + ":";
+
+    public ThumbnailIndex() {
+        this(null);
+    }
+
+    private ThumbnailIndex(File indexFile) {
+        super(indexFile, contentIdCodec(ContentStreamFactory.THUMBNAIL_SIZE, ContentStreamFactory.THUMBNAIL_FORMAT));
+    }
+
+    /**
+     * Loads the thumbnails previously indexed in given data dir.
+     * Thumbnails indexed later are journaled in the data dir.
+     */
+
+    public static ThumbnailIndex load(File dataDir) throws IOException {
+        return load(new ThumbnailIndex(new File(dataDir, INDEX_FILENAME)));
+    }
+
+    /**
+     * @return true if iri requests a thumbnail of content that never changes,
+     * e.g., thumbnail:hash://sha256/... or thumbnail:zip:hash://sha256/...!/image.jpg
+     */
+
+    public static boolean isIndexable(IRI iri) {
+        String iriString = iri.getIRIString();
+        return StringUtils.startsWith(iriString, PREFIX_THUMBNAIL)
+                && HashKeyUtil.isLikelyCompositeHashURI(toIRI(iriString.substring(PREFIX_THUMBNAIL.length())));
+    }
+
+    /**
+     * @return content ids of the indexed thumbnails, e.g., to keep them from being garbage collected.
+     */
+
+    public List<IRI> getContentIds() {
+        return values();
+    }
+
+}
@@ -0,0 +1,120 @@
+package bio.guoda.preston.stream;
+
+import org.apache.commons.rdf.api.IRI;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class CharsetDetectorIndexedTest {
+
+    private static final IRI CONTENT_ID = toIRI("hash://sha256/856ecd48436bb220a80f0a746f94abd7c4ea47cb61d946286f7e25cf0ec69dc1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void detectOnce() throws IOException {
+        AtomicInteger detectCount = new AtomicInteger(0);
+        CharsetDetector detector = countingDetector(detectCount);
+
+        File dataDir = folder.newFolder("data");
+        CharsetDetectorIndexed index = CharsetDetectorIndexed.load(dataDir, detector);
+
+        assertThat(index.detect(CONTENT_ID, someText()).name(), is("UTF-8"));
+        assertThat(index.detect(CONTENT_ID, someText()).name(), is("UTF-8"));
+        assertThat(detectCount.get(), is(1));
+        assertThat(new File(dataDir, CharsetDetectorIndexed.INDEX_FILENAME).exists(), is(true));
+
+        CharsetDetectorIndexed reloaded = CharsetDetectorIndexed.load(dataDir, detector);
+        assertThat(reloaded.size(), is(1));
+        assertThat(reloaded.detect(CONTENT_ID, someText()).name(), is("UTF-8"));
+        assertThat(detectCount.get(), is(1));
+    }
+
+    @Test
+    public void detectOnceWithoutCharset() throws IOException {
+        AtomicInteger detectCount = new AtomicInteger(0);
+        CharsetDetector detector = (version, in) -> {
+            detectCount.incrementAndGet();
+            return null;
+        };
+
+        File dataDir = folder.newFolder("data");
+        assertThat(CharsetDetectorIndexed.load(dataDir, detector).detect(CONTENT_ID, someText()), is(nullValue()));
+        assertThat(CharsetDetectorIndexed.load(dataDir, detector).detect(CONTENT_ID, someText()), is(nullValue()));
+        assertThat(detectCount.get(), is(1));
+    }
+
+    @Test
+    public void detectCompositeContent() throws IOException {
+        AtomicInteger detectCount = new AtomicInteger(0);
+        CharsetDetectorIndexed index = new CharsetDetectorIndexed(countingDetector(detectCount));
+
+        IRI fileInZip = toIRI("zip:" + CONTENT_ID.getIRIString() + "!/some/file.txt");
+        index.detect(fileInZip, someText());
+        index.detect(fileInZip, someText());
+        assertThat(detectCount.get(), is(1));
+        assertThat(index.size(), is(1));
+    }
+
+    @Test
+    public void alwaysDetectSelectedLinesAndCuts() throws IOException {
+        AtomicInteger detectCount = new AtomicInteger(0);
+        CharsetDetectorIndexed index = new CharsetDetectorIndexed(countingDetector(detectCount));
+
+        IRI lines = toIRI("line:" + CONTENT_ID.getIRIString() + "!/L1-L2");
+        index.detect(lines, someText());
+        index.detect(lines, someText());
+
+        IRI cut = toIRI("cut:" + CONTENT_ID.getIRIString() + "!/b1-2");
+        index.detect(cut, someText());
+
+        IRI url = toIRI("https://example.org/some.txt");
+        index.detect(url, someText());
+
+        assertThat(detectCount.get(), is(4));
+        assertThat(index.size(), is(0));
+    }
+
+    @Test
+    public void detectManyContents() throws IOException {
+        AtomicInteger detectCount = new AtomicInteger(0);
+        File dataDir = folder.newFolder("data");
+        CharsetDetectorIndexed index = CharsetDetectorIndexed.load(dataDir, countingDetector(detectCount));
+
+        for (int i = 0; i < 5000; i++) {
+            index.detect(toIRI(String.format("hash://sha256/%064x", i)), someText());
+        }
+        assertThat(index.size(), is(5000));
+
+        CharsetDetectorIndexed reloaded = CharsetDetectorIndexed.load(dataDir, countingDetector(detectCount));
+        for (int i = 0; i < 5000; i++) {
+            reloaded.detect(toIRI(String.format("hash://sha256/%064x", i)), someText());
+        }
+        assertThat(detectCount.get(), is(5000));
+    }
+
+    private static CharsetDetector countingDetector(AtomicInteger detectCount) {
+        return (version, in) -> {
+            detectCount.incrementAndGet();
+            return CharsetDetector.UNIVERSAL.detect(version, in);
+        };
+    }
+
+    private static InputStream someText() {
+        return new ByteArrayInputStream("hello wörld, this is some text".getBytes(StandardCharsets.UTF_8));
+    }
+
+}
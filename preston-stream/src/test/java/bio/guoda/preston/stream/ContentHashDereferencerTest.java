@@ -0,0 +1,232 @@
+package bio.guoda.preston.stream;
+
+import bio.guoda.preston.HashType;
+import bio.guoda.preston.Hasher;
+import bio.guoda.preston.store.BlobStore;
+import bio.guoda.preston.store.RangeDereferencer;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.rdf.api.IRI;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ContentHashDereferencerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void thumbnailFromIndex() throws IOException {
+        BlobStore blobStore = inMemoryBlobStore();
+        IRI imageContentId = blobStore.put(getClass().getResourceAsStream("BRIT67501.jpg"));
+
+        AtomicInteger imageReadCount = new AtomicInteger(0);
+        BlobStore countingBlobStore = countingBlobStore(blobStore, imageContentId, imageReadCount);
+
+        File dataDir = folder.newFolder("data");
+        IRI thumbnailIri = toIRI("thumbnail:" + imageContentId.getIRIString());
+
+        byte[] thumbnail = IOUtils.toByteArray(new ContentHashDereferencer(countingBlobStore, ThumbnailIndex.load(dataDir)).get(thumbnailIri));
+        assertThat(imageReadCount.get(), is(1));
+
+        BufferedImage thumbnailImage = ImageIO.read(new ByteArrayInputStream(thumbnail));
+        assertThat(thumbnailImage.getHeight(), is(256));
+        assertThat(thumbnailImage.getWidth(), is(171));
+
+        ThumbnailIndex reloaded = ThumbnailIndex.load(dataDir);
+        assertThat(reloaded.size(), is(1));
+
+        byte[] thumbnailFromIndex = IOUtils.toByteArray(new ContentHashDereferencer(countingBlobStore, reloaded).get(thumbnailIri));
+        assertThat(imageReadCount.get(), is(1));
+        assertThat(thumbnailFromIndex, is(thumbnail));
+    }
+
+    @Test
+    public void nonThumbnailNotIndexed() throws IOException {
+        BlobStore blobStore = inMemoryBlobStore();
+        IRI contentId = blobStore.put(IOUtils.toInputStream("one\ntwo\nthree", "UTF-8"));
+
+        ThumbnailIndex index = new ThumbnailIndex();
+        InputStream lines = new ContentHashDereferencer(blobStore, index).get(toIRI("line:" + contentId.getIRIString() + "!/L2"));
+
+        assertThat(IOUtils.toString(lines, "UTF-8"), is("two"));
+        assertThat(index.size(), is(0));
+    }
+
+    @Test
+    public void cutFromRange() throws IOException {
+        BlobStore blobStore = inMemoryBlobStore();
+        IRI contentId = blobStore.put(IOUtils.toInputStream("one\ntwo\nthree", "UTF-8"));
+
+        AtomicInteger readCount = new AtomicInteger(0);
+        BlobStore rangeBlobStore = rangeBlobStore(countingBlobStore(blobStore, contentId, readCount), blobStore);
+
+        InputStream cut = new ContentHashDereferencer(rangeBlobStore).get(toIRI("cut:" + contentId.getIRIString() + "!/b5-7"));
+
+        assertThat(IOUtils.toString(cut, "UTF-8"), is("two"));
+        assertThat(readCount.get(), is(0));
+    }
+
+    @Test
+    public void cutWithoutRange() throws IOException {
+        BlobStore blobStore = inMemoryBlobStore();
+        IRI contentId = blobStore.put(IOUtils.toInputStream("one\ntwo\nthree", "UTF-8"));
+
+        AtomicInteger readCount = new AtomicInteger(0);
+        BlobStore rangeBlobStore = rangeBlobStore(countingBlobStore(blobStore, contentId, readCount), null);
+
+        InputStream cut = new ContentHashDereferencer(rangeBlobStore).get(toIRI("cut:" + contentId.getIRIString() + "!/b5-7"));
+
+        assertThat(IOUtils.toString(cut, "UTF-8"), is("two"));
+        assertThat(readCount.get(), is(1));
+    }
+
+    @Test
+    public void selectedLinesFromLineOffsets() throws IOException {
+        BlobStore blobStore = inMemoryBlobStore();
+        IRI contentId = blobStore.put(IOUtils.toInputStream(manyLines(), "UTF-8"));
+
+        AtomicInteger readCount = new AtomicInteger(0);
+        BlobStore rangeBlobStore = rangeBlobStore(countingBlobStore(blobStore, contentId, readCount), blobStore);
+
+        File dataDir = folder.newFolder("data");
+        ContentHashDereferencer dereferencer = new ContentHashDereferencer(rangeBlobStore, null, LineOffsetIndex.load(dataDir));
+
+        assertThat(getLines(dereferencer, contentId, "L3000"), is("line3000"));
+        assertThat(readCount.get(), is(1));
+
+        assertThat(getLines(dereferencer, contentId, "L4097-L4098"), is("line4097\nline4098\r\n"));
+        assertThat(getLines(dereferencer, contentId, "L2048,L2049"), is("line2048\r\nline2049\n"));
+        assertThat(readCount.get(), is(1));
+
+        LineOffsetIndex reloaded = LineOffsetIndex.load(dataDir);
+        assertThat(reloaded.size(), is(1));
+        assertThat(getLines(new ContentHashDereferencer(rangeBlobStore, null, reloaded), contentId, "L5000"), is("line5000"));
+        assertThat(readCount.get(), is(1));
+    }
+
+    @Test
+    public void firstLinesWithoutLineOffsets() throws IOException {
+        BlobStore blobStore = inMemoryBlobStore();
+        IRI contentId = blobStore.put(IOUtils.toInputStream(manyLines(), "UTF-8"));
+
+        LineOffsetIndex index = new LineOffsetIndex();
+        ContentHashDereferencer dereferencer = new ContentHashDereferencer(blobStore, null, index);
+
+        assertThat(getLines(dereferencer, contentId, "L1"), is("line1"));
+        assertThat(getLines(dereferencer, contentId, "L10-L11"), is("line10\r\nline11\n"));
+        assertThat(getLines(dereferencer, contentId, "L" + LineOffsets.DEFAULT_INTERVAL), is("line" + LineOffsets.DEFAULT_INTERVAL));
+        assertThat(index.size(), is(0));
+    }
+
+    @Test
+    public void selectedLinesFromLineOffsetsWithoutRange() throws IOException {
+        BlobStore blobStore = inMemoryBlobStore();
+        IRI contentId = blobStore.put(IOUtils.toInputStream(manyLines(), "UTF-8"));
+
+        ContentHashDereferencer dereferencer = new ContentHashDereferencer(blobStore, null, new LineOffsetIndex());
+        ContentHashDereferencer withoutIndex = new ContentHashDereferencer(blobStore);
+
+        for (String lineQuery : new String[]{"L1", "L1025", "L4096", "L2000-L2002,L2100", "L5000-L5010", "L4000,L3000"}) {
+            assertThat(getLines(dereferencer, contentId, lineQuery), is(getLines(withoutIndex, contentId, lineQuery)));
+        }
+    }
+
+    @Test
+    public void isIndexable() {
+        assertThat(ThumbnailIndex.isIndexable(toIRI("thumbnail:hash://sha256/d89ad03a0c058ecb19c49d158ea1324b83669713a9d446e49786bdfcc23a3c3f")), is(true));
+        assertThat(ThumbnailIndex.isIndexable(toIRI("thumbnail:zip:hash://sha256/d89ad03a0c058ecb19c49d158ea1324b83669713a9d446e49786bdfcc23a3c3f!/some.jpg")), is(true));
+        assertThat(ThumbnailIndex.isIndexable(toIRI("hash://sha256/d89ad03a0c058ecb19c49d158ea1324b83669713a9d446e49786bdfcc23a3c3f")), is(false));
+        assertThat(ThumbnailIndex.isIndexable(toIRI("thumbnail:https://example.org/some.jpg")), is(false));
+    }
+
+    private static String getLines(ContentHashDereferencer dereferencer, IRI contentId, String lineQuery) throws IOException {
+        return IOUtils.toString(dereferencer.get(toIRI("line:" + contentId.getIRIString() + "!/" + lineQuery)), "UTF-8");
+    }
+
+    private static String manyLines() {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 5000; i++) {
+            lines.append("line").append(i).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        return lines.toString();
+    }
+
+    private static BlobStore inMemoryBlobStore() {
+        return new BlobStore() {
+            private final Map<IRI, byte[]> blobs = new HashMap<>();
+
+            @Override
+            public IRI put(InputStream is) throws IOException {
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                IRI contentId = Hasher.calcHashIRI(is, os, true, HashType.sha256);
+                blobs.putIfAbsent(contentId, os.toByteArray());
+                return contentId;
+            }
+
+            @Override
+            public InputStream get(IRI key) {
+                byte[] blob = blobs.get(key);
+                return blob == null ? null : new ByteArrayInputStream(blob);
+            }
+        };
+    }
+
+    private static BlobStore rangeBlobStore(BlobStore blobStore, BlobStore rangeStore) {
+        return new RangeBlobStore() {
+            @Override
+            public IRI put(InputStream is) throws IOException {
+                return blobStore.put(is);
+            }
+
+            @Override
+            public InputStream get(IRI key) throws IOException {
+                return blobStore.get(key);
+            }
+
+            @Override
+            public InputStream get(IRI key, long startOffset, long endOffset) throws IOException {
+                return rangeStore == null
+                        ? null
+                        : ContentStreamUtil.cutBytes(rangeStore.get(key), startOffset, endOffset);
+            }
+        };
+    }
+
+    private interface RangeBlobStore extends BlobStore, RangeDereferencer {
+
+    }
+
+    private static BlobStore countingBlobStore(BlobStore blobStore, IRI countedContentId, AtomicInteger readCount) {
+        return new BlobStore() {
+            @Override
+            public IRI put(InputStream is) throws IOException {
+                return blobStore.put(is);
+            }
+
+            @Override
+            public InputStream get(IRI key) throws IOException {
+                if (countedContentId.equals(key)) {
+                    readCount.incrementAndGet();
+                }
+                return blobStore.get(key);
+            }
+        };
+    }
+
+}
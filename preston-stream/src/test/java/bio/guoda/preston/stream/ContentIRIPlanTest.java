@@ -0,0 +1,94 @@
+package bio.guoda.preston.stream;
+
+import org.apache.commons.rdf.api.IRI;
+import org.junit.Test;
+
+import static bio.guoda.preston.RefNodeFactory.toIRI;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+public class ContentIRIPlanTest {
+
+    private static final IRI CONTENT_ID = toIRI("hash://sha256/d89ad03a0c058ecb19c49d158ea1324b83669713a9d446e49786bdfcc23a3c3f");
+
+    @Test
+    public void nestedSteps() {
+        IRI target = toIRI("line:gz:zip:" + CONTENT_ID.getIRIString() + "!/a.csv.gz!/L10-L12");
+        ContentIRIPlan plan = ContentIRIPlan.compile(target, CONTENT_ID);
+
+        ContentIRIPlan.Step archive = plan.getStepFrom(CONTENT_ID);
+        assertThat(archive.getOperator(), is(ContentIRIPlan.Operator.ARCHIVE));
+        assertThat(archive.getQuery(), is("a.csv.gz"));
+        assertThat(archive.getIri().getIRIString(), is("zip:" + CONTENT_ID.getIRIString() + "!/a.csv.gz"));
+
+        ContentIRIPlan.Step compressed = plan.getStepFrom(archive.getIri());
+        assertThat(compressed.getOperator(), is(ContentIRIPlan.Operator.COMPRESSED));
+        assertThat(compressed.getQuery(), is(nullValue()));
+        assertThat(compressed.getIri().getIRIString(), is("gz:zip:" + CONTENT_ID.getIRIString() + "!/a.csv.gz"));
+
+        ContentIRIPlan.Step line = plan.getStepFrom(compressed.getIri());
+        assertThat(line.getOperator(), is(ContentIRIPlan.Operator.LINE));
+        assertThat(line.getIri(), is(target));
+        assertThat(line.getNumberStream().toArray(), is(new long[]{10, 11, 12}));
+
+        assertThat(plan.getStepFrom(target), is(nullValue()));
+    }
+
+    @Test
+    public void cutOfLine() {
+        IRI target = toIRI("cut:line:" + CONTENT_ID.getIRIString() + "!/L3!/b115-122");
+        ContentIRIPlan plan = ContentIRIPlan.compile(target, CONTENT_ID);
+
+        ContentIRIPlan.Step line = plan.getStepFrom(CONTENT_ID);
+        assertThat(line.getOperator(), is(ContentIRIPlan.Operator.LINE));
+        assertThat(line.getQuery(), is("L3"));
+
+        ContentIRIPlan.Step cut = plan.getStepFrom(line.getIri());
+        assertThat(cut.getOperator(), is(ContentIRIPlan.Operator.CUT));
+        assertThat(cut.getIri(), is(target));
+        assertThat(cut.getByteRange(), is(new long[]{114, 122}));
+    }
+
+    @Test
+    public void unplannedContent() {
+        IRI target = toIRI("cut:line:" + CONTENT_ID.getIRIString() + "!/L3!/b115-122");
+        ContentIRIPlan plan = ContentIRIPlan.compile(target, CONTENT_ID);
+
+        assertThat(plan.getStepFrom(toIRI("line:" + CONTENT_ID.getIRIString() + "!/L1")), is(nullValue()));
+        assertThat(plan.getStepFrom(toIRI("line:" + CONTENT_ID.getIRIString() + "!/L")), is(nullValue()));
+    }
+
+    @Test
+    public void invalidByteRange() {
+        IRI target = toIRI("cut:" + CONTENT_ID.getIRIString() + "!/b5-");
+        ContentIRIPlan.Step cut = ContentIRIPlan.compile(target, CONTENT_ID).getStepFrom(CONTENT_ID);
+
+        assertThat(cut.getOperator(), is(ContentIRIPlan.Operator.CUT));
+        assertThat(cut.getByteRange(), is(nullValue()));
+    }
+
+    @Test
+    public void thumbnail() {
+        IRI target = toIRI("thumbnail:zip:" + CONTENT_ID.getIRIString() + "!/some.jpg");
+        ContentIRIPlan plan = ContentIRIPlan.compile(target, CONTENT_ID);
+
+        ContentIRIPlan.Step archive = plan.getStepFrom(CONTENT_ID);
+        assertThat(archive.getOperator(), is(ContentIRIPlan.Operator.ARCHIVE));
+
+        ContentIRIPlan.Step thumbnail = plan.getStepFrom(archive.getIri());
+        assertThat(thumbnail.getOperator(), is(ContentIRIPlan.Operator.THUMBNAIL));
+        assertThat(thumbnail.getIri(), is(target));
+    }
+
+    @Test
+    public void cachedPlan() {
+        IRI target = toIRI("pdf:" + CONTENT_ID.getIRIString() + "!/p1-p3,p5");
+
+        ContentIRIPlan plan = ContentIRIPlan.compile(target, CONTENT_ID);
+        assertThat(ContentIRIPlan.compile(toIRI(target.getIRIString()), toIRI(CONTENT_ID.getIRIString())), is(sameInstance(plan)));
+        assertThat(plan.getStepFrom(CONTENT_ID).getNumberStream().toArray(), is(new long[]{1, 2, 3, 5}));
+    }
+
+}
@@ -1,16 +1,23 @@
 package bio.guoda.preston.stream;
 
 import bio.guoda.preston.RefNodeFactory;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.hamcrest.core.Is;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -25,6 +32,9 @@ import static org.junit.Assert.assertNotNull;
 
 public class ContentStreamFactoryTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test(expected = IllegalArgumentException.class)
     public void noContentStreamForNonContentHash() throws IOException {
         new ContentStreamFactory(RefNodeFactory.toIRI("foo:bar"));
@@ -164,6 +174,40 @@ public class ContentStreamFactoryTest {
         assertThat(actual.toString(), Is.is(expected.toString()));
     }
 
+    @Test
+    public void contentStreamForPdfPageRemovesTmpFiles() throws IOException {
+        File tmpDir = FileUtils.getTempDirectory();
+        FilenameFilter pdfTmpFiles = (dir, name) -> StringUtils.startsWith(name, "preston-pdf-");
+        int numberOfTmpFiles = ArrayUtils.getLength(tmpDir.list(pdfTmpFiles));
+
+        ContentStreamFactory factory = new ContentStreamFactory(RefNodeFactory.toIRI("pdf:hash://sha256/aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!/p3"));
+        try (InputStream inputStream = factory.create(getPDFStream())) {
+            assertThat(IOUtils.toByteArray(inputStream).length > 0, Is.is(true));
+        }
+
+        assertThat(ArrayUtils.getLength(tmpDir.list(pdfTmpFiles)), Is.is(numberOfTmpFiles));
+    }
+
+    @Test
+    public void contentStreamForPdfPageInTmpDir() throws IOException {
+        File tmpDir = folder.newFolder();
+
+        ContentStreamFactory factory = new ContentStreamFactory(RefNodeFactory.toIRI("pdf:hash://sha256/aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!/p3"));
+        factory.setTmpDir(tmpDir);
+        try (InputStream inputStream = factory.create(getPDFStream())) {
+            assertThat(IOUtils.toByteArray(inputStream).length > 0, Is.is(true));
+        }
+
+        assertThat(tmpDir.list().length, Is.is(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void contentStreamForPdfPageInMissingTmpDir() throws IOException {
+        ContentStreamFactory factory = new ContentStreamFactory(RefNodeFactory.toIRI("pdf:hash://sha256/aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!/p3"));
+        factory.setTmpDir(new File(folder.getRoot(), "missing"));
+        factory.create(getPDFStream());
+    }
+
     @Ignore
     @Test
     public void contentStreamForPdfPageNonNumeric() throws IOException {
@@ -0,0 +1,79 @@
+package bio.guoda.preston.stream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class LineOffsetsTest {
+
+    @Test
+    public void scanUnixLines() throws IOException {
+        LineOffsets lineOffsets = scan("one\ntwo\nthree\nfour\nfive", 2);
+
+        assertThat(lineOffsets.getLength(), is(23L));
+        assertThat(lineOffsets.getCharset(), is(StandardCharsets.UTF_8));
+        assertThat(lineOffsets.getIndexedLineNumber(1), is(1L));
+        assertThat(lineOffsets.getIndexedLineOffset(1), is(0L));
+        assertThat(lineOffsets.getIndexedLineNumber(4), is(3L));
+        assertThat(lineOffsets.getIndexedLineOffset(4), is(8L));
+        assertThat(lineOffsets.getIndexedLineNumber(5), is(5L));
+        assertThat(lineOffsets.getIndexedLineOffset(5), is(19L));
+    }
+
+    @Test
+    public void scanDOSAndMacLines() throws IOException {
+        LineOffsets lineOffsets = scan("one\r\ntwo\rthree\r\nfour", 1);
+
+        assertThat(lineOffsets.getIndexedLineOffset(1), is(0L));
+        assertThat(lineOffsets.getIndexedLineOffset(2), is(5L));
+        assertThat(lineOffsets.getIndexedLineOffset(3), is(9L));
+        assertThat(lineOffsets.getIndexedLineOffset(4), is(16L));
+    }
+
+    @Test
+    public void beyondLastIndexedLine() throws IOException {
+        LineOffsets lineOffsets = scan("one\ntwo\nthree", 2);
+
+        assertThat(lineOffsets.getIndexedLineNumber(100), is(3L));
+        assertThat(lineOffsets.getIndexedLineOffset(100), is(8L));
+    }
+
+    @Test
+    public void notScannable() throws IOException {
+        LineOffsets lineOffsets = LineOffsets.scan(
+                new ByteArrayInputStream("one\ntwo".getBytes(StandardCharsets.UTF_16)),
+                StandardCharsets.UTF_16,
+                2);
+
+        assertThat(lineOffsets.getCharset(), is(nullValue()));
+        assertThat(LineOffsets.scan(IOUtils.toInputStream("one\ntwo", StandardCharsets.UTF_8), null, 2).getCharset(), is(nullValue()));
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        LineOffsets lineOffsets = scan("one\ntwo\nthree\nfour\nfive", 2);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        lineOffsets.write(os);
+        LineOffsets read = LineOffsets.read(new ByteArrayInputStream(os.toByteArray()));
+
+        assertThat(read.getCharset(), is(StandardCharsets.UTF_8));
+        assertThat(read.getLength(), is(23L));
+        assertThat(read.getIndexedLineNumber(4), is(3L));
+        assertThat(read.getIndexedLineOffset(4), is(8L));
+        assertThat(read.getIndexedLineOffset(5), is(19L));
+    }
+
+    private static LineOffsets scan(String text, int interval) throws IOException {
+        return LineOffsets.scan(IOUtils.toInputStream(text, StandardCharsets.UTF_8), StandardCharsets.UTF_8, interval);
+    }
+
+}
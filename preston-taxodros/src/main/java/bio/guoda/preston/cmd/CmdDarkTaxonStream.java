@@ -36,12 +36,13 @@ public class CmdDarkTaxonStream extends CmdZenodoEnabled implements Runnable {
                 NullPrintStream.INSTANCE,
                 LogErrorHandlerExitOnError.EXIT_ON_ERROR);
 
-        StatementsListener textMatcher = new DarkTaxonFileExtractor(
+        DarkTaxonFileExtractor textMatcher = new DarkTaxonFileExtractor(
                 this,
                 blobStoreReadOnly,
                 getOutputStream(),
                 getZenodoContext(),
                 listener);
+        textMatcher.setCharsetDetector(getCharsetDetector());
 
         StatementsEmitterAdapter emitter = new StatementsEmitterAdapter() {
 
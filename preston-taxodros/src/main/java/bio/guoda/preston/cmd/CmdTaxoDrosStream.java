@@ -78,6 +78,7 @@ public class CmdTaxoDrosStream extends LoggingPersisting implements Runnable {
                     setProperty(TaxoDrosFileStreamHandler.PROP_TAXODROS_DATA_YEAR, year);
                 }},
                 listener);
+        textMatcher.setCharsetDetector(getCharsetDetector());
 
         StatementsEmitterAdapter emitter = new StatementsEmitterAdapter() {
 
@@ -68,15 +68,18 @@ public class DarkTaxonFileExtractor extends ProcessorExtracting {
         public TaxoDrosStreamHandlerImpl(StatementEmitter emitter) {
             this.emitter = emitter;
 
+            DarkTaxonFileStreamHandler fileHandler = new DarkTaxonFileStreamHandler(
+                    this,
+                    outputStream,
+                    ctx,
+                    publicationDateFactory
+            );
+            fileHandler.setCharsetDetector(getCharsetDetector());
+
             this.handler = new ContentStreamHandlerImpl(
                     new ArchiveStreamHandler(this),
                     new CompressedStreamHandler(this),
-                    new DarkTaxonFileStreamHandler(
-                            this,
-                            outputStream,
-                            ctx,
-                            publicationDateFactory
-                    )
+                    fileHandler
             );
         }
 
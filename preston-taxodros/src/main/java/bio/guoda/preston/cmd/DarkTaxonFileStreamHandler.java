@@ -1,7 +1,9 @@
 package bio.guoda.preston.cmd;
 
+import bio.guoda.preston.stream.CharsetDetector;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
+import bio.guoda.preston.stream.ContentStreamUtil;
 import bio.guoda.preston.zenodo.ZenodoConfig;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -11,8 +13,6 @@ import org.apache.commons.collections4.list.TreeList;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.txt.UniversalEncodingDetector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +51,8 @@ public class DarkTaxonFileStreamHandler implements ContentStreamHandler {
     private final OutputStream outputStream;
     public static final Pattern HASH_AND_FILEPATH_PATTERN = Pattern.compile("(?<sha256hash>[a-f0-9]{64})\\s+(?<imageFilepath>.*)/(?<imageFilename>[^/]+$)");
 
+    private CharsetDetector charsetDetector = CharsetDetector.UNIVERSAL;
+
     public DarkTaxonFileStreamHandler(ContentStreamHandler contentStreamHandler,
                                       OutputStream os,
                                       ZenodoConfig ctx,
@@ -67,7 +69,7 @@ public class DarkTaxonFileStreamHandler implements ContentStreamHandler {
         AtomicBoolean foundAtLeastOne = new AtomicBoolean(false);
         String iriString = version.getIRIString();
         try {
-            Charset charset = new UniversalEncodingDetector().detect(is, new Metadata());
+            Charset charset = ContentStreamUtil.detectCharset(version, is, charsetDetector);
             if (charset != null) {
                 TreeMap<String, List<String>> rawImagesByStack = new TreeMap<>();
                 TreeMap<String, String> idForStack = new TreeMap<>();
@@ -248,4 +250,8 @@ public class DarkTaxonFileStreamHandler implements ContentStreamHandler {
     public void setPublicationDateFactory(PublicationDateFactory publicationDateFactory) {
         this.publicationDateFactory = publicationDateFactory;
     }
+
+    public void setCharsetDetector(CharsetDetector charsetDetector) {
+        this.charsetDetector = charsetDetector;
+    }
 }
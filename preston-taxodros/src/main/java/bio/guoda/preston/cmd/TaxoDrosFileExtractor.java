@@ -56,10 +56,13 @@ public class TaxoDrosFileExtractor extends ProcessorExtracting {
         public TaxoDrosStreamHandlerImpl(StatementEmitter emitter) {
             this.emitter = emitter;
 
+            TaxoDrosFileStreamHandler fileHandler = new TaxoDrosFileStreamHandler(this, outputStream, communities, props);
+            fileHandler.setCharsetDetector(getCharsetDetector());
+
             this.handler = new ContentStreamHandlerImpl(
                     new ArchiveStreamHandler(this),
                     new CompressedStreamHandler(this),
-                    new TaxoDrosFileStreamHandler(this, outputStream, communities, props)
+                    fileHandler
             );
         }
 
@@ -1,15 +1,15 @@
 package bio.guoda.preston.cmd;
 
+import bio.guoda.preston.stream.CharsetDetector;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
+import bio.guoda.preston.stream.ContentStreamUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.txt.UniversalEncodingDetector;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -77,6 +77,8 @@ public class TaxoDrosFileStreamHandler implements ContentStreamHandler {
     private final OutputStream outputStream;
     private List<String> communities;
 
+    private CharsetDetector charsetDetector = CharsetDetector.UNIVERSAL;
+
     public TaxoDrosFileStreamHandler(ContentStreamHandler contentStreamHandler,
                                      OutputStream os,
                                      List<String> communities,
@@ -92,7 +94,7 @@ public class TaxoDrosFileStreamHandler implements ContentStreamHandler {
         AtomicBoolean foundAtLeastOne = new AtomicBoolean(false);
         String iriString = version.getIRIString();
         try {
-            Charset charset = new UniversalEncodingDetector().detect(is, new Metadata());
+            Charset charset = ContentStreamUtil.detectCharset(version, is, charsetDetector);
             if (charset != null) {
                 int lineStart = -1;
                 int lineFinish = -1;
@@ -426,5 +428,7 @@ public class TaxoDrosFileStreamHandler implements ContentStreamHandler {
         return contentStreamHandler.shouldKeepProcessing();
     }
 
-
+    public void setCharsetDetector(CharsetDetector charsetDetector) {
+        this.charsetDetector = charsetDetector;
+    }
 }
@@ -1,6 +1,8 @@
 package bio.guoda.preston.cmd;
 
 import bio.guoda.preston.store.TestUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.tuple.Pair;
 import org.hamcrest.core.Is;
 import org.junit.Test;
@@ -96,4 +98,21 @@ public class JsonObjectDelineatorTest {
         assertThat(locations.get(99).getRight(), Is.is(363965L));
     }
 
+    @Test
+    public void streamZoteroArticlesWithObjects() throws IOException {
+        List<Pair<Long, Long>> expectedLocations = new ArrayList<>();
+        JsonObjectDelineator.locateTopLevelObjects(getResource("ZoteroArticleListWithMany.json"), expectedLocations::add);
+
+        List<Pair<Long, Long>> locations = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        JsonObjectDelineator.locateTopLevelObjects(getResource("ZoteroArticleListWithMany.json"), new ObjectMapper(), (location, object) -> {
+            locations.add(location);
+            keys.add(((JsonNode) object).get("key").asText());
+        });
+
+        assertThat(locations, Is.is(expectedLocations));
+        assertThat(keys.size(), Is.is(100));
+        assertThat(keys.get(0), Is.is("DP629R8S"));
+    }
+
 }
@@ -54,13 +54,16 @@ public class TaxonWorksJSONExtractor extends ProcessorExtracting {
         public TaxonWorksStreamHandler(StatementEmitter emitter) {
             this.emitter = emitter;
 
+            TaxonWorksJSONStreamHandler jsonHandler = new TaxonWorksJSONStreamHandler(this,
+                    outputStream,
+                    requestedIds
+            );
+            jsonHandler.setCharsetDetector(getCharsetDetector());
+
             this.handler = new ContentStreamHandlerImpl(
                     new ArchiveStreamHandler(this),
                     new CompressedStreamHandler(this),
-                    new TaxonWorksJSONStreamHandler(this,
-                            outputStream,
-                            requestedIds
-                    )
+                    jsonHandler
             );
         }
 
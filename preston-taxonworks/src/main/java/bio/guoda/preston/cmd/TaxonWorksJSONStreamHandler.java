@@ -1,7 +1,9 @@
 package bio.guoda.preston.cmd;
 
+import bio.guoda.preston.stream.CharsetDetector;
 import bio.guoda.preston.stream.ContentStreamException;
 import bio.guoda.preston.stream.ContentStreamHandler;
+import bio.guoda.preston.stream.ContentStreamUtil;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -13,8 +15,6 @@ import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.txt.UniversalEncodingDetector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +43,8 @@ public class TaxonWorksJSONStreamHandler implements ContentStreamHandler {
     private static final String TAXON_ROOTS_RESOLVED = "taxonRootsResolved";
     private static final String REFERENCE_RESOLVED = "referenceResolved";
 
+    private CharsetDetector charsetDetector = CharsetDetector.UNIVERSAL;
+
     public TaxonWorksJSONStreamHandler(ContentStreamHandler contentStreamHandler,
                                        OutputStream os,
                                        Map<String, Map<Long, List<ObjectNode>>> requestedIds) {
@@ -55,7 +57,7 @@ public class TaxonWorksJSONStreamHandler implements ContentStreamHandler {
     public boolean handle(IRI version, InputStream is) throws ContentStreamException {
         AtomicBoolean foundAtLeastOne = new AtomicBoolean(false);
         try {
-            Charset charset = new UniversalEncodingDetector().detect(is, new Metadata());
+            Charset charset = ContentStreamUtil.detectCharset(version, is, charsetDetector);
             if (charset != null) {
                 try {
                     JsonNode jsonNode = new ObjectMapper().readTree(is);
@@ -279,5 +281,7 @@ public class TaxonWorksJSONStreamHandler implements ContentStreamHandler {
         return contentStreamHandler.shouldKeepProcessing();
     }
 
-
+    public void setCharsetDetector(CharsetDetector charsetDetector) {
+        this.charsetDetector = charsetDetector;
+    }
 }
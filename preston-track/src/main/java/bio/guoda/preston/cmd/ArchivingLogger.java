@@ -1,14 +1,14 @@
 package bio.guoda.preston.cmd;
 
 import bio.guoda.preston.RefNodeConstants;
-import bio.guoda.preston.process.StatementLoggerNQuads;
-import bio.guoda.preston.process.StatementsListener;
+import bio.guoda.preston.metrics.FlightRecorderSupport;
+import bio.guoda.preston.metrics.ProvenanceLogWriteEvent;
+import bio.guoda.preston.metrics.TimedEvent;
 import bio.guoda.preston.process.StatementsListenerAdapter;
 import bio.guoda.preston.store.BlobStore;
 import bio.guoda.preston.store.HexaStore;
 import bio.guoda.preston.store.VersionUtil;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Quad;
@@ -16,9 +16,7 @@ import org.apache.commons.rdf.api.RDFTerm;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 
 import static bio.guoda.preston.RefNodeConstants.HAS_PREVIOUS_VERSION;
 
@@ -27,44 +25,56 @@ public class ArchivingLogger extends StatementsListenerAdapter {
     private final BlobStore logStore;
     private final HexaStore hexastore;
     private final ActivityContext ctx;
+    private final long flushIntervalMs;
+    private final FsyncPolicy fsyncPolicy;
     File tmpArchive;
-    OutputStream os;
-    StatementsListener listener;
+    volatile StatementLoggerAsync listener;
 
     public ArchivingLogger(
             PersistingLocal persistingLocal,
             BlobStore provStore,
             HexaStore provIndex,
             ActivityContext ctx) {
+        this(persistingLocal, provStore, provIndex, ctx, StatementLoggerAsync.DEFAULT_FLUSH_INTERVAL_MS, FsyncPolicy.none);
+    }
+
+    public ArchivingLogger(
+            PersistingLocal persistingLocal,
+            BlobStore provStore,
+            HexaStore provIndex,
+            ActivityContext ctx,
+            long flushIntervalMs,
+            FsyncPolicy fsyncPolicy) {
         this.persistingLocal = persistingLocal;
         this.logStore = provStore;
         this.hexastore = provIndex;
         this.ctx = ctx;
+        this.flushIntervalMs = flushIntervalMs;
+        this.fsyncPolicy = fsyncPolicy;
         tmpArchive = null;
-        os = null;
         listener = null;
     }
 
     @Override
     public void on(Quad statement) {
-        if (listener != null) {
-            listener.on(statement);
+        StatementLoggerAsync logger = listener;
+        if (logger != null) {
+            logger.on(statement);
         }
     }
 
     void start() throws IOException {
         tmpArchive = File.createTempFile("archive", "nq", new File(persistingLocal.getTmpDir()));
-        os = IOUtils.buffer(new FileOutputStream(tmpArchive));
-        listener = new StatementLoggerNQuads(os);
+        listener = new StatementLoggerAsync(tmpArchive, flushIntervalMs, fsyncPolicy);
     }
 
-    void stop() throws IOException {
-        if (tmpArchive != null && tmpArchive.exists() && os != null && listener != null) {
-            os.flush();
-            os.close();
-
-            os = null;
+    synchronized void stop() throws IOException {
+        if (tmpArchive != null && tmpArchive.exists() && listener != null) {
+            StatementLoggerAsync logger = listener;
+            listener = null;
+            logger.close();
 
+            TimedEvent event = FlightRecorderSupport.timed(() -> new ProvenanceLogWriteEvent());
             try (FileInputStream is = new FileInputStream(tmpArchive)) {
                 IRI newVersion = logStore.put(is);
 
@@ -77,19 +87,26 @@ public class ArchivingLogger extends StatementsListenerAdapter {
                 } else {
                     hexastore.put(Pair.of(HAS_PREVIOUS_VERSION, previousVersion), newVersion);
                 }
+
+                event.commit(e -> {
+                    ProvenanceLogWriteEvent writeEvent = (ProvenanceLogWriteEvent) e;
+                    writeEvent.setVersion(newVersion.getIRIString());
+                    writeEvent.setPreviousVersion(previousVersion == null ? null : previousVersion.getIRIString());
+                    writeEvent.setBytes(tmpArchive.length());
+                });
             }
         }
 
     }
 
-    void destroy() {
-        if (os != null) {
+    synchronized void destroy() {
+        if (listener != null) {
             try {
-                os.flush();
-                os.close();
+                listener.close();
             } catch (IOException e) {
                 // ignore
             }
+            listener = null;
         }
         if (tmpArchive != null) {
             FileUtils.deleteQuietly(tmpArchive);
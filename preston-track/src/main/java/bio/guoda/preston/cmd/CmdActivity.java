@@ -42,6 +42,18 @@ public abstract class CmdActivity extends LoggingPersisting implements Runnable
     )
     private String description = getDescriptionDefault();
 
+    @CommandLine.Option(
+            names = {"--log-flush-interval"},
+            description = "Interval in milliseconds at which buffered provenance log statements are written to disk. (default: \"${DEFAULT-VALUE}\")"
+    )
+    private long logFlushIntervalMs = StatementLoggerAsync.DEFAULT_FLUSH_INTERVAL_MS;
+
+    @CommandLine.Option(
+            names = {"--log-fsync"},
+            description = "When to sync written provenance log statements to storage device. Supported values: ${COMPLETION-CANDIDATES}. (default: \"${DEFAULT-VALUE}\")"
+    )
+    private FsyncPolicy logFsyncPolicy = FsyncPolicy.none;
+
     public abstract String getDescriptionDefault();
 
 
@@ -74,7 +86,14 @@ public abstract class CmdActivity extends LoggingPersisting implements Runnable
     protected void run(BlobStore blobStore, BlobStore provStore, HexaStore provIndex) {
         ActivityContext ctx = ActivityUtil.createNewActivityContext(getActivityDescription());
 
-        final ArchivingLogger archivingLogger = new ArchivingLogger(this, provStore, provIndex, ctx);
+        final ArchivingLogger archivingLogger = new ArchivingLogger(
+                this,
+                provStore,
+                provIndex,
+                ctx,
+                logFlushIntervalMs,
+                logFsyncPolicy
+        );
         try {
             Runtime.getRuntime().addShutdownHook(new LoggerExitHook(archivingLogger));
 
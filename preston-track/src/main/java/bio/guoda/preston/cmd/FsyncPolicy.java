@@ -0,0 +1,7 @@
+package bio.guoda.preston.cmd;
+
+public enum FsyncPolicy {
+    none,
+    flush,
+    stop
+}
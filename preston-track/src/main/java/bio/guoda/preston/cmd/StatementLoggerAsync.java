@@ -0,0 +1,194 @@
+package bio.guoda.preston.cmd;
+
+import bio.guoda.preston.process.StatementLoggerNQuads;
+import bio.guoda.preston.process.StatementsListener;
+import bio.guoda.preston.process.StatementsListenerAdapter;
+import org.apache.commons.rdf.api.Quad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes statements as N-Quads on a dedicated writer thread.
+ * <p>
+ * Statements are handed off through a lock-free queue, bounded by permits that producers
+ * acquire before, and the writer releases after, handing off a statement. The writer parks
+ * when the queue is empty, and group-commits statements through a write buffer that is flushed
+ * every flush interval and on close. Depending on the {@link FsyncPolicy}, flushed content is also synced to disk.
+ * <p>
+ * Statements received after close (e.g., from threads racing a shutdown) are dropped, and logged once.
+ * Statements received after the writer failed are refused with an {@link IllegalStateException}.
+ */
+
+public class StatementLoggerAsync extends StatementsListenerAdapter implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatementLoggerAsync.class);
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final long ACQUIRE_TIMEOUT_MS = 10;
+
+    private final Queue<Quad> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore capacity = new Semaphore(QUEUE_CAPACITY);
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    private final AtomicBoolean droppedStatements = new AtomicBoolean(false);
+
+    private final File file;
+    private final FileOutputStream fileOutputStream;
+    private final OutputStream outputStream;
+    private final StatementsListener formatter;
+    private final long flushIntervalNanos;
+    private final FsyncPolicy fsyncPolicy;
+    private final Thread writer;
+
+    private volatile boolean closed = false;
+    private volatile boolean writerParked = false;
+
+    public StatementLoggerAsync(File file, long flushIntervalMs, FsyncPolicy fsyncPolicy) throws IOException {
+        this.file = file;
+        this.fileOutputStream = new FileOutputStream(file);
+        this.outputStream = new BufferedOutputStream(fileOutputStream, WRITE_BUFFER_SIZE);
+        this.formatter = new StatementLoggerNQuads(
+                outputStream,
+                () -> failure.compareAndSet(null, new IOException("failed to write to [" + file.getAbsolutePath() + "]"))
+        );
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.fsyncPolicy = fsyncPolicy;
+        this.writer = new Thread(this::writeUntilClosed, "preston-provenance-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @throws IllegalStateException if the logger failed to write earlier statements
+     */
+
+    @Override
+    public void on(Quad statement) {
+        if (acquireCapacity(statement)) {
+            queue.offer(statement);
+            if (closed && queue.remove(statement)) {
+                // closed while handing off: the writer may no longer take statements
+                capacity.release();
+                drop(statement);
+            } else if (writerParked) {
+                LockSupport.unpark(writer);
+            }
+        }
+    }
+
+    private boolean acquireCapacity(Quad statement) {
+        try {
+            do {
+                if (closed) {
+                    drop(statement);
+                    return false;
+                }
+                IOException writeFailure = failure.get();
+                if (writeFailure != null) {
+                    throw new IllegalStateException("cannot log statement [" + statement + "]: failed to write log [" + file.getAbsolutePath() + "]", writeFailure);
+                }
+            } while (!capacity.tryAcquire(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while logging statement [" + statement + "] to [" + file.getAbsolutePath() + "]", e);
+        }
+    }
+
+    private void drop(Quad statement) {
+        if (droppedStatements.compareAndSet(false, true)) {
+            LOG.warn("dropping statements received after closing log [" + file.getAbsolutePath() + "], including [" + statement + "]");
+        }
+    }
+
+    private void writeUntilClosed() {
+        long lastFlush = System.nanoTime();
+        boolean unflushed = false;
+        try {
+            while (true) {
+                // read before polling, so that statements handed off before close are still written
+                boolean closing = closed;
+                Quad statement = queue.poll();
+                if (statement != null) {
+                    capacity.release();
+                    formatter.on(statement);
+                    unflushed = true;
+                } else if (closing) {
+                    break;
+                } else {
+                    // park indefinitely if all is flushed, or until the next flush is due
+                    awaitStatements(unflushed, lastFlush + flushIntervalNanos);
+                }
+                if (unflushed && System.nanoTime() - lastFlush >= flushIntervalNanos) {
+                    flush(FsyncPolicy.flush.equals(fsyncPolicy));
+                    lastFlush = System.nanoTime();
+                    unflushed = false;
+                }
+            }
+            flush(!FsyncPolicy.none.equals(fsyncPolicy));
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private void awaitStatements(boolean untilDeadline, long deadlineNanos) {
+        writerParked = true;
+        // check again after announcing to park, so that a statement offered meanwhile unparks this writer
+        if (queue.isEmpty() && !closed) {
+            if (untilDeadline) {
+                LockSupport.parkNanos(this, deadlineNanos - System.nanoTime());
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        writerParked = false;
+    }
+
+    private void flush(boolean sync) throws IOException {
+        outputStream.flush();
+        if (sync) {
+            fileOutputStream.getFD().sync();
+        }
+    }
+
+    /**
+     * Writes all statements received so far and closes the underlying file.
+     *
+     * @throws IOException if any of the statements could not be written
+     */
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new IOException("interrupted while writing provenance log", e));
+        } finally {
+            outputStream.close();
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package bio.guoda.preston.process;
 import bio.guoda.preston.RefNodeFactory;
 import bio.guoda.preston.cmd.JsonObjectDelineator;
 import bio.guoda.preston.store.BlobStoreReadOnly;
+import com.fasterxml.jackson.core.TreeNode;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.StringUtils;
@@ -15,7 +16,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.LongStream;
@@ -68,9 +69,9 @@ public class RegistryReaderZotero extends ProcessorReadOnly {
 
     private void requestJsonObjectMembers(IRI itemsPage, StatementsEmitter emitter) throws IOException {
 
-        JsonObjectDelineator.locateTopLevelObjects(get(itemsPage), new Consumer<Pair<Long, Long>>() {
+        JsonObjectDelineator.locateTopLevelObjects(get(itemsPage), new ObjectMapper(), new BiConsumer<Pair<Long, Long>, TreeNode>() {
             @Override
-            public void accept(Pair<Long, Long> objectStartFinishRange) {
+            public void accept(Pair<Long, Long> objectStartFinishRange, TreeNode jsonObject) {
                 IRI jsonObjectContentId
                         = RefNodeFactory.toIRI("cut:" + itemsPage.getIRIString() + "!/b" + objectStartFinishRange.getLeft() + "-" + objectStartFinishRange.getRight());
 
@@ -87,32 +88,22 @@ public class RegistryReaderZotero extends ProcessorReadOnly {
                         )
                 ));
 
-                emitSelfReferenceVersionIfAvailable(jsonObjectContentId, emitter);
+                emitSelfReferenceVersionIfAvailable(jsonObjectContentId, (JsonNode) jsonObject, emitter);
 
             }
         });
 
     }
 
-    private void emitSelfReferenceVersionIfAvailable(IRI jsonObjectContentId, StatementsEmitter emitter) {
-        try {
-            InputStream inputStream = get(jsonObjectContentId);
-            JsonNode jsonNode = new ObjectMapper().readTree(inputStream);
-            String selfUrl = jsonNode.at("/links/self/href").asText();
-            if (StringUtils.isNoneBlank(selfUrl)) {
-                emitter.emit(RefNodeFactory.toStatement(
-                        RefNodeFactory.toIRI(selfUrl),
-                        HAS_VERSION,
-                        jsonObjectContentId
-                        )
-                );
-            }
-        } catch (IOException e) {
+    private void emitSelfReferenceVersionIfAvailable(IRI jsonObjectContentId, JsonNode jsonNode, StatementsEmitter emitter) {
+        String selfUrl = jsonNode.at("/links/self/href").asText();
+        if (StringUtils.isNoneBlank(selfUrl)) {
             emitter.emit(RefNodeFactory.toStatement(
-                    jsonObjectContentId,
+                    RefNodeFactory.toIRI(selfUrl),
                     HAS_VERSION,
                     jsonObjectContentId
-            ));
+                    )
+            );
         }
     }
 
@@ -0,0 +1,144 @@
+package bio.guoda.preston.cmd;
+
+import bio.guoda.preston.RefNodeFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.rdf.api.IRI;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class StatementLoggerAsyncTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeOnClose() throws IOException {
+        File file = folder.newFile("log.nq");
+        StatementLoggerAsync logger = new StatementLoggerAsync(file, StatementLoggerAsync.DEFAULT_FLUSH_INTERVAL_MS, FsyncPolicy.stop);
+
+        IRI fooBar = RefNodeFactory.toIRI("foo:bar");
+        logger.on(RefNodeFactory.toStatement(fooBar, fooBar, fooBar));
+        logger.close();
+
+        assertThat(FileUtils.readFileToString(file, StandardCharsets.UTF_8), is("<foo:bar> <foo:bar> <foo:bar> .\n"));
+    }
+
+    @Test
+    public void writeFromManyThreads() throws IOException, InterruptedException {
+        File file = folder.newFile("log.nq");
+        StatementLoggerAsync logger = new StatementLoggerAsync(file, 1, FsyncPolicy.flush);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int producerId = i;
+            producers.add(new Thread(() -> {
+                for (int j = 0; j < 100000; j++) {
+                    IRI iri = RefNodeFactory.toIRI("foo:bar:" + producerId + ":" + j);
+                    logger.on(RefNodeFactory.toStatement(iri, iri, iri));
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        logger.close();
+
+        List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
+        assertThat(lines.size(), is(400000));
+        Set<String> uniqueLines = new HashSet<>(lines);
+        assertThat(uniqueLines.size(), is(400000));
+        assertThat(uniqueLines.contains("<foo:bar:3:99999> <foo:bar:3:99999> <foo:bar:3:99999> ."), is(true));
+    }
+
+    @Test
+    public void dropAfterClose() throws IOException {
+        File file = folder.newFile("log.nq");
+        StatementLoggerAsync logger = new StatementLoggerAsync(file, StatementLoggerAsync.DEFAULT_FLUSH_INTERVAL_MS, FsyncPolicy.none);
+        logger.close();
+
+        IRI fooBar = RefNodeFactory.toIRI("foo:bar");
+        logger.on(RefNodeFactory.toStatement(fooBar, fooBar, fooBar));
+
+        assertThat(FileUtils.readFileToString(file, StandardCharsets.UTF_8), is(""));
+    }
+
+    @Test
+    public void dropWhileClosing() throws IOException, InterruptedException {
+        File file = folder.newFile("log.nq");
+        StatementLoggerAsync logger = new StatementLoggerAsync(file, 1, FsyncPolicy.none);
+
+        AtomicReference<Throwable> producerFailure = new AtomicReference<>();
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int producerId = i;
+            Thread producer = new Thread(() -> {
+                for (int j = 0; j < 100000; j++) {
+                    IRI iri = RefNodeFactory.toIRI("foo:bar:" + producerId + ":" + j);
+                    logger.on(RefNodeFactory.toStatement(iri, iri, iri));
+                }
+            });
+            producer.setUncaughtExceptionHandler((thread, ex) -> producerFailure.set(ex));
+            producers.add(producer);
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        Thread.sleep(10);
+        logger.close();
+        long linesOnClose = FileUtils.readLines(file, StandardCharsets.UTF_8).size();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertThat(producerFailure.get() == null, is(true));
+        List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
+        assertThat((long) lines.size(), is(linesOnClose));
+        assertThat(new HashSet<>(lines).size(), is(lines.size()));
+    }
+
+    @Test
+    public void refuseAfterWriteFailure() throws IOException {
+        File deviceWithoutSpace = new File("/dev/full");
+        Assume.assumeTrue(deviceWithoutSpace.canWrite());
+
+        StatementLoggerAsync logger = new StatementLoggerAsync(deviceWithoutSpace, 1, FsyncPolicy.none);
+        IRI fooBar = RefNodeFactory.toIRI("foo:bar");
+        try {
+            for (int i = 0; i < 10000; i++) {
+                logger.on(RefNodeFactory.toStatement(fooBar, fooBar, fooBar));
+                Thread.sleep(1);
+            }
+            fail("expected statements to be refused after failing to write");
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getCause() instanceof IOException, is(true));
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+
+        try {
+            logger.close();
+            fail("expected failure to be reported on close");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+}
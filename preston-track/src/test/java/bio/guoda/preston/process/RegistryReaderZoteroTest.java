@@ -4,7 +4,6 @@ import bio.guoda.preston.RefNodeConstants;
 import bio.guoda.preston.RefNodeFactory;
 import bio.guoda.preston.store.BlobStoreReadOnly;
 import bio.guoda.preston.store.TestUtil;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Quad;
@@ -12,7 +11,6 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -79,16 +77,7 @@ public class RegistryReaderZoteroTest {
             @Override
             public InputStream get(IRI uri) throws IOException {
                 if (StringUtils.startsWith(uri.getIRIString(), "cut")) {
-                    return IOUtils.toInputStream(
-                            "{ " +
-                                    "\"links\": {\n" +
-                                    "    \"self\": {\n" +
-                                    "      \"href\": \"https://api.zotero.org/groups/XXXXXXX/items/YYYYYYY\",\n" +
-                                    "      \"type\": \"application/json\"\n" +
-                                    "    }" +
-                                    "  }" +
-                                    "}"
-                            , StandardCharsets.UTF_8);
+                    throw new IOException("items should be read from items page, not from [" + uri + "]");
                 } else {
                     return TestUtil.filterLineFeedFromTextInputStream(getClass().getResourceAsStream("/bio/guoda/preston/process/zotero/group-items.json"));
                 }
@@ -125,7 +114,7 @@ public class RegistryReaderZoteroTest {
 
         assertThat(statements.get(expectedNumberOfStatements - 1),
                 is(RefNodeFactory.toStatement(
-                        RefNodeFactory.toIRI("https://api.zotero.org/groups/XXXXXXX/items/YYYYYYY"),
+                        RefNodeFactory.toIRI("https://api.zotero.org/groups/5435545/items/UAAMPR4G"),
                         HAS_VERSION,
                         RefNodeFactory.toIRI("cut:hash://sha256/8db70f1d4eada90e06851ef6d7552e91ec11a7af99f2e30b53635abf462391ab!/b66726-69016")))
         );
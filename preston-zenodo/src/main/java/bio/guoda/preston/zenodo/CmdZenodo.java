@@ -46,13 +46,14 @@ public class CmdZenodo extends CmdZenodoEnabled implements Runnable {
         // limit queue depth, but allow for maximum + 1
         Collection<Quad> fileDepositCandidates = new CircularFifoQueue<Quad>(MAX_ZENODO_FILE_ATTACHMENTS + 1);
 
-        StatementsListener textMatcher = new ZenodoMetadataFileExtractor(
+        ZenodoMetadataFileExtractor textMatcher = new ZenodoMetadataFileExtractor(
                 this,
                 blobStoreReadOnly,
                 getZenodoContext(),
                 fileDepositCandidates,
                 listener
         );
+        textMatcher.setCharsetDetector(getCharsetDetector());
 
         StatementEmitter emitter = new StatementsEmitterAdapter() {
 
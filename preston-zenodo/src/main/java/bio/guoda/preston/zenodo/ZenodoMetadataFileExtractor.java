@@ -58,7 +58,7 @@ public class ZenodoMetadataFileExtractor extends ProcessorExtracting {
                     new ArchiveStreamHandler(this),
                     new CompressedStreamHandler(this),
                     new ZenodoMetadataFileStreamHandler(this,
-                            new ContentHashDereferencer(ZenodoMetadataFileExtractor.this),
+                            new ContentHashDereferencer(ZenodoMetadataFileExtractor.this, getCharsetDetector()),
                             this,
                             zenodoContext,
                             ZenodoMetadataFileExtractor.this.candidateFileDeposits